@@ -7,6 +7,7 @@ import au.edu.wehi.idsv.sam.CigarUtil;
 import au.edu.wehi.idsv.sam.SAMFileUtil;
 import au.edu.wehi.idsv.sam.SAMRecordUtil;
 import au.edu.wehi.idsv.sam.SamTags;
+import au.edu.wehi.idsv.util.DuplicatingIterable;
 import au.edu.wehi.idsv.util.FileHelper;
 import au.edu.wehi.idsv.visualisation.AssemblyTelemetry;
 import com.google.common.base.Stopwatch;
@@ -25,9 +26,14 @@ import picard.sam.GatherBamFiles;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -42,6 +48,7 @@ import java.util.stream.Collectors;
  */
 public class AssemblyEvidenceSource extends SAMEvidenceSource {
 	private static final Log log = Log.getInstance(AssemblyEvidenceSource.class);
+	private static final int SINGLE_PASS_DIRECTION_BUFFER_SIZE = 1024;
 	public static final String INPUT_CATEGORY_SAM_HEADER_PREFIX = "gridss_input_category=";
 	private final List<SAMEvidenceSource> source;
 	private int cachedMaxSourceFragSize = -1;
@@ -49,6 +56,10 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 	private int cachedMaxReadLength = -1;
 	private int cachedMaxReadMappedLength = -1;
 	private AssemblyTelemetry telemetry;
+	/**
+	 * Decoded evidence of each input retained between the assembly of adjacent chunks by the same thread
+	 */
+	private final Map<Thread, List<OverlapEvidenceCache>> evidenceCache = new ConcurrentHashMap<>();
 	private SAMFileHeader header;
 	/**
 	 * Generates assembly evidence based on the given evidence
@@ -86,24 +97,52 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 		if (getContext().getConfig().getVisualisation().assemblyTelemetry) {
 			telemetry = new AssemblyTelemetry(getContext().getFileSystemContext().getAssemblyTelemetry(getFile(), jobNodeIndex), getContext().getDictionary());
 		}
-		List<QueryInterval[]> chunks = getContext().getReference().getIntervals(getContext().getConfig().chunkSize, getContext().getConfig().chunkSequenceChangePenalty);
+		ChunkScheduler scheduler = ChunkScheduler.create(getContext(), source);
+		List<ChunkScheduler.Chunk> chunks = scheduler.getJobNodeChunks(jobNodeIndex, jobNodes);
 		List<File> assembledChunk = new ArrayList<>();
+		for (ChunkScheduler.Chunk chunk : chunks) {
+			assembledChunk.add(getContext().getFileSystemContext().getAssemblyChunkBam(getFile(), chunk.getChunkNumber()));
+		}
 		List<Future<Void>> tasks = new ArrayList<>();
+		AtomicBoolean[] started = new AtomicBoolean[chunks.size()];
+		for (int i = 0; i < started.length; i++) {
+			started[i] = new AtomicBoolean(false);
+		}
+		Map<ChunkScheduler.Chunk, Integer> chunkOffset = new IdentityHashMap<>();
 		for (int i = 0; i < chunks.size(); i++) {
-			if (i % jobNodes == jobNodeIndex) {
-				QueryInterval[] chunk = chunks.get(i);
-				File f = getContext().getFileSystemContext().getAssemblyChunkBam(getFile(), i);
-				int chunkNumber = i;
-				assembledChunk.add(f);
-				if (!f.exists()) {
-					tasks.add(threadpool.submit(() -> {
-						assembleChunk(f, chunkNumber, chunk, excludedRegions, safetyRegions, downsampledRegions);
-						return null;
-					}));
-				}
+			chunkOffset.put(chunks.get(i), i);
+		}
+		boolean continueWithAdjacentChunk = getContext().getAssemblyParameters().evidenceCacheSize > 0;
+		// schedule the most expensive chunks first
+		List<ChunkScheduler.Chunk> byDescendingCost = ChunkScheduler.byDescendingCost(chunks);
+		AtomicInteger queueHead = new AtomicInteger(0);
+		for (ChunkScheduler.Chunk chunk : byDescendingCost) {
+			File f = getContext().getFileSystemContext().getAssemblyChunkBam(getFile(), chunk.getChunkNumber());
+			int offset = chunkOffset.get(chunk);
+			if (f.exists()) {
+				started[offset].set(true);
+			} else {
+				tasks.add(threadpool.submit(() -> {
+					// Once a chunk has been assembled, continue on with the following chunk
+					// (if no other thread has started on it) so the decoded evidence from
+					// the region overlapping both chunks can be reused.
+					for (int i = offset; i < chunks.size() && started[i].compareAndSet(false, true); i++) {
+						ChunkScheduler.Chunk c = chunks.get(i);
+						File cf = getContext().getFileSystemContext().getAssemblyChunkBam(getFile(), c.getChunkNumber());
+						if (cf.exists()) break;
+						assembleChunk(cf, c.getChunkNumber(), c.getIntervals(), excludedRegions, safetyRegions, downsampledRegions);
+						if (!continueWithAdjacentChunk) break;
+						// Only continue if that does not delay a more expensive chunk
+						// so the descending cost schedule is retained
+						if (i + 1 < chunks.size() && chunks.get(i + 1).getCost() > nextQueuedCost(byDescendingCost, chunkOffset, started, queueHead)) break;
+					}
+					return null;
+				}));
 			}
 		}
 		runTasks(tasks);
+		logEvidenceCacheStatistics();
+		evidenceCache.clear();
 		if (telemetry != null) {
 			telemetry.close();
 			telemetry = null;
@@ -159,6 +198,22 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 			}
 		}
 	}
+	/**
+	 * Estimated cost of the most expensive chunk that has not yet been started
+	 * @param byDescendingCost chunks in descending cost order
+	 * @param chunkOffset offset of each chunk in the started array
+	 * @param started chunks that have been started
+	 * @param queueHead position in byDescendingCost before which all chunks have been started
+	 * @return cost of the next chunk to be started, 0 if all chunks have been started
+	 */
+	private static double nextQueuedCost(List<ChunkScheduler.Chunk> byDescendingCost, Map<ChunkScheduler.Chunk, Integer> chunkOffset, AtomicBoolean[] started, AtomicInteger queueHead) {
+		int i = queueHead.get();
+		while (i < byDescendingCost.size() && started[chunkOffset.get(byDescendingCost.get(i))].get()) {
+			i++;
+		}
+		queueHead.accumulateAndGet(i, Math::max);
+		return i < byDescendingCost.size() ? byDescendingCost.get(i).getCost() : 0;
+	}
 	private void runTasks(List<Future<Void>> tasks) {
 		// Assemble as much as we can before dying
 		Exception firstException = null;
@@ -189,14 +244,10 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 		try (SAMFileWriter writer = new SAMFileWriterFactory().makeSAMOrBAMWriter(header, false, tmpout)) {
 			if (getContext().getAssemblyParameters().writeFiltered) {
 				try (SAMFileWriter filteredWriter = new SAMFileWriterFactory().makeSAMOrBAMWriter(header, false, filteredout)) {
-					for (BreakendDirection direction : BreakendDirection.values()) {
-						assembleChunk(writer, filteredWriter, chunkNumber, qi, direction, assemblyNameGenerator, excludedRegions, safetyRegions, downsampledRegions);
-					}
+					assembleChunk(writer, filteredWriter, chunkNumber, qi, assemblyNameGenerator, excludedRegions, safetyRegions, downsampledRegions);
 				}
 			} else {
-				for (BreakendDirection direction : BreakendDirection.values()) {
-					assembleChunk(writer, null, chunkNumber, qi, direction, assemblyNameGenerator, excludedRegions, safetyRegions, downsampledRegions);
-				}
+				assembleChunk(writer, null, chunkNumber, qi, assemblyNameGenerator, excludedRegions, safetyRegions, downsampledRegions);
 			}
 		} catch (Exception e) {
 			log.error(e, "Error assembling ", chuckName);
@@ -220,33 +271,128 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 		}
 	}
 
+	private int getExpansionSize() {
+		// expand bounds to keep any contig that could overlap our intervals
+		return (int)(2 * getMaxConcordantFragmentSize() * getContext().getConfig().getAssembly().maxExpectedBreakendLengthMultiple) + 1;
+	}
 	private QueryInterval[] getExpanded(QueryInterval[] intervals) {
 		QueryInterval[] expanded = QueryIntervalUtil.padIntervals(
 				getContext().getDictionary(),
 				intervals,
-				// expand bounds to keep any contig that could overlap our intervals
-				(int)(2 * getMaxConcordantFragmentSize() * getContext().getConfig().getAssembly().maxExpectedBreakendLengthMultiple) + 1);
+				getExpansionSize());
 		return expanded;
 	}
+	/**
+	 * Decoded evidence cache of each input for the current thread
+	 * @return cache, or null if evidence caching is disabled
+	 */
+	private List<OverlapEvidenceCache> getEvidenceCache() {
+		int maxSize = getContext().getAssemblyParameters().evidenceCacheSize;
+		if (maxSize <= 0) return null;
+		return evidenceCache.computeIfAbsent(Thread.currentThread(), t -> source.stream()
+				// overlap between the evidence queries of adjacent chunks
+				.map(ses -> new OverlapEvidenceCache(2 * (getExpansionSize() + ses.getMaxConcordantFragmentSize() + 1), maxSize))
+				.collect(Collectors.toList()));
+	}
+	private void logEvidenceCacheStatistics() {
+		long queries = 0;
+		long hits = 0;
+		long reused = 0;
+		for (List<OverlapEvidenceCache> list : evidenceCache.values()) {
+			for (OverlapEvidenceCache cache : list) {
+				queries += cache.getQueryCount();
+				hits += cache.getHitCount();
+				reused += cache.getEvidenceReusedCount();
+			}
+		}
+		if (queries > 0) {
+			log.debug(String.format("Reused decoded evidence for %d of %d chunk queries (%d evidence reused)", hits, queries, reused));
+		}
+	}
+	private void assembleChunk(SAMFileWriter writer, SAMFileWriter filteredWriter, int chunkNumber, QueryInterval[] intervals, AssemblyIdGenerator assemblyNameGenerator,
+							   IntervalBed excludedRegions, IntervalBed safetyRegions, IntervalBed downsampledRegions) {
+		if (getContext().getAssemblyParameters().singlePassBidirectional) {
+			assembleChunkSinglePass(writer, filteredWriter, chunkNumber, intervals, assemblyNameGenerator, excludedRegions, safetyRegions, downsampledRegions);
+		} else {
+			for (BreakendDirection direction : BreakendDirection.values()) {
+				assembleChunk(writer, filteredWriter, chunkNumber, intervals, direction, assemblyNameGenerator, excludedRegions, safetyRegions, downsampledRegions);
+			}
+		}
+	}
 	private void assembleChunk(SAMFileWriter writer, SAMFileWriter filteredWriter, int chunkNumber, QueryInterval[] intervals, BreakendDirection direction, AssemblyIdGenerator assemblyNameGenerator,
 							   IntervalBed excludedRegions, IntervalBed safetyRegions, IntervalBed downsampledRegions) {
 		QueryInterval[] expanded = getExpanded(intervals);
-		try (CloseableIterator<DirectedEvidence> input = mergedIterator(source, expanded, EvidenceSortOrder.SAMRecordStartPosition)) {
+		try (CloseableIterator<DirectedEvidence> input = mergedIterator(source, expanded, EvidenceSortOrder.SAMRecordStartPosition, getEvidenceCache())) {
+			Iterator<DirectedEvidence> throttledIt = throttled(input, downsampledRegions);
+			assembleChunk(writer, filteredWriter, chunkNumber, intervals, throttledIt, direction, assemblyNameGenerator, excludedRegions, safetyRegions);
+		}
+	}
+	/**
+	 * Assembles both breakend directions from a single pass over the chunk evidence.
+	 * The backward assembly is performed on a dedicated thread whilst the forward
+	 * assembly is performed on the calling thread.
+	 */
+	private void assembleChunkSinglePass(SAMFileWriter writer, SAMFileWriter filteredWriter, int chunkNumber, QueryInterval[] intervals, AssemblyIdGenerator assemblyNameGenerator,
+							   IntervalBed excludedRegions, IntervalBed safetyRegions, IntervalBed downsampledRegions) {
+		QueryInterval[] expanded = getExpanded(intervals);
+		try (CloseableIterator<DirectedEvidence> input = mergedIterator(source, expanded, EvidenceSortOrder.SAMRecordStartPosition, getEvidenceCache())) {
 			Iterator<DirectedEvidence> throttledIt = throttled(input, downsampledRegions);
-			PositionalAssembler assembler = new PositionalAssembler(getContext(), AssemblyEvidenceSource.this, assemblyNameGenerator, throttledIt, direction, excludedRegions, safetyRegions);
-			if (telemetry != null) {
-				assembler.setTelemetry(telemetry.getTelemetry(chunkNumber, direction));
+			DuplicatingIterable<DirectedEvidence> evidence = new DuplicatingIterable<>(BreakendDirection.values().length, throttledIt, SINGLE_PASS_DIRECTION_BUFFER_SIZE);
+			Iterator<DirectedEvidence> forwardIt = evidence.iterator();
+			Iterator<DirectedEvidence> backwardIt = evidence.iterator();
+			FutureTask<Void> backward = new FutureTask<>(() -> {
+				assembleChunkDirection(writer, filteredWriter, chunkNumber, intervals, backwardIt, BreakendDirection.Backward, assemblyNameGenerator, excludedRegions, safetyRegions);
+				return null;
+			});
+			Thread thread = new Thread(backward);
+			thread.setDaemon(true);
+			thread.setName(String.format("Assembly-chunk%d-%s", chunkNumber, BreakendDirection.Backward));
+			thread.start();
+			try {
+				assembleChunkDirection(writer, filteredWriter, chunkNumber, intervals, forwardIt, BreakendDirection.Forward, assemblyNameGenerator, excludedRegions, safetyRegions);
+			} finally {
+				try {
+					backward.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				} catch (ExecutionException e) {
+					throw new RuntimeException(e.getCause());
+				}
+			}
+		}
+	}
+	private void assembleChunkDirection(SAMFileWriter writer, SAMFileWriter filteredWriter, int chunkNumber, QueryInterval[] intervals, Iterator<DirectedEvidence> it, BreakendDirection direction, AssemblyIdGenerator assemblyNameGenerator,
+							   IntervalBed excludedRegions, IntervalBed safetyRegions) {
+		try {
+			assembleChunk(writer, filteredWriter, chunkNumber, intervals, it, direction, assemblyNameGenerator, excludedRegions, safetyRegions);
+		} finally {
+			// Drain any remaining evidence so the other direction is not blocked
+			// waiting on the shared feeding thread
+			while (it.hasNext()) {
+				it.next();
 			}
-			while (assembler.hasNext()) {
-				SAMRecord asm = assembler.next();
-				asm = transformAssembly(asm); // transform before chunk bounds checking as the position may have moved
-				if (QueryIntervalUtil.overlaps(intervals, asm.getReferenceIndex(), asm.getAlignmentStart())) {
-					// only output assemblies that start within our chunk
-					if (shouldFilterAssembly(asm)) {
-						if (filteredWriter != null) {
+		}
+	}
+	private void assembleChunk(SAMFileWriter writer, SAMFileWriter filteredWriter, int chunkNumber, QueryInterval[] intervals, Iterator<DirectedEvidence> throttledIt, BreakendDirection direction, AssemblyIdGenerator assemblyNameGenerator,
+							   IntervalBed excludedRegions, IntervalBed safetyRegions) {
+		PositionalAssembler assembler = new PositionalAssembler(getContext(), AssemblyEvidenceSource.this, assemblyNameGenerator, throttledIt, direction, excludedRegions, safetyRegions);
+		if (telemetry != null) {
+			assembler.setTelemetry(telemetry.getTelemetry(chunkNumber, direction));
+		}
+		while (assembler.hasNext()) {
+			SAMRecord asm = assembler.next();
+			asm = transformAssembly(asm); // transform before chunk bounds checking as the position may have moved
+			if (QueryIntervalUtil.overlaps(intervals, asm.getReferenceIndex(), asm.getAlignmentStart())) {
+				// only output assemblies that start within our chunk
+				if (shouldFilterAssembly(asm)) {
+					if (filteredWriter != null) {
+						synchronized (filteredWriter) {
 							filteredWriter.addAlignment(asm);
 						}
-					} else {
+					}
+				} else {
+					synchronized (writer) {
 						writer.addAlignment(asm);
 					}
 				}
@@ -461,8 +607,8 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 	public boolean knownSingleEnded() { return true; }
 
 	@Override
-	protected SamReader getReader() {
-		SamReader reader = super.getReader();
+	protected SamReader getReader(SamReaderFactory factory) {
+		SamReader reader = super.getReader(factory);
 		SAMFileHeader header = reader.getFileHeader();
 		List<String> categories = header.getComments().stream()
 				.map(s -> s.replaceFirst("@CO	", ""))
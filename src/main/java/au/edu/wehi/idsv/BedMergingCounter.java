@@ -29,14 +29,23 @@ public class BedMergingCounter {
 
     }
     public List<Pair<BreakendSummary, Integer>> process(BreakendSummary be) throws IOException {
+        return process(be, 1);
+    }
+    /**
+     * Adds a breakend that has already been counted the given number of times
+     * @param be breakend. Breakends must be processed in BreakendSummary.ByStartEnd order.
+     * @param weight number of times the breakend has been observed
+     * @return records no longer able to be merged with any subsequent breakends
+     */
+    public List<Pair<BreakendSummary, Integer>> process(BreakendSummary be, int weight) throws IOException {
         List<Pair<BreakendSummary, Integer>> flushed = flushInactive(be);
-        process(be, 1);
+        add(be, weight);
         return flushed;
     }
     public List<Pair<BreakendSummary, Integer>> finish() {
         return flushInactive(SENTINEL);
     }
-    private void process(BreakendSummary be, int weight) throws IOException {
+    private void add(BreakendSummary be, int weight) throws IOException {
         Integer existingCount = active.get(be);
         if (existingCount != null) {
             active.put(be, existingCount + weight);
@@ -49,7 +58,7 @@ public class BedMergingCounter {
                     BreakendSummary merged = new BreakendSummary(be.referenceIndex, be.direction,
                             key.start, Math.min(key.start, be.start), Math.max(key.end, be.end));
                     existingCount = active.remove(key);
-                    process(merged, existingCount + weight);
+                    add(merged, existingCount + weight);
                     return;
                 }
             }
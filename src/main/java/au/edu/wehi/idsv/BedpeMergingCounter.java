@@ -18,16 +18,25 @@ public class BedpeMergingCounter {
     // how far around the breakpoint position we need to check to ensure we find any potential overlaps
     private int maxWidth2 = 0;
     public List<Pair<BreakpointSummary, Integer>> process(BreakpointSummary bp) throws IOException {
+        return process(bp, 1);
+    }
+    /**
+     * Adds a breakpoint that has already been counted the given number of times
+     * @param bp breakpoint. Breakpoints must be processed in BreakendSummary.ByStartEnd order.
+     * @param weight number of times the breakpoint has been observed
+     * @return records no longer able to be merged with any subsequent breakpoints
+     */
+    public List<Pair<BreakpointSummary, Integer>> process(BreakpointSummary bp, int weight) throws IOException {
         List<Pair<BreakpointSummary, Integer>> flushed = flushInactive(bp);
         if (!bp.isHighBreakend()) {
-            process(bp, 1);
+            add(bp, weight);
         }
         return flushed;
     }
     public List<Pair<BreakpointSummary, Integer>> finish() {
         return flushInactive(SENTINEL);
     }
-    private void process(BreakpointSummary bp, int weight) throws IOException {
+    private void add(BreakpointSummary bp, int weight) throws IOException {
         maxWidth2 = Math.max(maxWidth2, bp.end2 - bp.start2 + 1);
         if (activeByEnd1.contains(bp)) {
             activeByEnd2.put(bp, activeByEnd2.get(bp) + weight);
@@ -53,7 +62,7 @@ public class BedpeMergingCounter {
                         key.referenceIndex2, key.direction2, key.nominal2, Math.min(key.start2, bp.start2), Math.max(key.end2, bp.end2));
                 int existingWeight = activeByEnd2.remove(key);
                 activeByEnd1.remove(key);
-                process(merged, existingWeight + weight);
+                add(merged, existingWeight + weight);
                 return;
             }
         }
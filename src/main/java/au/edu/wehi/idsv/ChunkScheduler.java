@@ -0,0 +1,234 @@
+package au.edu.wehi.idsv;
+
+import au.edu.wehi.idsv.configuration.GridssConfiguration;
+import htsjdk.samtools.*;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Determines the genomic chunks processed by each parallel task and the order
+ * in which they should be processed.
+ *
+ * The processing cost of each chunk is estimated from the amount of structural
+ * variant evidence in the chunk. Chunks are scheduled most expensive first so
+ * that a small number of expensive chunks (such as those overlapping centromeres
+ * or high copy number amplifications) do not run long after the rest of the
+ * thread pool has become idle.
+ *
+ * Chunk numbering and the chunk to job node assignment are a deterministic
+ * function of the reference genome, configuration and input files so independent
+ * job nodes agree on the chunk assignment.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class ChunkScheduler {
+	private static final Log log = Log.getInstance(ChunkScheduler.class);
+	private final List<Chunk> chunks;
+	public static class Chunk {
+		private final int chunkNumber;
+		private final QueryInterval[] intervals;
+		private final double cost;
+		private Chunk(int chunkNumber, QueryInterval[] intervals, double cost) {
+			this.chunkNumber = chunkNumber;
+			this.intervals = intervals;
+			this.cost = cost;
+		}
+		public int getChunkNumber() {
+			return chunkNumber;
+		}
+		public QueryInterval[] getIntervals() {
+			return intervals;
+		}
+		/**
+		 * Estimated processing cost of this chunk
+		 */
+		public double getCost() {
+			return cost;
+		}
+	}
+	/**
+	 * Creates a chunk schedule
+	 * @param intervals chunk intervals in genomic order
+	 * @param costModel chunk processing cost estimator
+	 * @param splitCostMultiple chunks with a cost exceeding this multiple of the mean chunk cost are split. Zero disables splitting.
+	 * @param minSplitSize minimum size of a chunk that can be split
+	 */
+	public ChunkScheduler(List<QueryInterval[]> intervals, ToDoubleFunction<QueryInterval[]> costModel, double splitCostMultiple, int minSplitSize) {
+		double[] cost = intervals.stream().mapToDouble(costModel).toArray();
+		List<QueryInterval[]> result = intervals;
+		if (splitCostMultiple > 0 && cost.length > 0) {
+			double threshold = splitCostMultiple * Arrays.stream(cost).average().getAsDouble();
+			result = new ArrayList<>();
+			for (int i = 0; i < intervals.size(); i++) {
+				split(result, intervals.get(i), cost[i], costModel, threshold, minSplitSize);
+			}
+			if (result.size() != intervals.size()) {
+				log.info(String.format("Split %d chunks into %d chunks", intervals.size(), result.size()));
+				cost = result.stream().mapToDouble(costModel).toArray();
+			}
+		}
+		this.chunks = new ArrayList<>(result.size());
+		for (int i = 0; i < result.size(); i++) {
+			chunks.add(new Chunk(i, result.get(i), cost[i]));
+		}
+	}
+	/**
+	 * Creates a chunk schedule based on the structural variant evidence of the given sources.
+	 */
+	public static ChunkScheduler create(ProcessingContext context, List<? extends SAMEvidenceSource> sources) {
+		GridssConfiguration config = context.getConfig();
+		List<QueryInterval[]> intervals = context.getReference().getIntervals(config.chunkSize, config.chunkSequenceChangePenalty);
+		try (EvidenceIndexCostModel costModel = new EvidenceIndexCostModel(context, sources)) {
+			return new ChunkScheduler(intervals, costModel, config.chunkSplitCostMultiple, config.chunkSplitMinimumSize);
+		}
+	}
+	private static void split(List<QueryInterval[]> result, QueryInterval[] chunk, double cost, ToDoubleFunction<QueryInterval[]> costModel, double threshold, int minSplitSize) {
+		long size = size(chunk);
+		if (cost <= threshold || size < minSplitSize || size < 2) {
+			result.add(chunk);
+			return;
+		}
+		List<QueryInterval> left = new ArrayList<>();
+		List<QueryInterval> right = new ArrayList<>();
+		long remaining = size / 2;
+		for (QueryInterval qi : chunk) {
+			int length = qi.end - qi.start + 1;
+			if (remaining >= length) {
+				left.add(qi);
+			} else if (remaining <= 0) {
+				right.add(qi);
+			} else {
+				left.add(new QueryInterval(qi.referenceIndex, qi.start, qi.start + (int)remaining - 1));
+				right.add(new QueryInterval(qi.referenceIndex, qi.start + (int)remaining, qi.end));
+			}
+			remaining -= length;
+		}
+		QueryInterval[] l = left.toArray(new QueryInterval[0]);
+		QueryInterval[] r = right.toArray(new QueryInterval[0]);
+		split(result, l, costModel.applyAsDouble(l), costModel, threshold, minSplitSize);
+		split(result, r, costModel.applyAsDouble(r), costModel, threshold, minSplitSize);
+	}
+	private static long size(QueryInterval[] chunk) {
+		long size = 0;
+		for (QueryInterval qi : chunk) {
+			size += qi.end - qi.start + 1;
+		}
+		return size;
+	}
+	/**
+	 * All chunks in genomic order
+	 */
+	public List<Chunk> getChunks() {
+		return chunks;
+	}
+	/**
+	 * Chunks in descending order of estimated cost
+	 */
+	public static List<Chunk> byDescendingCost(List<Chunk> chunks) {
+		return chunks.stream()
+				.sorted(Comparator.comparingDouble(Chunk::getCost).reversed().thenComparingInt(Chunk::getChunkNumber))
+				.collect(Collectors.toList());
+	}
+	/**
+	 * Chunks to be processed by the given job node.
+	 * Chunks are allocated such that the total estimated cost of each job node is approximately equal.
+	 * @param jobNodeIndex zero-based job node index
+	 * @param jobNodes total number of job nodes
+	 * @return chunks allocated to the given job node in genomic order
+	 */
+	public List<Chunk> getJobNodeChunks(int jobNodeIndex, int jobNodes) {
+		if (jobNodes <= 1) return chunks;
+		// longest processing time first greedy allocation
+		double[] load = new double[jobNodes];
+		List<Chunk> result = new ArrayList<>();
+		for (Chunk c : byDescendingCost(chunks)) {
+			int node = 0;
+			for (int i = 1; i < jobNodes; i++) {
+				if (load[i] < load[node]) {
+					node = i;
+				}
+			}
+			load[node] += c.getCost();
+			if (node == jobNodeIndex) {
+				result.add(c);
+			}
+		}
+		result.sort(Comparator.comparingInt(Chunk::getChunkNumber));
+		return result;
+	}
+	/**
+	 * Estimates chunk processing cost from the number of structural variant
+	 * evidence records in each chunk. The number of records is estimated from
+	 * the compressed size of the BAM blocks overlapping the chunk and the
+	 * total number of records in the file as reported by the structural variant
+	 * read metrics.
+	 */
+	private static class EvidenceIndexCostModel implements ToDoubleFunction<QueryInterval[]>, Closeable {
+		private final List<SamReader> readers = new ArrayList<>();
+		private final List<BAMIndex> index = new ArrayList<>();
+		/**
+		 * Estimated records per compressed byte for each indexed input file.
+		 */
+		private final List<Double> recordsPerByte = new ArrayList<>();
+		/**
+		 * Estimated records per base for each input without an index
+		 */
+		private double unindexedRecordsPerBase = 0;
+		public EvidenceIndexCostModel(ProcessingContext context, List<? extends SAMEvidenceSource> sources) {
+			long genomeSize = context.getReference().getSequenceDictionary().getReferenceLength();
+			for (SAMEvidenceSource ses : sources) {
+				File file = ses.getSVFile();
+				if (file == null || !file.exists()) {
+					file = ses.getFile();
+				}
+				if (file == null || !file.exists()) continue;
+				long records = file.length();
+				double bytesToRecords = 1;
+				if (ses.getSVMetrics() != null && ses.getSVMetrics().STRUCTURAL_VARIANT_READ_ALIGNMENTS > 0) {
+					records = ses.getSVMetrics().STRUCTURAL_VARIANT_READ_ALIGNMENTS;
+					bytesToRecords = records / (double)Math.max(1, file.length());
+				}
+				SamReader reader = context.getSamReader(file);
+				if (reader.hasIndex() && reader.indexing().getIndex() instanceof BAMIndex) {
+					readers.add(reader);
+					index.add((BAMIndex)reader.indexing().getIndex());
+					recordsPerByte.add(bytesToRecords);
+				} else {
+					unindexedRecordsPerBase += records / (double)Math.max(1, genomeSize);
+					CloserUtil.close(reader);
+				}
+			}
+		}
+		@Override
+		public void close() {
+			CloserUtil.close(readers);
+		}
+		@Override
+		public double applyAsDouble(QueryInterval[] chunk) {
+			// base cost ensures chunks without evidence are still ordered by size
+			double cost = size(chunk) * (unindexedRecordsPerBase + 1e-6);
+			for (int i = 0; i < index.size(); i++) {
+				long bytes = 0;
+				for (QueryInterval qi : chunk) {
+					BAMFileSpan span = index.get(i).getSpanOverlapping(qi.referenceIndex, qi.start, qi.end);
+					if (span == null) continue;
+					for (htsjdk.samtools.Chunk c : span.getChunks()) {
+						bytes += (c.getChunkEnd() >>> 16) - (c.getChunkStart() >>> 16);
+					}
+				}
+				cost += bytes * recordsPerByte.get(i);
+			}
+			return cost;
+		}
+	}
+}
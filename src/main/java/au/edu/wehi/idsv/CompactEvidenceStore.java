@@ -0,0 +1,390 @@
+package au.edu.wehi.idsv;
+
+import au.edu.wehi.idsv.util.FileHelper;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.hash.Hashing;
+import htsjdk.samtools.*;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.Log;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Position sorted binary evidence store.
+ *
+ * Each evidence record holds the breakend or breakpoint summary, scores, evidence identifier
+ * and the BAM virtual file offset of the read the evidence was derived from. Records
+ * are fixed width and sorted in {@link DirectedEvidenceOrder#ByNatural} order so intervals
+ * can be queried by binary search of the memory-mapped file.
+ *
+ * Evidence is returned as {@link StoredEvidence} which decodes the underlying BAM record
+ * only when information not held in the store is requested.
+ *
+ * The header records a fingerprint of the length and modification time of the BAM
+ * the store was created from so stores left over from a previous version of the
+ * BAM are detected and rebuilt.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class CompactEvidenceStore implements Closeable {
+	private static final Log log = Log.getInstance(CompactEvidenceStore.class);
+	private static final long MAGIC = 0x4752494453534556L; // GRIDSSEV
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 32;
+	static final int RECORD_SIZE = 72;
+	private static final int FLAG_BREAKPOINT = 1;
+	private static final int FLAG_EXACT = 2;
+	/**
+	 * Maximum number of records in each memory-mapped segment
+	 */
+	private static final int RECORDS_PER_SEGMENT = Integer.MAX_VALUE / RECORD_SIZE;
+	private final SAMEvidenceSource source;
+	private final File file;
+	private final File bam;
+	private final MappedByteBuffer[] segments;
+	private final long recordCount;
+	private final int maxBreakendWidth;
+	private SAMFileHeader header = null;
+	private BlockCompressedInputStream bamStream = null;
+	private BAMRecordCodec codec = null;
+	private CompactEvidenceStore(SAMEvidenceSource source, File file, File bam) throws IOException {
+		this.source = source;
+		this.file = file;
+		this.bam = bam;
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			if (in.readLong() != MAGIC) {
+				throw new IOException(String.format("%s is not a GRIDSS evidence store", file));
+			}
+			int version = in.readInt();
+			int recordSize = in.readInt();
+			if (version != VERSION || recordSize != RECORD_SIZE) {
+				throw new IOException(String.format("%s: unsupported evidence store version %d", file, version));
+			}
+			this.recordCount = in.readLong();
+			this.maxBreakendWidth = in.readInt();
+			if (in.readInt() != fingerprint(bam)) {
+				throw new IOException(String.format("%s: evidence store was not created from the current version of %s", file, bam));
+			}
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath())) {
+			if (channel.size() != HEADER_SIZE + recordCount * RECORD_SIZE) {
+				throw new IOException(String.format("%s: truncated evidence store", file));
+			}
+			int segmentCount = (int)((recordCount + RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT);
+			this.segments = new MappedByteBuffer[segmentCount];
+			for (int i = 0; i < segmentCount; i++) {
+				long first = (long)i * RECORDS_PER_SEGMENT;
+				long count = Math.min(RECORDS_PER_SEGMENT, recordCount - first);
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * RECORD_SIZE, count * RECORD_SIZE);
+			}
+		}
+	}
+	/**
+	 * Opens the given evidence store
+	 * @param source evidence source the store was created from
+	 * @param file evidence store
+	 * @param bam BAM file the store was created from
+	 */
+	public static CompactEvidenceStore open(SAMEvidenceSource source, File file, File bam) throws IOException {
+		return new CompactEvidenceStore(source, file, bam);
+	}
+	/**
+	 * Determines whether the given evidence store was created from the current version of the given BAM
+	 * @param file evidence store
+	 * @param bam BAM file the store was created from
+	 * @return true if the store exists and matches the BAM, false if the store must be (re)written
+	 */
+	public static boolean isCurrent(File file, File bam) {
+		if (!file.exists() || file.lastModified() < bam.lastModified()) {
+			return false;
+		}
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			if (in.readLong() != MAGIC || in.readInt() != VERSION || in.readInt() != RECORD_SIZE) {
+				return false;
+			}
+			in.readLong(); // record count
+			in.readInt(); // maximum breakend width
+			return in.readInt() == fingerprint(bam);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	/**
+	 * Fingerprint of the BAM file contents, based on the file length and modification time
+	 */
+	private static int fingerprint(File bam) {
+		return Hashing.murmur3_32().newHasher()
+				.putLong(bam.length())
+				.putLong(bam.lastModified())
+				.hash()
+				.asInt();
+	}
+	/**
+	 * Writes an evidence store
+	 * @param evidence evidence in {@link DirectedEvidenceOrder#ByNatural} order. The underlying
+	 * records of the evidence must have been read from a BAM file with file sources enabled.
+	 * @param output evidence store file
+	 * @param bam BAM file the evidence was read from
+	 */
+	public static void write(Iterator<DirectedEvidence> evidence, File output, File bam) throws IOException {
+		File tmp = FileSystemContext.getWorkingFileFor(output, "gridss.tmp.");
+		// fingerprint before reading so changes to the BAM during writing are detected
+		int fingerprint = fingerprint(bam);
+		long count = 0;
+		int maxWidth = 0;
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			out.write(new byte[HEADER_SIZE]);
+			DirectedEvidence last = null;
+			while (evidence.hasNext()) {
+				DirectedEvidence e = evidence.next();
+				if (last != null && DirectedEvidenceOrder.ByNatural.compare(last, e) > 0) {
+					throw new IllegalStateException(String.format("Evidence %s not in breakend position order", e.getEvidenceID()));
+				}
+				writeRecord(out, e);
+				BreakendSummary bs = e.getBreakendSummary();
+				maxWidth = Math.max(maxWidth, bs.end - bs.start);
+				count++;
+				last = e;
+			}
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw")) {
+			raf.writeLong(MAGIC);
+			raf.writeInt(VERSION);
+			raf.writeInt(RECORD_SIZE);
+			raf.writeLong(count);
+			raf.writeInt(maxWidth);
+			raf.writeInt(fingerprint);
+		}
+		FileHelper.move(tmp, output, true);
+		log.debug(String.format("Wrote %d evidence records to %s", count, output));
+	}
+	private static void writeRecord(DataOutputStream out, DirectedEvidence e) throws IOException {
+		BreakendSummary bs = e.getBreakendSummary();
+		int flags = 0;
+		float breakpointQual = 0;
+		out.writeInt(bs.referenceIndex);
+		out.writeInt(bs.start);
+		out.writeInt(bs.end);
+		out.writeInt(bs.nominal);
+		if (e instanceof DirectedBreakpoint) {
+			BreakpointSummary bp = (BreakpointSummary)bs;
+			flags |= FLAG_BREAKPOINT;
+			breakpointQual = ((DirectedBreakpoint)e).getBreakpointQual();
+			out.writeInt(bp.referenceIndex2);
+			out.writeInt(bp.start2);
+			out.writeInt(bp.end2);
+			out.writeInt(bp.nominal2);
+			out.writeByte(bp.direction2.ordinal());
+		} else {
+			out.writeInt(-1);
+			out.writeInt(0);
+			out.writeInt(0);
+			out.writeInt(0);
+			out.writeByte(0);
+		}
+		if (e.isBreakendExact()) {
+			flags |= FLAG_EXACT;
+		}
+		out.writeByte(bs.direction.ordinal());
+		out.writeByte(flags);
+		out.writeByte(0);
+		out.writeFloat(e.getBreakendQual());
+		out.writeFloat(breakpointQual);
+		out.writeInt(e.getLocalMapq());
+		EvidenceId id = e.getEvidenceIdentifier();
+		out.writeLong(id.getHigh());
+		out.writeLong(id.getLow());
+		out.writeLong(getVirtualFileOffset(e.getUnderlyingSAMRecord()));
+	}
+	private static long getVirtualFileOffset(SAMRecord r) {
+		SAMFileSource fs = r == null ? null : r.getFileSource();
+		if (fs != null && fs.getFilePointer() instanceof BAMFileSpan) {
+			return ((BAMFileSpan)fs.getFilePointer()).getFirstOffset();
+		}
+		return -1;
+	}
+	public SAMEvidenceSource getSource() {
+		return source;
+	}
+	public File getFile() {
+		return file;
+	}
+	/**
+	 * Number of evidence records in the store
+	 */
+	public long size() {
+		return recordCount;
+	}
+	private ByteBuffer segment(long index) {
+		return segments[(int)(index / RECORDS_PER_SEGMENT)];
+	}
+	private int offset(long index) {
+		return (int)(index % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+	}
+	private int getReferenceIndex(long index) {
+		return segment(index).getInt(offset(index));
+	}
+	private int getStart(long index) {
+		return segment(index).getInt(offset(index) + 4);
+	}
+	/**
+	 * Gets the evidence record at the given index
+	 */
+	public DirectedEvidence get(long index) {
+		if (index < 0 || index >= recordCount) {
+			throw new IndexOutOfBoundsException(Long.toString(index));
+		}
+		ByteBuffer b = segment(index);
+		int o = offset(index);
+		BreakendDirection[] directions = BreakendDirection.values();
+		int referenceIndex = b.getInt(o);
+		int start = b.getInt(o + 4);
+		int end = b.getInt(o + 8);
+		int nominal = b.getInt(o + 12);
+		BreakendDirection direction = directions[b.get(o + 33)];
+		int flags = b.get(o + 34);
+		float breakendQual = b.getFloat(o + 36);
+		float breakpointQual = b.getFloat(o + 40);
+		int localMapq = b.getInt(o + 44);
+		EvidenceId id = new EvidenceId(b.getLong(o + 48), b.getLong(o + 56));
+		long virtualOffset = b.getLong(o + 64);
+		boolean exact = (flags & FLAG_EXACT) != 0;
+		if ((flags & FLAG_BREAKPOINT) != 0) {
+			BreakpointSummary bp = new BreakpointSummary(referenceIndex, direction, nominal, start, end,
+					b.getInt(o + 16), directions[b.get(o + 32)], b.getInt(o + 28), b.getInt(o + 20), b.getInt(o + 24));
+			return new StoredBreakpointEvidence(this, bp, breakendQual, breakpointQual, localMapq, exact, id, virtualOffset);
+		}
+		BreakendSummary bs = new BreakendSummary(referenceIndex, direction, nominal, start, end);
+		return new StoredEvidence(this, bs, breakendQual, localMapq, exact, id, virtualOffset);
+	}
+	/**
+	 * Index of the first record at or after the given position
+	 */
+	private long lowerBound(int referenceIndex, int position) {
+		long lo = 0;
+		long hi = recordCount;
+		while (lo < hi) {
+			long mid = (lo + hi) >>> 1;
+			int midReferenceIndex = getReferenceIndex(mid);
+			if (midReferenceIndex < referenceIndex || (midReferenceIndex == referenceIndex && getStart(mid) < position)) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+	/**
+	 * Iterates over all evidence in the store
+	 */
+	public CloseableIterator<DirectedEvidence> iterator() {
+		return new RecordIterator(new long[] { 0, recordCount }, null);
+	}
+	/**
+	 * Iterates over the evidence whose breakend overlaps the given intervals
+	 * @param intervals intervals in genomic order
+	 */
+	public CloseableIterator<DirectedEvidence> iterator(QueryInterval[] intervals) {
+		List<long[]> ranges = new ArrayList<>(intervals.length);
+		for (QueryInterval qi : intervals) {
+			long first = lowerBound(qi.referenceIndex, qi.start - maxBreakendWidth);
+			long last = lowerBound(qi.referenceIndex, qi.end + 1);
+			if (first < last) {
+				ranges.add(new long[] { first, last });
+			}
+		}
+		ranges.sort((a, b) -> Long.compare(a[0], b[0]));
+		// merge overlapping record ranges so each record is returned at most once
+		long[] merged = new long[2 * ranges.size()];
+		int count = 0;
+		for (long[] r : ranges) {
+			if (count > 0 && r[0] <= merged[count - 1]) {
+				merged[count - 1] = Math.max(merged[count - 1], r[1]);
+			} else {
+				merged[count++] = r[0];
+				merged[count++] = r[1];
+			}
+		}
+		return new RecordIterator(Arrays.copyOf(merged, count), intervals);
+	}
+	private class RecordIterator extends AbstractIterator<DirectedEvidence> implements CloseableIterator<DirectedEvidence> {
+		private final long[] ranges;
+		private final QueryInterval[] intervals;
+		private int range = 0;
+		private long index;
+		public RecordIterator(long[] ranges, QueryInterval[] intervals) {
+			this.ranges = ranges;
+			this.intervals = intervals;
+			this.index = ranges.length > 0 ? ranges[0] : 0;
+		}
+		@Override
+		protected DirectedEvidence computeNext() {
+			while (range < ranges.length) {
+				if (index >= ranges[range + 1]) {
+					range += 2;
+					if (range < ranges.length) {
+						index = ranges[range];
+					}
+					continue;
+				}
+				DirectedEvidence e = get(index++);
+				if (intervals == null || QueryIntervalUtil.overlaps(intervals, e.getBreakendSummary())) {
+					return e;
+				}
+			}
+			return endOfData();
+		}
+		@Override
+		public void close() {
+			range = ranges.length;
+		}
+	}
+	/**
+	 * Decodes the full evidence the given stored evidence was created from
+	 */
+	synchronized DirectedEvidence decode(StoredEvidence stored) {
+		if (stored.getVirtualFileOffset() < 0) {
+			throw new IllegalStateException(String.format("%s: no BAM record location for evidence %s", file, stored.getEvidenceIdentifier()));
+		}
+		try {
+			if (codec == null) {
+				try (SamReader reader = source.getContext().getSamReader(bam)) {
+					header = reader.getFileHeader();
+				}
+				bamStream = new BlockCompressedInputStream(bam);
+				codec = new BAMRecordCodec(header);
+				codec.setInputStream(bamStream, bam.getPath());
+			}
+			bamStream.seek(stored.getVirtualFileOffset());
+			SAMRecord r = codec.decode();
+			if (r == null) {
+				throw new IllegalStateException(String.format("%s: no BAM record at virtual offset %d", bam, stored.getVirtualFileOffset()));
+			}
+			r.setHeader(header);
+			for (DirectedEvidence e : source.asEvidence(r)) {
+				if (stored.getEvidenceIdentifier().equals(e.getEvidenceIdentifier())) {
+					return e;
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		throw new IllegalStateException(String.format("%s: evidence %s not found in BAM record at virtual offset %d", bam, stored.getEvidenceIdentifier(), stored.getVirtualFileOffset()));
+	}
+	@Override
+	public synchronized void close() {
+		CloserUtil.close(bamStream);
+		bamStream = null;
+		codec = null;
+	}
+}
@@ -42,6 +42,14 @@ public interface DirectedEvidence {
 	 * @return Unique breakpoint identifier string
 	 */
 	String getEvidenceID();
+	/**
+	 * Binary form of the evidence identifier.
+	 * Two evidence have the same identifier if and only if they have the same evidenceID.
+	 * @return 128-bit evidence identifier
+	 */
+	default EvidenceId getEvidenceIdentifier() {
+		return EvidenceId.of(getEvidenceID());
+	}
 	/**
 	 * Unique identifier for the source DNA fragments.
 	 * @return distinct read names of supporting reads
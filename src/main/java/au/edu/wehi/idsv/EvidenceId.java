@@ -0,0 +1,182 @@
+package au.edu.wehi.idsv;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 128-bit evidence identifier
+ *
+ * Hashed evidence identifiers are hierarchical with the high bits encoding the read segment,
+ * followed by the read alignment, then the evidence from that alignment. Identifiers
+ * are converted to text using url-safe Base64 encoding and field boundaries are aligned to
+ * Base64 character boundaries so segment and alignment unique names are prefixes of the
+ * textual evidence identifier.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public final class EvidenceId implements Comparable<EvidenceId> {
+	public static final int SEGMENT_BITS = 84;
+	public static final int ALIGNMENT_BITS = 24;
+	public static final int EVIDENCE_BITS = 128 - SEGMENT_BITS - ALIGNMENT_BITS;
+	private static final int BITS_PER_CHAR = 6;
+	/**
+	 * Length of the textual encoding of a full identifier
+	 */
+	public static final int ENCODED_LENGTH = (128 + BITS_PER_CHAR - 1) / BITS_PER_CHAR;
+	public static final int SEGMENT_ENCODED_LENGTH = SEGMENT_BITS / BITS_PER_CHAR;
+	public static final int ALIGNMENT_ENCODED_LENGTH = (SEGMENT_BITS + ALIGNMENT_BITS) / BITS_PER_CHAR;
+	private static final char[] ENCODE = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+	private static final byte[] DECODE = new byte[128];
+	static {
+		Arrays.fill(DECODE, (byte)-1);
+		for (int i = 0; i < ENCODE.length; i++) {
+			DECODE[ENCODE[i]] = (byte)i;
+		}
+	}
+	private final long hi;
+	private final long lo;
+	public EvidenceId(long hi, long lo) {
+		this.hi = hi;
+		this.lo = lo;
+	}
+	/**
+	 * Creates an identifier from the given segment, alignment and evidence components.
+	 * @param segmentHi first 64 bits of the segment component
+	 * @param segmentLo remaining segment component bits. Only the most significant SEGMENT_BITS - 64 bits are used.
+	 * @param alignment alignment component. Only the low ALIGNMENT_BITS bits are used.
+	 * @param evidence evidence component. Only the low EVIDENCE_BITS bits are used.
+	 */
+	public static EvidenceId create(long segmentHi, long segmentLo, long alignment, long evidence) {
+		long lo = (segmentLo & ~((1L << (ALIGNMENT_BITS + EVIDENCE_BITS)) - 1))
+				| ((alignment & ((1L << ALIGNMENT_BITS) - 1)) << EVIDENCE_BITS)
+				| (evidence & ((1L << EVIDENCE_BITS) - 1));
+		return new EvidenceId(segmentHi, lo);
+	}
+	/**
+	 * Gets the identifier for the given evidence identifier string.
+	 * Strings in the canonical textual encoding are decoded, all other strings are hashed.
+	 */
+	public static EvidenceId of(String evidenceId) {
+		if (isEncoded(evidenceId)) {
+			return decode(evidenceId);
+		}
+		HashCode hc = Hashing.murmur3_128().hashString(evidenceId, StandardCharsets.UTF_8);
+		byte[] b = hc.asBytes();
+		long hi = 0;
+		long lo = 0;
+		for (int i = 0; i < 8; i++) {
+			hi = (hi << 8) | (b[i] & 0xFF);
+			lo = (lo << 8) | (b[i + 8] & 0xFF);
+		}
+		return new EvidenceId(hi, lo);
+	}
+	private static boolean isEncoded(String s) {
+		if (s.length() != ENCODED_LENGTH) return false;
+		for (int i = 0; i < ENCODED_LENGTH; i++) {
+			char c = s.charAt(i);
+			if (c >= DECODE.length || DECODE[c] < 0) return false;
+		}
+		// unused trailing bits must be zero for the encoding to be canonical
+		int unusedBits = ENCODED_LENGTH * BITS_PER_CHAR - 128;
+		return (DECODE[s.charAt(ENCODED_LENGTH - 1)] & ((1 << unusedBits) - 1)) == 0;
+	}
+	/**
+	 * Decodes the given textual encoding.
+	 * Encodings shorter than ENCODED_LENGTH are treated as prefixes with all remaining bits zero.
+	 */
+	public static EvidenceId decode(String s) {
+		if (s.length() > ENCODED_LENGTH) {
+			throw new IllegalArgumentException(s + " is not a valid evidenceID encoding");
+		}
+		long hi = 0;
+		long lo = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			int v = c < DECODE.length ? DECODE[c] : -1;
+			if (v < 0) {
+				throw new IllegalArgumentException(s + " is not a valid evidenceID encoding");
+			}
+			int bit = i * BITS_PER_CHAR;
+			// 6-bit field occupies bits [bit, bit + 6) counting from the most significant bit
+			for (int j = 0; j < BITS_PER_CHAR && bit + j < 128; j++) {
+				if ((v & (1 << (BITS_PER_CHAR - 1 - j))) != 0) {
+					int pos = bit + j;
+					if (pos < 64) {
+						hi |= 1L << (63 - pos);
+					} else {
+						lo |= 1L << (127 - pos);
+					}
+				}
+			}
+		}
+		return new EvidenceId(hi, lo);
+	}
+	private int sixBits(int charOffset) {
+		int bit = charOffset * BITS_PER_CHAR;
+		if (bit + BITS_PER_CHAR <= 64) {
+			return (int)(hi >>> (64 - BITS_PER_CHAR - bit)) & 0x3F;
+		} else if (bit >= 64) {
+			int shift = 128 - BITS_PER_CHAR - bit;
+			return (int)(shift >= 0 ? lo >>> shift : lo << -shift) & 0x3F;
+		}
+		// straddles hi and lo
+		int hiBits = 64 - bit;
+		return (int)(((hi << (BITS_PER_CHAR - hiBits)) | (lo >>> (64 - BITS_PER_CHAR + hiBits))) & 0x3F);
+	}
+	/**
+	 * Gets the first length characters of the textual encoding of this identifier
+	 */
+	public String encode(int length) {
+		char[] buf = new char[length];
+		for (int i = 0; i < length; i++) {
+			buf[i] = ENCODE[sixBits(i)];
+		}
+		return new String(buf);
+	}
+	/**
+	 * Identifier with all but the segment bits cleared
+	 */
+	public EvidenceId segmentUnique() {
+		return new EvidenceId(hi, lo & ~((1L << (ALIGNMENT_BITS + EVIDENCE_BITS)) - 1));
+	}
+	/**
+	 * Identifier with the evidence bits cleared
+	 */
+	public EvidenceId alignmentUnique() {
+		return new EvidenceId(hi, lo & ~((1L << EVIDENCE_BITS) - 1));
+	}
+	public long getHigh() {
+		return hi;
+	}
+	public long getLow() {
+		return lo;
+	}
+	@Override
+	public int hashCode() {
+		long h = hi * 0x9E3779B97F4A7C15L + lo;
+		return (int)(h ^ (h >>> 32));
+	}
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (!(obj instanceof EvidenceId)) return false;
+		EvidenceId other = (EvidenceId)obj;
+		return hi == other.hi && lo == other.lo;
+	}
+	@Override
+	public int compareTo(EvidenceId o) {
+		int cmp = Long.compareUnsigned(hi, o.hi);
+		if (cmp == 0) {
+			cmp = Long.compareUnsigned(lo, o.lo);
+		}
+		return cmp;
+	}
+	@Override
+	public String toString() {
+		return encode(ENCODED_LENGTH);
+	}
+}
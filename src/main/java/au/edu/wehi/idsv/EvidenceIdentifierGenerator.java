@@ -41,4 +41,26 @@ public interface EvidenceIdentifierGenerator {
 	String getEvidenceID(SoftClipEvidence e);
 	String getEvidenceID(SplitReadEvidence e);
 	String getEvidenceID(IndelEvidence e);
+	/**
+	 * Indicates whether evidenceIDs are the textual encoding of the binary evidence identifier
+	 */
+	default boolean isEncodedEvidenceIdentifier() {
+		return false;
+	}
+	/**
+	 * Gets the binary evidence identifier.
+	 * Generators not encoding evidence identifiers in binary use a hash of the evidenceID string.
+	 */
+	default EvidenceId getEvidenceIdentifier(NonReferenceReadPair e) {
+		return EvidenceId.of(e.getEvidenceID());
+	}
+	default EvidenceId getEvidenceIdentifier(SoftClipEvidence e) {
+		return EvidenceId.of(e.getEvidenceID());
+	}
+	default EvidenceId getEvidenceIdentifier(SplitReadEvidence e) {
+		return EvidenceId.of(e.getEvidenceID());
+	}
+	default EvidenceId getEvidenceIdentifier(IndelEvidence e) {
+		return EvidenceId.of(e.getEvidenceID());
+	}
 }
@@ -1,6 +1,7 @@
 package au.edu.wehi.idsv;
 
 import au.edu.wehi.idsv.bed.IntervalBed;
+import au.edu.wehi.idsv.bed.LinearIntervalIndex;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
 import au.edu.wehi.idsv.util.FileHelper;
 import htsjdk.samtools.*;
@@ -22,12 +23,13 @@ public class FullReadExtractor extends ReadExtractor {
         File tmpOut = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(output) : output;
         try (SamReader reader = SamReaderFactory.makeDefault().open(input)) {
             SAMFileHeader header = reader.getFileHeader();
+            LinearIntervalIndex.Cursor cursor = header.getSortOrder() == SAMFileHeader.SortOrder.coordinate ? getRegionBed().getIndex().cursor() : null;
             try (AsyncBufferedIterator<SAMRecord> asyncIt = new AsyncBufferedIterator<>(reader.iterator(), input.getName())) {
                 ProgressLoggingSAMRecordIterator it = new ProgressLoggingSAMRecordIterator(asyncIt, new ProgressLogger(log));
                 try (SAMFileWriter writer = new SAMFileWriterFactory().makeSAMOrBAMWriter(header, true, tmpOut)) {
                     while (it.hasNext()) {
                         SAMRecord r = it.next();
-                        if (shouldExtract(r)) {
+                        if (shouldExtract(r, cursor)) {
                             writer.addAlignment(r);
                         }
                     }
@@ -1,91 +1,136 @@
 package au.edu.wehi.idsv;
 
-import com.google.common.hash.HashCode;
+import au.edu.wehi.idsv.sam.SAMRecordUtil;
 import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
+import htsjdk.samtools.CigarElement;
 import htsjdk.samtools.SAMRecord;
 
-import java.nio.charset.StandardCharsets;
-import java.util.Base64;
-
 /**
  * Generates evidence ID using hashes to reduce evidenceID size
- * 
- * The encoding consists three url-safe Base64 encoded byte blocks (6 bits of information per byte):
- * The first block is the segment unique hash (typically 20 byte = 120 bits)
- * The second block is the alignment unique hash for that segment (typically 6 bytes = 36 bits)
- * The final block is the overall evidenceid hash for that alignment (typically 6 bytes = 36 bits)
- * 
- * 
+ *
+ * Evidence identifiers are 128 bit {@link EvidenceId} values hashed directly from the
+ * read name and alignment fields, and consist of three blocks:
+ * The first block is the segment unique hash (84 bits)
+ * The second block is the alignment unique hash for that segment (24 bits)
+ * The final block encodes the evidence type, direction and indel offset for that alignment (20 bits)
+ *
+ * The textual evidenceID is the url-safe Base64 encoding of the identifier (6 bits of information per byte)
+ * with segment and alignment unique names being 14 and 18 byte prefixes of the evidenceID.
+ *
  * @author Daniel Cameron
  *
  */
 public class HashedEvidenceIdentifierGenerator implements EvidenceIdentifierGenerator {
-	private final StringEvidenceIdentifierGenerator gen = new StringEvidenceIdentifierGenerator();
-	private final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
-	//private final Base64.Decoder decoder = Base64.getUrlDecoder();
-	private HashFunction hf = Hashing.murmur3_128();
-	private final int segmentUniqueBytes;
-	private final int alignmentUniqueBytes;
-	private final int evidenceidUniqueBytes;
-	public HashedEvidenceIdentifierGenerator(int segmentUniqueBytes, int alignmentUniqueBytes, int evidenceidUniqueBytes) {
-		this.segmentUniqueBytes = segmentUniqueBytes;
-		this.alignmentUniqueBytes = alignmentUniqueBytes;
-		this.evidenceidUniqueBytes = evidenceidUniqueBytes;
-	}
-	public HashedEvidenceIdentifierGenerator() {
-		this(20, 6, 6);
-	}
-	/**
-	 * Hashes the given string, returning a string that does not contain any SAM or VCF special characters.
-	 * @param s
-	 * @return string encoding hash
-	 */
+	private static final HashFunction hf = Hashing.murmur3_128();
+	private static final int TYPE_READ_PAIR = 0;
+	private static final int TYPE_SOFT_CLIP = 1;
+	private static final int TYPE_SPLIT_READ = 2;
+	private static final int TYPE_INDEL = 3;
+	private static final int TYPE_SHIFT = EvidenceId.EVIDENCE_BITS - 2;
+	private static final int DIRECTION_SHIFT = TYPE_SHIFT - 2;
 	// SAM read name regex: \*|[!-()+-<>-~][!-~]*
 	// !"#$%&'()+,-./0123456789:;<>?@ABCDEFGHIJKLMNOPQRSTUVWXYZ[\]^_`abcdefghijklmnopqrstuvwxyz{|}~
 	// * = disallowed
-	private String hash(String s, int bytes) {
-		HashCode hc = hf.hashString(s, StandardCharsets.US_ASCII);
-		String encoded = encoder.encodeToString(hc.asBytes());
-		String truncated = encoded.substring(0, bytes);
-		return truncated;
+	// Base64 url-safe encoding does not contain any SAM or VCF special characters.
+	private static int alignmentHash(SAMRecord record) {
+		Hasher hasher = hf.newHasher();
+		if (!record.getReadUnmappedFlag()) {
+			hasher.putUnencodedChars(record.getReferenceName());
+			hasher.putInt(record.getAlignmentStart());
+			hasher.putBoolean(record.getReadNegativeStrandFlag());
+			for (CigarElement ce : record.getCigar().getCigarElements()) {
+				hasher.putInt(ce.getLength());
+				hasher.putByte((byte)ce.getOperator().ordinal());
+			}
+		} else {
+			hasher.putBoolean(false);
+		}
+		return hasher.hash().asInt();
+	}
+	private static int evidenceBits(int type, BreakendSummary bs, int indelOffset) {
+		int direction = 0;
+		if (bs != null) {
+			direction = bs.direction == BreakendDirection.Forward ? 1 : 2;
+		}
+		return (type << TYPE_SHIFT) | (direction << DIRECTION_SHIFT) | (indelOffset & ((1 << DIRECTION_SHIFT) - 1));
+	}
+	private static EvidenceId create(SAMRecord record, int evidence) {
+		Hasher hasher = hf.newHasher();
+		hasher.putUnencodedChars(record.getReadName());
+		hasher.putInt(SAMRecordUtil.getSegmentIndex(record));
+		byte[] b = hasher.hash().asBytes();
+		long segmentHi = 0;
+		long segmentLo = 0;
+		for (int i = 0; i < 8; i++) {
+			segmentHi = (segmentHi << 8) | (b[i] & 0xFF);
+			segmentLo = (segmentLo << 8) | (b[i + 8] & 0xFF);
+		}
+		return EvidenceId.create(segmentHi, segmentLo, alignmentHash(record), evidence);
+	}
+	/**
+	 * Gets the identifier unique to the given read segment
+	 */
+	public EvidenceId getSegmentUniqueIdentifier(SAMRecord record) {
+		return create(record, 0).segmentUnique();
+	}
+	/**
+	 * Gets the identifier unique to the given read alignment
+	 */
+	public EvidenceId getAlignmentUniqueIdentifier(SAMRecord record) {
+		return create(record, 0);
+	}
+	@Override
+	public boolean isEncodedEvidenceIdentifier() {
+		return true;
 	}
 	@Override
 	public String extractAlignmentUniqueName(String evidenceId) {
-		return evidenceId.substring(0, segmentUniqueBytes + alignmentUniqueBytes);
+		return evidenceId.substring(0, EvidenceId.ALIGNMENT_ENCODED_LENGTH);
 	}
 	@Override
 	public String extractSegmentUniqueName(String evidenceId) {
-		return evidenceId.substring(0, segmentUniqueBytes);
+		return evidenceId.substring(0, EvidenceId.SEGMENT_ENCODED_LENGTH);
 	}
 	@Override
 	public String getAlignmentUniqueName(SAMRecord record) {
-		String aun = gen.getAlignmentUniqueName(record);
-		return getSegmentUniqueName(record) + hash(aun, alignmentUniqueBytes);
+		return getAlignmentUniqueIdentifier(record).encode(EvidenceId.ALIGNMENT_ENCODED_LENGTH);
 	}
 	@Override
 	public String getSegmentUniqueName(SAMRecord record) {
-		String sun = gen.getSegmentUniqueName(record);
-		return hash(sun, segmentUniqueBytes);
+		return getSegmentUniqueIdentifier(record).encode(EvidenceId.SEGMENT_ENCODED_LENGTH);
+	}
+	@Override
+	public EvidenceId getEvidenceIdentifier(NonReferenceReadPair e) {
+		return create(e.getLocalledMappedRead(), evidenceBits(TYPE_READ_PAIR, e.getBreakendSummary(), 0));
+	}
+	@Override
+	public EvidenceId getEvidenceIdentifier(SoftClipEvidence e) {
+		return create(e.getSAMRecord(), evidenceBits(TYPE_SOFT_CLIP, e.getBreakendSummary(), 0));
+	}
+	@Override
+	public EvidenceId getEvidenceIdentifier(SplitReadEvidence e) {
+		return create(e.getSAMRecord(), evidenceBits(TYPE_SPLIT_READ, e.getBreakendSummary(), 0));
+	}
+	@Override
+	public EvidenceId getEvidenceIdentifier(IndelEvidence e) {
+		return create(e.getSAMRecord(), evidenceBits(TYPE_INDEL, e.getBreakendSummary(), e.getIndelCigarOffset()));
 	}
 	@Override
 	public String getEvidenceID(NonReferenceReadPair e) {
-		String id = gen.getEvidenceID(e);
-		return getAlignmentUniqueName(e.getLocalledMappedRead()) + hash(id, evidenceidUniqueBytes);
+		return getEvidenceIdentifier(e).toString();
 	}
 	@Override
 	public String getEvidenceID(SoftClipEvidence e) {
-		String id = gen.getEvidenceID(e);
-		return getAlignmentUniqueName(e.getSAMRecord()) + hash(id, evidenceidUniqueBytes);
+		return getEvidenceIdentifier(e).toString();
 	}
 	@Override
 	public String getEvidenceID(SplitReadEvidence e) {
-		String id = gen.getEvidenceID(e);
-		return getAlignmentUniqueName(e.getSAMRecord()) + hash(id, evidenceidUniqueBytes);
+		return getEvidenceIdentifier(e).toString();
 	}
 	@Override
 	public String getEvidenceID(IndelEvidence e) {
-		String id = gen.getEvidenceID(e);
-		return getAlignmentUniqueName(e.getSAMRecord()) + hash(id, evidenceidUniqueBytes);
+		return getEvidenceIdentifier(e).toString();
 	}
 }
@@ -158,6 +158,10 @@ public class IndelEvidence extends SingleReadEvidence implements DirectedBreakpo
 	protected String getUncachedEvidenceID() {
 		return source.getContext().getEvidenceIDGenerator().getEvidenceID(this);
 	}
+	@Override
+	protected EvidenceId getUncachedEvidenceIdentifier() {
+		return source.getContext().getEvidenceIDGenerator().getEvidenceIdentifier(this);
+	}
 	/**
 	 * Identifies which indel in the read this evidence corresponds to.
 	 * @return zero-based offset in the read CIGAR operator list of this indel
@@ -0,0 +1,149 @@
+package au.edu.wehi.idsv;
+
+import gridss.analysis.IdsvMetrics;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.util.CloserUtil;
+
+import java.io.Closeable;
+import java.util.Arrays;
+
+/**
+ * Counts the number of reads and read pairs providing support for the
+ * absence of a structural variation at a given position by querying
+ * an indexed BAM file.
+ *
+ * Unlike {@link SequentialReferenceCoverageLookup}, only the regions
+ * around the queried positions are read. Each index query loads the
+ * coverage of a window starting at the queried position so nearby
+ * queries share a single index lookup. This is substantially faster than
+ * a full scan of the input file when only a sparse set of positions is queried.
+ *
+ * Queries are permitted in any order but are most efficient when in ascending genomic order.
+ * This class is not thread-safe.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class IndexedReferenceCoverageLookup implements Closeable, ReferenceCoverageLookup {
+	private final SamReader reader;
+	private final ReadPairConcordanceCalculator pairing;
+	private final int category;
+	private final boolean ignoreDuplicates;
+	private final int queryWindowSize;
+	/**
+	 * Maximum distance from read alignment start to last concordant support position
+	 */
+	private final int maxEvidenceWindow;
+	private int loadedReferenceIndex = -1;
+	private int loadedStart;
+	private int[] readCounts = new int[0];
+	private int[] pairCounts = new int[0];
+	private long indexQueries = 0;
+	/**
+	 * Creates a reference lookup from the given reads
+	 * @param reader indexed BAM reader. The reader is closed when this lookup is closed.
+	 * @param metrics input library metrics
+	 * @param pairing read pair concordance calculator
+	 * @param queryWindowSize number of bases after each queried position loaded by each index query
+	 * @param category category
+	 * @param ignoreDuplicates ignore reads flagged as duplicates
+	 */
+	public IndexedReferenceCoverageLookup(SamReader reader, IdsvMetrics metrics, ReadPairConcordanceCalculator pairing, int queryWindowSize, int category, boolean ignoreDuplicates) {
+		if (!reader.hasIndex()) {
+			throw new IllegalArgumentException("Indexed coverage lookup requires an indexed input file.");
+		}
+		if (queryWindowSize <= 0) {
+			throw new IllegalArgumentException("Query window size must be positive");
+		}
+		this.reader = reader;
+		this.pairing = pairing;
+		this.queryWindowSize = queryWindowSize;
+		this.category = category;
+		this.ignoreDuplicates = ignoreDuplicates;
+		this.maxEvidenceWindow = Math.max(metrics.MAX_READ_LENGTH, Math.max(metrics.MAX_READ_MAPPED_LENGTH, pairing != null ? pairing.maxConcordantFragmentSize() : 0));
+	}
+	@Override
+	public int readsSupportingNoBreakendAfter(int referenceIndex, int position) {
+		ensure(referenceIndex, position);
+		return readCounts[position - loadedStart];
+	}
+	@Override
+	public int readPairsSupportingNoBreakendAfter(int referenceIndex, int position) {
+		ensure(referenceIndex, position);
+		return pairCounts[position - loadedStart];
+	}
+	/**
+	 * Number of index queries performed
+	 */
+	public long getIndexQueryCount() {
+		return indexQueries;
+	}
+	private void ensure(int referenceIndex, int position) {
+		if (referenceIndex == loadedReferenceIndex && position >= loadedStart && position < loadedStart + readCounts.length) {
+			return;
+		}
+		// include a small amount of flanking sequence before the query position
+		// since calls are only approximately sorted
+		load(referenceIndex, position - maxEvidenceWindow, position + queryWindowSize);
+	}
+	/**
+	 * Loads the coverage for the given half-open interval
+	 */
+	private void load(int referenceIndex, int start, int end) {
+		indexQueries++;
+		loadedReferenceIndex = referenceIndex;
+		loadedStart = start;
+		int length = end - start;
+		if (readCounts.length != length) {
+			readCounts = new int[length];
+			pairCounts = new int[length];
+		} else {
+			Arrays.fill(readCounts, 0);
+			Arrays.fill(pairCounts, 0);
+		}
+		SAMSequenceRecord contig = reader.getFileHeader().getSequenceDictionary().getSequence(referenceIndex);
+		if (contig == null) return;
+		// Read pairs can support positions up to maxEvidenceWindow after the read alignment
+		int queryStart = Math.max(1, start - maxEvidenceWindow);
+		int queryEnd = Math.min(contig.getSequenceLength(), end);
+		if (queryEnd < queryStart) return;
+		// record support as differences then convert to counts
+		try (SAMRecordIterator it = reader.query(contig.getSequenceName(), queryStart, queryEnd, false)) {
+			while (it.hasNext()) {
+				SAMRecord read = it.next();
+				if (read.getReadUnmappedFlag()) continue;
+				if (ignoreDuplicates && read.getDuplicateReadFlag()) continue;
+				// read supports [start, end)
+				addSupport(readCounts, read.getAlignmentStart(), read.getAlignmentEnd());
+				if (SequentialReferenceCoverageLookup.isLowerMappedOfNonOverlappingConcordantPair(read, pairing)) {
+					// read pair supports [alignment end, mate start)
+					addSupport(pairCounts, read.getAlignmentEnd(), read.getMateAlignmentStart());
+				}
+			}
+		}
+		for (int i = 1; i < length; i++) {
+			readCounts[i] += readCounts[i - 1];
+			pairCounts[i] += pairCounts[i - 1];
+		}
+	}
+	private void addSupport(int[] delta, int supportStart, int supportEnd) {
+		int from = Math.max(0, supportStart - loadedStart);
+		int to = Math.min(delta.length, supportEnd - loadedStart);
+		if (from >= to) return;
+		delta[from]++;
+		if (to < delta.length) {
+			delta[to]--;
+		}
+	}
+	@Override
+	public int getCategory() {
+		return category;
+	}
+	@Override
+	public void close() {
+		CloserUtil.close(reader);
+	}
+}
@@ -1,74 +1,152 @@
 package au.edu.wehi.idsv;
 
 import au.edu.wehi.idsv.bed.BedWriter;
-import au.edu.wehi.idsv.util.IntervalAccumulator;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMSequenceDictionary;
-import it.unimi.dsi.fastutil.ints.Int2DoubleMap.Entry;
-import it.unimi.dsi.fastutil.objects.ObjectBidirectionalIterator;
+import it.unimi.dsi.fastutil.ints.IntAVLTreeSet;
+import it.unimi.dsi.fastutil.ints.IntSortedSet;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Iterator;
 
 /**
  * Calculate binned coverage
- * 
+ *
+ * Coverage is accumulated in fixed-point primitive per-bin arrays.
+ *
  * @author Daniel Cameron
  *
  */
 public class IntervalCoverageAccumulator {
+	/**
+	 * Fixed-point scaling factor applied to read weights.
+	 * Bin totals are stored in units of 1/WEIGHT_SCALE bases.
+	 */
+	private static final double WEIGHT_SCALE = 1 << 16;
 	private final CoverageCalculationMethod method;
 	private final SAMSequenceDictionary dictionary;
-	private final IntervalAccumulator[] coverage;
+	private final int binWidth;
+	/**
+	 * 1-based start position of each bin. Null if all bins on the chromosome are of width binWidth.
+	 */
+	private final int[][] binStart;
+	private final long[][] coverage;
 	public IntervalCoverageAccumulator(CoverageCalculationMethod method, SAMSequenceDictionary dictionary, int binWidth, Iterator<VariantContextDirectedEvidence> it) {
 		this.method = method;
 		this.dictionary = dictionary;
-		this.coverage = initCoverage(dictionary, binWidth, it);
-	}
-	private static IntervalAccumulator[] initCoverage(SAMSequenceDictionary dictionary, int binWidth, Iterator<VariantContextDirectedEvidence> it) {
-		IntervalAccumulator[] coverage = new IntervalAccumulator[dictionary.getSequences().size()];
+		this.binWidth = binWidth;
+		this.binStart = initBins(dictionary, binWidth, it);
+		this.coverage = new long[binStart.length][];
 		for (int i = 0; i < coverage.length; i++) {
-			coverage[i] = new IntervalAccumulator(1, dictionary.getSequence(i).getSequenceLength(), binWidth);
+			coverage[i] = new long[binCount(i)];
 		}
-			if (it != null) {
+	}
+	private static int[][] initBins(SAMSequenceDictionary dictionary, int binWidth, Iterator<VariantContextDirectedEvidence> it) {
+		IntSortedSet[] splits = new IntSortedSet[dictionary.getSequences().size()];
+		if (it != null) {
 			while (it.hasNext()) {
 				VariantContextDirectedEvidence evidence = it.next();
 				BreakendSummary bs = evidence.getBreakendSummary();
 				// split bins at the break-end boundary
-				if (bs.direction == BreakendDirection.Forward) {
-					coverage[bs.referenceIndex].splitBin(bs.nominal + 1);
-				} else {
-					coverage[bs.referenceIndex].splitBin(bs.nominal);
+				int position = bs.direction == BreakendDirection.Forward ? bs.nominal + 1 : bs.nominal;
+				if (position > 1 && position <= dictionary.getSequence(bs.referenceIndex).getSequenceLength() && (position - 1) % binWidth != 0) {
+					if (splits[bs.referenceIndex] == null) {
+						splits[bs.referenceIndex] = new IntAVLTreeSet();
+					}
+					splits[bs.referenceIndex].add(position);
 				}
 			}
+		}
+		int[][] binStart = new int[splits.length][];
+		for (int i = 0; i < splits.length; i++) {
+			if (splits[i] != null) {
+				IntSortedSet starts = splits[i];
+				int length = dictionary.getSequence(i).getSequenceLength();
+				for (int start = 1; start <= length; start += binWidth) {
+					starts.add(start);
+				}
+				binStart[i] = starts.toIntArray();
 			}
-		for (int i = 0; i < coverage.length; i++) {
-			coverage[i].finaliseBins();
 		}
-		return coverage;
+		return binStart;
+	}
+	private int binCount(int referenceIndex) {
+		if (binStart[referenceIndex] != null) {
+			return binStart[referenceIndex].length;
+		}
+		return (dictionary.getSequence(referenceIndex).getSequenceLength() + binWidth - 1) / binWidth;
+	}
+	private int getBinIndex(int referenceIndex, int position) {
+		int[] starts = binStart[referenceIndex];
+		if (starts == null) {
+			return (position - 1) / binWidth;
+		}
+		int index = Arrays.binarySearch(starts, position);
+		return index >= 0 ? index : -index - 2;
+	}
+	/**
+	 * 1-based start position of the given bin
+	 */
+	private int getBinStart(int referenceIndex, int binIndex) {
+		int[] starts = binStart[referenceIndex];
+		if (starts == null) {
+			return binIndex * binWidth + 1;
+		}
+		return starts[binIndex];
+	}
+	/**
+	 * 1-based end position of the given bin
+	 */
+	private int getBinEnd(int referenceIndex, int binIndex) {
+		if (binIndex + 1 < coverage[referenceIndex].length) {
+			return getBinStart(referenceIndex, binIndex + 1) - 1;
+		}
+		return dictionary.getSequence(referenceIndex).getSequenceLength();
 	}
 	public void add(SAMRecord record, ReadGcSummary summary, double readWeight) {
 		switch (method) {
 		case FRAGMENT:
-			coverage[summary.referenceIndex].add(summary.fragmentStart, summary.fragmentEnd, readWeight);
+			add(summary.referenceIndex, summary.fragmentStart, summary.fragmentEnd, readWeight);
 			break;
 		case READ:
 			// TODO: use actual read alignment CIGAR
-			coverage[summary.referenceIndex].add(record.getAlignmentStart(), record.getAlignmentEnd(), readWeight);
+			add(summary.referenceIndex, record.getAlignmentStart(), record.getAlignmentEnd(), readWeight);
 			break;
 		}
 	}
+	/**
+	 * Add the given weight at all positions in the given interval
+	 * @param referenceIndex contig
+	 * @param start 1-based start position (inclusive)
+	 * @param end 1-based end position (inclusive)
+	 * @param weight weight to add to each position
+	 */
+	private void add(int referenceIndex, int start, int end, double weight) {
+		if (end < start) {
+			throw new IllegalArgumentException("end cannot be before start");
+		}
+		start = Math.max(start, 1);
+		end = Math.min(end, dictionary.getSequence(referenceIndex).getSequenceLength());
+		if (end < start) return;
+		long fixedWeight = Math.round(weight * WEIGHT_SCALE);
+		long[] bins = coverage[referenceIndex];
+		int startBin = getBinIndex(referenceIndex, start);
+		int endBin = getBinIndex(referenceIndex, end);
+		for (int i = startBin; i <= endBin; i++) {
+			int overlapStart = Math.max(start, getBinStart(referenceIndex, i));
+			int overlapEnd = Math.min(end, getBinEnd(referenceIndex, i));
+			bins[i] += (overlapEnd - overlapStart + 1) * fixedWeight;
+		}
+	}
 	public void writeToBed(File bed) throws IOException {
 		try (BedWriter writer = new BedWriter(dictionary, bed)) {
 			for (int i = 0; i < coverage.length; i++) {
-				ObjectBidirectionalIterator<Entry> it = coverage[i].iterator();
-				while (it.hasNext()) {
-					Entry e = it.next();
-					int start = e.getIntKey();
-					int binWidth = coverage[i].getBinSize(start);
-					int end = start + binWidth - 1;
-					writer.write(i, start, end, coverage[i].getMeanValue(start));
+				for (int j = 0; j < coverage[i].length; j++) {
+					int start = getBinStart(i, j);
+					int end = getBinEnd(i, j);
+					writer.write(i, start, end, coverage[i][j] / WEIGHT_SCALE / (end - start + 1));
 				}
 			}
 		}
@@ -4,12 +4,11 @@ import au.edu.wehi.idsv.graph.RectangleGraphMaximalCliqueIterator;
 import au.edu.wehi.idsv.graph.RectangleGraphNode;
 import au.edu.wehi.idsv.graph.RectangleGraphNodeMergingIterator;
 import au.edu.wehi.idsv.graph.ScalingHelper;
+import au.edu.wehi.idsv.util.BucketedWindowedSortingIterator;
 import au.edu.wehi.idsv.util.MathUtil;
-import au.edu.wehi.idsv.util.WindowedSortingIterator;
 import au.edu.wehi.idsv.vcf.VcfInfoAttributes;
 import au.edu.wehi.idsv.vcf.VcfSvConstants;
 import au.edu.wehi.idsv.visualisation.TrackedState;
-import com.google.common.base.Function;
 import com.google.common.collect.AbstractIterator;
 import htsjdk.samtools.util.Log;
 
@@ -44,13 +43,9 @@ public class MaximalEvidenceCliqueIterator extends AbstractIterator<VariantConte
 		this.idGenerator = idGenerator;
 	}
 
-	private class GraphNodeWindowedSortingIterator extends WindowedSortingIterator<RectangleGraphNode> {
+	private class GraphNodeWindowedSortingIterator extends BucketedWindowedSortingIterator<RectangleGraphNode> {
 		public GraphNodeWindowedSortingIterator(final GenomicProcessingContext processContext, final int windowSize, final Iterator<RectangleGraphNode> it) {
-			super(it, new Function<RectangleGraphNode, Long>() {
-				public Long apply(RectangleGraphNode arg) {
-					return arg.startX;
-				}
-			}, windowSize, RectangleGraphNode.ByStartXYEndXY);
+			super(it, arg -> arg.startX, windowSize, RectangleGraphNode.ByStartXYEndXY);
 		}
 	}
 	private class EvidenceToGraphNodeIterator extends AbstractIterator<RectangleGraphNode> {
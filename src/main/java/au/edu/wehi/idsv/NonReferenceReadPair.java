@@ -26,6 +26,7 @@ public abstract class NonReferenceReadPair implements DirectedEvidence {
 	private final BreakendSummary location;
 	private final SAMEvidenceSource source;
 	private String evidenceID = null;
+	private EvidenceId evidenceIdentifier = null;
 	private String associatedAssemblyName;
 	protected NonReferenceReadPair(SAMRecord local, SAMRecord remote, SAMEvidenceSource source) {
 		if (local == null) throw new IllegalArgumentException("local is null");
@@ -263,11 +264,23 @@ public abstract class NonReferenceReadPair implements DirectedEvidence {
 	@Override
 	public String getEvidenceID() {
 		if (evidenceID == null) {
-			evidenceID = source.getContext().getEvidenceIDGenerator().getEvidenceID(this);
+			EvidenceIdentifierGenerator eidgen = source.getContext().getEvidenceIDGenerator();
+			if (eidgen.isEncodedEvidenceIdentifier()) {
+				evidenceID = getEvidenceIdentifier().toString();
+			} else {
+				evidenceID = eidgen.getEvidenceID(this);
+			}
 		}
 		return evidenceID;
 	}
 	@Override
+	public EvidenceId getEvidenceIdentifier() {
+		if (evidenceIdentifier == null) {
+			evidenceIdentifier = source.getContext().getEvidenceIDGenerator().getEvidenceIdentifier(this);
+		}
+		return evidenceIdentifier;
+	}
+	@Override
 	public BreakendSummary getBreakendSummary() {
 		return location;
 	}
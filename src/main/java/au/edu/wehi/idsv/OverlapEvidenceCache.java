@@ -0,0 +1,159 @@
+package au.edu.wehi.idsv;
+
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMRecord;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Retains the decoded evidence at the end of the most recently queried interval
+ * so that the overlapping region of a subsequent query of an adjacent interval
+ * does not need to be re-read and re-decoded.
+ *
+ * Evidence is retained only from reads overlapping the final retainWidth bases of the
+ * previous query and, to bound memory usage, only if no more than maxSize evidence
+ * would be retained. A cache instance must only be used by a single consumer at a time.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class OverlapEvidenceCache {
+	private final int retainWidth;
+	private final int maxSize;
+	private int referenceIndex = -1;
+	/**
+	 * Cached evidence is from all reads overlapping [retainedStart, coveredEnd]
+	 */
+	private int retainedStart;
+	private int coveredEnd;
+	private List<DirectedEvidence> evidence = null;
+	private long queries = 0;
+	private long hits = 0;
+	private long evidenceReused = 0;
+	/**
+	 * @param retainWidth width of the interval at the end of each query from which evidence is retained.
+	 * This should be the width of the overlap between adjacent queries.
+	 * @param maxSize maximum number of evidence to retain
+	 */
+	public OverlapEvidenceCache(int retainWidth, int maxSize) {
+		this.retainWidth = retainWidth;
+		this.maxSize = maxSize;
+	}
+	/**
+	 * Removes the cached evidence from reads overlapping the start of the given query interval.
+	 * The cache is always cleared by this call.
+	 * @param query query interval
+	 * @return evidence from reads overlapping the query interval and starting
+	 * at or before {@link #getCoveredEnd()} in SAM record start order, or null if
+	 * the cache does not fully cover the start of the query interval.
+	 */
+	public List<DirectedEvidence> take(QueryInterval query) {
+		queries++;
+		List<DirectedEvidence> cached = evidence;
+		evidence = null;
+		if (cached == null
+				|| query.referenceIndex != referenceIndex
+				|| query.start < retainedStart
+				|| query.start > coveredEnd
+				|| query.end < coveredEnd) {
+			return null;
+		}
+		List<DirectedEvidence> result = new ArrayList<>(cached.size());
+		for (DirectedEvidence e : cached) {
+			if (readEnd(e) >= query.start) {
+				result.add(e);
+			}
+		}
+		hits++;
+		evidenceReused += result.size();
+		return result;
+	}
+	/**
+	 * Removes all cached evidence
+	 */
+	public void clear() {
+		evidence = null;
+	}
+	/**
+	 * Last position covered by the cached evidence returned by the most recent call to {@link #take(QueryInterval)}
+	 */
+	public int getCoveredEnd() {
+		return coveredEnd;
+	}
+	/**
+	 * Records the evidence returned by the given iterator. The cache is updated only
+	 * when the returned iterator has been fully consumed.
+	 * @param it evidence from all reads overlapping the query interval in SAM record start order
+	 * @param query query interval
+	 * @return iterator returning the same evidence as the input iterator
+	 */
+	public Iterator<DirectedEvidence> record(Iterator<DirectedEvidence> it, QueryInterval query) {
+		return new RecordingIterator(it, query);
+	}
+	private static int readEnd(DirectedEvidence e) {
+		SAMRecord r = e.getUnderlyingSAMRecord();
+		return r.getReadUnmappedFlag() ? r.getAlignmentStart() : r.getAlignmentEnd();
+	}
+	/**
+	 * Number of queries against this cache
+	 */
+	public long getQueryCount() {
+		return queries;
+	}
+	/**
+	 * Number of queries for which cached evidence was returned
+	 */
+	public long getHitCount() {
+		return hits;
+	}
+	/**
+	 * Total number of evidence returned from the cache
+	 */
+	public long getEvidenceReusedCount() {
+		return evidenceReused;
+	}
+	private class RecordingIterator implements Iterator<DirectedEvidence> {
+		private final Iterator<DirectedEvidence> underlying;
+		private final QueryInterval query;
+		private final int retainFrom;
+		private List<DirectedEvidence> retained = new ArrayList<>();
+		private boolean committed = false;
+		public RecordingIterator(Iterator<DirectedEvidence> underlying, QueryInterval query) {
+			this.underlying = underlying;
+			this.query = query;
+			this.retainFrom = Math.max(query.start, query.end - retainWidth + 1);
+		}
+		@Override
+		public boolean hasNext() {
+			boolean hasNext = underlying.hasNext();
+			if (!hasNext && !committed) {
+				committed = true;
+				if (retained != null) {
+					referenceIndex = query.referenceIndex;
+					retainedStart = retainFrom;
+					coveredEnd = query.end;
+					evidence = retained;
+					retained = null;
+				}
+			}
+			return hasNext;
+		}
+		@Override
+		public DirectedEvidence next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			DirectedEvidence e = underlying.next();
+			if (retained != null && readEnd(e) >= retainFrom) {
+				if (retained.size() >= maxSize) {
+					// too much evidence in the overlap region to cache
+					retained = null;
+				} else {
+					retained.add(e);
+				}
+			}
+			return e;
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package au.edu.wehi.idsv;
 
 import au.edu.wehi.idsv.bed.IntervalBed;
+import au.edu.wehi.idsv.bed.LinearIntervalIndex;
 import au.edu.wehi.idsv.sam.ChimericAlignment;
 import com.google.common.collect.Range;
 import htsjdk.samtools.Cigar;
@@ -89,7 +90,23 @@ public abstract class ReadExtractor {
     }
 
     public boolean shouldExtract(SAMRecord r) {
-        if (overlapsRegionBed(r)) {
+        return shouldExtract(r, null);
+    }
+
+    /**
+     * Determines whether the given record should be extracted
+     * @param r record
+     * @param cursor region bed cursor used to look up the alignment location of coordinate sorted input records.
+     *               If null, a full region bed lookup is performed.
+     */
+    public boolean shouldExtract(SAMRecord r, LinearIntervalIndex.Cursor cursor) {
+        if (cursor == null) {
+            if (overlapsRegionBed(r)) {
+                return true;
+            }
+        } else if (!r.getReadUnmappedFlag() && cursor.overlaps(
+                lgc.getLinearCoordinate(r.getReferenceIndex(), r.getStart()),
+                lgc.getLinearCoordinate(r.getReferenceIndex(), r.getEnd()))) {
             return true;
         }
         if (shouldExtractMates()) {
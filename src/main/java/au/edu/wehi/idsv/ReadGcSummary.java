@@ -33,6 +33,9 @@ public class ReadGcSummary {
     	byte[] ref = refSeq.getBases();
     	int gcCount = 0;
     	int atCount = 0;
+    	// fragments can extend past the ends of the contig
+    	zeroBasedStartInclusive = Math.max(0, zeroBasedStartInclusive);
+    	zeroBasedEndExclusive = Math.min(ref.length, zeroBasedEndExclusive);
     	for (int i = zeroBasedStartInclusive; i < zeroBasedEndExclusive; i++) {
     		if (ref[i] == 'G' || ref[i] == 'C' || ref[i] == 'g' || ref[i] == 'c') {
     			gcCount++;
@@ -14,7 +14,6 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
-import gridss.ComputeSamTags;
 import gridss.ExtractSVReads;
 import gridss.SoftClipsToSplitReads;
 import gridss.analysis.CollectGridssMetrics;
@@ -31,6 +30,7 @@ import picard.cmdline.CommandLineProgram;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -49,6 +49,7 @@ public class SAMEvidenceSource extends EvidenceSource {
 	private IdsvSamFileMetrics metrics;
 	private StructuralVariantReadMetrics svMetrics;
 	private ReadPairConcordanceCalculator rpcc;
+	private CompactEvidenceStore evidenceStore;
 	public enum EvidenceSortOrder {
 		SAMRecordStartPosition,
 		EvidenceStartPosition
@@ -161,47 +162,35 @@ public class SAMEvidenceSource extends EvidenceSource {
 		File withsplitreadsFile = FileSystemContext.getWorkingFileFor(svFile, "gridss.tmp.splitreads.");
 		ensureMetrics();
 		// Regenerate from from the intermediate file furtherest through the pipeline
-		// extract -> query sort -> tag -> split read -> back to coordinate sorted
+		// extract + query sort + tag -> split read -> back to coordinate sorted
 		// We want to tag before generating split reads so all splits are guaranteed to
-		// have the same tags
+		// have the same tags. Extraction, query sorting and tagging are performed in
+		// a single pass without writing intermediate files. The extracted and
+		// querysorted intermediate files are no longer written but are still cleaned
+		// up if left over from an earlier version.
 		if (!svFile.exists()) {
 			if (!withsplitreadsFile.exists()) {
 				if (!taggedFile.exists()) {
-					if (!querysortedFile.exists()) {
-						if (!extractedFile.exists()) {
-							log.info("Extracting SV reads from " + getFile().getAbsolutePath());
-							File in = getFile(SortOrder.queryname);
-							if (in == null || !in.exists()) {
-								in = getFile();
-							}
-							List<String> args = Lists.newArrayList(
-									"INPUT=" + in.getPath(),
-									"OUTPUT=" + extractedFile.getPath(),
-									"UNMAPPED_READS=false", // saves intermediate file space
-									"METRICS_OUTPUT=" + getContext().getFileSystemContext().getSVMetrics(getFile()),
-									"MIN_CLIP_LENGTH=" + getContext().getConfig().getSoftClip().minLength,
-									"INSERT_SIZE_METRICS=" + getContext().getFileSystemContext().getInsertSizeMetrics(getFile()),
-									// Picard tools does not mark duplicates correctly. We need to keep them so we can
-									// fix the duplicate marking in ComputeSamTags
-									"INCLUDE_DUPLICATES=true");
-							if (rpcMinFragmentSize != null) args.add("READ_PAIR_CONCORDANCE_MIN_FRAGMENT_SIZE=" + rpcMinFragmentSize);
-							if (rpcMaxFragmentSize != null) args.add("READ_PAIR_CONCORDANCE_MAX_FRAGMENT_SIZE=" + rpcMaxFragmentSize);
-							if (rpcConcordantPercentage != null) args.add("READ_PAIR_CONCORDANT_PERCENT=" + rpcConcordantPercentage);
-							execute(new ExtractSVReads(), args);
-						}
-						SAMFileUtil.sort(getContext().getFileSystemContext(), extractedFile, querysortedFile, SortOrder.queryname);
-						if (gridss.Defaults.DELETE_TEMPORARY_FILES) {
-							FileHelper.delete(extractedFile, true);
-						}
+					log.info("Extracting SV reads and computing SAM tags for " + getFile().getAbsolutePath());
+					File in = getFile(SortOrder.queryname);
+					if (in == null || !in.exists()) {
+						in = getFile();
 					}
-					log.info("Computing SAM tags for " + svFile);
 					List<String> args = Lists.newArrayList(
-							"INPUT=" + querysortedFile.getPath(),
-							"OUTPUT=" + taggedFile.getPath());
-					execute(new ComputeSamTags(), args);
-					if (gridss.Defaults.DELETE_TEMPORARY_FILES) {
-						FileHelper.delete(querysortedFile, true);
-					}
+							"INPUT=" + in.getPath(),
+							"OUTPUT=" + taggedFile.getPath(),
+							"UNMAPPED_READS=false", // saves intermediate file space
+							"METRICS_OUTPUT=" + getContext().getFileSystemContext().getSVMetrics(getFile()),
+							"MIN_CLIP_LENGTH=" + getContext().getConfig().getSoftClip().minLength,
+							"INSERT_SIZE_METRICS=" + getContext().getFileSystemContext().getInsertSizeMetrics(getFile()),
+							// Picard tools does not mark duplicates correctly. We need to keep them so we can
+							// fix the duplicate marking in ComputeSamTags
+							"INCLUDE_DUPLICATES=true",
+							"COMPUTE_SAM_TAGS=true");
+					if (rpcMinFragmentSize != null) args.add("READ_PAIR_CONCORDANCE_MIN_FRAGMENT_SIZE=" + rpcMinFragmentSize);
+					if (rpcMaxFragmentSize != null) args.add("READ_PAIR_CONCORDANCE_MAX_FRAGMENT_SIZE=" + rpcMaxFragmentSize);
+					if (rpcConcordantPercentage != null) args.add("READ_PAIR_CONCORDANT_PERCENT=" + rpcConcordantPercentage);
+					execute(new ExtractSVReads(), args);
 				}
 				log.info("Identifying split reads for " + getFile().getAbsolutePath());
 				List<String> args = Lists.newArrayList(
@@ -233,6 +222,13 @@ public class SAMEvidenceSource extends EvidenceSource {
 		}
 	}
 	public CloseableIterator<DirectedEvidence> iterator(final QueryInterval[] intervals, EvidenceSortOrder eso) {
+		if (eso == EvidenceSortOrder.EvidenceStartPosition && getContext().getConfig().useCompactEvidenceStore) {
+			try {
+				return getEvidenceStore().iterator(intervals);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
 		SamReader reader = getReader();
 		// expand query bounds as the alignment for a discordant read pair could fall before or after the breakend interval we are extracting
 		QueryInterval[] expandedIntervals = QueryIntervalUtil.padIntervals(getContext().getDictionary(), intervals, getMaxConcordantFragmentSize() + 1);
@@ -244,6 +240,49 @@ public class SAMEvidenceSource extends EvidenceSource {
 		eit = Iterators.filter(eit, e -> QueryIntervalUtil.overlaps(intervals, e.getBreakendSummary()));
 		return new AutoClosingIterator<>(eit, reader, it);
 	}
+	/**
+	 * Evidence overlapping the given interval, reusing the decoded evidence
+	 * from the overlapping region of the previous query against the given cache.
+	 *
+	 * Reads overlapping a blacklisted region do not generate evidence so
+	 * evidence from reads overlapping the padded query interval is unaffected
+	 * by the removal of the blacklisted regions from the query.
+	 *
+	 * @param cache decoded evidence cache. The cache is not used if null,
+	 * or if the query spans more than one interval.
+	 */
+	public CloseableIterator<DirectedEvidence> iterator(final QueryInterval[] intervals, EvidenceSortOrder eso, OverlapEvidenceCache cache) {
+		if (cache == null || eso != EvidenceSortOrder.SAMRecordStartPosition) {
+			return iterator(intervals, eso);
+		}
+		QueryInterval[] expandedIntervals = QueryIntervalUtil.padIntervals(getContext().getDictionary(), intervals, getMaxConcordantFragmentSize() + 1);
+		if (expandedIntervals.length != 1) {
+			cache.clear();
+			return iterator(intervals, eso);
+		}
+		QueryInterval expanded = expandedIntervals[0];
+		List<DirectedEvidence> cached = cache.take(expanded);
+		int queryStart = cached == null ? expanded.start : cache.getCoveredEnd() + 1;
+		SamReader reader = getReader();
+		SAMRecordIterator it = null;
+		Iterator<DirectedEvidence> eit = Collections.emptyIterator();
+		if (queryStart <= expanded.end) {
+			IntervalBed queryInterval = new IntervalBed(getContext().getLinear(), new QueryInterval[] { new QueryInterval(expanded.referenceIndex, queryStart, expanded.end) });
+			queryInterval.remove(getBlacklistedRegions());
+			it = tryOpenReader(reader, queryInterval.asQueryInterval());
+			eit = asEvidence(it, eso);
+			if (cached != null) {
+				// reads starting before the query start have already been decoded
+				eit = Iterators.filter(eit, e -> e.getUnderlyingSAMRecord().getAlignmentStart() >= queryStart);
+			}
+		}
+		if (cached != null) {
+			eit = Iterators.concat(cached.iterator(), eit);
+		}
+		eit = cache.record(eit, expanded);
+		eit = Iterators.filter(eit, e -> QueryIntervalUtil.overlaps(intervals, e.getBreakendSummary()));
+		return new AutoClosingIterator<>(eit, reader, it);
+	}
 	/**
 	 * Attempts to open a new iterator.
 	 * 
@@ -276,9 +315,45 @@ public class SAMEvidenceSource extends EvidenceSource {
 		return new AutoClosingIterator<>(eit, reader, it);
 	}
 	protected SamReader getReader() {
+		return getReader(getProcessContext().getSamReaderFactory());
+	}
+	protected SamReader getReader(SamReaderFactory factory) {
+		return factory.open(getEvidenceFile());
+	}
+	private File getEvidenceFile() {
 		File svFile = getSVFile();
-		SamReader reader = getProcessContext().getSamReader(svFile.exists() ? svFile : getFile());
-		return reader;
+		return svFile.exists() ? svFile : getFile();
+	}
+	/**
+	 * Gets the compact evidence store for this source, creating it if required.
+	 * Evidence is read from the store instead of the BAM when calling variants
+	 * if useCompactEvidenceStore is enabled.
+	 */
+	public synchronized CompactEvidenceStore getEvidenceStore() throws IOException {
+		if (evidenceStore == null) {
+			File storeFile = getContext().getFileSystemContext().getEvidenceStore(getFile());
+			File bam = getEvidenceFile();
+			if (!CompactEvidenceStore.isCurrent(storeFile, bam)) {
+				if (storeFile.exists()) {
+					log.info(String.format("Evidence store %s is out of date with respect to %s. Rebuilding.", storeFile.getAbsolutePath(), bam.getAbsolutePath()));
+				}
+				log.info("Writing evidence store for " + getFile().getAbsolutePath());
+				try (SamReader reader = getReader(getProcessContext().getSamReaderFactory().enable(SamReaderFactory.Option.INCLUDE_SOURCE_IN_RECORDS))) {
+					try (SAMRecordIterator it = reader.iterator()) {
+						it.assertSorted(SortOrder.coordinate);
+						CompactEvidenceStore.write(asEvidence(it, EvidenceSortOrder.EvidenceStartPosition), storeFile, bam);
+					}
+				}
+			}
+			evidenceStore = CompactEvidenceStore.open(this, storeFile, bam);
+		}
+		return evidenceStore;
+	}
+	/**
+	 * Evidence derived from the given record
+	 */
+	List<DirectedEvidence> asEvidence(SAMRecord r) {
+		return Lists.newArrayList(asEvidence(Iterators.singletonIterator(r), EvidenceSortOrder.SAMRecordStartPosition));
 	}
 
 	public File getSVFile() {
@@ -349,15 +424,19 @@ public class SAMEvidenceSource extends EvidenceSource {
 			// Need to keep track of original SA tag as if we unmap the primary alignment
 			// the supplementary alignment scoring will be inconsistent since it is based
 			// on the length of the primary alignment soft clip.
-			r.setTransientAttribute("OSA", r.getStringAttribute(SAMTag.SA.name()));
-			r.setAttribute(SAMTag.SA.name(), ChimericAlignment.getChimericAlignments(r).stream()
+			List<ChimericAlignment> original = ChimericAlignment.getChimericAlignments(r);
+			r.setTransientAttribute("OSA", original);
+			List<ChimericAlignment> filtered = original.stream()
 					.filter(ca -> isInReference(r, ca, dict))
 					.filter(ca -> !getBlacklistedRegions().overlaps(
 							dict.getSequence(ca.rname).getSequenceIndex(),
 							ca.pos,
 							ca.pos + ca.cigar.getReferenceLength() - 1))
-					.map(ca -> ca.toString())
-					.collect(Collectors.joining(";")));
+					.collect(Collectors.toList());
+			// Only rewrite the SA tag if an alignment was actually filtered
+			if (filtered.size() != original.size()) {
+				ChimericAlignment.setChimericAlignments(r, filtered);
+			}
 		}
 		return r;
 	}
@@ -571,9 +650,16 @@ public class SAMEvidenceSource extends EvidenceSource {
 		return merged;
 	}
 	public static CloseableIterator<DirectedEvidence> mergedIterator(final List<SAMEvidenceSource> source, final QueryInterval[] intervals, EvidenceSortOrder eso) {
+		return mergedIterator(source, intervals, eso, null);
+	}
+	/**
+	 * Merged evidence overlapping the given intervals
+	 * @param cache per-source decoded evidence cache. Can be null.
+	 */
+	public static CloseableIterator<DirectedEvidence> mergedIterator(final List<SAMEvidenceSource> source, final QueryInterval[] intervals, EvidenceSortOrder eso, List<OverlapEvidenceCache> cache) {
 		List<CloseableIterator<DirectedEvidence>> toMerge = Lists.newArrayList();
-		for (SAMEvidenceSource bam : source) {
-			CloseableIterator<DirectedEvidence> it = bam.iterator(intervals, eso);
+		for (int i = 0; i < source.size(); i++) {
+			CloseableIterator<DirectedEvidence> it = source.get(i).iterator(intervals, eso, cache == null ? null : cache.get(i));
 			toMerge.add(it);
 		}
 		CloseableIterator<DirectedEvidence> merged = new AutoClosingMergedIterator<DirectedEvidence>(toMerge,  eso == EvidenceSortOrder.EvidenceStartPosition ? DirectedEvidenceOrder.ByNatural : DirectedEvidenceOrder.BySAMStart);
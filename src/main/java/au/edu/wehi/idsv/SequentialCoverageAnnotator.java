@@ -36,18 +36,36 @@ public class SequentialCoverageAnnotator<T extends VariantContextDirectedEvidenc
 	private final List<Closeable> toclose = new ArrayList<>();
 	private final ExecutorService threadpool;
 	public SequentialCoverageAnnotator(ProcessingContext context, List<SAMEvidenceSource> sources, Iterator<T> it, int windowSize, ExecutorService threadpool) {
+		this(context, sources, it, windowSize, 0, threadpool);
+	}
+	/**
+	 * Annotates breakends with reference allele coverage information
+	 * @param windowSize window size of out-of-order breakend positions
+	 * @param indexedQueryWindowSize size of the BAM index query window used when the input is indexed.
+	 * If zero, all input files are read in their entirety.
+	 */
+	public SequentialCoverageAnnotator(ProcessingContext context, List<SAMEvidenceSource> sources, Iterator<T> it, int windowSize, int indexedQueryWindowSize, ExecutorService threadpool) {
 		this.context = context;
-		this.reference = createLookup(context, sources, windowSize);
+		this.reference = createLookup(context, sources, windowSize, indexedQueryWindowSize);
 		this.it = it;
 		this.threadpool = threadpool;
 	}
-	private List<ReferenceCoverageLookup> createLookup(ProcessingContext context, List<SAMEvidenceSource> sources, int windowSize) {
+	private List<ReferenceCoverageLookup> createLookup(ProcessingContext context, List<SAMEvidenceSource> sources, int windowSize, int indexedQueryWindowSize) {
 		List<ReferenceCoverageLookup> result = new ArrayList<>();
 		for (SAMEvidenceSource ses : sources) {
 			assert(ses.getSourceCategory() >= 0);
 			assert(ses.getSourceCategory() < context.getCategoryCount());
-			// one read-ahead thread per input file
 			SamReader reader = SamReaderFactory.makeDefault().referenceSequence(context.getReferenceFile()).open(ses.getFile());
+			if (indexedQueryWindowSize > 0) {
+				if (reader.hasIndex()) {
+					IndexedReferenceCoverageLookup sourceLookup = new IndexedReferenceCoverageLookup(reader, ses.getMetrics().getIdsvMetrics(), ses.getReadPairConcordanceCalculator(), indexedQueryWindowSize, ses.getSourceCategory(), context.isFilterDuplicates());
+					toclose.add(sourceLookup);
+					result.add(sourceLookup);
+					continue;
+				}
+				log.warn(String.format("Missing BAM index for %s. Reading entire file to calculate reference coverage.", ses.getFile().getName()));
+			}
+			// one read-ahead thread per input file
 			SAMRecordIterator rawIterator = reader.iterator();
 			rawIterator.assertSorted(SortOrder.coordinate);
 			CloseableIterator<SAMRecord> sit = new AsyncBufferedIterator<SAMRecord>(rawIterator, ses.getFile().getName() + "-Coverage");
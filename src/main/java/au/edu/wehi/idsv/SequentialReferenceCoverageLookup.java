@@ -1,22 +1,26 @@
 package au.edu.wehi.idsv;
 
-import au.edu.wehi.idsv.util.SlidingWindowList;
 import au.edu.wehi.idsv.visualisation.TrackedBuffer;
 import com.google.common.collect.*;
 import gridss.analysis.IdsvMetrics;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.filter.*;
+import it.unimi.dsi.fastutil.ints.IntHeapPriorityQueue;
 
 import java.io.Closeable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
 
 /**
  * Counts the number of reads and read pairs providing support for the
  * absence of a structural variation at a given position
  * 
+ * Read and read pair end positions are tracked in primitive heaps and
+ * per-position counts in primitive circular buffers so no allocation is
+ * performed per read or per position.
+ * 
  * @author Daniel Cameron
  *
  */
@@ -25,9 +29,9 @@ public class SequentialReferenceCoverageLookup implements Closeable, ReferenceCo
 	private final List<Closeable> toClose = Lists.newArrayList();
 	private final PeekingIterator<SAMRecord> reads;
 	private final ReadPairConcordanceCalculator pairing;
-	private final PriorityQueue<Integer> currentReferenceRead = Queues.newPriorityQueue();
-	private final PriorityQueue<Integer> currentStartReferencePairs = Queues.newPriorityQueue();
-	private final PriorityQueue<Integer> currentEndReferencePairs = Queues.newPriorityQueue();
+	private final IntHeapPriorityQueue currentReferenceRead = new IntHeapPriorityQueue();
+	private final IntHeapPriorityQueue currentStartReferencePairs = new IntHeapPriorityQueue();
+	private final IntHeapPriorityQueue currentEndReferencePairs = new IntHeapPriorityQueue();
 	/**
 	 * Maximum distance from read alignment start to last concordant support position 
 	 */
@@ -35,8 +39,15 @@ public class SequentialReferenceCoverageLookup implements Closeable, ReferenceCo
 	private int currentReferenceIndex = -1;
 	private int currentPosition;
 	private int largestWindow;
-	private SlidingWindowList<Integer> readCounts;
-	private SlidingWindowList<Integer> pairCounts;
+	/**
+	 * Circular buffers of the counts of the most recent largestWindow positions
+	 */
+	private final int[] readCounts;
+	private final int[] pairCounts;
+	/**
+	 * Last position written to the count buffers 
+	 */
+	private int countsHeadPosition = -1;
 	/**
 	 * Used to check the data is sequential
 	 */
@@ -61,6 +72,8 @@ public class SequentialReferenceCoverageLookup implements Closeable, ReferenceCo
 		}
 		this.reads = Iterators.peekingIterator(new FilteringSamIterator(it, new AggregateFilter(filters)));
 		this.largestWindow = windowSize;
+		this.readCounts = new int[windowSize];
+		this.pairCounts = new int[windowSize];
 		this.maxEvidenceWindow = Math.max(metrics.MAX_READ_LENGTH, Math.max(metrics.MAX_READ_MAPPED_LENGTH, pairing != null ? pairing.maxConcordantFragmentSize() : 0));
 		this.category = category;
 	}
@@ -74,15 +87,24 @@ public class SequentialReferenceCoverageLookup implements Closeable, ReferenceCo
 		}
 		toClose.clear();
 	}
-	private int getCount(SlidingWindowList<Integer> counts, int referenceIndex, int position) {
-		if (counts.size() <= position) return 0;
-		// 10 10 0 good
-		// 2 1 1 good
-		// 0 1 1 bad
-		if (position < counts.size() - counts.getWindowSize()) throw new IllegalArgumentException(String.format("position %d outside of window of size %d ending at position %d", position, counts.getWindowSize(), counts.size()));
-		Integer count = counts.get(position);
-		if (count == null) return 0;
-		return (int)count;
+	private int getCount(int[] counts, int referenceIndex, int position) {
+		int size = countsHeadPosition + 1;
+		if (size <= position) return 0;
+		if (position < size - counts.length) throw new IllegalArgumentException(String.format("position %d outside of window of size %d ending at position %d", position, counts.length, size));
+		return counts[position % counts.length];
+	}
+	/**
+	 * Records the counts for the given position.
+	 * Positions skipped since the previous call are reset to zero. 
+	 */
+	private void setCounts(int position, int readCount, int pairCount) {
+		for (int i = countsHeadPosition + 1; i < position && i <= countsHeadPosition + readCounts.length; i++) {
+			readCounts[i % readCounts.length] = 0;
+			pairCounts[i % pairCounts.length] = 0;
+		}
+		readCounts[position % readCounts.length] = readCount;
+		pairCounts[position % pairCounts.length] = pairCount;
+		countsHeadPosition = position;
 	}
 	/* (non-Javadoc)
 	 * @see au.edu.wehi.idsv.ReferenceCoverageLookup#readsSupportingNoBreakendAfter(int, int)
@@ -121,8 +143,9 @@ public class SequentialReferenceCoverageLookup implements Closeable, ReferenceCo
 			currentReferenceRead.clear();
 			currentStartReferencePairs.clear();
 			currentEndReferencePairs.clear();
-			readCounts = new SlidingWindowList<Integer>(largestWindow);
-			pairCounts = new SlidingWindowList<Integer>(largestWindow);
+			Arrays.fill(readCounts, 0);
+			Arrays.fill(pairCounts, 0);
+			countsHeadPosition = -1;
 		}
 		// skip until we're close to out window
 		while (reads.hasNext() && reads.peek().getReferenceIndex() < currentReferenceIndex) {
@@ -141,8 +164,7 @@ public class SequentialReferenceCoverageLookup implements Closeable, ReferenceCo
 				addRead(checkOrdered(reads.next()));
 			}
 			flushQueues();
-			readCounts.set(currentPosition, currentReferenceRead.size());
-			pairCounts.set(currentPosition, currentEndReferencePairs.size() - currentStartReferencePairs.size());
+			setCounts(currentPosition, currentReferenceRead.size(), currentEndReferencePairs.size() - currentStartReferencePairs.size());
 		}
 		currentPosition--;
 	}
@@ -163,10 +185,10 @@ public class SequentialReferenceCoverageLookup implements Closeable, ReferenceCo
 	private void addRead(SAMRecord read) {
 		if (read.getReadUnmappedFlag()) return;
 		// TODO: process CIGAR instead of just taking the whole alignment length as support for the reference
-		currentReferenceRead.add(read.getAlignmentEnd());
-		if (isLowerMappedOfNonOverlappingConcordantPair(read)) {
-			currentStartReferencePairs.add(read.getAlignmentEnd());
-			currentEndReferencePairs.add(read.getMateAlignmentStart());
+		currentReferenceRead.enqueue(read.getAlignmentEnd());
+		if (isLowerMappedOfNonOverlappingConcordantPair(read, pairing)) {
+			currentStartReferencePairs.enqueue(read.getAlignmentEnd());
+			currentEndReferencePairs.enqueue(read.getMateAlignmentStart());
 		}
 	}
 	/**
@@ -174,11 +196,16 @@ public class SequentialReferenceCoverageLookup implements Closeable, ReferenceCo
 	 * at the given current position
 	 */
 	private void flushQueues() {
-		while (!currentReferenceRead.isEmpty() && currentReferenceRead.peek() <= currentPosition) currentReferenceRead.poll();
-		while (!currentStartReferencePairs.isEmpty() && currentStartReferencePairs.peek() <= currentPosition) currentStartReferencePairs.poll();
-		while (!currentEndReferencePairs.isEmpty() && currentEndReferencePairs.peek() <= currentPosition) currentEndReferencePairs.poll();
+		while (!currentReferenceRead.isEmpty() && currentReferenceRead.firstInt() <= currentPosition) currentReferenceRead.dequeueInt();
+		while (!currentStartReferencePairs.isEmpty() && currentStartReferencePairs.firstInt() <= currentPosition) currentStartReferencePairs.dequeueInt();
+		while (!currentEndReferencePairs.isEmpty() && currentEndReferencePairs.firstInt() <= currentPosition) currentEndReferencePairs.dequeueInt();
 	}
-	private boolean isLowerMappedOfNonOverlappingConcordantPair(SAMRecord read) {
+	/**
+	 * Determines whether the read is the lower aligned read of a concordant read pair
+	 * in which the reads do not overlap. Such read pairs provide evidence against a
+	 * breakend between the read alignments.
+	 */
+	static boolean isLowerMappedOfNonOverlappingConcordantPair(SAMRecord read, ReadPairConcordanceCalculator pairing) {
 		return !read.getReadUnmappedFlag()
 				&& read.getReadPairedFlag()
 				&& !read.getMateUnmappedFlag()
@@ -32,6 +32,7 @@ public abstract class SingleReadEvidence implements DirectedEvidence {
 	 */
 	private final int nominalOffset;
 	private String evidenceid;
+	private EvidenceId evidenceIdentifier;
 	private boolean unableToCalculateHomology = false;
 	private String associatedAssemblyName;
 	private int assemblyOffset = Integer.MIN_VALUE;
@@ -316,14 +317,29 @@ public abstract class SingleReadEvidence implements DirectedEvidence {
 	
 	protected abstract String getUncachedEvidenceID();
 	
+	protected abstract EvidenceId getUncachedEvidenceIdentifier();
+	
 	@Override
 	public String getEvidenceID() {
 		if (evidenceid == null) {
-			evidenceid = getUncachedEvidenceID();
+			if (source.getContext().getEvidenceIDGenerator().isEncodedEvidenceIdentifier()) {
+				// no need to hash the read again
+				evidenceid = getEvidenceIdentifier().toString();
+			} else {
+				evidenceid = getUncachedEvidenceID();
+			}
 		}
 		return evidenceid;
 	}
 	
+	@Override
+	public EvidenceId getEvidenceIdentifier() {
+		if (evidenceIdentifier == null) {
+			evidenceIdentifier = getUncachedEvidenceIdentifier();
+		}
+		return evidenceIdentifier;
+	}
+	
 	public String getHomologySequence() {
 		if (unableToCalculateHomology) throw new IllegalStateException("Unable to calculate homology as reference genome has not been supplied");
 		if (!isBreakendExact()) return "";
@@ -133,12 +133,13 @@ public class SplitReadEvidence extends SingleReadEvidence implements DirectedBre
 		if (getSAMRecord().getSupplementaryAlignmentFlag()) {
 			ChimericAlignment caThis = new ChimericAlignment(getSAMRecord());
 			// The first record should be the primary
-			ChimericAlignment caPrimary = ChimericAlignment.getChimericAlignments(getSAMRecord().getStringAttribute(SAMTag.SA.name())).get(0);
+			ChimericAlignment caPrimary = ChimericAlignment.getChimericAlignments(getSAMRecord()).get(0);
 			ChimericAlignment osaPrimary = caPrimary;
-			String osa = (String)getSAMRecord().getTransientAttribute("OSA");
-			if (osa != null) {
+			@SuppressWarnings("unchecked")
+			List<ChimericAlignment> osa = (List<ChimericAlignment>)getSAMRecord().getTransientAttribute("OSA");
+			if (osa != null && !osa.isEmpty()) {
 				// Use the original SA if it exists - the primary might be considered unmapped and not in the SA tag
-				osaPrimary = ChimericAlignment.getChimericAlignments(osa).get(0);
+				osaPrimary = osa.get(0);
 			}
 			if (!caPrimary.equals(osaPrimary)) {
 				// We've stripped the primary alignment.
@@ -180,6 +181,10 @@ public class SplitReadEvidence extends SingleReadEvidence implements DirectedBre
 		return source.getContext().getEvidenceIDGenerator().getEvidenceID(this);
 	}
 	@Override
+	protected EvidenceId getUncachedEvidenceIdentifier() {
+		return source.getContext().getEvidenceIDGenerator().getEvidenceIdentifier(this);
+	}
+	@Override
 	public String getRemoteEvidenceID() {
 		SAMRecord remote = this.getSAMRecord().deepCopy();
 		remote.setReferenceName(remoteAlignment.rname);
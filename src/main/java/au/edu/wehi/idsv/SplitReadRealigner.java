@@ -42,7 +42,7 @@ public class SplitReadRealigner {
 	 * input reads names are at this limit.
 	 * See https://github.com/PapenfussLab/gridss/issues/82
 	 */
-	private EvidenceIdentifierGenerator eidgen = new HashedEvidenceIdentifierGenerator(); 
+	private HashedEvidenceIdentifierGenerator eidgen = new HashedEvidenceIdentifierGenerator(); 
 	private List<File> tmpFiles = new ArrayList<>();
 	
 	public SplitReadRealigner(GenomicProcessingContext pc) {
@@ -102,10 +102,10 @@ public class SplitReadRealigner {
 		}
 		public SplitReadRealignmentInfo(SAMRecord record) {
 			this.originatingRecord = record;
-			this.lookupKey = eidgen.getAlignmentUniqueName(record);
+			this.lookupKey = eidgen.getAlignmentUniqueIdentifier(record);
 		}
 		public SAMRecord originatingRecord;
-		public String lookupKey;
+		public EvidenceId lookupKey;
 		public List<SAMRecord> realignments = new ArrayList<>(2);
 		public int outstandingRealignments = 0;
 	}
@@ -125,7 +125,7 @@ public class SplitReadRealigner {
 				isRealignEntireRecord(),
 				eidgen);
 		
-		Map<String, SplitReadRealignmentInfo> realignments = new HashMap<>();
+		Map<EvidenceId, SplitReadRealignmentInfo> realignments = new HashMap<>();
 		int recordNumber = 0;
 		try (SamReader reader = readerFactory.open(input)) {
 			SAMFileHeader header = reader.getFileHeader().clone();
@@ -141,8 +141,8 @@ public class SplitReadRealigner {
 						SAMRecord r = bufferedIt.next();
 						processInputRecord(aligner, rootExtractor, realignments, writer, r);
 						if (aligner.outstandingAlignmentRecord() >= maxBufferedRecords) {
-							log.info(String.format("%d records awaiting alignment by external aligner. Flushing.", maxBufferedRecords));
-							aligner.flush();
+							log.info(String.format("%d records awaiting alignment by external aligner. Draining.", maxBufferedRecords));
+							aligner.drain();
 						}
 						while (aligner.hasAlignmentRecord()) {
 							processAlignmentRecord(aligner, recursiveExtractor, realignments, writer, modifiedWriter, rewriteOA);
@@ -156,13 +156,13 @@ public class SplitReadRealigner {
 						}
 					}
 					// flush out all realignments
-					aligner.flush();
+					aligner.drain();
 					while (aligner.hasAlignmentRecord()) {
 						// perform nested realignment
 						while (aligner.hasAlignmentRecord()) {
 							processAlignmentRecord(aligner, recursiveExtractor, realignments, writer, modifiedWriter, rewriteOA);
 						}
-						aligner.flush();
+						aligner.drain();
 					}
 				}
 				if (realignments.size() != 0) {
@@ -177,7 +177,7 @@ public class SplitReadRealigner {
 		}
 	}
 	private void processInputRecord(StreamingAligner aligner, SplitReadFastqExtractor rootExtractor,
-			Map<String, SplitReadRealignmentInfo> realignments, SAMFileWriter writer, SAMRecord r) throws IOException {
+			Map<EvidenceId, SplitReadRealignmentInfo> realignments, SAMFileWriter writer, SAMRecord r) throws IOException {
 		if ((realignEntireRecord || realignExistingSplitReads) && r.getSupplementaryAlignmentFlag()) {
 			// drop existing supp alignments
 			return;
@@ -197,10 +197,10 @@ public class SplitReadRealigner {
 		}
 	}
 	private void processAlignmentRecord(StreamingAligner aligner,
-			SplitReadFastqExtractor recursiveExtractor, Map<String, SplitReadRealignmentInfo> realignments,
+			SplitReadFastqExtractor recursiveExtractor, Map<EvidenceId, SplitReadRealignmentInfo> realignments,
 			SAMFileWriter writer, SAMFileWriter modifiedRecordWriter, boolean writeOA) throws IOException {
 		SAMRecord supp = aligner.getAlignment();
-		String lookupkey = SplitReadHelper.getOriginatingAlignmentUniqueName(supp);
+		EvidenceId lookupkey = EvidenceId.decode(SplitReadHelper.getOriginatingAlignmentUniqueName(supp));
 		SplitReadRealignmentInfo info = realignments.get(lookupkey);
 		if (supp.getSupplementaryAlignmentFlag() || supp.isSecondaryAlignment()) {
 			// only consider the best mapping location reported by the aligner
@@ -0,0 +1,51 @@
+package au.edu.wehi.idsv;
+
+/**
+ * Breakpoint evidence read from a {@link CompactEvidenceStore}.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class StoredBreakpointEvidence extends StoredEvidence implements DirectedBreakpoint {
+	private final float breakpointQual;
+	StoredBreakpointEvidence(CompactEvidenceStore store, BreakpointSummary location, float breakendQual, float breakpointQual, int localMapq, boolean exact, EvidenceId id, long virtualFileOffset) {
+		super(store, location, breakendQual, localMapq, exact, id, virtualFileOffset);
+		this.breakpointQual = breakpointQual;
+	}
+	@Override
+	public DirectedBreakpoint getDecodedEvidence() {
+		return (DirectedBreakpoint)super.getDecodedEvidence();
+	}
+	@Override
+	public float getBreakpointQual() {
+		return breakpointQual;
+	}
+	@Override
+	public BreakpointSummary getBreakendSummary() {
+		return (BreakpointSummary)super.getBreakendSummary();
+	}
+	@Override
+	public int getRemoteMapq() {
+		return getDecodedEvidence().getRemoteMapq();
+	}
+	@Override
+	public String getUntemplatedSequence() {
+		return getDecodedEvidence().getUntemplatedSequence();
+	}
+	@Override
+	public String getHomologySequence() {
+		return getDecodedEvidence().getHomologySequence();
+	}
+	@Override
+	public int getHomologyAnchoredBaseCount() {
+		return getDecodedEvidence().getHomologyAnchoredBaseCount();
+	}
+	@Override
+	public DirectedBreakpoint asRemote() {
+		return getDecodedEvidence().asRemote();
+	}
+	@Override
+	public String getRemoteEvidenceID() {
+		return getDecodedEvidence().getRemoteEvidenceID();
+	}
+}
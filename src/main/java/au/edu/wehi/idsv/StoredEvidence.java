@@ -0,0 +1,128 @@
+package au.edu.wehi.idsv;
+
+import htsjdk.samtools.SAMRecord;
+
+import java.util.Collection;
+
+/**
+ * Evidence read from a {@link CompactEvidenceStore}.
+ *
+ * Breakend location, scores and the evidence identifier are held directly.
+ * All other evidence information is obtained by decoding the BAM record
+ * the evidence was derived from on first use.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class StoredEvidence implements DirectedEvidence {
+	private final CompactEvidenceStore store;
+	private final BreakendSummary location;
+	private final float breakendQual;
+	private final int localMapq;
+	private final boolean exact;
+	private final EvidenceId id;
+	private final long virtualFileOffset;
+	private DirectedEvidence decoded = null;
+	StoredEvidence(CompactEvidenceStore store, BreakendSummary location, float breakendQual, int localMapq, boolean exact, EvidenceId id, long virtualFileOffset) {
+		this.store = store;
+		this.location = location;
+		this.breakendQual = breakendQual;
+		this.localMapq = localMapq;
+		this.exact = exact;
+		this.id = id;
+		this.virtualFileOffset = virtualFileOffset;
+	}
+	long getVirtualFileOffset() {
+		return virtualFileOffset;
+	}
+	/**
+	 * Gets the evidence decoded from the underlying BAM record
+	 */
+	public synchronized DirectedEvidence getDecodedEvidence() {
+		if (decoded == null) {
+			decoded = store.decode(this);
+		}
+		return decoded;
+	}
+	@Override
+	public float getBreakendQual() {
+		return breakendQual;
+	}
+	@Override
+	public BreakendSummary getBreakendSummary() {
+		return location;
+	}
+	@Override
+	public EvidenceId getEvidenceIdentifier() {
+		return id;
+	}
+	@Override
+	public String getEvidenceID() {
+		if (store.getSource().getContext().getEvidenceIDGenerator().isEncodedEvidenceIdentifier()) {
+			return id.toString();
+		}
+		return getDecodedEvidence().getEvidenceID();
+	}
+	@Override
+	public EvidenceSource getEvidenceSource() {
+		return store.getSource();
+	}
+	@Override
+	public int getLocalMapq() {
+		return localMapq;
+	}
+	@Override
+	public boolean isBreakendExact() {
+		return exact;
+	}
+	@Override
+	public byte[] getBreakendSequence() {
+		return getDecodedEvidence().getBreakendSequence();
+	}
+	@Override
+	public byte[] getBreakendQuality() {
+		return getDecodedEvidence().getBreakendQuality();
+	}
+	@Override
+	public byte[] getAnchorSequence() {
+		return getDecodedEvidence().getAnchorSequence();
+	}
+	@Override
+	public byte[] getAnchorQuality() {
+		return getDecodedEvidence().getAnchorQuality();
+	}
+	@Override
+	public Collection<String> getOriginatingFragmentID(int category) {
+		return getDecodedEvidence().getOriginatingFragmentID(category);
+	}
+	@Override
+	public double getStrandBias() {
+		return getDecodedEvidence().getStrandBias();
+	}
+	@Override
+	public int constituentReads() {
+		return getDecodedEvidence().constituentReads();
+	}
+	@Override
+	public String getAssociatedAssemblyName() {
+		return getDecodedEvidence().getAssociatedAssemblyName();
+	}
+	@Override
+	public SAMRecord getUnderlyingSAMRecord() {
+		return getDecodedEvidence().getUnderlyingSAMRecord();
+	}
+	@Override
+	public int hashCode() {
+		return id.hashCode();
+	}
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (!(obj instanceof StoredEvidence)) return false;
+		return id.equals(((StoredEvidence)obj).id);
+	}
+	@Override
+	public String toString() {
+		return String.format("%s %s", location, id);
+	}
+}
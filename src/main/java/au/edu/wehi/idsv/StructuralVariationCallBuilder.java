@@ -12,6 +12,7 @@ import htsjdk.samtools.CigarOperator;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.util.Log;
 import htsjdk.variant.variantcontext.VariantContextBuilder;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 
 import java.util.*;
 import java.util.function.ToDoubleFunction;
@@ -26,7 +27,7 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 	private final ProcessingContext processContext;
 	private final CalledBreakpointPositionLookup calledBreakpointLookup;
 	private final VariantContextDirectedEvidence parent;
-	private final Set<String> encounteredEvidenceIDs;
+	private final Set<EvidenceId> encounteredEvidenceIDs;
 	private final List<DirectedBreakpoint> supportingBreakpoint = new ArrayList<>();
 	private final List<DirectedEvidence> supportingBreakend = new ArrayList<>();
 	// breakpoint support
@@ -42,6 +43,11 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 	private final List<SoftClipEvidence> supportingBAS = new ArrayList<>();
 	private boolean updateReadInformation = true;
 	private boolean updateAssemblyInformation= true;
+	private boolean prepared = false;
+	private DirectedEvidence bestBreakend;
+	private DirectedBreakpoint bestBreakpoint;
+	private RangeSet<Integer> allAnchoredBases;
+	private RangeSet<Integer> assemblyAnchoredBases;
 	public StructuralVariationCallBuilder(ProcessingContext processContext, CalledBreakpointPositionLookup lookup, VariantContextDirectedEvidence parent) {
 		this(processContext, lookup, parent, true);
 	}
@@ -50,7 +56,7 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 		this.calledBreakpointLookup = calledBreakpointLookup;
 		this.processContext = processContext;
 		this.parent = parent;
-		this.encounteredEvidenceIDs = deduplicateEvidence ? new HashSet<String>() : null;
+		this.encounteredEvidenceIDs = deduplicateEvidence ? new ObjectOpenHashSet<>() : null;
 		ensureGenotypeBuilders(processContext);
 		for (int i = 0; i < processContext.getCategoryCount(); i++) {
 			supportingSR.add(new ArrayList<>());
@@ -76,11 +82,12 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 						parent.getBreakendSummary()));
 			}
 		}
-		String eid = evidence.getEvidenceID();
+		prepared = false;
 		if (encounteredEvidenceIDs != null) {
-			if (encounteredEvidenceIDs.contains(eid)) {
+			EvidenceId eid = evidence.getEvidenceIdentifier();
+			if (!encounteredEvidenceIDs.add(eid)) {
 				if (deduplicationMessageCount < gridss.Defaults.SUPPRESS_DATA_ERROR_MESSAGES_AFTER) { 
-					log.debug(String.format("Deduplicating %s from %s", eid, parent.getID()));
+					log.debug(String.format("Deduplicating %s from %s", evidence.getEvidenceID(), parent.getID()));
 					deduplicationMessageCount++;
 					if (deduplicationMessageCount == gridss.Defaults.SUPPRESS_DATA_ERROR_MESSAGES_AFTER) {
 						log.debug(String.format("Supressing further deduplication log messages."));
@@ -88,7 +95,6 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 				}
 				return this;
 			}
-			encounteredEvidenceIDs.add(eid);
 		}
 		if (evidence instanceof DirectedBreakpoint) {
 			supportingBreakpoint.add((DirectedBreakpoint)evidence);
@@ -202,7 +208,14 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 	private boolean isBreakend() {
 		return !(parent.getBreakendSummary() instanceof BreakpointSummary);
 	}
-	public VariantContextDirectedEvidence make() {
+	/**
+	 * Calculates the call annotations derived from the supporting evidence.
+	 * 
+	 * Resolution of the called position against the breakpoint position lookup is
+	 * deferred to make(). Calls sharing a lookup can be prepared concurrently as
+	 * long as make() is then called in call order.
+	 */
+	public StructuralVariationCallBuilder prepare() {
 		Map<SingleReadEvidence, AssemblyAttributes> aaLookup = new HashMap<>();
 		Stream.of(supportingAS.stream(), supportingRAS.stream(), supportingCAS.stream(), supportingBAS.stream())
 			.flatMap(x -> x)
@@ -219,6 +232,15 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 		}
 		updateStrandBias(aaLookup);
 		updateAssemblySupportTracking();
+		prepareNominalCallPosition();
+		prepared = true;
+		return this;
+	}
+
+	public VariantContextDirectedEvidence make() {
+		if (!prepared) {
+			prepare();
+		}
 		updateNominalCallPosition();
 		
 		// id(parent.getID()); // can't change from parent ID as the id is already referenced in the MATEID of the other breakend  
@@ -228,6 +250,42 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 		return variant;
 	}
 
+	/**
+	 * Determines the best supporting evidence and the anchored bases of the support intervals.
+	 * These do not depend on the called breakpoint lookup.
+	 */
+	private void prepareNominalCallPosition() {
+		bestBreakend = null;
+		bestBreakpoint = null;
+		allAnchoredBases = null;
+		assemblyAnchoredBases = null;
+		if (!isUpdateAssemblyInformation()) {
+			return;
+		}
+		if (isBreakend()) {
+			bestBreakend = supportingBreakend.stream()
+					.sorted(ByBestBreakendDesc)
+					.findFirst().orElse(null);
+		} else {
+			bestBreakpoint = supportingBreakpoint.stream()
+					.sorted(ByBestBreakpointDesc)
+					.findFirst().orElse(null);
+		}
+		RangeSet<Integer> allAnchoredBases = TreeRangeSet.create();
+		// TODO: per sample support cigar
+		supportingSR.stream().flatMap(l -> l.stream()).forEach(e -> processAnchor(allAnchoredBases, e.getSAMRecord()));
+		supportingIndel.stream().flatMap(l -> l.stream()).forEach(e -> processAnchor(allAnchoredBases, e.getSAMRecord()));
+		supportingDP.stream().flatMap(l -> l.stream()).forEach(e -> processAnchor(allAnchoredBases, e.getLocalledMappedRead()));
+		supportingAS.stream().filter(e -> !shouldfilterAssemblyFromSupportInterval(e)).forEach(e -> processAnchor(allAnchoredBases, e.getSAMRecord()));
+		supportingRAS.stream().filter(e -> !shouldfilterAssemblyFromSupportInterval(e)).forEach(e -> processAnchor(allAnchoredBases, e.getSAMRecord()));
+		supportingCAS.stream().filter(e -> !shouldfilterAssemblyFromSupportInterval(e)).forEach(e -> processAnchor(allAnchoredBases, e.getSAMRecord()));
+		RangeSet<Integer> assemblyAnchoredBases = TreeRangeSet.create();
+		supportingRAS.stream().filter(e -> !shouldfilterAssemblyFromSupportInterval(e)).forEach(e -> processAnchor(assemblyAnchoredBases, e.getSAMRecord()));
+		supportingCAS.stream().filter(e -> !shouldfilterAssemblyFromSupportInterval(e)).forEach(e -> processAnchor(assemblyAnchoredBases, e.getSAMRecord()));
+		this.allAnchoredBases = allAnchoredBases;
+		this.assemblyAnchoredBases = assemblyAnchoredBases;
+	}
+
 	private void updateNominalCallPosition() {
 		if (!isUpdateAssemblyInformation()) {
 			// nominal positions are usually from assembly so if we're not updating assemblies then we don't change the call
@@ -237,9 +295,6 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 		String untemplated = "";// = parent.getBreakpointSequenceString();
 		String homo = parent.getAttributeAsString(VcfSvConstants.HOMOLOGY_SEQUENCE_KEY, "");
 		if (isBreakend()) {
-			DirectedEvidence bestBreakend = supportingBreakend.stream()
-					.sorted(ByBestBreakendDesc)
-					.findFirst().orElse(null);
 			if (bestBreakend != null && bestBreakend.isBreakendExact()) {
 				untemplated = new String(bestBreakend.getBreakendSequence());
 				nominalPosition = bestBreakend.getBreakendSummary();
@@ -255,9 +310,6 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 			CalledBreakpointPositionLookup.NominalPosition np = calledBreakpointLookup.removeUpper(event);
 			boolean isExact;
 			if (np == null) {
-				DirectedBreakpoint bestBreakpoint = supportingBreakpoint.stream()
-						.sorted(ByBestBreakpointDesc)
-						.findFirst().orElse(null);
 				if (bestBreakpoint != null && bestBreakpoint.isBreakendExact()) {
 					untemplated = bestBreakpoint.getUntemplatedSequence();
 					nominalPosition = bestBreakpoint.getBreakendSummary().centreAligned();
@@ -295,19 +347,7 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 			rmAttribute(VcfSvConstants.HOMOLOGY_SEQUENCE_KEY);
 			rmAttribute(VcfSvConstants.HOMOLOGY_LENGTH_KEY);
 		}
-		RangeSet<Integer> allAnchoredBases = TreeRangeSet.create();
-		// TODO: per sample support cigar
-		supportingSR.stream().flatMap(l -> l.stream()).forEach(e -> processAnchor(allAnchoredBases, e.getSAMRecord()));
-		supportingIndel.stream().flatMap(l -> l.stream()).forEach(e -> processAnchor(allAnchoredBases, e.getSAMRecord()));
-		supportingDP.stream().flatMap(l -> l.stream()).forEach(e -> processAnchor(allAnchoredBases, e.getLocalledMappedRead()));
-		supportingAS.stream().filter(e -> !shouldfilterAssemblyFromSupportInterval(e)).forEach(e -> processAnchor(allAnchoredBases, e.getSAMRecord()));
-		supportingRAS.stream().filter(e -> !shouldfilterAssemblyFromSupportInterval(e)).forEach(e -> processAnchor(allAnchoredBases, e.getSAMRecord()));
-		supportingCAS.stream().filter(e -> !shouldfilterAssemblyFromSupportInterval(e)).forEach(e -> processAnchor(allAnchoredBases, e.getSAMRecord()));
 		attribute(VcfInfoAttributes.SUPPORT_CIGAR, makeCigar(allAnchoredBases, nominalPosition).toString());
-		RangeSet<Integer> assemblyAnchoredBases = TreeRangeSet.create();
-		supportingAS.stream().filter(e -> !shouldfilterAssemblyFromSupportInterval(e)).forEach(e -> processAnchor(allAnchoredBases, e.getSAMRecord()));
-		supportingRAS.stream().filter(e -> !shouldfilterAssemblyFromSupportInterval(e)).forEach(e -> processAnchor(assemblyAnchoredBases, e.getSAMRecord()));
-		supportingCAS.stream().filter(e -> !shouldfilterAssemblyFromSupportInterval(e)).forEach(e -> processAnchor(assemblyAnchoredBases, e.getSAMRecord()));
 		attribute(VcfInfoAttributes.ASSEMBLY_SUPPORT_CIGAR, makeCigar(assemblyAnchoredBases, nominalPosition).toString());
 	}
 
@@ -659,6 +699,7 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 
 	public void setUpdateAssemblyInformation(boolean updateAssemblyInformation) {
 		this.updateAssemblyInformation = updateAssemblyInformation;
+		prepared = false;
 	}
 
 	public boolean isUpdateReadInformation() {
@@ -667,6 +708,7 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 
 	public void setUpdateReadInformation(boolean updateReadInformation) {
 		this.updateReadInformation = updateReadInformation;
+		prepared = false;
 	}
 
 	public boolean isUpdateVariantQualityScore() {
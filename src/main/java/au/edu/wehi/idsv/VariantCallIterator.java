@@ -1,12 +1,13 @@
 package au.edu.wehi.idsv;
 
-import au.edu.wehi.idsv.util.DuplicatingIterable;
+import au.edu.wehi.idsv.util.PartitioningIterable;
 import au.edu.wehi.idsv.visualisation.StateTracker;
 import au.edu.wehi.idsv.visualisation.TrackedState;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import htsjdk.samtools.QueryInterval;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.CloserUtil;
@@ -17,25 +18,50 @@ import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 /**
  * Calls breakpoints from the given evidence
  * 
+ * Evidence is partitioned by breakend direction and the maximal cliques of each
+ * direction are calculated as separate tasks on a shared executor. The evidence
+ * buffered for each direction is bounded so all tasks of an iterator must be
+ * able to run concurrently on the executor.
+ * 
  * @author Daniel Cameron
  */
 public class VariantCallIterator implements CloseableIterator<VariantContextDirectedEvidence> {
 	private static final Log log = Log.getInstance(VariantCallIterator.class);
 	private static final int ITERATOR_BUFFER_SIZE = 256;
+	/**
+	 * Number of breakpoint direction combinations
+	 */
+	private static final int BREAKPOINT_PARTITIONS = BreakendDirection.values().length * BreakendDirection.values().length;
+	/**
+	 * Maximum number of maximal clique calculation tasks run by a single iterator
+	 */
+	public static final int MAX_TASKS = BREAKPOINT_PARTITIONS + BreakendDirection.values().length;
 	private final VariantContextDirectedEvidence endOfStream;
 	private final ProcessingContext processContext;
-	private final DuplicatingIterable<DirectedEvidence> iterable;
+	private final PartitioningIterable<DirectedEvidence> iterable;
 	private final QueryInterval[] filterInterval;
 	private final BlockingDeque<VariantContextDirectedEvidence> outBuffer = new LinkedBlockingDeque<>(ITERATOR_BUFFER_SIZE);
 	private VariantContextDirectedEvidence outBufferHeadNextValidRecord = null;
 	private final List<AsyncDirectionalIterator> async = new ArrayList<>();
+	private final List<Future<?>> tasks = new ArrayList<>();
+	private final CountDownLatch tasksComplete;
+	/**
+	 * Executor created by, and shut down when closing, this iterator
+	 */
+	private final ExecutorService ownedExecutor;
 	private int activeIterators;
 	private volatile Exception workerThreadException;
-	private VariantCallIterator(ProcessingContext processContext, Iterator<DirectedEvidence> evidence, QueryInterval[] interval, int intervalNumber) {
+	private VariantCallIterator(ProcessingContext processContext, Iterator<DirectedEvidence> evidence, QueryInterval[] interval, int intervalNumber, ExecutorService executor, boolean ownsExecutor) {
 		this.endOfStream = (VariantContextDirectedEvidence)new IdsvVariantContextBuilder(processContext)
 				.id("sentinel")
 				.chr(processContext.getReference().getSequenceDictionary().getSequence(0).getSequenceName())
@@ -45,14 +71,15 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 				.make();
 		this.processContext = processContext;
 		boolean callBreakends = processContext.getVariantCallingParameters().callBreakends;
-		this.activeIterators = callBreakends ? 6 : 4;
-		this.iterable = new DuplicatingIterable<>(activeIterators, evidence, ITERATOR_BUFFER_SIZE);
+		this.activeIterators = taskCount(processContext);
+		this.iterable = new PartitioningIterable<>(MAX_TASKS, evidence, e -> partition(e, callBreakends), ITERATOR_BUFFER_SIZE);
+		this.ownedExecutor = ownsExecutor ? executor : null;
 		this.filterInterval = interval;
 		for (BreakendDirection localDir : BreakendDirection.values()) {
 			for (BreakendDirection remoteDir : BreakendDirection.values()) {
 				MaximalEvidenceCliqueIterator it = new MaximalEvidenceCliqueIterator(
 						processContext,
-						this.iterable.iterator(),
+						this.iterable.iterator(breakpointPartition(localDir, remoteDir)),
 						localDir,
 						remoteDir,
 						new SequentialIdGenerator(String.format("gridss%d%s%s_", Math.max(intervalNumber, 0), localDir.toChar(), remoteDir.toChar())));
@@ -61,31 +88,78 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 			if (callBreakends) {
 				BreakendMaximalEvidenceCliqueIterator it = new BreakendMaximalEvidenceCliqueIterator(
 						processContext,
-						this.iterable.iterator(),
+						this.iterable.iterator(breakendPartition(localDir)),
 						localDir,
 						new SequentialIdGenerator(String.format("gridss%d%s_", Math.max(intervalNumber, 0), localDir.toChar())));
 				async.add(new AsyncDirectionalIterator(it, localDir, null));
 			}
 		}
+		this.tasksComplete = new CountDownLatch(async.size());
+		for (AsyncDirectionalIterator adi : async) {
+			tasks.add(executor.submit(adi));
+		}
 	}
 	public VariantCallIterator(ProcessingContext processContext, Iterator<DirectedEvidence> evidence) {
-		this(processContext, evidence, null, -1);
+		this(processContext, evidence, null, -1, newExecutor(), true);
 	}
 	public VariantCallIterator(AggregateEvidenceSource source) {
-		this(source.getContext(), source.iterator(), null, -1);
+		this(source.getContext(), source.iterator(), null, -1, newExecutor(), true);
 	}
 	public VariantCallIterator(AggregateEvidenceSource source, QueryInterval[] interval, int intervalNumber) {
+		this(source, interval, intervalNumber, newExecutor(), true);
+	}
+	/**
+	 * Calls variants in the given interval
+	 * @param executor executor used to perform the maximal clique calculation.
+	 * Executor threads must not be consumers of this iterator and the executor
+	 * must be able to run MAX_TASKS tasks of this iterator concurrently.
+	 */
+	public VariantCallIterator(AggregateEvidenceSource source, QueryInterval[] interval, int intervalNumber, ExecutorService executor) {
+		this(source, interval, intervalNumber, executor, false);
+	}
+	private VariantCallIterator(AggregateEvidenceSource source, QueryInterval[] interval, int intervalNumber, ExecutorService executor, boolean ownsExecutor) {
 		this(source.getContext(),
 				source.iterator(QueryIntervalUtil.padIntervals(source.getContext().getDictionary(), interval, source.getMaxConcordantFragmentSize() + 1)),
 				QueryIntervalUtil.padIntervals(source.getContext().getDictionary(), interval, source.getMaxConcordantFragmentSize() + 1),
-				intervalNumber);
+				intervalNumber,
+				executor,
+				ownsExecutor);
+	}
+	/**
+	 * Number of maximal clique calculation tasks run by each iterator
+	 */
+	public static int taskCount(ProcessingContext processContext) {
+		return processContext.getVariantCallingParameters().callBreakends ? MAX_TASKS : BREAKPOINT_PARTITIONS;
+	}
+	private static ExecutorService newExecutor() {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_TASKS, MAX_TASKS, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("CallVariants-%d").build());
+		// don't hold threads if we're never closed
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+	private static int breakpointPartition(BreakendDirection localDir, BreakendDirection remoteDir) {
+		return localDir.ordinal() * BreakendDirection.values().length + remoteDir.ordinal();
+	}
+	private static int breakendPartition(BreakendDirection dir) {
+		return BREAKPOINT_PARTITIONS + dir.ordinal();
 	}
-	public class AsyncDirectionalIterator<T extends VariantContextDirectedEvidence> implements TrackedState, Closeable {
+	/**
+	 * Determines which maximal clique calculation the given evidence contributes to.
+	 */
+	private static int partition(DirectedEvidence e, boolean callBreakends) {
+		if (e instanceof DirectedBreakpoint) {
+			BreakpointSummary bp = ((DirectedBreakpoint)e).getBreakendSummary();
+			return breakpointPartition(bp.direction, bp.direction2);
+		}
+		return callBreakends ? breakendPartition(e.getBreakendSummary().direction) : -1;
+	}
+	public class AsyncDirectionalIterator<T extends VariantContextDirectedEvidence> implements TrackedState, Closeable, Runnable {
 		private Iterator<T> it;
 		private StateTracker currentTracker = null;
 		private Collection<TrackedState> currentTrackedObjects = null;
 		private T lastElement = null;
-		private Thread thread;
+		private final String name;
 		private volatile boolean shouldAbortImmediately = false;
 		public AsyncDirectionalIterator(Iterator<T> iterator, BreakendDirection dir1, BreakendDirection dir2) {
 			this.it = iterator;
@@ -105,10 +179,7 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 				}
 			}
 			this.it = filterInterval == null ? this.it : wrapFilter(filterInterval, this.it);
-			this.thread = new Thread(() -> run());
-			this.thread.setDaemon(true);
-			this.thread.setName("CallVariants " + positionComponent + dir1.toChar() + (dir2 == null ? "" : dir2.toChar()));
-			this.thread.start();
+			this.name = "CallVariants " + positionComponent + dir1.toChar() + (dir2 == null ? "" : dir2.toChar());
 		}
 		private Iterator<T> wrapFilter(QueryInterval[] filterInterval, Iterator<T> it) {
 			return Iterators.filter(it, v -> {
@@ -122,11 +193,14 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 				}
 			});
 		}
+		@Override
 		public void run() {
+			String threadName = Thread.currentThread().getName();
+			Thread.currentThread().setName(name);
 			try {
-				while (it.hasNext() && !shouldAbortImmediately) {
+				while (!shouldAbortImmediately && it.hasNext()) {
 					lastElement = it.next();
-					outBuffer.putLast(lastElement);
+					put(lastElement);
 					if (currentTracker != null) {
 						try {
 							currentTracker.track(currentTrackedObjects);
@@ -135,7 +209,7 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 						}
 					}
 				}
-				outBuffer.putLast(endOfStream);
+				put(endOfStream);
 				if (currentTracker != null) {
 					try {
 						currentTracker.close();
@@ -146,10 +220,22 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 			} catch (Exception e) {
 				workerThreadException = e;
 				try {
-					outBuffer.putLast(endOfStream);
+					put(endOfStream);
 				} catch (InterruptedException ex) {
 					log.error("Interrupted writing end of stream");
 				}
+			} finally {
+				Thread.currentThread().setName(threadName);
+				tasksComplete.countDown();
+			}
+		}
+		/**
+		 * Writes to the output buffer, giving up if this iterator has been closed
+		 * so as not to hold an executor thread indefinitely.
+		 */
+		private void put(VariantContextDirectedEvidence v) throws InterruptedException {
+			while (!outBuffer.offerLast(v, 100, TimeUnit.MILLISECONDS)) {
+				if (shouldAbortImmediately) return;
 			}
 		}
 		@Override
@@ -224,6 +310,21 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 			adi.close();
 		}
 		CloserUtil.close(iterable);
+		for (Future<?> f : tasks) {
+			if (f.cancel(false)) {
+				// cancelled before starting
+				tasksComplete.countDown();
+			}
+		}
+		// wait for running tasks to abort so the executor threads are available to the caller
+		try {
+			tasksComplete.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (ownedExecutor != null) {
+			ownedExecutor.shutdown();
+		}
 	}
 }
  
\ No newline at end of file
@@ -1,9 +1,9 @@
 package au.edu.wehi.idsv;
 
-import au.edu.wehi.idsv.util.AsyncBufferedIterator;
 import au.edu.wehi.idsv.util.FileHelper;
 import au.edu.wehi.idsv.vcf.VcfFileUtil;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import htsjdk.samtools.QueryInterval;
 import htsjdk.samtools.util.Log;
 import htsjdk.variant.variantcontext.writer.VariantContextWriter;
@@ -13,7 +13,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 
 /**
@@ -40,33 +42,43 @@ public class VariantCaller {
 			threadpool = MoreExecutors.newDirectExecutorService();
 		}
 		AggregateEvidenceSource es = new AggregateEvidenceSource(processContext, samEvidence, assemblyEvidence, SAMEvidenceSource.EvidenceSortOrder.EvidenceStartPosition);
-		List<QueryInterval[]> chunks = processContext.getReference().getIntervals(processContext.getConfig().chunkSize, processContext.getConfig().chunkSequenceChangePenalty);
+		List<SAMEvidenceSource> sources = new ArrayList<>(samEvidence);
+		sources.add(assemblyEvidence);
+		List<ChunkScheduler.Chunk> chunks = ChunkScheduler.create(processContext, sources).getChunks();
 		List<File> calledChunk = new ArrayList<>();
+		for (ChunkScheduler.Chunk chunk : chunks) {
+			calledChunk.add(processContext.getFileSystemContext().getVariantCallChunkVcf(vcf, chunk.getChunkNumber()));
+		}
 		List<Future<Void>> tasks = new ArrayList<>();
-		
-		for (int i = 0; i < chunks.size(); i++) {
-			QueryInterval[] chunk = chunks.get(i);
-			File f = processContext.getFileSystemContext().getVariantCallChunkVcf(vcf, i);
-			int chunkNumber = i;
-			calledChunk.add(f);
-			if (!f.exists()) {
-				tasks.add(threadpool.submit(() -> { callChunk(f, es, chunkNumber, chunk); return null; }));
+		// Maximal clique calculation for all chunks is shared across a single bounded pool.
+		// Every breakend direction of a chunk must be processed concurrently so the pool
+		// is sized to run every task of one chunk per worker thread.
+		int chunksInFlight = Math.max(1, processContext.getWorkerThreadCount());
+		int tasksPerChunk = VariantCallIterator.taskCount(processContext);
+		ExecutorService cliquePool = Executors.newFixedThreadPool(chunksInFlight * tasksPerChunk,
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("CallVariants-%d").build());
+		Semaphore cliquePoolChunks = new Semaphore(chunksInFlight);
+		try {
+			// schedule the most expensive chunks first
+			for (ChunkScheduler.Chunk chunk : ChunkScheduler.byDescendingCost(chunks)) {
+				File f = processContext.getFileSystemContext().getVariantCallChunkVcf(vcf, chunk.getChunkNumber());
+				if (!f.exists()) {
+					tasks.add(threadpool.submit(() -> { callChunk(f, es, chunk.getChunkNumber(), chunk.getIntervals(), cliquePool, cliquePoolChunks); return null; }));
+				}
 			}
+			runTasks(tasks);
+		} finally {
+			cliquePool.shutdownNow();
 		}
-		runTasks(tasks);
 		
 		log.info("Merging identified breakpoints");
-		File mergedOut = FileSystemContext.getWorkingFileFor(vcf, "gridss.merged.");
-		VcfFileUtil.concat(processContext.getReference().getSequenceDictionary(), calledChunk, mergedOut);
-		
-		log.info("Sorting identified breakpoints");
-		VcfFileUtil.sort(processContext, mergedOut, vcf);
+		// each chunk is sorted when called so a k-way merge is sufficient
+		VcfFileUtil.merge(processContext, calledChunk, vcf);
 		// clean up chunked
 		if (gridss.Defaults.DELETE_TEMPORARY_FILES) {
 			for (File f : calledChunk) {
 				FileHelper.delete(f, true);
 			}
-			FileHelper.delete(mergedOut, true);
 		}
 	}
 	private void runTasks(List<Future<Void>> tasks) {
@@ -86,16 +98,18 @@ public class VariantCaller {
 			throw new RuntimeException(firstException);
 		}
 	}
-	private void callChunk(File output, AggregateEvidenceSource es, int chunkNumber, QueryInterval[] chunk) {
+	private void callChunk(File output, AggregateEvidenceSource es, int chunkNumber, QueryInterval[] chunk, ExecutorService cliquePool, Semaphore cliquePoolChunks) throws InterruptedException {
 		String chunkMsg = String.format("chunk %d (%s:%d-%s:%d)", chunkNumber,
 				processContext.getDictionary().getSequence(chunk[0].referenceIndex).getSequenceName(), chunk[0].start,
 				processContext.getDictionary().getSequence(chunk[chunk.length-1].referenceIndex).getSequenceName(), chunk[chunk.length-1].end);
 		String msg = "calling maximal cliques in " + chunkMsg;
 		File tmp = new File(output.getParent(), "gridss.tmp." + output.getName());
-		try (VariantCallIterator rawit = new VariantCallIterator(es, chunk, chunkNumber)) {
-			try (VariantContextWriter vcfWriter = processContext.getVariantContextWriter(tmp, false)) {
-				log.info("Start ", msg);
-				try (AsyncBufferedIterator<VariantContextDirectedEvidence> it = new AsyncBufferedIterator<>(rawit, "VariantCaller " + chunkMsg)) {
+		cliquePoolChunks.acquire();
+		try {
+			try (VariantCallIterator it = new VariantCallIterator(es, chunk, chunkNumber, cliquePool)) {
+				try (VariantContextWriter vcfWriter = processContext.getVariantContextWriter(tmp, false)) {
+					log.info("Start ", msg);
+					// VariantCallIterator already buffers calls from the clique calculation tasks
 					while (it.hasNext()) {
 						VariantContextDirectedEvidence loc = it.next();
 						if (loc.getBreakendQual() >= processContext.getVariantCallingParameters().minScore || processContext.getVariantCallingParameters().writeFiltered) {
@@ -106,11 +120,19 @@ public class VariantCaller {
 					}
 				}
 			}
+		} finally {
+			cliquePoolChunks.release();
 		}
-		try {
-			FileHelper.move(tmp, output, true);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+		// sort each chunk so the chunks can be merged without a full re-sort
+		// Every worker thread can be sorting a chunk so the in-memory record budget is shared between them
+		int maxRecordsInRam = Math.max(1, processContext.getFileSystemContext().getMaxBufferedRecordsPerFile() / Math.max(1, processContext.getWorkerThreadCount()));
+		VcfFileUtil.sort(processContext, tmp, output, maxRecordsInRam);
+		if (gridss.Defaults.DELETE_TEMPORARY_FILES) {
+			try {
+				FileHelper.delete(tmp, true);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
 		}
 		log.info("Complete ", msg);
 		if (gridss.Defaults.DEFENSIVE_GC) {
@@ -1,7 +1,6 @@
 package au.edu.wehi.idsv;
 
-import au.edu.wehi.idsv.util.WindowedSortingIterator;
-import com.google.common.base.Function;
+import au.edu.wehi.idsv.util.BucketedWindowedSortingIterator;
 
 import java.util.Comparator;
 import java.util.Iterator;
@@ -13,13 +12,9 @@ import java.util.Iterator;
  *
  * @param <T>
  */
-public class VariantContextWindowedSortingIterator<T extends IdsvVariantContext> extends WindowedSortingIterator<T> {
+public class VariantContextWindowedSortingIterator<T extends IdsvVariantContext> extends BucketedWindowedSortingIterator<T> {
 	@SuppressWarnings("unchecked")
 	public VariantContextWindowedSortingIterator(final GenomicProcessingContext processContext, final int windowSize, final Iterator<T> it) {
-		super(it, new Function<T, Long>() {
-			public Long apply(T arg) {
-				return processContext.getLinear().getLinearCoordinate(arg.getContig(), arg.getStart());
-			}
-		}, windowSize, (Comparator<T>)IdsvVariantContext.ByLocationStart);
+		super(it, arg -> processContext.getLinear().getLinearCoordinate(arg.getContig(), arg.getStart()), windowSize, (Comparator<T>)IdsvVariantContext.ByLocationStart);
 	}
 }
@@ -85,4 +85,10 @@ public class AlignerFactory {
 	public static Aligner create() {
 		return defaultAligner;
 	}
+	/**
+	 * Creates a pure Java local aligner using the same scoring as the default aligner
+	 */
+	public static LocalAlignmentBounds createLocalAlignmentBounds() {
+		return new LocalAlignmentBounds(1, -4, -4, 6, 1); // bwa mem
+	}
 }
@@ -2,17 +2,12 @@ package au.edu.wehi.idsv.alignment;
 
 import au.edu.wehi.idsv.*;
 import au.edu.wehi.idsv.picard.ReferenceLookup;
-import au.edu.wehi.idsv.sam.SAMRecordUtil;
 import au.edu.wehi.idsv.vcf.VcfInfoAttributes;
-import htsjdk.samtools.CigarElement;
 import htsjdk.samtools.SAMSequenceRecord;
-import htsjdk.samtools.TextCigarCodec;
 import htsjdk.samtools.util.SequenceUtil;
-import org.apache.commons.lang3.StringUtils;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.List;
 
 /**
  * Determines the length of any inexact breakpoint homology
@@ -58,38 +53,39 @@ public class BreakpointHomology {
 		// localSeq           remoteSeq
 		//      >>>>       >>>>
 		//      localRef   remoteRef
-		String localSeq = getAnchorSeq(lookup, bs, refLength);
-		String localBsSeq = getAnchorSeq(lookup, bs, seqLength);
-		String localRef = getAnchorSeq(lookup, advance(bs, refLength), refLength);
-		String remoteSeq = SequenceUtil.reverseComplement(getAnchorSeq(lookup, bs.remoteBreakend(), refLength));
-		String remoteBsSeq = SequenceUtil.reverseComplement(getAnchorSeq(lookup, bs.remoteBreakend(), seqLength));
-		String remoteRef = SequenceUtil.reverseComplement(getAnchorSeq(lookup, advance(bs.remoteBreakend(), refLength), refLength));
+		// Each anchor sequence and the reference sequence following it are
+		// adjacent so only one reference window is required for each breakend
+		String localWindow = getWindow(lookup, bs, refLength);
+		int localSeqLength = getAnchorLength(lookup, bs, refLength);
+		String localSeq = localWindow.substring(0, localSeqLength);
+		String localBsSeq = localSeq.substring(localSeq.length() - Math.min(seqLength, localSeq.length()));
+		String strLocal = localWindow;
+		BreakendSummary remoteBs = bs.remoteBreakend();
+		String remoteWindow = getWindow(lookup, remoteBs, refLength);
+		int remoteSeqLength = getAnchorLength(lookup, remoteBs, refLength);
+		String remoteAnchor = remoteWindow.substring(0, remoteSeqLength);
+		String remoteBsSeq = SequenceUtil.reverseComplement(remoteAnchor.substring(remoteAnchor.length() - Math.min(seqLength, remoteAnchor.length())));
+		String strRemote = SequenceUtil.reverseComplement(remoteWindow);
 		String strBreakend = localBsSeq + insertedSequence + remoteBsSeq;
-		String strLocal = localSeq + localRef;
-		String strRemote = remoteRef + remoteSeq;
 		byte[] breakend = strBreakend.getBytes(StandardCharsets.US_ASCII);
 		byte[] local = strLocal.getBytes(StandardCharsets.US_ASCII);
 		byte[] remote = strRemote.getBytes(StandardCharsets.US_ASCII);
-		Aligner aligner = AlignerFactory.create();
+		LocalAlignmentBounds aligner = ALIGNER.get();
 		int localHomologyBaseCount = 0;
 		int remoteHomologyBaseCount = 0;
-		if (breakend != null && breakend.length > 0) {
-			if (local != null && local.length > 0) {
-				Alignment localAlignment = aligner.align_smith_waterman(breakend, local);
-				List<CigarElement> cigar = TextCigarCodec.decode(localAlignment.getCigar()).getCigarElements();
+		if (breakend.length > 0) {
+			if (local.length > 0 && aligner.align(breakend, local)) {
 				// We are defining a homology as the number of bases mapped on the other side
 				// inserted sequence means the number of bases consumed can be negative
-				remoteHomologyBaseCount = Math.max(0, remoteBsSeq.length() - SAMRecordUtil.getEndSoftClipLength(cigar));
-				if (SAMRecordUtil.getStartSoftClipLength(cigar) > 0) {
+				remoteHomologyBaseCount = Math.max(0, remoteBsSeq.length() - aligner.getEndClipLength());
+				if (aligner.getStartClipLength() > 0) {
 					// anchor is not aligned - something went wrong
 					remoteHomologyBaseCount = 0;
 				}
 			}
-			if (remote != null && remote.length > 0) {
-				Alignment remoteAlignment = aligner.align_smith_waterman(breakend, remote);
-				List<CigarElement> cigar = TextCigarCodec.decode(remoteAlignment.getCigar()).getCigarElements();
-				localHomologyBaseCount = Math.max(0, localBsSeq.length() - SAMRecordUtil.getStartSoftClipLength(cigar));
-				if (SAMRecordUtil.getEndSoftClipLength(cigar) > 0) {
+			if (remote.length > 0 && aligner.align(breakend, remote)) {
+				localHomologyBaseCount = Math.max(0, localBsSeq.length() - aligner.getStartClipLength());
+				if (aligner.getEndClipLength() > 0) {
 					// anchor is not aligned - something went wrong
 					localHomologyBaseCount = 0;
 				}
@@ -98,45 +94,53 @@ public class BreakpointHomology {
 		return new BreakpointHomology(localHomologyBaseCount, remoteHomologyBaseCount);
 	}
 	/**
-	 * Moves the given breakend forward by the given amount. 
+	 * Per-thread aligner so the alignment buffers are reused across breakpoints
 	 */
-	private static BreakendSummary advance(BreakendSummary bs, int bases) {
-		int offset = bases;
-		if (bs.direction == BreakendDirection.Backward) {
-			offset *= -1;
-		}
-		return new BreakendSummary(bs.referenceIndex, bs.direction, bs.nominal + offset, bs.start + offset, bs.end + offset);
-	}
-	private static String getAnchorSeq(final ReferenceLookup lookup, final BreakendSummary bs, final int length) {
+	private static final ThreadLocal<LocalAlignmentBounds> ALIGNER = ThreadLocal.withInitial(AlignerFactory::createLocalAlignmentBounds);
+	/**
+	 * Gets the reference sequence of the given length on the anchored side of the breakend
+	 * followed by the reference sequence of the given length on the other side of the breakend.
+	 * The sequence is oriented in the direction of the breakend, and truncated at the contig bounds.
+	 */
+	private static String getWindow(final ReferenceLookup lookup, final BreakendSummary bs, final int length) {
 		final SAMSequenceRecord refseq = lookup.getSequenceDictionary().getSequence(bs.referenceIndex);
 		int start;
 		int end;
 		if (bs.direction == BreakendDirection.Forward) {
-			end = bs.start;
-			start = end - length + 1;
+			start = bs.start - length + 1;
+			end = bs.start + length;
 		} else {
-			start = bs.start;
-			end = start + length - 1;
+			start = bs.start - length;
+			end = bs.start + length - 1;
 		}
-		int startPadding = Math.max(0, 1 - start);
-		int endPadding = Math.max(0, end - refseq.getSequenceLength());
 		start = Math.max(1, start);
 		end = Math.min(refseq.getSequenceLength(), end);
 		if (start > end) {
-			// anchor is outside of contig bounds
-			return StringUtils.repeat('N', end - start + 1);
-		}
-		byte[] bseq = lookup.getSubsequenceAt(refseq.getSequenceName(), start, end).getBases();
-		if (startPadding > 0 || endPadding > 0) {
-			byte[] arr = new byte[startPadding + bseq.length + endPadding];
-			Arrays.fill(arr, (byte)'N');
-			System.arraycopy(bseq, 0, arr, startPadding, bseq.length);
+			// window is outside of contig bounds
+			return "";
 		}
+		byte[] bseq = Arrays.copyOf(lookup.getSubsequenceAt(refseq.getSequenceName(), start, end).getBases(), end - start + 1);
 		if (bs.direction == BreakendDirection.Backward) {
 			SequenceUtil.reverseComplement(bseq);
 		}
-		String seq = new String(bseq);
-		return seq;
+		return new String(bseq, StandardCharsets.US_ASCII);
+	}
+	/**
+	 * Number of bases of the window returned by {@link #getWindow(ReferenceLookup, BreakendSummary, int)}
+	 * on the anchored side of the breakend
+	 */
+	private static int getAnchorLength(final ReferenceLookup lookup, final BreakendSummary bs, final int length) {
+		final SAMSequenceRecord refseq = lookup.getSequenceDictionary().getSequence(bs.referenceIndex);
+		int start;
+		int end;
+		if (bs.direction == BreakendDirection.Forward) {
+			end = Math.min(refseq.getSequenceLength(), bs.start);
+			start = Math.max(1, bs.start - length + 1);
+		} else {
+			start = Math.max(1, bs.start);
+			end = Math.min(refseq.getSequenceLength(), bs.start + length - 1);
+		}
+		return Math.max(0, end - start + 1);
 	}
 	public int getLocalHomologyLength() {
 		return localHomologyLength;
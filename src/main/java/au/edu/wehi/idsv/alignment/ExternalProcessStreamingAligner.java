@@ -2,10 +2,13 @@ package au.edu.wehi.idsv.alignment;
 
 import au.edu.wehi.idsv.sam.SAMRecordUtil;
 import au.edu.wehi.idsv.util.MessageThrottler;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import htsjdk.samtools.*;
 import htsjdk.samtools.fastq.BasicFastqWriter;
 import htsjdk.samtools.fastq.FastqRecord;
+import htsjdk.samtools.util.BufferedLineReader;
 import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.RuntimeIOException;
 import org.apache.commons.lang3.SystemUtils;
 
 import java.io.*;
@@ -14,9 +17,14 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -26,11 +34,41 @@ import java.util.stream.Collectors;
  * Iterator methods block until an input record has been aligned. The StreamingAligner
  * interface allows for more fine-grain control over record processing.
  * 
+ * The external aligner is kept running between drain() calls. Records are written to the
+ * aligner in batches and the pipe is only flushed once per batch. Many aligners (such as bwa)
+ * only return alignments once a full batch of input has been read or the end of input has been
+ * reached. To complete the aligner batch without closing the aligner, drain() writes unmappable
+ * sentinel reads until all outstanding alignments have been returned. Sentinel alignments
+ * are discarded. If the aligner returns nothing despite being sent a few bwa batches
+ * worth of sentinel bases, it is assumed to require the end of input and is closed on each drain.
+ * If no progress is made within the drain timeout, the aligner is closed. If the aligner has
+ * stopped reading its input, it is terminated.
+ * 
  * @author Daniel Cameron
  *
  */
 public class ExternalProcessStreamingAligner implements Closeable, Flushable, StreamingAligner, Iterator<SAMRecord> {
 	private static final int POLL_INTERVAL = 1000;
+	private static final int DEFAULT_BATCH_SIZE = 1024;
+	private static final String SENTINEL_READ_NAME_PREFIX = "gridss_drain_sentinel_";
+	private static final int SENTINEL_READ_LENGTH = 1000;
+	/**
+	 * Interval in milliseconds waited for progress before sending more sentinel reads
+	 */
+	private static final int SENTINEL_INTERVAL = 50;
+	/**
+	 * bwa mem default number of input bases processed per thread in each batch (-K)
+	 */
+	private static final long BWA_BATCH_BASES_PER_THREAD = 10000000;
+	/**
+	 * Number of aligner batches of sentinel bases without any alignment returned after
+	 * which the aligner is assumed to require the end of input.
+	 */
+	private static final int MAX_SENTINEL_BATCHES = 4;
+	private static final long DEFAULT_DRAIN_TIMEOUT_MS = 10 * 60 * 1000;
+	private static final String SENTINEL_READ_BASES = new String(new char[SENTINEL_READ_LENGTH]).replace('\0', 'N');
+	private static final String SENTINEL_READ_QUALS = new String(new char[SENTINEL_READ_LENGTH]).replace('\0', '#');
+	private static final int BGZF_MAGIC_FIRST_BYTE = 0x1f;
 	private static final Log log = Log.getInstance(ExternalProcessStreamingAligner.class);	
 	private final AtomicInteger outstandingReads = new AtomicInteger(0);
 	private final BlockingQueue<SAMRecord> buffer = new LinkedBlockingQueue<>();
@@ -44,6 +82,31 @@ public class ExternalProcessStreamingAligner implements Closeable, Flushable, St
 	private final String commandlinestr;
 	private final File reference;
 	private final AtomicBoolean isClosed = new AtomicBoolean(false);
+	/**
+	 * Number of sentinel bases without any alignment returned after which
+	 * the aligner is assumed to require the end of input.
+	 */
+	private final long maxSentinelBases;
+	private long drainTimeout = DEFAULT_DRAIN_TIMEOUT_MS;
+	/**
+	 * Writes sentinel reads so drain() is not blocked by an aligner that has stopped reading its input
+	 */
+	private ExecutorService sentinelWriter = null;
+	/**
+	 * Signalled by the reader thread whenever an alignment is returned
+	 */
+	private final Object progress = new Object();
+	private final AtomicLong alignmentsReturnedBeforeEndOfInput = new AtomicLong(0);
+	private volatile boolean inputOpen = false;
+	private boolean requiresEndOfInput = false;
+	private int unflushedRecords = 0;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	/**
+	 * Number of sentinel reads sent in the most recent drain.
+	 * The aligner batch size is unlikely to change so this is our initial estimate for the next drain.
+	 */
+	private int sentinelReads = 1;
+	private long sentinelReadCount = 0;
 	public ExternalProcessStreamingAligner(final SamReaderFactory readerFactory, final List<String> commandline, final File reference, final int threads, final SAMSequenceDictionary dict) {
 		this.readerFactory = readerFactory;
 		this.reference = reference;
@@ -52,6 +115,7 @@ public class ExternalProcessStreamingAligner implements Closeable, Flushable, St
 				.map(s -> String.format(s, "-", reference.getPath(), threads))
 				.collect(Collectors.toList());
 		this.commandlinestr = args.stream().collect(Collectors.joining(" "));
+		this.maxSentinelBases = MAX_SENTINEL_BATCHES * BWA_BATCH_BASES_PER_THREAD * Math.max(1, threads);
 	}
 	/* (non-Javadoc)
 	 * @see au.edu.wehi.idsv.alignment.StreamingAligner#asyncAlign(htsjdk.samtools.fastq.FastqRecord)
@@ -61,7 +125,13 @@ public class ExternalProcessStreamingAligner implements Closeable, Flushable, St
 		ensureAligner();
 		outstandingReads.incrementAndGet();
 		toExternalProgram.write(fq);
+		if (++unflushedRecords >= batchSize) {
+			flushPipe();
+		}
+	}
+	private void flushPipe() {
 		toExternalProgram.flush();
+		unflushedRecords = 0;
 	}
 	private void ensureAligner() throws IOException {
 		if (aligner == null) {
@@ -82,6 +152,7 @@ public class ExternalProcessStreamingAligner implements Closeable, Flushable, St
 			toExternalProgram = new BasicFastqWriter(new PrintStream(new BufferedOutputStream(aligner.getOutputStream())));
 			reader = new Thread(() -> readAllAlignments(readerFactory));
 			reader.setName("ExternalProcessStreamingAligner");
+			inputOpen = true;
 			reader.start();
 		}
 	}
@@ -92,6 +163,159 @@ public class ExternalProcessStreamingAligner implements Closeable, Flushable, St
 	public void flush() throws IOException {
 		close();
 	}
+	/**
+	 * Waits for the external aligner to return all outstanding alignments without
+	 * terminating it. Sentinel reads are sent to the aligner until all outstanding records
+	 * have been returned so aligners that only return alignments for complete batches
+	 * of input do not need to be restarted.
+	 */
+	@Override
+	public synchronized void drain() throws IOException {
+		if (aligner == null) return;
+		if (requiresEndOfInput) {
+			close();
+			return;
+		}
+		flushPipe();
+		int reads = Math.max(1, sentinelReads / 2);
+		int sentReads = 0;
+		long basesSinceProgress = 0;
+		long lastProgress = System.currentTimeMillis();
+		Future<?> write = null;
+		while (outstandingReads.get() > 0) {
+			if (System.currentTimeMillis() - lastProgress > drainTimeout) {
+				if (write != null && !write.isDone()) {
+					terminateUnresponsiveAligner();
+				}
+				log.debug(String.format("No progress from external aligner in %dms with %d alignments outstanding. Closing aligner input.", drainTimeout, outstandingReads.get()));
+				close();
+				return;
+			}
+			if (awaitProgress()) {
+				basesSinceProgress = 0;
+				lastProgress = System.currentTimeMillis();
+				continue;
+			}
+			if (write != null) {
+				if (!write.isDone()) continue;
+				awaitSentinels(write);
+				write = null;
+			}
+			if (basesSinceProgress >= maxSentinelBases) {
+				if (alignmentsReturnedBeforeEndOfInput.get() == 0) {
+					log.info("External aligner does not return alignments until the end of input is reached. Aligner will be restarted for each drain.");
+					requiresEndOfInput = true;
+				}
+				log.debug(String.format("No progress from external aligner after %d sentinel bases with %d alignments outstanding. Closing aligner input.", basesSinceProgress, outstandingReads.get()));
+				close();
+				return;
+			}
+			int count = (int)Math.min(reads, (maxSentinelBases - basesSinceProgress + SENTINEL_READ_LENGTH - 1) / SENTINEL_READ_LENGTH);
+			write = writeSentinels(count);
+			sentReads += count;
+			basesSinceProgress += (long)count * SENTINEL_READ_LENGTH;
+			reads = (int)Math.min(reads * 2L, Integer.MAX_VALUE / 2);
+		}
+		if (write != null) {
+			// sentinels must be completely written before any more reads are sent to the aligner
+			while (!write.isDone()) {
+				if (System.currentTimeMillis() - lastProgress > drainTimeout) {
+					terminateUnresponsiveAligner();
+				}
+				awaitProgress();
+			}
+			awaitSentinels(write);
+		}
+		sentinelReads = Math.max(1, sentReads);
+	}
+	/**
+	 * Terminates an aligner that has stopped reading its input
+	 */
+	private void terminateUnresponsiveAligner() throws IOException {
+		String msg = String.format("External aligner has not read any input in %dms with %d alignments outstanding. Terminating %s", drainTimeout, outstandingReads.get(), commandlinestr);
+		log.error(msg);
+		aligner.destroyForcibly();
+		// the pending sentinel write fails and the reader thread reaches the end of the aligner output once the aligner has terminated
+		sentinelWriter.shutdown();
+		try {
+			reader.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		sentinelWriter = null;
+		aligner = null;
+		reader = null;
+		toExternalProgram = null;
+		unflushedRecords = 0;
+		isClosed.set(true);
+		throw new IOException(msg);
+	}
+	private void awaitSentinels(Future<?> write) throws IOException {
+		try {
+			write.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for external aligner");
+		} catch (ExecutionException e) {
+			throw new IOException("Unable to write to external aligner", e.getCause());
+		}
+	}
+	/**
+	 * Waits for the aligner to return an alignment
+	 * @return true if any alignment was returned whilst waiting
+	 */
+	private boolean awaitProgress() throws InterruptedIOException {
+		synchronized (progress) {
+			int outstanding = outstandingReads.get();
+			try {
+				progress.wait(SENTINEL_INTERVAL);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting for external aligner");
+			}
+			return outstandingReads.get() != outstanding;
+		}
+	}
+	/**
+	 * Writes unmappable reads to the aligner so it has enough input to
+	 * process the batch containing our outstanding reads.
+	 * @return sentinel write task
+	 */
+	private Future<?> writeSentinels(int count) {
+		if (sentinelWriter == null) {
+			sentinelWriter = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ExternalProcessStreamingAligner-sentinel").build());
+		}
+		BasicFastqWriter out = toExternalProgram;
+		long firstSentinel = sentinelReadCount;
+		sentinelReadCount += count;
+		return sentinelWriter.submit(() -> {
+			for (int i = 0; i < count; i++) {
+				out.write(new FastqRecord(SENTINEL_READ_NAME_PREFIX + (firstSentinel + i), SENTINEL_READ_BASES, "", SENTINEL_READ_QUALS));
+			}
+			out.flush();
+		});
+	}
+	/**
+	 * Maximum time in milliseconds drain() waits for the aligner to make progress
+	 * before closing the aligner.
+	 */
+	public long getDrainTimeout() {
+		return drainTimeout;
+	}
+	public void setDrainTimeout(long drainTimeout) {
+		if (drainTimeout <= 0) throw new IllegalArgumentException("Drain timeout must be positive");
+		this.drainTimeout = drainTimeout;
+	}
+	/**
+	 * Number of records written to the aligner before the pipe to the aligner is flushed.
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+	public void setBatchSize(int batchSize) {
+		if (batchSize <= 0) throw new IllegalArgumentException("Batch size must be positive");
+		this.batchSize = batchSize;
+	}
 	/* (non-Javadoc)
 	 * @see au.edu.wehi.idsv.alignment.StreamingAligner#hasAlignmentRecord()
 	 */
@@ -122,20 +346,55 @@ public class ExternalProcessStreamingAligner implements Closeable, Flushable, St
 		return r;
 	}
 	private void readAllAlignments(final SamReaderFactory readerFactory) {
-		SamReader fromExternalProgram = readerFactory.open(SamInputResource.of(aligner.getInputStream()));
-		SAMRecordIterator it = fromExternalProgram.iterator();
-		while (it.hasNext()) {
-			SAMRecord r = it.next();
-			if (SAMRecordUtil.forceValidContigBounds(r, dict)) {
-				if (!MessageThrottler.Current.shouldSupress(log, "strreaming aligner out of bounds")) {
-					log.warn(String.format("Streamed aligner returned out of bounds alignment. %s adjusted to %s:%d %s", dict.getSequence(r.getReferenceIndex()).getSequenceName(), r.getAlignmentStart(), r.getCigarString()));
+		InputStream in = new BufferedInputStream(aligner.getInputStream());
+		try {
+			in.mark(1);
+			int firstByte = in.read();
+			in.reset();
+			if (firstByte == BGZF_MAGIC_FIRST_BYTE) {
+				// compressed output: defer to htsjdk
+				SamReader fromExternalProgram = readerFactory.open(SamInputResource.of(in));
+				SAMRecordIterator it = fromExternalProgram.iterator();
+				while (it.hasNext()) {
+					onAlignment(it.next());
+				}
+			} else if (firstByte != -1) {
+				// The htsjdk SAM text iterator reads ahead one line so the most recent alignment
+				// returned by the aligner would not be available until the next alignment is returned.
+				// Parsing line by line ensures every alignment is available as soon as it has been written.
+				BufferedLineReader lineReader = new BufferedLineReader(in);
+				SAMFileHeader header = new SAMTextHeaderCodec().decode(lineReader, commandlinestr);
+				SAMLineParser parser = new SAMLineParser(new DefaultSAMRecordFactory(), readerFactory.validationStringency(), header, null, null);
+				String line;
+				while ((line = lineReader.readLine()) != null) {
+					if (line.isEmpty()) continue;
+					onAlignment(parser.parseLine(line, lineReader.getLineNumber()));
 				}
 			}
-			buffer.add(r);
-			outstandingReads.decrementAndGet();
+		} catch (IOException e) {
+			log.error(e, "Error reading alignments from external aligner");
+			throw new RuntimeIOException(e);
 		}
 		log.info(String.format("Reader thread complete. %s reads in output buffer", buffer.size()));
 	}
+	private void onAlignment(SAMRecord r) {
+		if (r.getReadName().startsWith(SENTINEL_READ_NAME_PREFIX)) {
+			return;
+		}
+		if (SAMRecordUtil.forceValidContigBounds(r, dict)) {
+			if (!MessageThrottler.Current.shouldSupress(log, "strreaming aligner out of bounds")) {
+				log.warn(String.format("Streamed aligner returned out of bounds alignment. %s adjusted to %s:%d %s", dict.getSequence(r.getReferenceIndex()).getSequenceName(), r.getAlignmentStart(), r.getCigarString()));
+			}
+		}
+		buffer.add(r);
+		outstandingReads.decrementAndGet();
+		if (inputOpen) {
+			alignmentsReturnedBeforeEndOfInput.incrementAndGet();
+		}
+		synchronized (progress) {
+			progress.notifyAll();
+		}
+	}
 	/**
 	 * Flushes outstanding alignments and closes the pipe to the external aligner.
 	 * Alignment records returned by the aligner are still available after closing.
@@ -144,6 +403,7 @@ public class ExternalProcessStreamingAligner implements Closeable, Flushable, St
 	public synchronized void close() throws IOException {
 		if (aligner != null) {
 			log.info("Waiting for external aligner to complete all alignments.");
+			inputOpen = false;
 			toExternalProgram.flush();
 			aligner.getOutputStream().flush();
 			toExternalProgram.close();
@@ -152,12 +412,14 @@ public class ExternalProcessStreamingAligner implements Closeable, Flushable, St
 			// wait for the aligner to complete all outstanding alignments
 			// This doesn't deadlock as buffer is unbounded in size so we're guaranteed to be able to
 			// read the entire output stream without blocking
-			while (outstandingReads.get() > 0) {
-				try {
-					log.debug(String.format("%d alignments outstanding", outstandingReads.get()));
-					Thread.sleep(POLL_INTERVAL);
-				} catch (InterruptedException e) {
-					log.warn(e);
+			synchronized (progress) {
+				while (outstandingReads.get() > 0) {
+					try {
+						log.debug(String.format("%d alignments outstanding", outstandingReads.get()));
+						progress.wait(POLL_INTERVAL);
+					} catch (InterruptedException e) {
+						log.warn(e);
+					}
 				}
 			}
 			// reader thread will have completed when it hits then end of the output stream
@@ -169,9 +431,14 @@ public class ExternalProcessStreamingAligner implements Closeable, Flushable, St
 				log.warn(e);
 			}
 		}
+		if (sentinelWriter != null) {
+			sentinelWriter.shutdown();
+			sentinelWriter = null;
+		}
 		aligner = null;
 		reader = null;
 		toExternalProgram = null;
+		unflushedRecords = 0;
 		isClosed.set(true);
 	}
 
@@ -0,0 +1,331 @@
+package au.edu.wehi.idsv.alignment;
+
+import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
+import au.edu.wehi.idsv.picard.ReferenceLookup;
+import htsjdk.samtools.*;
+import htsjdk.samtools.fastq.FastqRecord;
+import htsjdk.samtools.util.SequenceUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Seed and extend aligner that performs alignment within the JVM.
+ *
+ * Exact kmer seeds are looked up in a reference {@link KmerSeedIndex}, grouped by
+ * alignment diagonal, and the best supported candidate locations are
+ * extended by Smith-Waterman alignment. Alignments are performed on a
+ * work-stealing pool and are returned in the order in which they were requested.
+ *
+ * This aligner is not a replacement for a general purpose read aligner.
+ * It is intended for small genomes and targeted panels in which the overhead of
+ * invoking an external aligner dominates.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class InProcessStreamingAligner implements Closeable, StreamingAligner {
+	public static final int DEFAULT_K = 13;
+	/**
+	 * bwa mem default scoring
+	 */
+	private static final int MATCH_SCORE = 1;
+	private static final int MISMATCH_PENALTY = 4;
+	private static final int GAP_OPEN_PENALTY = 6;
+	private static final int GAP_EXTEND_PENALTY = 1;
+	private static final int MAX_MAPQ = 60;
+	/**
+	 * Maximum number of read bases considered for seeding
+	 */
+	private static final int MAX_SEED_READ_OFFSET = (1 << 16) - 1;
+	private final ReferenceLookup reference;
+	private final KmerSeedIndex index;
+	private final Aligner aligner;
+	private final SAMFileHeader header;
+	private final ForkJoinPool pool;
+	private final Queue<ForkJoinTask<SAMRecord>> inflight = new ArrayDeque<>();
+	private final AtomicInteger completed = new AtomicInteger(0);
+	private int returned = 0;
+	private int maxSeedOccurrences = 500;
+	private int maxCandidates = 4;
+	private int bandwidth = 32;
+	private int minScore = 20;
+	public InProcessStreamingAligner(ReferenceLookup reference, Aligner aligner, int threads) {
+		this(reference, new KmerSeedIndex(reference, DEFAULT_K), aligner, threads);
+	}
+	public InProcessStreamingAligner(ReferenceLookup reference, KmerSeedIndex index, Aligner aligner, int threads) {
+		this.reference = reference;
+		this.index = index;
+		this.aligner = aligner;
+		this.header = new SAMFileHeader();
+		this.header.setSequenceDictionary(reference.getSequenceDictionary());
+		this.pool = new ForkJoinPool(threads);
+	}
+	/**
+	 * Seeds occurring more often than this in the reference are ignored
+	 */
+	public int getMaxSeedOccurrences() {
+		return maxSeedOccurrences;
+	}
+	public void setMaxSeedOccurrences(int maxSeedOccurrences) {
+		this.maxSeedOccurrences = maxSeedOccurrences;
+	}
+	/**
+	 * Number of seed-supported candidate locations extended by Smith-Waterman alignment
+	 */
+	public int getMaxCandidates() {
+		return maxCandidates;
+	}
+	public void setMaxCandidates(int maxCandidates) {
+		this.maxCandidates = maxCandidates;
+	}
+	/**
+	 * Maximum diagonal difference between seeds considered part of the same candidate alignment.
+	 * This is also the amount of flanking reference sequence included in the Smith-Waterman alignment.
+	 */
+	public int getBandwidth() {
+		return bandwidth;
+	}
+	public void setBandwidth(int bandwidth) {
+		this.bandwidth = bandwidth;
+	}
+	/**
+	 * Minimum alignment score required for the read to be reported as mapped
+	 */
+	public int getMinScore() {
+		return minScore;
+	}
+	public void setMinScore(int minScore) {
+		this.minScore = minScore;
+	}
+	@Override
+	public void asyncAlign(FastqRecord fq) throws IOException {
+		inflight.add(pool.submit(() -> {
+			try {
+				return align(fq);
+			} finally {
+				completed.incrementAndGet();
+			}
+		}));
+	}
+	@Override
+	public void flush() throws IOException {
+		drain();
+	}
+	@Override
+	public void drain() throws IOException {
+		for (ForkJoinTask<SAMRecord> task : inflight) {
+			task.join();
+		}
+	}
+	@Override
+	public boolean hasAlignmentRecord() {
+		ForkJoinTask<SAMRecord> head = inflight.peek();
+		return head != null && head.isDone();
+	}
+	@Override
+	public int processedAlignmentRecords() {
+		return completed.get() - returned;
+	}
+	@Override
+	public int outstandingAlignmentRecord() {
+		return inflight.size() - processedAlignmentRecords();
+	}
+	@Override
+	public SAMRecord getAlignment() {
+		if (!hasAlignmentRecord()) {
+			throw new IllegalStateException("No alignments available. getAlignment() should only be called if at least one alignment record is available.");
+		}
+		returned++;
+		return inflight.poll().join();
+	}
+	@Override
+	public void close() throws IOException {
+		pool.shutdownNow();
+	}
+	/**
+	 * Aligns the given read
+	 * @param fq read to align
+	 * @return best alignment of the read, or an unmapped record if no alignment could be found
+	 */
+	public SAMRecord align(FastqRecord fq) {
+		byte[] bases = fq.getReadString().getBytes();
+		byte[] quals = SAMUtils.fastqToPhred(fq.getBaseQualityString());
+		byte[] rcbases = Arrays.copyOf(bases, bases.length);
+		SequenceUtil.reverseComplement(rcbases);
+		Candidate best = null;
+		int secondBestScore = 0;
+		Candidate[] candidates = new Candidate[maxCandidates];
+		addCandidates(candidates, bases, false);
+		addCandidates(candidates, rcbases, true);
+		for (Candidate c : candidates) {
+			if (c == null) continue;
+			extend(c, c.negativeStrand ? rcbases : bases);
+			if (best == null || c.score > best.score) {
+				if (best != null) secondBestScore = Math.max(secondBestScore, best.score);
+				best = c;
+			} else {
+				secondBestScore = Math.max(secondBestScore, c.score);
+			}
+		}
+		SAMRecord r = new SAMRecord(header);
+		r.setReadName(fq.getReadName());
+		if (best == null || best.score < minScore) {
+			r.setReadUnmappedFlag(true);
+			r.setReadBases(bases);
+			r.setBaseQualities(quals);
+			return r;
+		}
+		r.setReferenceIndex(best.referenceIndex);
+		r.setAlignmentStart(best.alignmentStart);
+		r.setCigar(best.cigar);
+		r.setMappingQuality(Math.min(MAX_MAPQ, (int)Math.round(MAX_MAPQ * (best.score - secondBestScore) / (double)best.score)));
+		r.setReadNegativeStrandFlag(best.negativeStrand);
+		if (best.negativeStrand) {
+			SequenceUtil.reverseQualities(quals);
+			r.setReadBases(rcbases);
+		} else {
+			r.setReadBases(bases);
+		}
+		r.setBaseQualities(quals);
+		r.setAttribute(SAMTag.NM.name(), SequenceUtil.calculateSamNmTag(r, best.ref, best.refStart - 1));
+		r.setAttribute(SAMTag.AS.name(), best.score);
+		return r;
+	}
+	private static class Candidate {
+		private final int referenceIndex;
+		private final boolean negativeStrand;
+		private final long diagonal;
+		private final int seeds;
+		private byte[] ref;
+		private int refStart;
+		private int alignmentStart;
+		private Cigar cigar;
+		private int score = Integer.MIN_VALUE;
+		public Candidate(int referenceIndex, boolean negativeStrand, long diagonal, int seeds) {
+			this.referenceIndex = referenceIndex;
+			this.negativeStrand = negativeStrand;
+			this.diagonal = diagonal;
+			this.seeds = seeds;
+		}
+	}
+	/**
+	 * Finds the seed-supported diagonals of the given read sequence
+	 */
+	private void addCandidates(Candidate[] top, byte[] bases, boolean negativeStrand) {
+		int k = index.getK();
+		int seedableLength = Math.min(bases.length, MAX_SEED_READ_OFFSET);
+		if (seedableLength < k) return;
+		long mask = (1L << (2 * k)) - 1;
+		// seed hits encoded as (diagonal + read length) << 16 | read offset
+		long[] hits = new long[16];
+		int hitCount = 0;
+		long kmer = 0;
+		int unambiguousLength = 0;
+		for (int i = 0; i < seedableLength; i++) {
+			if (KmerEncodingHelper.isAmbiguous(bases[i])) {
+				unambiguousLength = 0;
+				continue;
+			}
+			kmer = ((kmer << 2) | KmerEncodingHelper.picardBaseToEncoded(bases[i])) & mask;
+			unambiguousLength++;
+			if (unambiguousLength >= k) {
+				int readOffset = i - k + 1;
+				int start = index.firstOccurrence(kmer);
+				int end = index.firstOccurrence(kmer + 1);
+				if (end - start > maxSeedOccurrences) continue;
+				for (int j = start; j < end; j++) {
+					if (hitCount == hits.length) {
+						hits = Arrays.copyOf(hits, hits.length * 2);
+					}
+					long diagonal = index.getLinearOffset(j) - readOffset;
+					hits[hitCount++] = ((diagonal + bases.length) << 16) | readOffset;
+				}
+			}
+		}
+		Arrays.sort(hits, 0, hitCount);
+		int groupStart = 0;
+		while (groupStart < hitCount) {
+			long groupDiagonal = (hits[groupStart] >>> 16) - bases.length;
+			int groupEnd = groupStart + 1;
+			while (groupEnd < hitCount && (hits[groupEnd] >>> 16) - (hits[groupEnd - 1] >>> 16) <= bandwidth) {
+				groupEnd++;
+			}
+			// contig is determined by the seed hit since the diagonal can lie in the previous contig
+			long seedPosition = groupDiagonal + (hits[groupStart] & 0xFFFF);
+			offer(top, new Candidate(index.getReferenceIndex(seedPosition), negativeStrand, groupDiagonal, groupEnd - groupStart));
+			groupStart = groupEnd;
+		}
+	}
+	private static void offer(Candidate[] top, Candidate c) {
+		for (int i = 0; i < top.length; i++) {
+			if (top[i] == null || top[i].seeds < c.seeds) {
+				System.arraycopy(top, i, top, i + 1, top.length - i - 1);
+				top[i] = c;
+				return;
+			}
+		}
+	}
+	private void extend(Candidate c, byte[] bases) {
+		SAMSequenceRecord contig = header.getSequence(c.referenceIndex);
+		long contigOffset = index.getContigOffset(c.referenceIndex);
+		int refStart = (int)Math.max(1, c.diagonal - contigOffset + 1 - bandwidth);
+		int refEnd = (int)Math.min(contig.getSequenceLength(), c.diagonal - contigOffset + bases.length + bandwidth);
+		if (refEnd < refStart) return;
+		byte[] ref = reference.getSubsequenceAt(contig.getSequenceName(), refStart, refEnd).getBases();
+		Alignment aln = aligner.align_smith_waterman(bases, ref);
+		Cigar cigar = TextCigarCodec.decode(aln.getCigar());
+		if (cigar.getReferenceLength() == 0) return;
+		c.ref = ref;
+		c.refStart = refStart;
+		c.alignmentStart = refStart + aln.getStartPosition();
+		c.cigar = cigar;
+		c.score = score(cigar, bases, ref, aln.getStartPosition());
+	}
+	/**
+	 * Alignment score using bwa mem default scoring
+	 */
+	private static int score(Cigar cigar, byte[] bases, byte[] ref, int refOffset) {
+		int score = 0;
+		int readOffset = 0;
+		for (CigarElement ce : cigar.getCigarElements()) {
+			int len = ce.getLength();
+			switch (ce.getOperator()) {
+				case M:
+				case EQ:
+				case X:
+					for (int i = 0; i < len; i++) {
+						if (SequenceUtil.basesEqual(bases[readOffset + i], ref[refOffset + i])) {
+							score += MATCH_SCORE;
+						} else {
+							score -= MISMATCH_PENALTY;
+						}
+					}
+					readOffset += len;
+					refOffset += len;
+					break;
+				case I:
+					score -= GAP_OPEN_PENALTY + GAP_EXTEND_PENALTY * len;
+					readOffset += len;
+					break;
+				case D:
+				case N:
+					score -= GAP_OPEN_PENALTY + GAP_EXTEND_PENALTY * len;
+					refOffset += len;
+					break;
+				case S:
+					readOffset += len;
+					break;
+				default:
+					break;
+			}
+		}
+		return score;
+	}
+}
@@ -0,0 +1,140 @@
+package au.edu.wehi.idsv.alignment;
+
+import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * Compact exact-match seed index of every reference kmer.
+ *
+ * Each indexed kmer is stored as a single long containing the 2bit encoded kmer
+ * in the high 32 bits and the linear genomic offset of the kmer in the low 32 bits.
+ * Entries are sorted so all occurrences of a kmer are contiguous and can be
+ * found by binary search. Kmers containing ambiguous bases are not indexed.
+ *
+ * The index requires 8 bytes per reference base so is only suitable for
+ * small genomes and targeted panels.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class KmerSeedIndex {
+	private static final Log log = Log.getInstance(KmerSeedIndex.class);
+	/**
+	 * Largest kmer that can be encoded without setting the sign bit of the index entry
+	 */
+	public static final int MAX_K = Integer.SIZE / 2 - 1;
+	/**
+	 * Maximum number of reference bases that can be indexed.
+	 * Entries are held in a single array so the index is limited by the maximum Java array size.
+	 */
+	public static final long MAX_REFERENCE_LENGTH = Integer.MAX_VALUE - 8;
+	private static final long POSITION_MASK = 0xFFFFFFFFL;
+	private final int k;
+	private final long[] entries;
+	/**
+	 * Linear genomic offset of the first base of each contig
+	 */
+	private final long[] contigOffset;
+	private final SAMSequenceDictionary dict;
+	public KmerSeedIndex(ReferenceSequenceFile reference, int k) {
+		if (k <= 0 || k > MAX_K) throw new IllegalArgumentException(String.format("k must be between 1 and %d", MAX_K));
+		this.k = k;
+		this.dict = reference.getSequenceDictionary();
+		this.contigOffset = new long[dict.size() + 1];
+		for (int i = 0; i < dict.size(); i++) {
+			contigOffset[i + 1] = contigOffset[i] + dict.getSequence(i).getSequenceLength();
+		}
+		if (contigOffset[dict.size()] > MAX_REFERENCE_LENGTH) {
+			throw new IllegalArgumentException(String.format("Reference genome of %d bases too large for kmer seed index. At most %d bases can be indexed.",
+					contigOffset[dict.size()], MAX_REFERENCE_LENGTH));
+		}
+		log.info(String.format("Indexing %d reference kmers", contigOffset[dict.size()]));
+		long[] buffer = new long[(int)contigOffset[dict.size()]];
+		int size = 0;
+		long mask = (1L << (2 * k)) - 1;
+		for (SAMSequenceRecord contig : dict.getSequences()) {
+			byte[] bases = reference.getSequence(contig.getSequenceName()).getBases();
+			long offset = contigOffset[contig.getSequenceIndex()];
+			long kmer = 0;
+			int unambiguousLength = 0;
+			for (int i = 0; i < bases.length; i++) {
+				if (KmerEncodingHelper.isAmbiguous(bases[i])) {
+					unambiguousLength = 0;
+					continue;
+				}
+				kmer = ((kmer << 2) | KmerEncodingHelper.picardBaseToEncoded(bases[i])) & mask;
+				unambiguousLength++;
+				if (unambiguousLength >= k) {
+					buffer[size++] = (kmer << 32) | (offset + i - k + 1);
+				}
+			}
+		}
+		this.entries = Arrays.copyOf(buffer, size);
+		Arrays.parallelSort(entries);
+		log.info(String.format("Indexed %d reference kmers", size));
+	}
+	public int getK() {
+		return k;
+	}
+	public SAMSequenceDictionary getSequenceDictionary() {
+		return dict;
+	}
+	/**
+	 * Index of the first entry for the given kmer
+	 * @param kmer 2bit encoded kmer
+	 * @return index of first occurrence, or the insertion point if the kmer does not occur in the reference
+	 */
+	public int firstOccurrence(long kmer) {
+		long key = kmer << 32;
+		int low = 0;
+		int high = entries.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (entries[mid] < key) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+	/**
+	 * Number of reference occurrences of the given kmer
+	 */
+	public int occurrences(long kmer) {
+		return firstOccurrence(kmer + 1) - firstOccurrence(kmer);
+	}
+	/**
+	 * Linear genomic offset of the given index entry.
+	 * @param entryIndex index entry
+	 * @return linear genomic offset of the first base of the kmer
+	 */
+	public long getLinearOffset(int entryIndex) {
+		return entries[entryIndex] & POSITION_MASK;
+	}
+	/**
+	 * Contig containing the given linear genomic offset
+	 */
+	public int getReferenceIndex(long linearOffset) {
+		int index = Arrays.binarySearch(contigOffset, linearOffset);
+		if (index < 0) {
+			index = -index - 2;
+		}
+		// skip over zero length contigs
+		while (index + 1 < dict.size() && contigOffset[index + 1] <= linearOffset) {
+			index++;
+		}
+		return Math.max(0, Math.min(dict.size() - 1, index));
+	}
+	/**
+	 * Linear genomic offset of the first base of the given contig
+	 */
+	public long getContigOffset(int referenceIndex) {
+		return contigOffset[referenceIndex];
+	}
+}
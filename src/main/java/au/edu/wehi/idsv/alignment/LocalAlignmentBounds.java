@@ -0,0 +1,207 @@
+package au.edu.wehi.idsv.alignment;
+
+import java.util.Arrays;
+
+/**
+ * Pure Java Smith-Waterman-Gotoh local alignment that reports only the bounds
+ * of the best alignment on the query sequence.
+ *
+ * No traceback is performed so alignment requires only linear space. Instead, the
+ * query start position of the best path ending at each cell is carried through the
+ * dynamic programming recurrence. The query profile and all dynamic programming
+ * buffers are retained between calls so aligning the same query against multiple
+ * reference sequences, and aligning many similarly sized sequences, does not
+ * allocate.
+ *
+ * Scoring matches {@link SswJniAligner} and {@link JAlignerAligner}: a gap of length
+ * n costs gapOpen + (n - 1) * gapExtend, and non-ACGT bases are treated as N.
+ *
+ * This class is not thread-safe.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class LocalAlignmentBounds {
+	private static final int N = 4;
+	private static final byte[] BASE_CODE = new byte[256];
+	static {
+		Arrays.fill(BASE_CODE, (byte)N);
+		BASE_CODE['A'] = BASE_CODE['a'] = 0;
+		BASE_CODE['C'] = BASE_CODE['c'] = 1;
+		BASE_CODE['G'] = BASE_CODE['g'] = 2;
+		BASE_CODE['T'] = BASE_CODE['t'] = 3;
+	}
+	private final int[][] scores = new int[N + 1][N + 1];
+	private final int gapOpen;
+	private final int gapExtend;
+	/**
+	 * Query the profile was built for
+	 */
+	private byte[] profileQuery = null;
+	private int queryLength;
+	/**
+	 * profile[refBase][queryOffset] score of aligning the given reference base to the query base
+	 */
+	private int[][] profile = new int[N + 1][0];
+	private int[] h = new int[0];
+	private int[] hStart = new int[0];
+	private int[] e = new int[0];
+	private int[] eStart = new int[0];
+	private int score;
+	private int queryStart;
+	private int queryEnd;
+	private int refEnd;
+	/**
+	 * @param match match score
+	 * @param mismatch mismatch score
+	 * @param ambiguous score for any comparison involving an ambiguous base
+	 * @param gapOpen absolute value of the gap open penalty
+	 * @param gapExtend absolute value of the gap extension penalty
+	 */
+	public LocalAlignmentBounds(int match, int mismatch, int ambiguous, int gapOpen, int gapExtend) {
+		this.gapOpen = gapOpen;
+		this.gapExtend = gapExtend;
+		for (int i = 0; i <= N; i++) {
+			for (int j = 0; j <= N; j++) {
+				if (i == j) {
+					scores[i][j] = match;
+				} else if (i == N || j == N) {
+					scores[i][j] = ambiguous;
+				} else {
+					scores[i][j] = mismatch;
+				}
+			}
+		}
+	}
+	private void ensureProfile(byte[] query) {
+		if (query == profileQuery) return;
+		queryLength = query.length;
+		if (profile[0].length < queryLength) {
+			for (int i = 0; i <= N; i++) {
+				profile[i] = new int[queryLength];
+			}
+			h = new int[queryLength + 1];
+			hStart = new int[queryLength + 1];
+			e = new int[queryLength + 1];
+			eStart = new int[queryLength + 1];
+		}
+		for (int i = 0; i < queryLength; i++) {
+			int q = BASE_CODE[query[i] & 0xFF];
+			for (int r = 0; r <= N; r++) {
+				profile[r][i] = scores[r][q];
+			}
+		}
+		profileQuery = query;
+	}
+	/**
+	 * Aligns the given query to the given reference.
+	 * The query profile is reused if the same query array is aligned multiple times
+	 * so the query must not be modified between calls.
+	 * @param query query sequence
+	 * @param ref reference sequence
+	 * @return true if any bases aligned with a positive score
+	 */
+	public boolean align(byte[] query, byte[] ref) {
+		ensureProfile(query);
+		int m = queryLength;
+		Arrays.fill(h, 0, m + 1, 0);
+		Arrays.fill(e, 0, m + 1, Integer.MIN_VALUE / 2);
+		score = 0;
+		queryStart = 0;
+		queryEnd = -1;
+		refEnd = -1;
+		for (int j = 0; j < ref.length; j++) {
+			int[] rowProfile = profile[BASE_CODE[ref[j] & 0xFF]];
+			// H(i-1, j-1)
+			int diag = 0;
+			int diagStart = 0;
+			// F and H of the previous query position in this column
+			int f = Integer.MIN_VALUE / 2;
+			int fStart = 0;
+			int hUp = 0;
+			int hUpStart = 0;
+			for (int i = 1; i <= m; i++) {
+				// gap consuming reference bases
+				int eOpen = h[i] - gapOpen;
+				int eExtend = e[i] - gapExtend;
+				if (eOpen >= eExtend) {
+					e[i] = eOpen;
+					eStart[i] = hStart[i];
+				} else {
+					e[i] = eExtend;
+				}
+				// gap consuming query bases
+				int fOpen = hUp - gapOpen;
+				int fExtend = f - gapExtend;
+				if (fOpen >= fExtend) {
+					f = fOpen;
+					fStart = hUpStart;
+				} else {
+					f = fExtend;
+				}
+				int best = diag + rowProfile[i - 1];
+				int bestStart = diag > 0 ? diagStart : i - 1;
+				if (e[i] > best) {
+					best = e[i];
+					bestStart = eStart[i];
+				}
+				if (f > best) {
+					best = f;
+					bestStart = fStart;
+				}
+				if (best < 0) {
+					best = 0;
+				}
+				diag = h[i];
+				diagStart = hStart[i];
+				h[i] = best;
+				hStart[i] = bestStart;
+				hUp = best;
+				hUpStart = bestStart;
+				if (best > score) {
+					score = best;
+					queryStart = bestStart;
+					queryEnd = i - 1;
+					refEnd = j;
+				}
+			}
+		}
+		return score > 0;
+	}
+	/**
+	 * Score of the best local alignment
+	 */
+	public int getScore() {
+		return score;
+	}
+	/**
+	 * Zero-based offset of the first aligned query base
+	 */
+	public int getQueryStart() {
+		return queryStart;
+	}
+	/**
+	 * Zero-based offset of the last aligned query base
+	 */
+	public int getQueryEnd() {
+		return queryEnd;
+	}
+	/**
+	 * Zero-based offset of the last aligned reference base
+	 */
+	public int getRefEnd() {
+		return refEnd;
+	}
+	/**
+	 * Number of unaligned bases at the start of the query
+	 */
+	public int getStartClipLength() {
+		return queryStart;
+	}
+	/**
+	 * Number of unaligned bases at the end of the query
+	 */
+	public int getEndClipLength() {
+		return queryLength - queryEnd - 1;
+	}
+}
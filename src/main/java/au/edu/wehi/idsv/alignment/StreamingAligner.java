@@ -20,6 +20,16 @@ public interface StreamingAligner {
 	 */
 	void flush() throws IOException;
 
+	/**
+	 * Waits for all outstanding alignment requests to be returned by the aligner.
+	 * 
+	 * Unlike flush(), this does not terminate the aligner and is a barrier only
+	 * for records already submitted. Implementations are permitted to fall back
+	 * to flush() if the aligner makes no progress without reaching end of input.
+	 * @throws IOException
+	 */
+	void drain() throws IOException;
+
 	/**
 	 * Returns true if there is at least one outstanding alignment completed   
 	 * @return
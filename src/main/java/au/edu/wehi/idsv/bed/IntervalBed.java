@@ -20,6 +20,10 @@ import java.util.stream.Collectors;
 
 /**
  * Minimal bed wrapper retaining only interval information
+ * 
+ * Intervals can be added concurrently. Overlap queries are performed against an
+ * immutable primitive {@link LinearIntervalIndex} snapshot which is rebuilt on
+ * the first query after the intervals are modified.
  * @author Daniel Cameron
  *
  */
@@ -27,6 +31,7 @@ public class IntervalBed {
 	private static final Log log = Log.getInstance(IntervalBed.class);
 	private final LinearGenomicCoordinate linear;
 	private final RangeSet<Long> intervals;
+	private volatile LinearIntervalIndex index = null;
 	public int size() {
 		return intervals.asRanges().size();
 	}
@@ -80,9 +85,27 @@ public class IntervalBed {
 	}
 	public synchronized void addInterval(int referenceIndex, int start, int end) {
 		addInterval(linear, intervals, referenceIndex, start, end);
+		index = null;
 	}
 	public synchronized void addInterval(QueryInterval qi) {
 		addInterval(linear, intervals, qi.referenceIndex, qi.start, qi.end);
+		index = null;
+	}
+	/**
+	 * Immutable snapshot of the current intervals
+	 */
+	public LinearIntervalIndex getIndex() {
+		LinearIntervalIndex current = index;
+		if (current == null) {
+			synchronized (this) {
+				current = index;
+				if (current == null) {
+					current = LinearIntervalIndex.create(intervals);
+					index = current;
+				}
+			}
+		}
+		return current;
 	}
 	/**
 	 * Determines whether any of the intervals overlap the given interval
@@ -95,21 +118,21 @@ public class IntervalBed {
 		return overlaps(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end));
 	}
 	public boolean overlaps(long start, long end) {
-		Range<Long> r = Range.closedOpen(start, end + 1);
-		return overlaps(r);
+		return getIndex().overlaps(start, end);
 	}
 	public boolean overlaps(Range<Long> interval) {
 		if (interval == null) {
 			return false;
 		}
-		return intervals.intersects(interval);
+		return overlaps(interval.lowerEndpoint(), interval.upperEndpoint() - 1);
 	}
 	/**
 	 * Removes the given set of intervals
 	 * @param toRemove intervals to remove
 	 */
-	public void remove(IntervalBed toRemove) {
+	public synchronized void remove(IntervalBed toRemove) {
 		intervals.removeAll(toRemove.intervals.asRanges());
+		index = null;
 	}
 	public void write(File bed, String name) throws IOException {
 		try (BufferedWriter writer = Files.newBufferedWriter(bed.toPath(), StandardCharsets.US_ASCII)) {
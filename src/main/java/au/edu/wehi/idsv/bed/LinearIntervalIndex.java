@@ -0,0 +1,115 @@
+package au.edu.wehi.idsv.bed;
+
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+
+/**
+ * Immutable overlap index of disjoint linear genomic coordinate intervals.
+ *
+ * Intervals are stored as sorted primitive arrays of half-open [start, end)
+ * linear coordinates so overlap queries require neither boxing nor tree traversal.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class LinearIntervalIndex {
+	/**
+	 * Number of intervals a cursor will step through before switching to binary search
+	 */
+	private static final int LINEAR_SCAN_LIMIT = 8;
+	public static final LinearIntervalIndex EMPTY = new LinearIntervalIndex(new long[0], new long[0]);
+	private final long[] start;
+	private final long[] end;
+	private LinearIntervalIndex(long[] start, long[] end) {
+		this.start = start;
+		this.end = end;
+	}
+	/**
+	 * Creates an index of the given intervals.
+	 * @param intervals closed-open intervals
+	 * @return interval index
+	 */
+	public static LinearIntervalIndex create(RangeSet<Long> intervals) {
+		int size = intervals.asRanges().size();
+		long[] start = new long[size];
+		long[] end = new long[size];
+		int i = 0;
+		for (Range<Long> r : intervals.asRanges()) {
+			// RangeSet already merges overlapping and adjacent ranges
+			start[i] = r.lowerEndpoint();
+			end[i] = r.upperEndpoint();
+			i++;
+		}
+		return new LinearIntervalIndex(start, end);
+	}
+	public int size() {
+		return start.length;
+	}
+	/**
+	 * Index of the last interval starting at or before the given position
+	 * @param position linear genomic coordinate
+	 * @return interval index, or -1 if all intervals start after the given position
+	 */
+	private int floor(long position) {
+		int n = start.length;
+		if (n == 0 || start[0] > position) {
+			return -1;
+		}
+		int base = 0;
+		while (n > 1) {
+			int half = n >>> 1;
+			// conditional move rather than a branch
+			base = start[base + half] <= position ? base + half : base;
+			n -= half;
+		}
+		return base;
+	}
+	/**
+	 * Determines whether any interval overlaps the given interval
+	 * @param queryStart first linear genomic coordinate
+	 * @param queryEnd last linear genomic coordinate (inclusive)
+	 * @return true if at least one base overlaps an indexed interval
+	 */
+	public boolean overlaps(long queryStart, long queryEnd) {
+		int i = floor(queryEnd);
+		return i >= 0 && end[i] > queryStart;
+	}
+	/**
+	 * Creates a cursor for efficient overlap queries in ascending genomic order.
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+	/**
+	 * Overlap query cursor optimised for queries in ascending genomic order.
+	 * Queries are permitted in any order but queries out of order fall back to a full binary search.
+	 * Cursors are not thread-safe.
+	 */
+	public class Cursor {
+		private int current = -1;
+		private Cursor() { }
+		/**
+		 * Determines whether any interval overlaps the given interval
+		 * @param queryStart first linear genomic coordinate
+		 * @param queryEnd last linear genomic coordinate (inclusive)
+		 * @return true if at least one base overlaps an indexed interval
+		 */
+		public boolean overlaps(long queryStart, long queryEnd) {
+			if (current >= 0 && start[current] > queryEnd) {
+				// moved backwards
+				current = floor(queryEnd);
+			} else {
+				// advance to the last interval starting at or before the query end
+				int steps = 0;
+				while (current + 1 < start.length && start[current + 1] <= queryEnd) {
+					if (++steps > LINEAR_SCAN_LIMIT) {
+						current = floor(queryEnd);
+						break;
+					}
+					current++;
+				}
+			}
+			return current >= 0 && end[current] > queryStart;
+		}
+	}
+}
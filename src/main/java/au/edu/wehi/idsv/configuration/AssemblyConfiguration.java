@@ -19,6 +19,8 @@ public class AssemblyConfiguration {
 		maxExpectedBreakendLengthMultiple = config.getFloat("maxExpectedBreakendLengthMultiple");
 		realignContigs = config.getBoolean("realignContigs");
 		contigNamePrefix = config.getString("contigNamePrefix");
+		singlePassBidirectional = config.getBoolean("singlePassBidirectional");
+		evidenceCacheSize = config.getInt("evidenceCacheSize");
 	}
 	public ErrorCorrectionConfiguration errorCorrection;
 	public DownsamplingConfiguration downsampling;
@@ -76,4 +78,19 @@ public class AssemblyConfiguration {
 	 * SAM rread name prefix of assembly contigs.
 	 */
 	public String contigNamePrefix;
+	/**
+	 * Read and decode each assembly chunk once and assemble both breakend directions
+	 * concurrently from the shared evidence stream instead of performing a separate
+	 * pass over the input for each direction.
+	 *
+	 * Contig names are still unique but their numbering is no longer deterministic
+	 * as both directions share the same chunk name generator.
+	 */
+	public boolean singlePassBidirectional;
+	/**
+	 * Maximum number of decoded evidence from the overlap between adjacent assembly chunks
+	 * to retain for reuse when the same thread assembles the following chunk.
+	 * Set to 0 to disable evidence reuse.
+	 */
+	public int evidenceCacheSize;
 }
@@ -69,6 +69,15 @@ public class GridssConfiguration {
 	 * from a single reference sequence.
 	 */
 	public int chunkSequenceChangePenalty;
+	/**
+	 * Chunks with an estimated processing cost exceeding this multiple of the
+	 * mean chunk cost are split into smaller chunks. Zero disables chunk splitting.
+	 */
+	public double chunkSplitCostMultiple;
+	/**
+	 * Chunks smaller than this (in base pairs) are not split further 
+	 */
+	public int chunkSplitMinimumSize;
 	/**
 	 * Use the read group sample name as the category label
 	 */
@@ -77,6 +86,11 @@ public class GridssConfiguration {
 	 * Use a hashed evidenceID to save space and prevent read names exceeding the 254 character limit imposed by BAM 
 	 */
 	public boolean hashEvidenceID;
+	/**
+	 * Call variants from a position sorted binary evidence store instead of decoding
+	 * the SV BAM. The store is written the first time it is required.
+	 */
+	public boolean useCompactEvidenceStore;
 	public AssemblyConfiguration getAssembly() {
 		return assembly;
 	}
@@ -122,8 +136,11 @@ public class GridssConfiguration {
 		terminateOnFirstError = config.getBoolean("terminateOnFirstError");
 		chunkSize = config.getInt("chunkSize");
 		chunkSequenceChangePenalty = config.getInt("chunkSequenceChangePenalty");
+		chunkSplitCostMultiple = config.getDouble("chunkSplitCostMultiple");
+		chunkSplitMinimumSize = config.getInt("chunkSplitMinimumSize");
 		useReadGroupSampleNameCategoryLabel = config.getBoolean("useReadGroupSampleNameCategoryLabel");
 		hashEvidenceID = config.getBoolean("hashEvidenceID");
+		useCompactEvidenceStore = config.getBoolean("useCompactEvidenceStore");
 		sourceConfigurationFile = null;
 	}
 	public static Configuration LoadConfiguration(File configuration) throws ConfigurationException {
@@ -10,6 +10,7 @@ import com.google.common.collect.PeekingIterator;
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongHeapPriorityQueue;
 
 import java.util.Iterator;
 import java.util.PriorityQueue;
@@ -22,15 +23,62 @@ import java.util.Queue;
  *
  */
 public class AggregateNodeIterator implements PeekingIterator<KmerNode> {
-	private final PeekingIterator<? extends KmerNode> underlying;
+	private final KmerNodeCursor underlying;
 	private Queue<ImmutableKmerNode> outputSortBuffer = Defaults.USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES ? new KmerNodeByFirstStartPriorityQueue<>(16) : new PriorityQueue<ImmutableKmerNode>(1024, KmerNodeUtil.ByFirstStart);
 	private Long2ObjectOpenHashMap<KmerNodeAggregator> byKmer = new Long2ObjectOpenHashMap<KmerNodeAggregator>();
 	private Queue<KmerNodeAggregatorSnapshot> byEnd = Defaults.USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES ? new KmerNodeAggregatorSnapshotByEndPriorityQueue(16) : new PriorityQueue<KmerNodeAggregatorSnapshot>(1024, BySnapshotEnd);
 	private int maxWidth = 0;
 	private int inputPosition = Integer.MIN_VALUE;
 	private long consumed = 0;
+	/**
+	 * Aggregates the given nodes.
+	 * Nodes are consumed through the {@link KmerNodeCursor} interface if supported by the iterator.
+	 */
 	public AggregateNodeIterator(Iterator<? extends KmerNode> it) {
-		this.underlying = Iterators.peekingIterator(it);
+		if (it instanceof KmerNodeCursor) {
+			this.underlying = (KmerNodeCursor)it;
+		} else {
+			this.underlying = new KmerNodeIteratorCursor(it);
+		}
+	}
+	private static class KmerNodeIteratorCursor implements KmerNodeCursor {
+		private final PeekingIterator<? extends KmerNode> it;
+		private KmerNode current;
+		public KmerNodeIteratorCursor(Iterator<? extends KmerNode> it) {
+			this.it = Iterators.peekingIterator(it);
+		}
+		@Override
+		public boolean hasNext() {
+			return it.hasNext();
+		}
+		@Override
+		public int peekFirstStart() {
+			return it.peek().firstStart();
+		}
+		@Override
+		public void moveNext() {
+			current = it.next();
+		}
+		@Override
+		public long currentFirstKmer() {
+			return current.firstKmer();
+		}
+		@Override
+		public int currentFirstStart() {
+			return current.firstStart();
+		}
+		@Override
+		public int currentFirstEnd() {
+			return current.firstEnd();
+		}
+		@Override
+		public int currentWeight() {
+			return current.weight();
+		}
+		@Override
+		public boolean currentIsReference() {
+			return current.isReference();
+		}
 	}
 	@Override
 	public boolean hasNext() {
@@ -51,7 +99,7 @@ public class AggregateNodeIterator implements PeekingIterator<KmerNode> {
 		// we can emit whenever there are no unprocessed or incomplete intervals
 		// before our current interval
 		while (underlying.hasNext() && (outputSortBuffer.isEmpty() || outputSortBuffer.peek().firstStart() >= earliestPossibleStartOfNodeBeingAggregated())) {
-			inputPosition = underlying.peek().firstStart(); 
+			inputPosition = underlying.peekFirstStart();
 			process();
 			flush();
 		}
@@ -68,17 +116,18 @@ public class AggregateNodeIterator implements PeekingIterator<KmerNode> {
 		return inputPosition - maxWidth;
 	}
 	private void process() {
-		while (underlying.hasNext() && underlying.peek().firstStart() <= inputPosition) {
-			KmerNode n = underlying.next();
+		while (underlying.hasNext() && underlying.peekFirstStart() <= inputPosition) {
+			underlying.moveNext();
 			consumed++;
-			assert(n.firstStart() == inputPosition || inputPosition == Integer.MAX_VALUE); // input should be sorted by start position
-			long kmer = n.firstKmer();
+			int start = underlying.currentFirstStart();
+			assert(start == inputPosition || inputPosition == Integer.MAX_VALUE); // input should be sorted by start position
+			long kmer = underlying.currentFirstKmer();
 			KmerNodeAggregator ag = byKmer.get(kmer);
 			if (ag == null) {
 				ag = new KmerNodeAggregator(kmer);
 				byKmer.put(kmer, ag);
 			}
-			ag.add(n);
+			ag.add(start, underlying.currentFirstEnd(), underlying.currentWeight(), underlying.currentIsReference());
 			byEnd.add(ag.new KmerNodeAggregatorSnapshot());
 		}
 	}
@@ -133,9 +182,10 @@ public class AggregateNodeIterator implements PeekingIterator<KmerNode> {
 		}
 		public boolean isEmpty() { return active.isEmpty(); }
 		/**
-		 * KmerNodes in the currently active aggregation interval
+		 * Nodes in the currently active aggregation interval.
+		 * Nodes are encoded by {@link #encodeActive(int, int, boolean)} so the queue is ordered by end position.
 		 */
-		private PriorityQueue<KmerNode> active = new PriorityQueue<KmerNode>(8, KmerNodeUtil.ByLastEnd);
+		private LongHeapPriorityQueue active = new LongHeapPriorityQueue(8);
 		/**
 		 * Start position of currently active aggregation interval
 		 */
@@ -156,36 +206,39 @@ public class AggregateNodeIterator implements PeekingIterator<KmerNode> {
 		private final long kmer;
 		public int end() {
 			if (active.isEmpty()) return Integer.MAX_VALUE;
-			return active.peek().firstEnd();
+			return activeEnd(active.firstLong());
 		}
 		public void add(KmerNode node) {
 			assert(node.firstKmer() == kmer);
-			assert(node.firstStart() >= start);
-			maxWidth = Math.max(maxWidth, node.width());
-			advanceTo(node.firstStart() - 1);
-			if (weight > 0 && start < node.firstStart()) {
-				outputSortBuffer.add(new ImmutableKmerNode(kmer, start, node.firstStart() - 1, referenceCount > 0, weight));
+			add(node.firstStart(), node.firstEnd(), node.weight(), node.isReference());
+		}
+		public void add(int nodeStart, int nodeEnd, int nodeWeight, boolean nodeIsReference) {
+			assert(nodeStart >= start);
+			assert(nodeWeight > 0);
+			maxWidth = Math.max(maxWidth, nodeEnd - nodeStart + 1);
+			advanceTo(nodeStart - 1);
+			if (weight > 0 && start < nodeStart) {
+				outputSortBuffer.add(new ImmutableKmerNode(kmer, start, nodeStart - 1, referenceCount > 0, weight));
 			}
-			start = node.firstStart();
-			if (node.isReference()) {
+			start = nodeStart;
+			if (nodeIsReference) {
 				referenceCount++;
 			}
-			weight += node.weight();
-			active.add(node);
+			weight += nodeWeight;
+			active.enqueue(encodeActive(nodeEnd, nodeWeight, nodeIsReference));
 		}
 		/**
 		 * Process up to and including the given position
 		 * @param position final processing position
 		 */
 		public void advanceTo(int position) {
-			while (!active.isEmpty() && active.peek().firstEnd() <= position) {
-				int end = active.peek().firstEnd();
+			while (!active.isEmpty() && activeEnd(active.firstLong()) <= position) {
+				int end = activeEnd(active.firstLong());
 				outputSortBuffer.add(new ImmutableKmerNode(kmer, start, end, referenceCount > 0, weight));
-				while (!active.isEmpty() && active.peek().firstEnd() == end) {
-					KmerNode endingHere = active.poll();
-					assert(endingHere.firstKmer() == kmer);
-					weight -= endingHere.weight();
-					if (endingHere.isReference()) {
+				while (!active.isEmpty() && activeEnd(active.firstLong()) == end) {
+					long endingHere = active.dequeueLong();
+					weight -= activeWeight(endingHere);
+					if (activeIsReference(endingHere)) {
 						referenceCount--;
 					}
 				}
@@ -197,6 +250,21 @@ public class AggregateNodeIterator implements PeekingIterator<KmerNode> {
 			return Longs.compare(kmer, right.kmer);
 		}
 	}
+	/**
+	 * Encodes an active node such that encoded nodes sort by end position
+	 */
+	private static long encodeActive(int end, int weight, boolean isReference) {
+		return ((long)end << 32) | ((((long)weight << 1) | (isReference ? 1 : 0)) & 0xFFFFFFFFL);
+	}
+	private static int activeEnd(long encoded) {
+		return (int)(encoded >> 32);
+	}
+	private static int activeWeight(long encoded) {
+		return (int)((encoded & 0xFFFFFFFFL) >>> 1);
+	}
+	private static boolean activeIsReference(long encoded) {
+		return (encoded & 1) != 0;
+	}
 	@Override
 	public void remove() {
 		throw new UnsupportedOperationException();
@@ -1,6 +1,7 @@
 package au.edu.wehi.idsv.debruijn.positional;
 
 import au.edu.wehi.idsv.Defaults;
+import au.edu.wehi.idsv.EvidenceId;
 import au.edu.wehi.idsv.HashedEvidenceIdentifierGenerator;
 import au.edu.wehi.idsv.util.IntervalUtil;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
@@ -8,8 +9,10 @@ import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
 import it.unimi.dsi.fastutil.longs.LongSortedSet;
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import org.apache.commons.lang3.ArrayUtils;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -20,71 +23,177 @@ import static au.edu.wehi.idsv.Defaults.SANITY_CHECK_EVIDENCE_TRACKER;
  * Tracks evidence provided to a given graph by wrapping a source iterator
  * and tracking evidence emitted by the iterator 
  * 
+ * Tracked evidence is interned into dense integer handles so evidence
+ * identifiers are only hashed when evidence is first tracked.
+ * 
  * @author Daniel Cameron
  *
  */
 public class EvidenceTracker {
 	//public static EvidenceTracker TEMP_HACK_CURRENT_TRACKER = null;
-	private final Long2ObjectOpenHashMap<LinkedList<KmerSupportNode>> lookup = new Long2ObjectOpenHashMap<>();
-	private final Object2ObjectOpenHashMap<String, List<KmerEvidence>> id = new Object2ObjectOpenHashMap<>();
+	private final Long2ObjectOpenHashMap<KmerSupportList> lookup = new Long2ObjectOpenHashMap<>();
+	/**
+	 * Evidence handle of each tracked evidence identifier
+	 */
+	private final Object2IntOpenHashMap<EvidenceId> handleById = new Object2IntOpenHashMap<>();
+	private final ObjectArrayList<EvidenceId> idByHandle = new ObjectArrayList<>();
+	/**
+	 * Tracked KmerEvidence of each evidence handle.
+	 * Read pairs can have two: one each of the anchored and unanchored reads
+	 */
+	private final ObjectArrayList<KmerEvidence[]> evidenceByHandle = new ObjectArrayList<>();
+	private final IntArrayList freeHandles = new IntArrayList();
 	private long evidenceTotal = 0;
 	/**
 	 * Tracks evidence emitted from the given iterator
 	 */
 	public EvidenceTracker() {
+		handleById.defaultReturnValue(-1);
+	}
+	/**
+	 * Support for a single kmer stored as parallel evidence, evidence handle and kmer offset arrays 
+	 */
+	private static class KmerSupportList {
+		private KmerEvidence[] evidence = new KmerEvidence[2];
+		private int[] handle = new int[2];
+		private int[] offset = new int[2];
+		private int size = 0;
+		public void add(KmerEvidence e, int evidenceHandle, int kmerOffset) {
+			if (size == evidence.length) {
+				evidence = Arrays.copyOf(evidence, 2 * size);
+				handle = Arrays.copyOf(handle, 2 * size);
+				offset = Arrays.copyOf(offset, 2 * size);
+			}
+			evidence[size] = e;
+			handle[size] = evidenceHandle;
+			offset[size] = kmerOffset;
+			size++;
+		}
+		public int lastStart(int i) {
+			return evidence[i].startPosition() + offset[i];
+		}
+		public int lastEnd(int i) {
+			return evidence[i].endPosition() + offset[i];
+		}
+		public boolean contains(KmerEvidence e, int kmerOffset) {
+			for (int i = 0; i < size; i++) {
+				if (offset[i] == kmerOffset && evidence[i].equals(e)) return true;
+			}
+			return false;
+		}
+		/**
+		 * Removes all entries flagged for removal, retaining the order of the remaining entries
+		 */
+		public void compact(BitSet removed) {
+			int newSize = 0;
+			for (int i = 0; i < size; i++) {
+				if (!removed.get(i)) {
+					evidence[newSize] = evidence[i];
+					handle[newSize] = handle[i];
+					offset[newSize] = offset[i];
+					newSize++;
+				}
+			}
+			Arrays.fill(evidence, newSize, size, null);
+			size = newSize;
+		}
 	}
 	/**
 	 * Tracks the given evidence
 	 * @param support
 	 */
 	public KmerSupportNode track(KmerSupportNode support) {
-		long kmer = support.lastKmer();
-		LinkedList<KmerSupportNode> list = lookup.get(kmer);
+		track(support.evidence(), support.offset());
+		return support;
+	}
+	/**
+	 * Tracks the kmer support of the given evidence at the given kmer offset
+	 * @param ke evidence
+	 * @param offset kmer offset
+	 */
+	public void track(KmerEvidence ke, int offset) {
+		long kmer = ke.kmer(offset);
+		KmerSupportList list = lookup.get(kmer);
 		if (list == null) {
-			list = new LinkedList<KmerSupportNode>();
+			list = new KmerSupportList();
 			lookup.put(kmer, list);
 		}
-		list.add(support);
-		KmerEvidence ke = support.evidence();
-		String evidenceId = ke.evidence().getEvidenceID();
-		List<KmerEvidence> idvalue = id.get(evidenceId);
-		if (idvalue == null) {
+		int handle = ke.trackerHandle();
+		if (handle < 0) {
+			handle = intern(ke);
+		}
+		list.add(ke, handle, offset);
+	}
+	/**
+	 * Assigns the given evidence to the handle of its evidence identifier
+	 * @return evidence handle
+	 */
+	private int intern(KmerEvidence ke) {
+		EvidenceId evidenceId = ke.evidence().getEvidenceIdentifier();
+		int handle = handleById.getInt(evidenceId);
+		if (handle < 0) {
 			evidenceTotal++;
-			idvalue = new ArrayList<>();
-			id.put(evidenceId, idvalue);
+			if (freeHandles.isEmpty()) {
+				handle = evidenceByHandle.size();
+				evidenceByHandle.add(null);
+				idByHandle.add(null);
+			} else {
+				handle = freeHandles.popInt();
+			}
+			evidenceByHandle.set(handle, new KmerEvidence[] { ke });
+			idByHandle.set(handle, evidenceId);
+			handleById.put(evidenceId, handle);
+		} else {
+			evidenceByHandle.set(handle, ArrayUtils.add(evidenceByHandle.get(handle), ke));
 		}
-		if (!idvalue.contains(ke)) {
-			idvalue.add(ke);
+		ke.trackerHandle(handle);
+		return handle;
+	}
+	/**
+	 * Releases the given handle
+	 * @return KmerEvidence tracked under the handle
+	 */
+	private KmerEvidence[] release(int handle) {
+		KmerEvidence[] tracked = evidenceByHandle.get(handle);
+		for (KmerEvidence e : tracked) {
+			e.trackerHandle(-1);
 		}
-		return support;
+		handleById.removeInt(idByHandle.get(handle));
+		evidenceByHandle.set(handle, null);
+		idByHandle.set(handle, null);
+		freeHandles.add(handle);
+		return tracked;
 	}
 	/**
 	 * Stops tracking all nodes associated with all of the given evidence
 	 * @param evidenceSet
 	 */
 	public Set<KmerEvidence> remove(Set<KmerEvidence> evidenceSet) {
-		Set<KmerEvidence> evidenceToRemove = new ObjectOpenHashSet<>();
+		Set<KmerEvidence> evidenceToRemove = new ReferenceOpenHashSet<>();
+		BitSet handlesToRemove = new BitSet();
 		LongSortedSet kmersInSet = new LongLinkedOpenHashSet();
 		for (KmerEvidence evidence : evidenceSet) {
-			addToRemoveList(evidence, evidenceToRemove, kmersInSet);
+			addToRemoveList(evidence, evidenceToRemove, handlesToRemove, kmersInSet);
 		}
 		for (long kmer : kmersInSet) {
-			remove(kmer, evidenceToRemove);
+			remove(kmer, handlesToRemove);
 		}
 		if (SANITY_CHECK_EVIDENCE_TRACKER) {
 			sanityCheck();
 		}
 		return evidenceToRemove;
 	}
-	private void addToRemoveList(KmerEvidence evidence, Set<KmerEvidence> removeSet, LongSortedSet kmersInSet) {
+	private void addToRemoveList(KmerEvidence evidence, Set<KmerEvidence> removeSet, BitSet handlesToRemove, LongSortedSet kmersInSet) {
 		// Need to remove all KmerEvidence associated with the evidence
 		// Read pairs can have two: one each of the anchored and unanchored reads
-		Collection<KmerEvidence> trackedKmerEvidenceForEvidence = id.remove(evidence.evidence().getEvidenceID());
-		if (trackedKmerEvidenceForEvidence == null) {
+		int handle = evidence.trackerHandle();
+		if (handle < 0) {
 			// Will happen when we attempt to remove the second KmerEvidence in a read pair
 			return;
 		}
-		removeSet.addAll(trackedKmerEvidenceForEvidence);
+		KmerEvidence[] trackedKmerEvidenceForEvidence = release(handle);
+		handlesToRemove.set(handle);
+		Collections.addAll(removeSet, trackedKmerEvidenceForEvidence);
 		for (KmerEvidence e : trackedKmerEvidenceForEvidence) {
 			for (int i = 0; i < e.length(); i++) {
 				// Note that since we're not checking for ambiguous bases, this kmer set will be larger than required.
@@ -99,17 +208,17 @@ public class EvidenceTracker {
 	 * Stops tracking all nodes associated with the given evidence 
 	 * @param evidence
 	 */
-	private void remove(long kmer, Collection<KmerEvidence> evidence) {
-		LinkedList<KmerSupportNode> list = lookup.get(kmer);
+	private void remove(long kmer, BitSet handles) {
+		KmerSupportList list = lookup.get(kmer);
 		if (list != null) {
-			ListIterator<KmerSupportNode> it = list.listIterator();
-			while (it.hasNext()) {
-				KmerSupportNode n = it.next();
-				if (evidence.contains(n.evidence())) {
-					it.remove();
+			BitSet removed = new BitSet(list.size);
+			for (int i = 0; i < list.size; i++) {
+				if (handles.get(list.handle[i])) {
+					removed.set(i);
 				}
 			}
-			if (list.size() == 0) {
+			list.compact(removed);
+			if (list.size == 0) {
 				lookup.remove(kmer);
 			}
 		}
@@ -131,7 +240,7 @@ public class EvidenceTracker {
 		return traverse(contig, true);
 	}
 	public Set<KmerEvidence> traverse(Collection<KmerPathSubnode> contig, boolean remove) {
-		Set<KmerEvidence> evidence = Defaults.USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES ? new ObjectOpenHashSet<>() : Collections.newSetFromMap(new IdentityHashMap<KmerEvidence, Boolean>());
+		Set<KmerEvidence> evidence = Defaults.USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES ? new ReferenceOpenHashSet<>() : Collections.newSetFromMap(new IdentityHashMap<KmerEvidence, Boolean>());
 		for (KmerPathSubnode sn : contig) {
 			int start = sn.firstStart();
 			int end = sn.firstEnd();
@@ -164,19 +273,20 @@ public class EvidenceTracker {
 	 * @param end
 	 */
 	private void toCollection(Collection<KmerEvidence> collection, long kmer, int start, int end, boolean remove) {
-		LinkedList<KmerSupportNode> list = lookup.get(kmer);
+		KmerSupportList list = lookup.get(kmer);
 		if (list != null) {
-			ListIterator<KmerSupportNode> it = list.listIterator();
-			while (it.hasNext()) {
-				KmerSupportNode n = it.next();
-				if (IntervalUtil.overlapsClosed(start, end, n.lastStart(), n.lastEnd())) {
+			BitSet removed = remove ? new BitSet(list.size) : null;
+			for (int i = 0; i < list.size; i++) {
+				if (IntervalUtil.overlapsClosed(start, end, list.lastStart(i), list.lastEnd(i))) {
 					if (remove) {
-						it.remove();
+						removed.set(i);
 					}
-					KmerEvidence e = n.evidence();
-					collection.add(e);
+					collection.add(list.evidence[i]);
 				}
 			}
+			if (remove) {
+				list.compact(removed);
+			}
 		}
 	}
 	public boolean matchesExpected(KmerPathSubnode pn) {
@@ -197,18 +307,18 @@ public class EvidenceTracker {
 	public boolean matchesExpected(int expectedWidthWeight, LongArrayList kmers, int start, int end) {
 		int evidenceWeight = 0;
 		for (long kmer : kmers) {
-			LinkedList<KmerSupportNode> list = lookup.get(kmer);
+			KmerSupportList list = lookup.get(kmer);
 			if (list != null) {
-				for (KmerSupportNode n : list) {
-					evidenceWeight += n.weight() * IntervalUtil.overlapsWidthClosed(start, end, n.lastStart(), n.lastEnd());
+				for (int i = 0; i < list.size; i++) {
+					evidenceWeight += list.evidence[i].weight(list.offset[i]) * IntervalUtil.overlapsWidthClosed(start, end, list.lastStart(i), list.lastEnd(i));
 				}
 			}
 		}
 		assert(evidenceWeight == expectedWidthWeight);
 		return evidenceWeight == expectedWidthWeight;
 	}
-	public boolean isTracked(String evidenceId) {
-		return id.keySet().contains(evidenceId);
+	public boolean isTracked(EvidenceId evidenceId) {
+		return handleById.containsKey(evidenceId);
 	}
 	public class PathNodeAssertionInterceptor implements Iterator<KmerPathNode> {
 		private final Iterator<KmerPathNode> underlying;
@@ -249,46 +359,49 @@ public class EvidenceTracker {
 		}
 	}
 	public Set<KmerEvidence> getTrackedEvidence() {
-		return id.values().stream().flatMap(x -> x.stream()).collect(Collectors.toSet());
+		Set<KmerEvidence> set = new ReferenceOpenHashSet<>();
+		for (KmerEvidence[] tracked : evidenceByHandle) {
+			if (tracked != null) {
+				Collections.addAll(set, tracked);
+			}
+		}
+		return set;
 	}
 	public long tracking_evidenceTotal() {
 		return evidenceTotal;
 	}
 	public long tracking_evidenceActive() {
-		return id.size();
+		return handleById.size();
 	}
 	public int tracking_kmerCount() {
 		return lookup.size();
 	}
 	public int tracking_supportNodeCount() {
-		return lookup.values().stream().mapToInt(x -> x.size()).sum();
+		return lookup.values().stream().mapToInt(x -> x.size).sum();
 	}
 	public int tracking_maxKmerSupportNodesCount() {
-		return lookup.values().stream().mapToInt(x -> x.size()).max().orElse(0);
+		return lookup.values().stream().mapToInt(x -> x.size).max().orElse(0);
 	}
 	public void sanityCheck() {
-		Set<String> lookupEid = lookup.values()
+		Set<KmerEvidence> kes = lookup.values()
 				.stream()
-				.flatMap(ll -> ll.stream())
-				.map(ksn -> ksn.evidence().evidence().getEvidenceID())
+				.flatMap(ll -> Arrays.stream(ll.evidence, 0, ll.size))
 				.collect(Collectors.toSet());
-		Set<String> idEid = id.keySet().stream().collect(Collectors.toSet());
-		Set<String> missingInLookup = new HashSet<>(idEid);
-		Set<String> missingInIds = new HashSet<>(lookupEid);
+		Set<EvidenceId> lookupEid = kes.stream()
+				.map(ke -> ke.evidence().getEvidenceIdentifier())
+				.collect(Collectors.toSet());
+		Set<EvidenceId> idEid = new HashSet<>(handleById.keySet());
+		Set<EvidenceId> missingInLookup = new HashSet<>(idEid);
+		Set<EvidenceId> missingInIds = new HashSet<>(lookupEid);
 		missingInIds.removeAll(idEid);
 		missingInLookup.removeAll(lookupEid);
-		Set<KmerEvidence> kes = lookup.values()
-				.stream()
-				.flatMap(ll -> ll.stream())
-				.map(ksn -> ksn.evidence())
-				.collect(Collectors.toSet());
 		List<KmerSupportNode> missingKsn = new ArrayList<>();
 		for (KmerEvidence ke : kes) {
 			for (int i = 0; i < ke.length(); i++) {
 				KmerSupportNode ksn = ke.node(i);
 				if (ksn != null) {
-					LinkedList<KmerSupportNode> list = lookup.get(ksn.firstKmer());
-					if (!list.contains(ksn)) {
+					KmerSupportList list = lookup.get(ksn.firstKmer());
+					if (list == null || !list.contains(ke, i)) {
 						missingKsn.add(ksn);
 					}
 				}
@@ -44,13 +44,25 @@ public class KmerEvidence extends PackedKmerList {
 	private final int start;
 	private final int end;
 	private final float score;
+	/**
+	 * Dense evidence handle assigned by the EvidenceTracker currently tracking this evidence 
+	 */
+	private int trackerHandle = -1;
 	public KmerSupportNode node(int offset) {
-		if (ambiguous != null && ambiguous.get(offset)) {
+		if (isAmbiguous(offset)) {
 			return null;
 		}
 		return new KmerSupportNode(this, offset);
 	}
+	/**
+	 * Determines whether the kmer at the given offset should be excluded from assembly
+	 */
+	public boolean isAmbiguous(int offset) {
+		return ambiguous != null && ambiguous.get(offset);
+	}
 	public float evidenceQuality() { return score; }
+	int trackerHandle() { return trackerHandle; }
+	void trackerHandle(int handle) { this.trackerHandle = handle; }
 	public DirectedEvidence evidence() { return evidence; }
 	/**
 	 * Start position of first kmer
@@ -349,12 +361,12 @@ public class KmerEvidence extends PackedKmerList {
 	}
 	@Override
 	public int hashCode() {
-		return evidence.getEvidenceID().hashCode() + start;
+		return evidence.getEvidenceIdentifier().hashCode() + start;
 	}
 	public boolean equals(KmerEvidence other) {
 		// Need start in the equality check since discordant read pairs have both reads added
 		return start == other.start &&
-				evidence.getEvidenceID().equals(other.evidence.getEvidenceID());
+				evidence.getEvidenceIdentifier().equals(other.evidence.getEvidenceIdentifier());
 	}
 	@Override
 	public boolean equals(Object obj) {
@@ -0,0 +1,26 @@
+package au.edu.wehi.idsv.debruijn.positional;
+
+/**
+ * Start position sorted sequence of kmer nodes in which
+ * the current node is exposed through primitive accessors
+ * instead of as a KmerNode object.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public interface KmerNodeCursor {
+	boolean hasNext();
+	/**
+	 * First start position of the next node
+	 */
+	int peekFirstStart();
+	/**
+	 * Advances to the next node
+	 */
+	void moveNext();
+	long currentFirstKmer();
+	int currentFirstStart();
+	int currentFirstEnd();
+	int currentWeight();
+	boolean currentIsReference();
+}
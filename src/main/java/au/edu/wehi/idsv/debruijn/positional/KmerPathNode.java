@@ -29,7 +29,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 	private static final List<KmerPathNode> EMPTY_EDGE_LIST = ImmutableList.of();
 	private static final Ordering<KmerNode> NEXT_SORT_ORDER = KmerNodeUtil.ByFirstStart;
 	private static final Ordering<KmerNode> PREV_SORT_ORDER = KmerNodeUtil.ByLastStart;
-	private LongArrayList kmers; // FIXME: replace with 2-bit encoding of kmer sequence
+	private PackedKmerPath kmers;
 	private LongArrayList additionalKmers = null;
 	private IntArrayList additionalKmerOffsets = null;
 	private IntArrayList weight;
@@ -58,18 +58,22 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 	public int lastEnd() { return endPosition(length() - 1); }
 	public int firstStart() { return start; }
 	public int firstEnd() { return end; }
-	public long kmer(int offset) { return kmers.getLong(offset); }
+	public long kmer(int offset) { return kmers.kmer(offset); }
 	public int startPosition(int offset) { return start + offset; }
 	public int endPosition(int offset) { return end + offset; }
 	public int weight() { return totalWeight; }
-	public LongArrayList pathKmers() { return kmers; }
+	/**
+	 * Kmers of this path
+	 * @return newly allocated list of the path kmers
+	 */
+	public LongArrayList pathKmers() { return kmers.toLongArrayList(); }
 	public IntArrayList pathWeights() { return weight; }
 	@Override
 	public int weight(int offset) {
 		return weight.getInt(offset);
 	}
 	public boolean isReference() { return reference; }
-	public int length() { return kmers.size(); }
+	public int length() { return kmers.length(); }
 	public int width() { return end - start + 1; }
 	/**
 	 * List of kmers that have been collapsed into this path
@@ -86,7 +90,14 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		return additionalKmerOffsets != null ? additionalKmerOffsets : EMPTY_OFFSET_LIST;
 	}
 	public KmerPathNode(long kmer, int start, int end, boolean reference, int weight) {
-		this.kmers = new LongArrayList(1);
+		this(0, kmer, start, end, reference, weight);
+	}
+	/**
+	 * Creates a new single kmer path node
+	 * @param k kmer size. The kmers of paths of known kmer size are stored in 2-bit packed form.
+	 */
+	public KmerPathNode(int k, long kmer, int start, int end, boolean reference, int weight) {
+		this.kmers = new PackedKmerPath(k);
 		this.kmers.add(kmer);
 		this.weight = new IntArrayList(1);
 		this.weight.add(weight);
@@ -95,19 +106,25 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		this.end = end;
 		this.reference = reference;
 	}
-	private KmerPathNode(LongArrayList kmer, int start, int end, boolean reference, int totalWeight, IntArrayList weight) {
-		this.kmers = kmer.clone();
-		this.weight = weight.clone();
+	/**
+	 * Creates a node that takes ownership of the given kmers and weights
+	 */
+	private KmerPathNode(PackedKmerPath kmer, int start, int end, boolean reference, int totalWeight, IntArrayList weight) {
+		this.kmers = kmer;
+		this.weight = weight;
 		this.totalWeight = totalWeight;
 		this.start = start;
 		this.end = end;
 		this.reference = reference;
 	}
-	private KmerPathNode(LongArrayList kmer, int start, int end, boolean reference, IntArrayList weight) {
+	private KmerPathNode(PackedKmerPath kmer, int start, int end, boolean reference, IntArrayList weight) {
 		this(kmer, start, end, reference, sumWeights(weight), weight);
 	}
 	public KmerPathNode(KmerNode node) {
-		this(node.lastKmer(), node.lastStart(), node.lastEnd(), node.isReference(), node.weight());
+		this(0, node);
+	}
+	public KmerPathNode(int k, KmerNode node) {
+		this(k, node.lastKmer(), node.lastStart(), node.lastEnd(), node.isReference(), node.weight());
 	}
 	private static int sumWeights(IntArrayList weight) {
 		int sum = 0;
@@ -187,7 +204,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 				&& length() == node.length()
 				&& reference == node.reference
 				&& totalWeight == node.totalWeight 
-				&& kmers.equals(node.kmers)
+				&& kmers.kmersEqual(node.kmers)
 				&& weight.equals(node.weight)
 				&& hasSameCollapsedKmers(node);
 	}
@@ -273,10 +290,10 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 			additionalKmerOffsets.addAll(toMerge.additionalKmerOffsets);
 		}
 		if (additionalKmers == null) {
-			additionalKmers = toMerge.kmers;
-			additionalKmerOffsets = new IntArrayList(toMerge.kmers.size());
+			additionalKmers = toMerge.kmers.toLongArrayList();
+			additionalKmerOffsets = new IntArrayList(toMerge.length());
 		} else {
-			additionalKmers.addAll(toMerge.kmers);
+			additionalKmers.addAll(toMerge.kmers.toLongArrayList());
 		}
 		for (int i = 0; i < toMerge.length(); i++) {
 			additionalKmerOffsets.add(i);
@@ -514,10 +531,10 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		assert(firstNodeLength > 0);
 		assert(firstNodeLength < length());
 		// copy our new kmers and weights
-		LongArrayList kmerSecond = new LongArrayList(kmers.subList(firstNodeLength, length()));
+		PackedKmerPath kmerSecond = kmers.subPath(firstNodeLength, length());
 		IntArrayList weightSecond = new IntArrayList(weight.subList(firstNodeLength, length()));
 		// let split own our current arrays
-		this.kmers.removeElements(firstNodeLength, this.kmers.size());
+		this.kmers.truncate(firstNodeLength);
 		this.weight.removeElements(firstNodeLength, this.weight.size());
 		KmerPathNode split = new KmerPathNode(
 				this.kmers,
@@ -587,7 +604,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 	public KmerPathNode splitAtStartPosition(int newStartPosition) {
 		assert(newStartPosition > start);
 		assert(newStartPosition <= end);
-		KmerPathNode split = new KmerPathNode(kmers, start, newStartPosition - 1, reference, totalWeight, weight);
+		KmerPathNode split = new KmerPathNode(kmers.clone(), start, newStartPosition - 1, reference, totalWeight, weight.clone());
 		this.start = newStartPosition;
 		if (nextList != null) {
 			ArrayList<KmerPathNode> newNextThis = new ArrayList<KmerPathNode>(nextList.size());
@@ -665,8 +682,8 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		result = prime * result + end;
 		result = prime * result + totalWeight;
 		if (kmers != null) {
-			result = prime * result + Long.hashCode(kmers.getLong(0));
-			result = prime * result + Long.hashCode(kmers.getLong(kmers.size() - 1));
+			result = prime * result + Long.hashCode(kmers.firstKmer());
+			result = prime * result + Long.hashCode(kmers.lastKmer());
 		}
 		// incorporating these adds hash cost whilst giving minimal improvement
 		// to hash collision rate
@@ -689,7 +706,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		if (kmers == null) {
 			if (other.kmers != null)
 				return false;
-		} else if (!kmers.equals(other.kmers))
+		} else if (other.kmers == null || !kmers.kmersEqual(other.kmers))
 			return false;
 		if (reference != other.reference)
 			return false;
@@ -759,7 +776,11 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		}
 		totalWeight -= weight.getInt(offset);
 		weight.removeInt(offset);
-		kmers.removeLong(offset);
+		if (offset == 0) {
+			kmers.removeFirst();
+		} else {
+			kmers.removeLast();
+		}
 		if (additionalKmers != null) {
 			if (length() > 0) {
 				int offsetShift = offset == 0 ? 1 : 0;
@@ -1074,7 +1095,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		assert(length() <= maxPathLength);
 		assert(end - start <= maxSupportWidth);
 		for (int i = 1; i < length(); i++) {
-			assert(KmerEncodingHelper.isNext(k, kmers.getLong(i - 1), kmers.getLong(i)));
+			assert(KmerEncodingHelper.isNext(k, kmers.kmer(i - 1), kmers.kmer(i)));
 		}
 		assert(sumWeights(weight) == totalWeight);
 		if (nextList != null) {
@@ -1093,7 +1114,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		assert(isValid());
 		assert(start <= end);
 		assert(totalWeight > 0);
-		assert(kmers.size() == length());
+		assert(kmers.length() == length());
 		assert(weight.size() == length());
 		assert(sumWeights(weight) == totalWeight);
 		assert(sanityCheckEdges(this, true));
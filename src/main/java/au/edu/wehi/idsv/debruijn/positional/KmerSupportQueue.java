@@ -0,0 +1,215 @@
+package au.edu.wehi.idsv.debruijn.positional;
+
+import java.util.Arrays;
+
+/**
+ * Start position ordered queue of kmer support.
+ *
+ * Kmer support is stored in parallel primitive arrays instead of as
+ * a KmerSupportNode per kmer. Storage slots and evidence indexes are
+ * recycled once the kmer support has been removed from the queue
+ * so a queue in steady state performs no allocation.
+ *
+ * Only the kmer support at the head of the queue is accessible. The
+ * order of kmer support with the same start position is undefined.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class KmerSupportQueue {
+	private long[] kmer;
+	private int[] start;
+	private int[] end;
+	private int[] weight;
+	private boolean[] reference;
+	private int[] evidenceIndex;
+	private int[] offset;
+	/**
+	 * Unused storage slots
+	 */
+	private int[] freeSlot;
+	private int freeSlotCount;
+	/**
+	 * Binary min-heap of storage slots keyed by start position
+	 */
+	private int[] heap;
+	private int size = 0;
+	/**
+	 * Evidence referenced by the kmer support in the queue
+	 */
+	private KmerEvidence[] evidence;
+	/**
+	 * Number of kmer support entries in the queue for each evidence
+	 */
+	private int[] evidenceSupportCount;
+	private int[] freeEvidence;
+	private int freeEvidenceCount;
+	public KmerSupportQueue(int initialCapacity) {
+		initialCapacity = Math.max(1, initialCapacity);
+		kmer = new long[initialCapacity];
+		start = new int[initialCapacity];
+		end = new int[initialCapacity];
+		weight = new int[initialCapacity];
+		reference = new boolean[initialCapacity];
+		evidenceIndex = new int[initialCapacity];
+		offset = new int[initialCapacity];
+		heap = new int[initialCapacity];
+		freeSlot = new int[initialCapacity];
+		for (int i = 0; i < initialCapacity; i++) {
+			freeSlot[i] = initialCapacity - i - 1;
+		}
+		freeSlotCount = initialCapacity;
+		evidence = new KmerEvidence[initialCapacity];
+		evidenceSupportCount = new int[initialCapacity];
+		freeEvidence = new int[initialCapacity];
+		for (int i = 0; i < initialCapacity; i++) {
+			freeEvidence[i] = initialCapacity - i - 1;
+		}
+		freeEvidenceCount = initialCapacity;
+	}
+	/**
+	 * Registers evidence that kmer support will be added for.
+	 * At least one kmer support must be added for the returned index
+	 * as the index is released only when the last kmer support of the evidence
+	 * is removed from the queue.
+	 * @param e evidence
+	 * @return evidence index
+	 */
+	public int addEvidence(KmerEvidence e) {
+		if (freeEvidenceCount == 0) {
+			int oldCapacity = evidence.length;
+			int newCapacity = 2 * oldCapacity;
+			evidence = Arrays.copyOf(evidence, newCapacity);
+			evidenceSupportCount = Arrays.copyOf(evidenceSupportCount, newCapacity);
+			freeEvidence = Arrays.copyOf(freeEvidence, newCapacity);
+			for (int i = oldCapacity; i < newCapacity; i++) {
+				freeEvidence[freeEvidenceCount++] = i;
+			}
+		}
+		int index = freeEvidence[--freeEvidenceCount];
+		evidence[index] = e;
+		evidenceSupportCount[index] = 0;
+		return index;
+	}
+	/**
+	 * Adds kmer support to the queue
+	 * @param evidenceIndex index of the evidence as returned by {@link #addEvidence(KmerEvidence)}
+	 * @param offset kmer offset within the evidence
+	 * @param kmer kmer
+	 * @param start first start position of the kmer
+	 * @param end first end position of the kmer
+	 * @param weight kmer weight
+	 * @param reference kmer is a reference kmer
+	 */
+	public void add(int evidenceIndex, int offset, long kmer, int start, int end, int weight, boolean reference) {
+		assert(this.evidence[evidenceIndex] != null);
+		if (freeSlotCount == 0) {
+			grow();
+		}
+		int slot = freeSlot[--freeSlotCount];
+		this.kmer[slot] = kmer;
+		this.start[slot] = start;
+		this.end[slot] = end;
+		this.weight[slot] = weight;
+		this.reference[slot] = reference;
+		this.evidenceIndex[slot] = evidenceIndex;
+		this.offset[slot] = offset;
+		this.evidenceSupportCount[evidenceIndex]++;
+		heap[size] = slot;
+		siftUp(size++);
+	}
+	private void grow() {
+		int oldCapacity = kmer.length;
+		int newCapacity = 2 * oldCapacity;
+		kmer = Arrays.copyOf(kmer, newCapacity);
+		start = Arrays.copyOf(start, newCapacity);
+		end = Arrays.copyOf(end, newCapacity);
+		weight = Arrays.copyOf(weight, newCapacity);
+		reference = Arrays.copyOf(reference, newCapacity);
+		evidenceIndex = Arrays.copyOf(evidenceIndex, newCapacity);
+		offset = Arrays.copyOf(offset, newCapacity);
+		heap = Arrays.copyOf(heap, newCapacity);
+		freeSlot = Arrays.copyOf(freeSlot, newCapacity);
+		for (int i = newCapacity - 1; i >= oldCapacity; i--) {
+			freeSlot[freeSlotCount++] = i;
+		}
+	}
+	/**
+	 * Removes the kmer support at the head of the queue
+	 */
+	public void pop() {
+		if (size == 0) throw new IllegalStateException("Queue is empty");
+		int slot = heap[0];
+		int ei = evidenceIndex[slot];
+		if (--evidenceSupportCount[ei] == 0) {
+			evidence[ei] = null;
+			freeEvidence[freeEvidenceCount++] = ei;
+		}
+		freeSlot[freeSlotCount++] = slot;
+		heap[0] = heap[--size];
+		if (size > 0) {
+			siftDown(0);
+		}
+	}
+	private void siftUp(int i) {
+		int slot = heap[i];
+		int position = start[slot];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			int parentSlot = heap[parent];
+			if (start[parentSlot] <= position) break;
+			heap[i] = parentSlot;
+			i = parent;
+		}
+		heap[i] = slot;
+	}
+	private void siftDown(int i) {
+		int slot = heap[i];
+		int position = start[slot];
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			int childSlot = heap[child];
+			int right = child + 1;
+			if (right < size && start[heap[right]] < start[childSlot]) {
+				child = right;
+				childSlot = heap[child];
+			}
+			if (position <= start[childSlot]) break;
+			heap[i] = childSlot;
+			i = child;
+		}
+		heap[i] = slot;
+	}
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	public int size() {
+		return size;
+	}
+	public long peekKmer() {
+		return kmer[headSlot()];
+	}
+	public int peekStart() {
+		return start[headSlot()];
+	}
+	public int peekEnd() {
+		return end[headSlot()];
+	}
+	public int peekWeight() {
+		return weight[headSlot()];
+	}
+	public boolean peekIsReference() {
+		return reference[headSlot()];
+	}
+	public KmerEvidence peekEvidence() {
+		return evidence[evidenceIndex[headSlot()]];
+	}
+	public int peekOffset() {
+		return offset[headSlot()];
+	}
+	private int headSlot() {
+		if (size == 0) throw new IllegalStateException("Queue is empty");
+		return heap[0];
+	}
+}
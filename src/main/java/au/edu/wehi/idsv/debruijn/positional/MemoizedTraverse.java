@@ -78,7 +78,7 @@ public class MemoizedTraverse {
 		// Individually remove any descendant of the children
 		// (bulk KmerPathNode-based removal code requires better data structure)
 		int frontierResetCount = 0;
-		Stack<TraversalNode> callStack = new Stack<>();
+		ArrayDeque<TraversalNode> callStack = new ArrayDeque<>();
 		for (TraversalNode childtn : childPaths) {
 			frontierResetCount += unmemoize(childtn, callStack, true);
 		}
@@ -92,6 +92,9 @@ public class MemoizedTraverse {
 		stats.pathsRemoved = tns.size();
 		stats.descendentPathsRemoved = descendentCount;
 		stats.pathsReset = frontierResetCount;
+		stats.totalRemovals++;
+		stats.totalDescendentPathsRemoved += descendentCount;
+		stats.totalPathsReset += frontierResetCount;
 		if (Defaults.SANITY_CHECK_MEMOIZATION) {
 			assert(sanityCheckAreRemoved(nodes));
 			assert(sanityCheck());
@@ -134,8 +137,7 @@ public class MemoizedTraverse {
 		assert(node.isValid());
 		AbstractInt2ObjectSortedMap<TraversalNode> cache = memoized.get(node);
 		if (cache == null) return;
-		Stack<TraversalNode> callStack = new Stack<TraversalNode>();
-		callStack.addAll(cache.values());
+		ArrayDeque<TraversalNode> callStack = new ArrayDeque<TraversalNode>(cache.values());
 		while (!callStack.isEmpty()) {
 			unmemoize(callStack.pop(), callStack, false);
 		}
@@ -155,7 +157,7 @@ public class MemoizedTraverse {
 	 * the memoization and frontier data structures
 	 * @return frontier reset count
 	 */
-	private int unmemoize(TraversalNode tn, Stack<TraversalNode> callStack, boolean alreadyRemoved) {
+	private int unmemoize(TraversalNode tn, ArrayDeque<TraversalNode> callStack, boolean alreadyRemoved) {
 		if (!alreadyRemoved) {
 			if (memoized.get(tn.node.node()).remove(tn.node.firstEnd()) == null) {
 				// already processed this TraversalNode
@@ -203,7 +205,8 @@ public class MemoizedTraverse {
 	 * This can be done by adding all alternate paths overlapping
 	 * the removed path to the frontier.
 	 * 
-	 * @param tn
+	 * @param tn removed path
+	 * @return number of paths added to the frontier
 	 */
 	private int addAlternatePathsToFrontier(TraversalNode tn) {
 		int count = 0;
@@ -218,6 +221,7 @@ public class MemoizedTraverse {
 							break;
 						}
 						addFrontier(altParent);
+						count++;
 					}
 				}
 			}
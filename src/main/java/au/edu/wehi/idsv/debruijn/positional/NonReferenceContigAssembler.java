@@ -4,6 +4,7 @@ import au.edu.wehi.idsv.*;
 import au.edu.wehi.idsv.bed.IntervalBed;
 import au.edu.wehi.idsv.debruijn.DeBruijnGraphBase;
 import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
+import au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures.KmerNodeByFirstStartKmerNavigableSet;
 import au.edu.wehi.idsv.graph.ScalingHelper;
 import au.edu.wehi.idsv.model.Models;
 import au.edu.wehi.idsv.util.IntervalUtil;
@@ -20,6 +21,7 @@ import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.longs.*;
 import it.unimi.dsi.fastutil.objects.ObjectOpenCustomHashSet;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.io.File;
@@ -72,8 +74,8 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 	// TODO: OPT: don't use ArrayList<>() as child structure
 	// sort by end position so we can do fast overlap calculations
 	private Long2ObjectMap<Collection<KmerPathNodeKmerNode>> graphByKmerNode = new Long2ObjectOpenHashMap<Collection<KmerPathNodeKmerNode>>();
-	private TreeSet<KmerPathNode> graphByPosition = new TreeSet<KmerPathNode>(KmerNodeUtil.ByFirstStartKmer); // TODO: OPT: replace data structure
-	private SortedSet<KmerPathNode> nonReferenceGraphByPosition = new TreeSet<KmerPathNode>(KmerNodeUtil.ByFirstStartKmer); // TODO: OPT: replace data structure
+	private NavigableSet<KmerPathNode> graphByPosition = Defaults.USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES ? new KmerNodeByFirstStartKmerNavigableSet<>(16) : new TreeSet<KmerPathNode>(KmerNodeUtil.ByFirstStartKmer);
+	private NavigableSet<KmerPathNode> nonReferenceGraphByPosition = Defaults.USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES ? new KmerNodeByFirstStartKmerNavigableSet<>(16) : new TreeSet<KmerPathNode>(KmerNodeUtil.ByFirstStartKmer);
 	private final EvidenceTracker evidenceTracker;
 	private final AssemblyEvidenceSource aes;
 	private final AssemblyIdGenerator assemblyNameGenerator;
@@ -778,8 +780,14 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 			bestContigCaller = null;
 		}
 		if (bestContigCaller != null) {
+			long startTime = System.nanoTime();
 			// removes all KmerPathNodes that need mutation from the memoization 
 			bestContigCaller.remove(toRemove.keySet());
+			if (getTelemetry() != null) {
+				int removalStart = toRemove.keySet().stream().mapToInt(KmerPathNode::firstStart).min().orElse(0);
+				int removalEnd = toRemove.keySet().stream().mapToInt(KmerPathNode::lastEnd).max().orElse(0);
+				getTelemetry().memoizationRemoval(referenceIndex, removalStart, removalEnd, bestContigCaller.tracking_lastRemoval(), System.nanoTime() - startTime);
+			}
 		}
 		Set<KmerPathNode> simplifyCandidates = null;
 		if (SIMPLIFY_AFTER_REMOVAL) {
@@ -962,7 +970,7 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 	 * This is used for recovery after an exception
 	 */
 	public Set<KmerEvidence> getEvidenceUntrackedButNotYetReturnedByIterator() {
-		Set<KmerEvidence> set = new HashSet<>();
+		Set<KmerEvidence> set = new ReferenceOpenHashSet<>();
 		if (untrackedEvidenceStillBeingProcessed != null) {
 			set.addAll(untrackedEvidenceStillBeingProcessed);
 		}
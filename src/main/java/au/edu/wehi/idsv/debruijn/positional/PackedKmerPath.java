@@ -0,0 +1,279 @@
+package au.edu.wehi.idsv.debruijn.positional;
+
+import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.util.Arrays;
+
+/**
+ * Sequence of kmers forming a path through a de Bruijn graph.
+ *
+ * Successive kmers of a path overlap by k-1 bases so, when the kmer size is known,
+ * the path is stored as a 2-bit packed base sequence and kmers are extracted on demand.
+ * Bases are packed in the same order as PackedSequence: the first base is
+ * stored in the most significant bits of the first word.
+ *
+ * Paths of unknown kmer size, or containing consecutive kmers that do not
+ * overlap, fall back to storing every kmer explicitly.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class PackedKmerPath {
+	private static final int BITS_PER_BASE = 2;
+	private static final int BASES_PER_WORD = Long.SIZE / BITS_PER_BASE;
+	private static final int ARRAY_SHIFT = Long.SIZE - 1 - Long.numberOfLeadingZeros(BASES_PER_WORD);
+	private static final int ARRAY_OFFSET_MASK = (1 << ARRAY_SHIFT) - 1;
+	private static final long[] EMPTY = new long[0];
+	/**
+	 * Kmer size. Zero if unknown.
+	 */
+	private final int k;
+	private long[] packed = EMPTY;
+	/**
+	 * Offset of the first base of the path in the packed array.
+	 * Non-zero only after the initial kmers of the path have been removed.
+	 */
+	private int baseOffset = 0;
+	private int baseCount = 0;
+	/**
+	 * Explicit kmer storage. null if the path is stored packed.
+	 */
+	private LongArrayList explicit;
+	/**
+	 * Creates a new empty path
+	 * @param k kmer size. Paths of unknown kmer size store each kmer explicitly.
+	 */
+	public PackedKmerPath(int k) {
+		this.k = k;
+		if (k <= 0 || k > KmerEncodingHelper.MAX_K) {
+			explicit = new LongArrayList(1);
+		}
+	}
+	private PackedKmerPath(PackedKmerPath path, int offset, int length) {
+		this.k = path.k;
+		if (path.explicit != null) {
+			this.explicit = new LongArrayList(path.explicit.subList(offset, offset + length));
+		} else if (length > 0) {
+			appendBases(path, path.baseOffset + offset, length + k - 1);
+		}
+	}
+	public int length() {
+		if (explicit != null) return explicit.size();
+		return baseCount == 0 ? 0 : baseCount - k + 1;
+	}
+	public boolean isPacked() {
+		return explicit == null;
+	}
+	public long kmer(int offset) {
+		if (explicit != null) return explicit.getLong(offset);
+		if (offset < 0 || offset >= length()) throw new IndexOutOfBoundsException();
+		return getBases(baseOffset + offset, k);
+	}
+	public long firstKmer() {
+		return kmer(0);
+	}
+	public long lastKmer() {
+		return kmer(length() - 1);
+	}
+	/**
+	 * Adds the given kmer to the end of the path
+	 */
+	public void add(long kmer) {
+		if (explicit != null) {
+			explicit.add(kmer);
+		} else if (baseCount == 0) {
+			if (k < KmerEncodingHelper.MAX_K && (kmer >>> (BITS_PER_BASE * k)) != 0) {
+				// not a valid kmer of our size
+				unpack();
+				explicit.add(kmer);
+				return;
+			}
+			ensureCapacity(baseOffset + k);
+			setBases(baseOffset, k, kmer);
+			baseCount = k;
+		} else if (KmerEncodingHelper.isNext(k, lastKmer(), kmer)) {
+			ensureCapacity(baseOffset + baseCount + 1);
+			setBases(baseOffset + baseCount, 1, kmer);
+			baseCount++;
+		} else {
+			unpack();
+			explicit.add(kmer);
+		}
+	}
+	/**
+	 * Adds the kmers of the given path to the end of this path
+	 */
+	public void addAll(PackedKmerPath path) {
+		int length = path.length();
+		if (length == 0) return;
+		if (explicit == null && path.explicit == null && k == path.k) {
+			if (baseCount == 0) {
+				appendBases(path, path.baseOffset, path.baseCount);
+				return;
+			}
+			if (KmerEncodingHelper.isNext(k, lastKmer(), path.firstKmer())) {
+				appendBases(path, path.baseOffset + k - 1, length);
+				return;
+			}
+		}
+		if (explicit == null && baseCount > 0) {
+			unpack();
+		}
+		if (explicit != null) {
+			explicit.ensureCapacity(explicit.size() + length);
+		}
+		for (int i = 0; i < length; i++) {
+			add(path.kmer(i));
+		}
+	}
+	public void removeFirst() {
+		if (explicit != null) {
+			explicit.removeLong(0);
+		} else {
+			if (length() == 0) throw new IndexOutOfBoundsException();
+			baseOffset++;
+			baseCount--;
+			resetIfEmpty();
+		}
+	}
+	public void removeLast() {
+		if (explicit != null) {
+			explicit.removeLong(explicit.size() - 1);
+		} else {
+			if (length() == 0) throw new IndexOutOfBoundsException();
+			baseCount--;
+			resetIfEmpty();
+		}
+	}
+	/**
+	 * Removes all kmers after the given length
+	 * @param length number of kmers to retain
+	 */
+	public void truncate(int length) {
+		if (length >= length()) return;
+		if (explicit != null) {
+			explicit.removeElements(length, explicit.size());
+		} else {
+			baseCount = length + k - 1;
+			resetIfEmpty();
+		}
+	}
+	/**
+	 * Copy of the kmers in the given range
+	 * @param from offset of first kmer (inclusive)
+	 * @param to offset of last kmer (exclusive)
+	 */
+	public PackedKmerPath subPath(int from, int to) {
+		if (from < 0 || to > length() || from > to) throw new IndexOutOfBoundsException();
+		return new PackedKmerPath(this, from, to - from);
+	}
+	@Override
+	public PackedKmerPath clone() {
+		return subPath(0, length());
+	}
+	/**
+	 * Kmers of the path
+	 * @return newly allocated list of the path kmers
+	 */
+	public LongArrayList toLongArrayList() {
+		if (explicit != null) return explicit.clone();
+		int length = length();
+		LongArrayList result = new LongArrayList(length);
+		for (int i = 0; i < length; i++) {
+			result.add(kmer(i));
+		}
+		return result;
+	}
+	/**
+	 * Determines whether the given path contains the same kmers as this path
+	 */
+	public boolean kmersEqual(PackedKmerPath path) {
+		int length = length();
+		if (length != path.length()) return false;
+		if (explicit == null && path.explicit == null && k == path.k) {
+			// compare whole words of bases at a time
+			int bases = baseCount;
+			for (int i = 0; i < bases; i += BASES_PER_WORD) {
+				int n = Math.min(BASES_PER_WORD, bases - i);
+				if (getBases(baseOffset + i, n) != path.getBases(path.baseOffset + i, n)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		for (int i = 0; i < length; i++) {
+			if (kmer(i) != path.kmer(i)) return false;
+		}
+		return true;
+	}
+	private void resetIfEmpty() {
+		if (baseCount < k) {
+			baseOffset = 0;
+			baseCount = 0;
+		}
+	}
+	/**
+	 * Switches from packed to explicit kmer storage
+	 */
+	private void unpack() {
+		explicit = toLongArrayList();
+		packed = EMPTY;
+		baseOffset = 0;
+		baseCount = 0;
+	}
+	private void appendBases(PackedKmerPath source, int sourceOffset, int count) {
+		ensureCapacity(baseOffset + baseCount + count);
+		for (int i = 0; i < count; i += BASES_PER_WORD) {
+			int n = Math.min(BASES_PER_WORD, count - i);
+			setBases(baseOffset + baseCount + i, n, source.getBases(sourceOffset + i, n));
+		}
+		baseCount += count;
+	}
+	private void ensureCapacity(int bases) {
+		int words = (bases + BASES_PER_WORD - 1) >> ARRAY_SHIFT;
+		if (words > packed.length) {
+			packed = Arrays.copyOf(packed, Math.max(words, packed.length + (packed.length >> 1)));
+		}
+	}
+	/**
+	 * Writes the given bases
+	 * @param offset offset of first base to write
+	 * @param count number of bases to write
+	 * @param bases 2-bit encoded bases with the last base in the least significant bits
+	 */
+	private void setBases(int offset, int count, long bases) {
+		for (int i = count - 1; i >= 0; i--) {
+			int position = offset + i;
+			int wordIndex = position >> ARRAY_SHIFT;
+			int shift = BITS_PER_BASE * (BASES_PER_WORD - 1 - (position & ARRAY_OFFSET_MASK));
+			packed[wordIndex] = (packed[wordIndex] & ~(3L << shift)) | ((bases & 3L) << shift);
+			bases >>>= BITS_PER_BASE;
+		}
+	}
+	/**
+	 * Reads the given bases
+	 * @param offset offset of first base
+	 * @param count number of bases to read. Must be at least one and at most 32.
+	 * @return 2-bit encoded bases with the last base in the least significant bits
+	 */
+	private long getBases(int offset, int count) {
+		int wordIndex = offset >> ARRAY_SHIFT;
+		int basesToSkipInWord = offset & ARRAY_OFFSET_MASK;
+		int basesRemaining = BASES_PER_WORD - basesToSkipInWord;
+		if (count <= basesRemaining) {
+			return getWordBases(wordIndex, basesToSkipInWord, basesRemaining - count);
+		}
+		int countInNextWord = count - basesRemaining;
+		long bases = getWordBases(wordIndex, basesToSkipInWord, 0);
+		bases <<= BITS_PER_BASE * countInNextWord;
+		bases |= getWordBases(wordIndex + 1, 0, BASES_PER_WORD - countInNextWord);
+		return bases;
+	}
+	private long getWordBases(int wordIndex, int highBaseIgnoreCount, int lowBaseIgnoreCount) {
+		long word = packed[wordIndex];
+		word <<= BITS_PER_BASE * highBaseIgnoreCount;
+		word >>>= BITS_PER_BASE * (highBaseIgnoreCount + lowBaseIgnoreCount);
+		return word;
+	}
+}
@@ -1,27 +1,33 @@
 package au.edu.wehi.idsv.debruijn.positional;
 
-import au.edu.wehi.idsv.Defaults;
 import au.edu.wehi.idsv.DirectedEvidence;
 import au.edu.wehi.idsv.NonReferenceReadPair;
 import au.edu.wehi.idsv.SingleReadEvidence;
-import au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures.KmerNodeByFirstStartPriorityQueue;
 import au.edu.wehi.idsv.util.MessageThrottler;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.PeekingIterator;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.util.Log;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 
-import java.util.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import static au.edu.wehi.idsv.Defaults.SANITY_CHECK_EVIDENCE_TRACKER;
 
 /**
  * Transforms a breakend start DirectedEvidence iterator
  * into a start position sorted kmer support iterator
+ * 
+ * Kmer support is buffered in primitive arrays and KmerSupportNode
+ * objects are only created when iterating through the PeekingIterator
+ * interface. Consumers such as {@link AggregateNodeIterator} should use
+ * the {@link KmerNodeCursor} interface to avoid per-kmer allocation.
+ * 
  * @author Daniel Cameron
  *
  */
-public class SupportNodeIterator implements PeekingIterator<KmerSupportNode> {
+public class SupportNodeIterator implements PeekingIterator<KmerSupportNode>, KmerNodeCursor {
 	private static final Log log = Log.getInstance(SupportNodeIterator.class);
 	private final PeekingIterator<DirectedEvidence> underlying;
 	private final boolean includePairAnchors;
@@ -37,13 +43,23 @@ public class SupportNodeIterator implements PeekingIterator<KmerSupportNode> {
 	 */
 	private final int emitOffset;
 	private final int maxSupportStartPositionOffset;
-	private final Queue<KmerSupportNode> buffer = Defaults.USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES ? new KmerNodeByFirstStartPriorityQueue<>(16) : new PriorityQueue<>(1024, KmerNodeUtil.ByFirstStart);
+	private final KmerSupportQueue buffer = new KmerSupportQueue(1024);
+	/**
+	 * Offsets of the kmers of the evidence currently being processed
+	 */
+	private final IntArrayList supportOffsets = new IntArrayList();
+	private final IntArrayList anchorSupportOffsets = new IntArrayList();
 	private final EvidenceTracker tracker;
 	private final int disallowMismatch;
 	private int inputPosition = Integer.MIN_VALUE;
 	private int firstReferenceIndex;
 	private int lastPosition = Integer.MIN_VALUE;
 	private long consumed = 0;
+	private long currentKmer;
+	private int currentStart;
+	private int currentEnd;
+	private int currentWeight;
+	private boolean currentIsReference;
 	/**
 	 * Iterator that converts evidence to kmer nodes 
 	 * @param k kmer
@@ -70,7 +86,7 @@ public class SupportNodeIterator implements PeekingIterator<KmerSupportNode> {
 		this.tracker = tracker;
 	}
 	private void process(DirectedEvidence de) {
-		if (tracker != null && tracker.isTracked(de.getEvidenceID())) {
+		if (tracker != null && tracker.isTracked(de.getEvidenceIdentifier())) {
 			if (!MessageThrottler.Current.shouldSupress(log, "assembly duplicated reads")) {
 				log.warn(String.format("Attempting to add %s (from %s) to assembly when already present. "
 						+ "Possible causes are: duplicate read name, alignment with multi-mapping aligner which writes read alignments as distinct pairs. ",
@@ -105,15 +121,8 @@ public class SupportNodeIterator implements PeekingIterator<KmerSupportNode> {
 		if (e == null) {
 			return;
 		}
-		List<KmerSupportNode> supportNodes = new ArrayList<KmerSupportNode>(e.length() + (e2 == null ? 0 : e2.length()));
-		boolean hasNonReference = addSupport(supportNodes, de, e);
-		addSupport(supportNodes, de, e2);
-		if (Defaults.SANITY_CHECK_ASSEMBLY_GRAPH && supportNodes.size() > 0) {
-			int start = supportNodes.stream().mapToInt(n -> n.firstStart()).min().orElse(0);
-			int end = supportNodes.stream().mapToInt(n -> n.lastEnd()).max().orElse(Integer.MAX_VALUE);
-			if (end - start > maxSupportStartPositionOffset) {
-			}
-		}
+		boolean hasNonReference = addSupport(supportOffsets, de, e);
+		addSupport(anchorSupportOffsets, de, e2);
 		if (hasNonReference) {
 			// only add evidence that provides support for an SV
 			// If we have no non-reference kmers then we might
@@ -121,12 +130,8 @@ public class SupportNodeIterator implements PeekingIterator<KmerSupportNode> {
 			// never remove it from the graph
 			// SC or RPs with no non-reference kmers can occur when
 			// an ambiguous base case exist in the soft clip/mate  
-			buffer.addAll(supportNodes);
-			if (tracker != null) {
-				for (KmerSupportNode sn : supportNodes) {
-					tracker.track(sn);
-				}
-			}
+			enqueue(e, supportOffsets);
+			enqueue(e2, anchorSupportOffsets);
 		} else {
 			log.debug("Ref anchor");
 		}
@@ -134,15 +139,32 @@ public class SupportNodeIterator implements PeekingIterator<KmerSupportNode> {
 			tracker.sanityCheck();
 		}
 	}
-	private boolean addSupport(List<KmerSupportNode> supportNodes, DirectedEvidence de, KmerEvidence e) {
+	private void enqueue(KmerEvidence e, IntArrayList offsets) {
+		if (offsets.isEmpty()) return;
+		int evidenceIndex = buffer.addEvidence(e);
+		for (int j = 0; j < offsets.size(); j++) {
+			int i = offsets.getInt(j);
+			buffer.add(evidenceIndex, i, e.kmer(i), e.startPosition() + i, e.endPosition() + i, e.weight(i), e.isAnchored(i));
+			if (tracker != null) {
+				tracker.track(e, i);
+			}
+		}
+	}
+	/**
+	 * Determines which kmers of the given evidence can be added to the graph
+	 * @param offsets offsets of the kmers to add
+	 * @return true if any kmer to add is a non-reference kmer
+	 */
+	private boolean addSupport(IntArrayList offsets, DirectedEvidence de, KmerEvidence e) {
+		offsets.clear();
 		boolean hasNonReference = false;
 		if (e != null) {
 			for (int i = 0; i < e.length(); i++) {
-				KmerSupportNode support = e.node(i); 
-				if (support != null) {
+				if (!e.isAmbiguous(i)) {
+					int supportStart = e.startPosition() + i;
 					// make sure that we are actually able to resort into kmer order
-					boolean isOutOfOrder = support.firstStart() < lastPosition;
-					boolean kmerToFarFromEvidence = support.firstStart() < de.getBreakendSummary().start - maxSupportStartPositionOffset;
+					boolean isOutOfOrder = supportStart < lastPosition;
+					boolean kmerToFarFromEvidence = supportStart < de.getBreakendSummary().start - maxSupportStartPositionOffset;
 					if (isOutOfOrder || kmerToFarFromEvidence) {
 						SAMRecord read = null;
 						if (de instanceof SingleReadEvidence) {
@@ -163,24 +185,23 @@ public class SupportNodeIterator implements PeekingIterator<KmerSupportNode> {
 											+ " Kmer support starts at %d which is more than %d before the breakpoint start position at %s",
 									de.getEvidenceID(),
 									readString,
-									support.firstStart(), maxSupportStartPositionOffset, de.getBreakendSummary());
+									supportStart, maxSupportStartPositionOffset, de.getBreakendSummary());
 						} else {
 							msg = String.format("Error: kmer out of order for evidence %s. Kmer at position %d after emitting kmer at %d",
 									de.getEvidenceID(),
-									support.firstStart(),
+									supportStart,
 									lastPosition);
 						}
 						log.error(msg);
 						// Try to continue
 						//throw new RuntimeException(msg);
-					} else if (support.weight() <= 0) {
-						String msg = String.format("Invalid support weight of %d for evidence %s", support.weight(), de.getEvidenceID());
+					} else if (e.weight(i) <= 0) {
+						String msg = String.format("Invalid support weight of %d for evidence %s", e.weight(i), de.getEvidenceID());
 						log.error(msg);
 						throw new RuntimeException(msg);
 					} else {
-						assert(support.weight() > 0);
-						supportNodes.add(support);
-						hasNonReference |= !support.isReference();
+						offsets.add(i);
+						hasNonReference |= !e.isAnchored(i);
 					}
 				}
 			}
@@ -195,18 +216,59 @@ public class SupportNodeIterator implements PeekingIterator<KmerSupportNode> {
 	@Override
 	public KmerSupportNode next() {
 		ensureBuffer();
-		KmerSupportNode node = buffer.poll();
+		if (buffer.isEmpty()) throw new NoSuchElementException();
+		KmerSupportNode node = new KmerSupportNode(buffer.peekEvidence(), buffer.peekOffset());
 		assert(node.lastStart() >= lastPosition);
 		lastPosition = node.lastStart();
+		buffer.pop();
 		return node;
 	}
 	@Override
 	public KmerSupportNode peek() {
 		ensureBuffer();
-		return buffer.peek();
+		if (buffer.isEmpty()) return null;
+		return new KmerSupportNode(buffer.peekEvidence(), buffer.peekOffset());
+	}
+	@Override
+	public int peekFirstStart() {
+		ensureBuffer();
+		return buffer.peekStart();
+	}
+	@Override
+	public void moveNext() {
+		ensureBuffer();
+		if (buffer.isEmpty()) throw new NoSuchElementException();
+		currentKmer = buffer.peekKmer();
+		currentStart = buffer.peekStart();
+		currentEnd = buffer.peekEnd();
+		currentWeight = buffer.peekWeight();
+		currentIsReference = buffer.peekIsReference();
+		assert(currentStart >= lastPosition);
+		lastPosition = currentStart;
+		buffer.pop();
+	}
+	@Override
+	public long currentFirstKmer() {
+		return currentKmer;
+	}
+	@Override
+	public int currentFirstStart() {
+		return currentStart;
+	}
+	@Override
+	public int currentFirstEnd() {
+		return currentEnd;
+	}
+	@Override
+	public int currentWeight() {
+		return currentWeight;
+	}
+	@Override
+	public boolean currentIsReference() {
+		return currentIsReference;
 	}
 	private void ensureBuffer() {
-		while (underlying.hasNext() && (buffer.isEmpty() || buffer.peek().lastStart() > inputPosition - emitOffset)) {
+		while (underlying.hasNext() && (buffer.isEmpty() || buffer.peekStart() > inputPosition - emitOffset)) {
 			inputPosition = underlying.peek().getUnderlyingSAMRecord().getAlignmentStart();
 			advance();
 		}
@@ -0,0 +1,320 @@
+package au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures;
+
+import au.edu.wehi.idsv.debruijn.positional.KmerNode;
+import au.edu.wehi.idsv.debruijn.positional.KmerNodeUtil;
+
+import java.util.*;
+
+/**
+ * Set of KmerNodes ordered by first start position then first kmer.
+ *
+ * Nodes are stored in a ring of per-position buckets covering the interval
+ * between the first and last start position in the set. This gives amortised
+ * constant time insertion and removal when nodes are added in approximately
+ * sorted order and removed from the front, and range scans that do not
+ * require tree traversal.
+ *
+ * Memory usage is proportional to the distance between the first and last
+ * start position so this data structure is not suitable for sparse sets
+ * spanning large genomic intervals.
+ *
+ * Nodes are considered equal if they have the same first start position and first kmer.
+ * Modification of the set during iteration is not supported.
+ */
+public class KmerNodeByFirstStartKmerNavigableSet<T extends KmerNode> extends AbstractSet<T> implements NavigableSet<T> {
+    /**
+     * Nodes at each position sorted by kmer.
+     * Position buckets are retained when emptied so they can be reused.
+     */
+    private ArrayList<T>[] bucket;
+    private int mask;
+    private int firstPosition;
+    private int lastPosition;
+    private int size = 0;
+
+    public KmerNodeByFirstStartKmerNavigableSet(int initialWidthBits) {
+        bucket = (ArrayList<T>[])new ArrayList[1 << initialWidthBits];
+        mask = bucket.length - 1;
+    }
+
+    private ArrayList<T> getBucket(int position) {
+        return bucket[position & mask];
+    }
+
+    private static boolean isOccupied(ArrayList<?> list) {
+        return list != null && !list.isEmpty();
+    }
+
+    /**
+     * Offset of the node with the given kmer, or the binary search insertion point
+     */
+    private static <T extends KmerNode> int indexOf(ArrayList<T> list, long kmer) {
+        int low = 0;
+        int high = list.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKmer = list.get(mid).firstKmer();
+            if (midKmer < kmer) {
+                low = mid + 1;
+            } else if (midKmer > kmer) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void ensureCapacity(int startPosition, int endPosition) {
+        long width = (long)endPosition - startPosition + 1;
+        if (width <= bucket.length) return;
+        int newLength = bucket.length;
+        while (newLength < width) {
+            newLength *= 2;
+        }
+        ArrayList<T>[] newBucket = (ArrayList<T>[])new ArrayList[newLength];
+        int newMask = newLength - 1;
+        if (size > 0) {
+            for (int position = firstPosition; position <= lastPosition; position++) {
+                ArrayList<T> list = bucket[position & mask];
+                if (isOccupied(list)) {
+                    newBucket[position & newMask] = list;
+                }
+            }
+        }
+        bucket = newBucket;
+        mask = newMask;
+    }
+
+    @Override
+    public boolean add(T node) {
+        int position = node.firstStart();
+        if (size == 0) {
+            firstPosition = position;
+            lastPosition = position;
+        } else {
+            // buckets outside the current interval are always empty so can be reused as is
+            ensureCapacity(Math.min(firstPosition, position), Math.max(lastPosition, position));
+            firstPosition = Math.min(firstPosition, position);
+            lastPosition = Math.max(lastPosition, position);
+        }
+        int offset = position & mask;
+        ArrayList<T> list = bucket[offset];
+        if (list == null) {
+            list = new ArrayList<>(4);
+            bucket[offset] = list;
+        }
+        int index = indexOf(list, node.firstKmer());
+        if (index >= 0) {
+            return false;
+        }
+        list.add(-index - 1, node);
+        size++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (size == 0) return false;
+        T node = (T)o;
+        int position = node.firstStart();
+        if (position < firstPosition || position > lastPosition) return false;
+        ArrayList<T> list = getBucket(position);
+        if (list == null) return false;
+        int index = indexOf(list, node.firstKmer());
+        if (index < 0) return false;
+        list.remove(index);
+        size--;
+        if (list.isEmpty()) {
+            if (size == 0) {
+                firstPosition = 0;
+                lastPosition = 0;
+            } else if (position == firstPosition) {
+                while (!isOccupied(getBucket(firstPosition))) {
+                    firstPosition++;
+                }
+            } else if (position == lastPosition) {
+                while (!isOccupied(getBucket(lastPosition))) {
+                    lastPosition--;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (size == 0) return false;
+        T node = (T)o;
+        int position = node.firstStart();
+        if (position < firstPosition || position > lastPosition) return false;
+        ArrayList<T> list = getBucket(position);
+        return list != null && indexOf(list, node.firstKmer()) >= 0;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean changed = false;
+        for (Object o : c) {
+            changed |= remove(o);
+        }
+        return changed;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(bucket, null);
+        size = 0;
+    }
+
+    @Override
+    public T first() {
+        if (size == 0) throw new NoSuchElementException();
+        return getBucket(firstPosition).get(0);
+    }
+
+    @Override
+    public T last() {
+        if (size == 0) throw new NoSuchElementException();
+        ArrayList<T> list = getBucket(lastPosition);
+        return list.get(list.size() - 1);
+    }
+
+    @Override
+    public T pollFirst() {
+        if (size == 0) return null;
+        T node = first();
+        remove(node);
+        return node;
+    }
+
+    @Override
+    public T pollLast() {
+        if (size == 0) return null;
+        T node = last();
+        remove(node);
+        return node;
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return KmerNodeUtil.ByFirstStartKmer;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new PositionIterator(true);
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return new PositionIterator(false);
+    }
+
+    private class PositionIterator implements Iterator<T> {
+        private final boolean ascending;
+        private final int endPosition;
+        private int position;
+        private int index;
+        private ArrayList<T> list = null;
+        private int remaining = size;
+
+        public PositionIterator(boolean ascending) {
+            this.ascending = ascending;
+            this.position = ascending ? firstPosition : lastPosition;
+            this.endPosition = ascending ? lastPosition : firstPosition;
+            if (size > 0) {
+                list = getBucket(position);
+                index = ascending ? 0 : list.size() - 1;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public T next() {
+            if (remaining <= 0) throw new NoSuchElementException();
+            while (index < 0 || index >= list.size()) {
+                if (position == endPosition) throw new ConcurrentModificationException();
+                position += ascending ? 1 : -1;
+                ArrayList<T> next = getBucket(position);
+                list = next == null ? EMPTY : next;
+                index = ascending ? 0 : list.size() - 1;
+            }
+            remaining--;
+            T node = list.get(index);
+            index += ascending ? 1 : -1;
+            return node;
+        }
+    }
+    @SuppressWarnings("rawtypes")
+    private static final ArrayList EMPTY = new ArrayList(0);
+
+    @Override
+    public T lower(T t) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public T floor(T t) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public T ceiling(T t) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public T higher(T t) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NavigableSet<T> descendingSet() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NavigableSet<T> subSet(T t, boolean b, T e1, boolean b1) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NavigableSet<T> headSet(T t, boolean b) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NavigableSet<T> tailSet(T t, boolean b) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedSet<T> subSet(T t, T e1) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedSet<T> headSet(T t) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T t) {
+        throw new UnsupportedOperationException();
+    }
+}
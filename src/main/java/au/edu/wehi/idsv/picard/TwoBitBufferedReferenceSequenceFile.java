@@ -1,27 +1,55 @@
 package au.edu.wehi.idsv.picard;
 
 import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
-import au.edu.wehi.idsv.debruijn.PackedSequence;
 import com.google.common.collect.ImmutableMap;
 import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.reference.ReferenceSequence;
 import htsjdk.samtools.reference.ReferenceSequenceFile;
 import htsjdk.samtools.util.Log;
 
 import java.io.*;
-import java.nio.MappedByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.time.OffsetTime;
-import java.util.BitSet;
-import java.util.stream.Stream;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.UUID;
 
 /**
  * 2bit encodes and buffers the entire reference to enable efficient random lookup of small subsequences
+ *
+ * The 2bit encoded reference can be persisted to a cache file. The cache file is memory mapped
+ * instead of deserialised so loading is near-instant and concurrent processes on the same host
+ * share the cached reference through the OS page cache.
+ *
+ * Cache file layout (big-endian):
+ * <pre>
+ * long   magic
+ * int    version
+ * int    contig count
+ * for each contig:
+ *   int    name length
+ *   byte[] UTF-8 name
+ *   int    contig length
+ *   int    ambiguous base run count
+ *   long   file offset of 2bit packed bases
+ *   long   file offset of ambiguous base runs
+ * for each contig:
+ *   long[] 2bit packed bases, 32 bases per word with the first base in the most significant bits
+ *   int[]  ambiguous base runs as 0-based [start, end) pairs
+ * </pre>
  * @author Daniel Cameron
  *
  */
 public class TwoBitBufferedReferenceSequenceFile implements ReferenceSequenceFile, ReferenceLookup {
 	private static final Log log = Log.getInstance(TwoBitBufferedReferenceSequenceFile.class);
+	private static final long CACHE_MAGIC = 0x4752494453533242L; // "GRIDSS2B"
+	private static final int CACHE_VERSION = 1;
 	private final ReferenceSequenceFile underlying;
 	private final PackedReferenceSequence[] referenceIndexLookup;
 	private File cacheFile;
@@ -45,83 +73,227 @@ public class TwoBitBufferedReferenceSequenceFile implements ReferenceSequenceFil
 		if (seq == null) {
 			seq = addToCache(underlying.getSequenceDictionary().getSequence(referenceIndex).getSequenceName());
 		}
-		if (seq.ambiguous.get(position - 1)) {
-			return 'N';
-		}
 		return seq.get(position - 1);
 	}
-	public synchronized void load(File file) {
-		ImmutableMap.Builder<String, PackedReferenceSequence> builder = ImmutableMap.<String, PackedReferenceSequence>builder();
-		try(FileInputStream fis = new FileInputStream(file)) {
-			try(ObjectInputStream ois = new ObjectInputStream(fis)) {
-				for (int i =  0; i < referenceIndexLookup.length; i++) {
-					referenceIndexLookup[i] = (PackedReferenceSequence)ois.readObject();
-					builder.put(referenceIndexLookup[i].name, referenceIndexLookup[i]);
+	/**
+	 * Memory maps the given reference genome cache file.
+	 * @param file cache file
+	 * @return true if the cache was successfully loaded, false if the file is not a valid
+	 * cache file for this reference genome.
+	 */
+	public synchronized boolean load(File file) {
+		SAMSequenceDictionary dict = underlying.getSequenceDictionary();
+		PackedReferenceSequence[] loaded = new PackedReferenceSequence[referenceIndexLookup.length];
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)))) {
+				if (dis.readLong() != CACHE_MAGIC || dis.readInt() != CACHE_VERSION) {
+					log.warn(String.format("%s is not a reference genome cache file in the current format.", file));
+					return false;
+				}
+				int contigCount = dis.readInt();
+				if (contigCount != dict.size()) {
+					log.warn(String.format("Reference genome cache %s does not match reference genome.", file));
+					return false;
+				}
+				for (int i = 0; i < contigCount; i++) {
+					byte[] nameBytes = new byte[dis.readInt()];
+					dis.readFully(nameBytes);
+					String name = new String(nameBytes, StandardCharsets.UTF_8);
+					int length = dis.readInt();
+					int runCount = dis.readInt();
+					long packedOffset = dis.readLong();
+					long runsOffset = dis.readLong();
+					SAMSequenceRecord ssr = dict.getSequence(i);
+					if (!ssr.getSequenceName().equals(name) || ssr.getSequenceLength() != length) {
+						log.warn(String.format("Reference genome cache %s does not match reference genome.", file));
+						return false;
+					}
+					LongBuffer packed = channel.map(FileChannel.MapMode.READ_ONLY, packedOffset, 8L * PackedReferenceSequence.wordCount(length)).asLongBuffer();
+					IntBuffer runs = channel.map(FileChannel.MapMode.READ_ONLY, runsOffset, 8L * runCount).asIntBuffer();
+					loaded[i] = new PackedReferenceSequence(name, i, length, packed, runs);
 				}
 			}
-			cache = builder.build();
 		} catch (Exception e) {
-			log.error("Error loading reference genome from cache " + file, e);
+			log.error(e, "Error loading reference genome from cache " + file);
+			return false;
 		}
+		ImmutableMap.Builder<String, PackedReferenceSequence> builder = ImmutableMap.<String, PackedReferenceSequence>builder();
+		for (int i =  0; i < referenceIndexLookup.length; i++) {
+			referenceIndexLookup[i] = loaded[i];
+			builder.put(loaded[i].name, loaded[i]);
+		}
+		cache = builder.build();
+		return true;
 	}
 	public synchronized void save(File file) {
 		if (file.exists()) {
 			throw new IllegalArgumentException(file + " already exists");
 		}
+		write(file);
+	}
+	/**
+	 * Writes the cache file. The cache is written to a temporary file then atomically
+	 * moved into place so concurrent processes never observe a partially written cache.
+	 */
+	private synchronized void write(File file) {
 		// Ensure the lookup is fully populated
 		underlying.getSequenceDictionary()
 				.getSequences()
 				.stream()
 				.map(s -> s.getSequenceName())
 				.forEach(s -> cacheLoad(s));
-		try(FileOutputStream fos = new FileOutputStream(file)) {
-			try(ObjectOutputStream oos = new ObjectOutputStream(fos)) {
-				for (int i =  0; i < referenceIndexLookup.length; i++) {
-					oos.writeObject(referenceIndexLookup[i]);
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp." + UUID.randomUUID().toString());
+		try {
+			long headerSize = Long.BYTES + 2 * Integer.BYTES;
+			for (PackedReferenceSequence seq : referenceIndexLookup) {
+				headerSize += Integer.BYTES + seq.name.getBytes(StandardCharsets.UTF_8).length + 2 * Integer.BYTES + 2 * Long.BYTES;
+			}
+			// align sequence data to word boundaries
+			long offset = (headerSize + Long.BYTES - 1) / Long.BYTES * Long.BYTES;
+			try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+				dos.writeLong(CACHE_MAGIC);
+				dos.writeInt(CACHE_VERSION);
+				dos.writeInt(referenceIndexLookup.length);
+				for (PackedReferenceSequence seq : referenceIndexLookup) {
+					byte[] nameBytes = seq.name.getBytes(StandardCharsets.UTF_8);
+					dos.writeInt(nameBytes.length);
+					dos.write(nameBytes);
+					dos.writeInt(seq.length);
+					dos.writeInt(seq.runCount());
+					dos.writeLong(offset);
+					offset += Long.BYTES * seq.packed.limit();
+					dos.writeLong(offset);
+					offset += Integer.BYTES * seq.ambiguousRuns.limit();
+					offset = (offset + Long.BYTES - 1) / Long.BYTES * Long.BYTES;
+				}
+				long written = headerSize;
+				for (PackedReferenceSequence seq : referenceIndexLookup) {
+					while (written % Long.BYTES != 0) {
+						dos.writeByte(0);
+						written++;
+					}
+					for (int i = 0; i < seq.packed.limit(); i++) {
+						dos.writeLong(seq.packed.get(i));
+					}
+					for (int i = 0; i < seq.ambiguousRuns.limit(); i++) {
+						dos.writeInt(seq.ambiguousRuns.get(i));
+					}
+					written += Long.BYTES * seq.packed.limit() + Integer.BYTES * seq.ambiguousRuns.limit();
 				}
 			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
 		} catch (Exception e) {
-			log.error("Error saving reference genome to cache file " + file, e);
+			log.error(e, "Error saving reference genome to cache file " + file);
+		} finally {
 			try {
-				if (file.exists()) {
-					Files.delete(file.toPath());
-				}
+				Files.deleteIfExists(tmp.toPath());
 			} catch (IOException e1) {
 				// swallow recovery exception
 			}
 		}
 	}
-	private static class PackedReferenceSequence extends PackedSequence implements Serializable {
+	/**
+	 * 2bit packed contig sequence with a run-length encoded ambiguous base index.
+	 * The underlying buffers are either heap arrays or memory mapped cache file regions.
+	 */
+	private static class PackedReferenceSequence {
+		private static final int BASES_PER_WORD = Long.SIZE / 2;
 		private final String name;
-	    private final int contigIndex;
-	    private final long length;
-	    private final BitSet ambiguous;
+		private final int contigIndex;
+		private final int length;
+		private final LongBuffer packed;
+		/**
+		 * Sorted 0-based [start, end) intervals of ambiguous bases
+		 */
+		private final IntBuffer ambiguousRuns;
+		private PackedReferenceSequence(String name, int contigIndex, int length, LongBuffer packed, IntBuffer ambiguousRuns) {
+			this.name = name;
+			this.contigIndex = contigIndex;
+			this.length = length;
+			this.packed = packed;
+			this.ambiguousRuns = ambiguousRuns;
+		}
 		public PackedReferenceSequence(ReferenceSequence seq) {
-			super(seq.getBases(), false, false);
 			this.name = seq.getName();
 			this.contigIndex = seq.getContigIndex();
 			this.length = seq.length();
-			this.ambiguous = new BitSet(seq.length());
 			byte[] seqBases = seq.getBases();
+			long[] words = new long[wordCount(length)];
+			int[] runs = new int[16];
+			int runsLength = 0;
 			for (int i = 0; i < length; i++) {
+				words[i / BASES_PER_WORD] |= (long)KmerEncodingHelper.picardBaseToEncoded(seqBases[i]) << (2 * (BASES_PER_WORD - 1 - i % BASES_PER_WORD));
 				if (KmerEncodingHelper.isAmbiguous(seqBases[i])) {
-					ambiguous.set(i);
+					if (runsLength > 0 && runs[runsLength - 1] == i) {
+						// extend the current run
+						runs[runsLength - 1] = i + 1;
+					} else {
+						if (runsLength == runs.length) {
+							runs = Arrays.copyOf(runs, runs.length * 2);
+						}
+						runs[runsLength++] = i;
+						runs[runsLength++] = i + 1;
+					}
+				}
+			}
+			this.packed = LongBuffer.wrap(words);
+			this.ambiguousRuns = IntBuffer.wrap(Arrays.copyOf(runs, runsLength));
+		}
+		private static int wordCount(int length) {
+			return (int)(((long)length + BASES_PER_WORD - 1) / BASES_PER_WORD);
+		}
+		private int runCount() {
+			return ambiguousRuns.limit() / 2;
+		}
+		/**
+		 * Index of the last ambiguous run starting at or before the given position, or -1 if no such run exists
+		 */
+		private int runIndex(int offset) {
+			int low = 0;
+			int high = runCount() - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				if (ambiguousRuns.get(2 * mid) <= offset) {
+					low = mid + 1;
+				} else {
+					high = mid - 1;
 				}
 			}
+			return high;
+		}
+		private byte getUnambiguous(int offset) {
+			long word = packed.get(offset / BASES_PER_WORD);
+			return KmerEncodingHelper.encodedToPicardBase(word >>> (2 * (BASES_PER_WORD - 1 - offset % BASES_PER_WORD)) & 3);
+		}
+		/**
+		 * Gets the base at the given 0-based offset
+		 */
+		public byte get(int offset) {
+			if (offset < 0 || offset >= length) throw new IllegalArgumentException("offset must fall within sequence");
+			int run = runIndex(offset);
+			if (run >= 0 && offset < ambiguousRuns.get(2 * run + 1)) {
+				return 'N';
+			}
+			return getUnambiguous(offset);
 		}
 		public ReferenceSequence getSequence() {
 			return getSubsequenceAt(1, length);
 		}
 		public ReferenceSequence getSubsequenceAt(long start, long stop) {
-			int length = (int)(stop - start + 1);
-			ReferenceSequence seq = new ReferenceSequence(name, contigIndex, getBytes((int)(start - 1), length));
-			byte[] seqBases = seq.getBases();
-			for (int i = 0; i < length; i++) {
-				if (ambiguous.get((int)start - 1 + i)) {
-					seqBases[i] = 'N';
+			int offset = (int)(start - 1);
+			int subLength = (int)(stop - start + 1);
+			byte[] seqBases = new byte[subLength];
+			for (int i = 0; i < subLength; i++) {
+				seqBases[i] = getUnambiguous(offset + i);
+			}
+			for (int run = Math.max(0, runIndex(offset)); run < runCount() && ambiguousRuns.get(2 * run) < offset + subLength; run++) {
+				int runStart = Math.max(offset, ambiguousRuns.get(2 * run));
+				int runEnd = Math.min(offset + subLength, ambiguousRuns.get(2 * run + 1));
+				for (int i = runStart; i < runEnd; i++) {
+					seqBases[i - offset] = 'N';
 				}
 			}
-			return seq;
+			return new ReferenceSequence(name, contigIndex, seqBases);
 		}
 	}
 	@Override
@@ -146,17 +318,21 @@ public class TwoBitBufferedReferenceSequenceFile implements ReferenceSequenceFil
 	 */
 	private synchronized PackedReferenceSequence addToCache(String contig) {
 		if (cacheFile != null) {
+			boolean loaded = false;
 			if (cacheFile.exists()) {
 				log.info("Loading reference genome from cache " + cacheFile);
-				load(cacheFile);
+				loaded = load(cacheFile);
 				log.info("Loading reference genome complete");
-			} else {
-				if (!cacheFile.getParentFile().canWrite()) {
+			}
+			if (!loaded) {
+				if (!cacheFile.getAbsoluteFile().getParentFile().canWrite()) {
 					log.warn("Cannot write to " + cacheFile + " not persisting 2bit compressed reference genome cache");
 				} else {
 					log.info("Saving reference genome cache to " + cacheFile);
-					save(cacheFile);
+					write(cacheFile);
 					log.info("Saving reference genome cache complete");
+					// Switch to the memory mapped cache so our heap copy can be reclaimed
+					load(cacheFile);
 				}
 			}
 			// Only attempt load/save once
@@ -199,6 +375,6 @@ public class TwoBitBufferedReferenceSequenceFile implements ReferenceSequenceFil
 	}
 	@Override
 	public void close() throws IOException {
-		underlying.close();	
+		underlying.close();
 	}
 }
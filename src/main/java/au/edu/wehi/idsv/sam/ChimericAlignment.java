@@ -43,36 +43,183 @@ public class ChimericAlignment {
 		this.nm = r.getIntegerAttribute(SAMTag.NM.name());
 	}
 	public ChimericAlignment(String str) {
-		str = str.replace(';', ' ').trim();
-		String[] splits = str.split(",");
-		this.rname = splits[0];
-		this.pos = Integer.parseInt(splits[1]);
-		this.isNegativeStrand = "-".equals(splits[2]);
-		this.cigar = TextCigarCodec.decode(splits[3]);
-		this.mapq = Integer.parseInt(splits[4]);
-		Integer nmParsed = null;
-		try {
-			if (splits.length >= 6) {
-				nmParsed = Integer.parseInt(splits[5]);
-			}
-		} catch (NumberFormatException nfe) {
-			// swallow and fall back to null
-		}
-		this.nm = nmParsed;
+		this(new Parser(str));
+	}
+	private ChimericAlignment(Parser parser) {
+		this.rname = parser.nextString();
+		this.pos = parser.nextInt();
+		this.isNegativeStrand = parser.nextStrand();
+		this.cigar = parser.nextCigar();
+		this.mapq = parser.nextInt();
+		this.nm = parser.nextOptionalInt();
+		parser.skipAlignment();
 	}
+	/**
+	 * Parses the given SA tag
+	 * @param sa SA tag value
+	 * @return chimeric alignments
+	 */
 	public static List<ChimericAlignment> getChimericAlignments(String sa) {
 		if (StringUtils.isEmpty(sa)) return Collections.emptyList();
-		List<ChimericAlignment> list = new ArrayList<ChimericAlignment>();
-		String[] splits = sa.split(";");
-		for (String s : splits) {
-			if (!StringUtils.isEmpty(sa)) {
-				list.add(new ChimericAlignment(s));
-			}
+		List<ChimericAlignment> list = new ArrayList<ChimericAlignment>(4);
+		Parser parser = new Parser(sa);
+		while (parser.hasNextAlignment()) {
+			list.add(new ChimericAlignment(parser));
 		}
 		return list;
 	}
+	/**
+	 * Gets the chimeric alignments of the given record.
+	 * The SA tag is parsed once per record and cached as a transient attribute
+	 * which remains valid until the SA tag of the record is changed.
+	 * @param r record
+	 * @return unmodifiable list of chimeric alignments
+	 */
 	public static List<ChimericAlignment> getChimericAlignments(SAMRecord r) {
-		return getChimericAlignments(r.getStringAttribute(SAMTag.SA.name()));
+		String sa = r.getStringAttribute(SAMTag.SA.name());
+		if (StringUtils.isEmpty(sa)) return Collections.emptyList();
+		Object cached = r.getTransientAttribute(SAMTag.SA.name());
+		if (cached instanceof CachedChimericAlignments && sa.equals(((CachedChimericAlignments)cached).sa)) {
+			return ((CachedChimericAlignments)cached).alignments;
+		}
+		List<ChimericAlignment> list = Collections.unmodifiableList(getChimericAlignments(sa));
+		r.setTransientAttribute(SAMTag.SA.name(), new CachedChimericAlignments(sa, list));
+		return list;
+	}
+	/**
+	 * Sets the SA tag of the given record to the given chimeric alignments
+	 * @param r record to update
+	 * @param alignments chimeric alignments
+	 */
+	public static void setChimericAlignments(SAMRecord r, List<ChimericAlignment> alignments) {
+		StringBuilder sb = new StringBuilder();
+		for (ChimericAlignment ca : alignments) {
+			if (sb.length() > 0) {
+				sb.append(';');
+			}
+			ca.appendTo(sb);
+		}
+		String sa = sb.toString();
+		r.setAttribute(SAMTag.SA.name(), sa);
+		r.setTransientAttribute(SAMTag.SA.name(), new CachedChimericAlignments(sa, Collections.unmodifiableList(new ArrayList<>(alignments))));
+	}
+	private static class CachedChimericAlignments {
+		private final String sa;
+		private final List<ChimericAlignment> alignments;
+		public CachedChimericAlignments(String sa, List<ChimericAlignment> alignments) {
+			this.sa = sa;
+			this.alignments = alignments;
+		}
+	}
+	/**
+	 * Scans SA tag fields in place without splitting the tag into substrings
+	 */
+	private static class Parser {
+		private final String str;
+		private int offset = 0;
+		public Parser(String str) {
+			this.str = str;
+		}
+		private boolean isFieldEnd(char c) {
+			return c == ',' || c == ';';
+		}
+		public boolean hasNextAlignment() {
+			while (offset < str.length() && (str.charAt(offset) == ';' || Character.isWhitespace(str.charAt(offset)))) {
+				offset++;
+			}
+			return offset < str.length();
+		}
+		/**
+		 * Advances past the field separator following the current field
+		 */
+		private void endField() {
+			while (offset < str.length() && !isFieldEnd(str.charAt(offset))) {
+				offset++;
+			}
+			if (offset < str.length() && str.charAt(offset) == ',') {
+				offset++;
+			}
+		}
+		private void checkField() {
+			if (offset >= str.length() || isFieldEnd(str.charAt(offset))) {
+				throw new IllegalArgumentException(String.format("Missing field in SA tag \"%s\"", str));
+			}
+		}
+		public String nextString() {
+			checkField();
+			int start = offset;
+			while (offset < str.length() && !isFieldEnd(str.charAt(offset))) {
+				offset++;
+			}
+			String s = str.substring(start, offset);
+			endField();
+			return s;
+		}
+		public int nextInt() {
+			checkField();
+			int start = offset;
+			boolean negative = str.charAt(offset) == '-';
+			if (negative || str.charAt(offset) == '+') {
+				offset++;
+			}
+			int value = 0;
+			boolean hasDigits = false;
+			while (offset < str.length() && Character.isDigit(str.charAt(offset))) {
+				value = value * 10 + (str.charAt(offset) - '0');
+				offset++;
+				hasDigits = true;
+			}
+			if (!hasDigits || (offset < str.length() && !isFieldEnd(str.charAt(offset)) && !Character.isWhitespace(str.charAt(offset)))) {
+				throw new NumberFormatException(String.format("Invalid integer at offset %d of SA tag \"%s\"", start, str));
+			}
+			endField();
+			return negative ? -value : value;
+		}
+		public Integer nextOptionalInt() {
+			if (offset >= str.length() || isFieldEnd(str.charAt(offset))) {
+				endField();
+				return null;
+			}
+			try {
+				return nextInt();
+			} catch (NumberFormatException nfe) {
+				// swallow and fall back to null
+				endField();
+				return null;
+			}
+		}
+		public boolean nextStrand() {
+			checkField();
+			boolean negative = str.charAt(offset) == '-';
+			endField();
+			return negative;
+		}
+		public Cigar nextCigar() {
+			checkField();
+			List<CigarElement> elements = new ArrayList<>();
+			if (str.charAt(offset) != '*') {
+				int length = 0;
+				while (offset < str.length() && !isFieldEnd(str.charAt(offset))) {
+					char c = str.charAt(offset++);
+					if (Character.isDigit(c)) {
+						length = length * 10 + (c - '0');
+					} else {
+						elements.add(new CigarElement(length, CigarOperator.characterToEnum(c)));
+						length = 0;
+					}
+				}
+			}
+			endField();
+			return new Cigar(elements);
+		}
+		/**
+		 * Skips any remaining fields of the current alignment
+		 */
+		public void skipAlignment() {
+			while (offset < str.length() && str.charAt(offset) != ';') {
+				offset++;
+			}
+		}
 	}
 	private BreakendSummary startBreakend(SAMSequenceDictionary dict) {
 		return new BreakendSummary(rnameToReferenceIndex(dict, rname), BreakendDirection.Backward, pos);
@@ -109,9 +256,20 @@ public class ChimericAlignment {
 				dict.getSequenceIndex(rname), pos, isNegativeStrand, cigar,
 				dict.getSequenceIndex(ca.rname), ca.pos, ca.isNegativeStrand, ca.cigar);
 	}
+	private StringBuilder appendTo(StringBuilder sb) {
+		sb.append(rname).append(',')
+			.append(pos).append(',')
+			.append(isNegativeStrand ? '-' : '+').append(',')
+			.append(cigar).append(',')
+			.append(mapq).append(',');
+		if (nm != null) {
+			sb.append(nm.intValue());
+		}
+		return sb;
+	}
 	@Override
 	public String toString() {
-		return String.format("%s,%d,%s,%s,%d,%s", rname, pos, isNegativeStrand ? "-" : "+", cigar, mapq, nm == null ? "" : nm.toString());
+		return appendTo(new StringBuilder()).toString();
 	}
 	@Override
 	public int hashCode() {
@@ -5,6 +5,7 @@ import au.edu.wehi.idsv.FileSystemContext;
 import au.edu.wehi.idsv.IntermediateFileUtil;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
 import au.edu.wehi.idsv.util.FileHelper;
+import au.edu.wehi.idsv.util.ParallelSortingCollection;
 import au.edu.wehi.idsv.validation.OrderAssertingIterator;
 import com.google.common.collect.PeekingIterator;
 import htsjdk.samtools.*;
@@ -114,7 +115,7 @@ public class SAMFileUtil {
 					break;
 			}
 			log.info("Sorting " + unsorted);
-			SortingCollection<SAMRecord> collection = null;
+			ParallelSortingCollection<SAMRecord> collection = null;
 			if (tmpFile != output && tmpFile.exists()) {
 				FileHelper.delete(tmpFile, true);
 			}
@@ -127,8 +128,7 @@ public class SAMFileUtil {
 						header = headerCallback.apply(header);
 					}
 					try (CloseableIterator<SAMRecord> rit = reader.iterator()) {
-						collection = SortingCollection.newInstance(
-								SAMRecord.class,
+						collection = new ParallelSortingCollection<>(
 								new BAMRecordCodec(header),
 								sortComparator,
 								fsc.getMaxBufferedRecordsPerFile(),
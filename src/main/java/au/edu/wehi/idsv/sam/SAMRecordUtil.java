@@ -863,6 +863,7 @@ public class SAMRecordUtil {
 			if (splitca.isEmpty() || r.getReadUnmappedFlag()) {
 				r.setSupplementaryAlignmentFlag(false);
 			} else {
+				splitca = new ArrayList<>(splitca);
 				splitca.add(new ChimericAlignment(r));
 				splitca.sort(ChimericAlignment.ByReadOffset);
 				List<SAMRecord> saGroup = saLookup.get(splitca);
@@ -1205,7 +1206,7 @@ public class SAMRecordUtil {
 
 	private static void warnIfInvalidSA(List<SAMRecord> list) {
 		Set<ChimericAlignment> referencedReads = list.stream()
-				.flatMap(r -> ChimericAlignment.getChimericAlignments(r.getStringAttribute(SAMTag.SA.name())).stream())
+				.flatMap(r -> ChimericAlignment.getChimericAlignments(r).stream())
 				.collect(Collectors.toSet());
 		// validate SA tags
 		for (SAMRecord r : list) {
@@ -1440,10 +1441,9 @@ public class SAMRecordUtil {
 		// By convention, primary is the first SA record
 		boolean primaryUnmapped = record.isSecondaryOrSupplementary() &&
 				(alignments.size() == 0 || alignments.get(0).mapq < minMapq);
-		record.setAttribute(SAMTag.SA.name(), alignments.stream()
+		ChimericAlignment.setChimericAlignments(record, alignments.stream()
 				.filter(ca -> ca.mapq >= minMapq)
-				.map(ca -> ca.toString())
-				.collect(Collectors.joining(";")));
+				.collect(Collectors.toList()));
 		return primaryUnmapped;
 	}
 
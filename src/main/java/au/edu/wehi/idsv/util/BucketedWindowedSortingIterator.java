@@ -0,0 +1,218 @@
+package au.edu.wehi.idsv.util;
+
+import au.edu.wehi.idsv.visualisation.TrackedBuffer;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import htsjdk.samtools.util.Log;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Sorts a mostly-sorted input sequence.
+ *
+ * Records are bucketed by position into a circular array of bins spanning the
+ * sorting window. Since records in different bins are already ordered by position,
+ * comparison sorting is only performed on the records within a single bin.
+ *
+ * Output order is identical to {@link WindowedSortingIterator} and the
+ * sort order must be consistent with the record position.
+ *
+ * @author Daniel Cameron
+ *
+ * @param <T>
+ */
+public class BucketedWindowedSortingIterator<T> extends AbstractIterator<T> implements TrackedBuffer {
+	private static final Log log = Log.getInstance(BucketedWindowedSortingIterator.class);
+	/**
+	 * Target number of bins spanning the sorting window
+	 */
+	private static final int TARGET_BIN_COUNT = 1024;
+	/**
+	 * Maximum number of times the bin array can grow beyond the size required
+	 * for records out of order by no more than the window size.
+	 */
+	private static final int MAX_BIN_GROWTH = 64;
+	private final long windowSize;
+	private final PeekingIterator<T> it;
+	private final ToLongFunction<T> toCoordinate;
+	private final Comparator<T> sortOrder;
+	private final long binWidth;
+	private final long maxBinCount;
+	private List<T>[] bins;
+	/**
+	 * Offset of the first record not yet emitted from each bin
+	 */
+	private int[] binOffset;
+	/**
+	 * Indicates whether the unemitted records in each bin are sorted
+	 */
+	private boolean[] binSorted;
+	private int mask;
+	/**
+	 * Lowest bin that could contain records
+	 */
+	private long headBin;
+	/**
+	 * Highest bin that could contain records
+	 */
+	private long tailBin;
+	private int size = 0;
+	private long lastPosition = Long.MIN_VALUE;
+	private T lastEmitted = null;
+	/**
+	 * Creates a new sorted iterator from a mostly-sorted sequence
+	 * @param it mostly-sorted sequence. Records cannot be out of order by more than windowSize
+	 * @param transform Coordinate transform for position of record.
+	 * @param windowSize Maximum coordinate-space length that records can deviate from a sorted sequence
+	 */
+	public BucketedWindowedSortingIterator(final Iterator<T> it, final ToLongFunction<T> transform, final long windowSize) {
+		this(it, transform, windowSize, Comparator.comparingLong(transform));
+	}
+	/**
+	 * Creates a new sorted iterator from a mostly-sorted sequence
+	 * @param it mostly-sorted sequence. Records cannot be out of order by more than windowSize
+	 * @param transform Coordinate transform for position of record.
+	 * @param windowSize Maximum coordinate-space length that records can deviate from a sorted sequence
+	 * @param sortOrder record sort order. Records with a lower position must sort before records with a higher position.
+	 */
+	public BucketedWindowedSortingIterator(final Iterator<T> it, final ToLongFunction<T> transform, final long windowSize, final Comparator<T> sortOrder) {
+		this.windowSize = windowSize;
+		this.it = Iterators.peekingIterator(it);
+		this.toCoordinate = transform;
+		this.sortOrder = sortOrder;
+		// Bins are no wider than the window but, when binWidth > 1, records can still
+		// be added to the head bin after emission from it has started. The unemitted
+		// records of a bin are re-sorted by headIndex() whenever records have been added.
+		this.binWidth = Math.max(1, Math.min(windowSize, (windowSize + TARGET_BIN_COUNT - 1) / TARGET_BIN_COUNT));
+		allocate(windowSize / binWidth + 2);
+		this.maxBinCount = (long)bins.length * MAX_BIN_GROWTH;
+	}
+	@SuppressWarnings("unchecked")
+	private void allocate(long minBinCount) {
+		int binCount = Integer.highestOneBit((int)Math.min(minBinCount, 1 << 30));
+		if (binCount < minBinCount) {
+			binCount <<= 1;
+		}
+		this.bins = new List[binCount];
+		this.binOffset = new int[binCount];
+		this.binSorted = new boolean[binCount];
+		this.mask = binCount - 1;
+	}
+	@Override
+	protected T computeNext() {
+		advanceUnderlying();
+		if (size == 0) return endOfData();
+		T next = poll();
+		long nextPos = toCoordinate.applyAsLong(next);
+		if (nextPos < lastPosition) {
+			log.error("Sanity check failure: sorting window size too small: evidence out of order at linear coordinate" + nextPos);
+		}
+		if (lastEmitted != null && sortOrder.compare(lastEmitted, next) > 0) {
+			throw new IllegalStateException(String.format("Unable to sort output with window size of %d. %s emitted before %s", windowSize, lastEmitted, next));
+		}
+		lastEmitted = next;
+		return next;
+	}
+	private void advanceUnderlying() {
+		while (it.hasNext() && (size == 0 || nextRecordCouldBeAtStartOfWindow())) {
+			add(it.next());
+		}
+	}
+	private boolean nextRecordCouldBeAtStartOfWindow() {
+		long bufferPosition = toCoordinate.applyAsLong(peekBuffer());
+		long nextPosition = toCoordinate.applyAsLong(it.peek());
+		return nextPosition <= bufferPosition + windowSize;
+	}
+	private void add(T record) {
+		long bin = Math.floorDiv(toCoordinate.applyAsLong(record), binWidth);
+		if (size == 0) {
+			headBin = bin;
+			tailBin = bin;
+		} else if (bin < headBin) {
+			ensureCapacity(tailBin - bin + 1, record);
+			headBin = bin;
+		} else if (bin > tailBin) {
+			ensureCapacity(bin - headBin + 1, record);
+			tailBin = bin;
+		}
+		int index = (int)(bin & mask);
+		if (bins[index] == null) {
+			bins[index] = new ArrayList<>();
+		}
+		bins[index].add(record);
+		binSorted[index] = false;
+		size++;
+	}
+	/**
+	 * Grows the circular bin array when records span more bins than expected.
+	 * This only occurs when the input is not sorted within the window size.
+	 */
+	private void ensureCapacity(long binSpan, T record) {
+		if (binSpan <= bins.length) return;
+		if (binSpan > maxBinCount) {
+			throw new IllegalStateException(String.format("Unable to sort output with window size of %d. %s is out of order by %d.",
+					windowSize, record, (binSpan - 1) * binWidth));
+		}
+		List<T>[] oldBins = bins;
+		int[] oldOffset = binOffset;
+		boolean[] oldSorted = binSorted;
+		int oldMask = mask;
+		allocate(binSpan);
+		for (long bin = headBin; bin <= tailBin; bin++) {
+			int from = (int)(bin & oldMask);
+			int to = (int)(bin & mask);
+			bins[to] = oldBins[from];
+			binOffset[to] = oldOffset[from];
+			binSorted[to] = oldSorted[from];
+		}
+	}
+	/**
+	 * Advances to the lowest non-empty bin and ensures it is sorted
+	 * @return index of the lowest non-empty bin
+	 */
+	private int headIndex() {
+		int index = (int)(headBin & mask);
+		while (bins[index] == null || binOffset[index] >= bins[index].size()) {
+			headBin++;
+			index = (int)(headBin & mask);
+		}
+		if (!binSorted[index]) {
+			List<T> bin = bins[index];
+			bin.subList(binOffset[index], bin.size()).sort(sortOrder);
+			binSorted[index] = true;
+		}
+		return index;
+	}
+	private T peekBuffer() {
+		int index = headIndex();
+		return bins[index].get(binOffset[index]);
+	}
+	private T poll() {
+		int index = headIndex();
+		List<T> bin = bins[index];
+		T record = bin.get(binOffset[index]++);
+		if (binOffset[index] >= bin.size()) {
+			bin.clear();
+			binOffset[index] = 0;
+		}
+		size--;
+		return record;
+	}
+	private String trackedBufferName_calls = "windowedSort";
+	@Override
+	public void setTrackedBufferContext(String context) {
+		this.trackedBufferName_calls = context + ".windowedSort";
+	}
+	@Override
+	public List<NamedTrackedBuffer> currentTrackedBufferSizes() {
+		return ImmutableList.of(
+				new NamedTrackedBuffer(trackedBufferName_calls, size)
+				);
+	}
+}
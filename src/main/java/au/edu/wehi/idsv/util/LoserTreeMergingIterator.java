@@ -0,0 +1,117 @@
+package au.edu.wehi.idsv.util;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * k-way merge of sorted iterators using a tournament tree of losers.
+ *
+ * Each record emitted requires only log2(k) comparisons along a single
+ * leaf to root path, compared to up to 2 log2(k) for a binary heap.
+ * Records comparing equal are returned in input iterator order.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class LoserTreeMergingIterator<T> implements CloseableIterator<T> {
+	private final List<Iterator<? extends T>> source;
+	private final Comparator<? super T> comparator;
+	private final int k;
+	/**
+	 * Current record of each input. Only valid if the input is not exhausted.
+	 */
+	private final Object[] head;
+	private final boolean[] exhausted;
+	/**
+	 * tree[0] is the index of the overall winner, tree[1..k-1] are the
+	 * losers of the match played at each internal node.
+	 * The leaf of input i is at position k + i.
+	 */
+	private final int[] tree;
+	public LoserTreeMergingIterator(List<? extends Iterator<? extends T>> source, Comparator<? super T> comparator) {
+		this.source = new ArrayList<>(source);
+		this.comparator = comparator;
+		this.k = source.size();
+		this.head = new Object[k];
+		this.exhausted = new boolean[k];
+		this.tree = new int[Math.max(1, k)];
+		for (int i = 0; i < k; i++) {
+			advance(i);
+		}
+		Arrays.fill(tree, -1);
+		for (int i = k - 1; i >= 0; i--) {
+			initialise(i);
+		}
+	}
+	private void advance(int i) {
+		Iterator<? extends T> it = source.get(i);
+		if (it.hasNext()) {
+			head[i] = it.next();
+		} else {
+			head[i] = null;
+			exhausted[i] = true;
+		}
+	}
+	/**
+	 * Determines whether input a wins against input b
+	 */
+	private boolean beats(int a, int b) {
+		if (exhausted[a]) return exhausted[b] && a < b;
+		if (exhausted[b]) return true;
+		int cmp = comparator.compare((T)head[a], (T)head[b]);
+		return cmp < 0 || (cmp == 0 && a < b);
+	}
+	private void initialise(int i) {
+		int winner = i;
+		for (int node = (i + k) >> 1; node > 0; node >>= 1) {
+			if (tree[node] == -1) {
+				// wait at this node for the winner of the other subtree
+				tree[node] = winner;
+				return;
+			}
+			if (beats(tree[node], winner)) {
+				int tmp = tree[node];
+				tree[node] = winner;
+				winner = tmp;
+			}
+		}
+		tree[0] = winner;
+	}
+	private void replay(int i) {
+		int winner = i;
+		for (int node = (i + k) >> 1; node > 0; node >>= 1) {
+			if (beats(tree[node], winner)) {
+				int tmp = tree[node];
+				tree[node] = winner;
+				winner = tmp;
+			}
+		}
+		tree[0] = winner;
+	}
+	@Override
+	public boolean hasNext() {
+		return k > 0 && !exhausted[tree[0]];
+	}
+	@Override
+	public T next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		int winner = tree[0];
+		T result = (T)head[winner];
+		advance(winner);
+		replay(winner);
+		return result;
+	}
+	@Override
+	public void close() {
+		for (Iterator<? extends T> it : source) {
+			CloserUtil.close(it);
+		}
+	}
+}
@@ -0,0 +1,262 @@
+package au.edu.wehi.idsv.util;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.SortingCollection;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * External merge sort with the same usage pattern as htsjdk's {@link SortingCollection}.
+ *
+ * Each in-memory run is sorted by a parallel sort on a fork-join pool and
+ * spilled to disk in the background while the next run is being filled. At most
+ * one run is spilled at any time so no more than two runs are held in memory.
+ * Each run holds half of maxRecordsInRam records so, as with {@link SortingCollection},
+ * no more than maxRecordsInRam records are held in memory.
+ * Iteration performs a k-way merge of the spilled runs and the final in-memory run.
+ *
+ * Records comparing equal are returned in insertion order.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class ParallelSortingCollection<T> implements Iterable<T> {
+	private static final Log log = Log.getInstance(ParallelSortingCollection.class);
+	private static final int IO_BUFFER_SIZE = 1 << 16;
+	private final SortingCollection.Codec<T> codec;
+	private final Comparator<T> comparator;
+	/**
+	 * Number of records in each sorted run
+	 */
+	private final int runSize;
+	private final Path tmpDir;
+	private final ForkJoinPool pool;
+	private final List<Path> files = new ArrayList<>();
+	private Object[] ramRecords;
+	private int numRecordsInRam = 0;
+	private ForkJoinTask<?> spill = null;
+	private boolean doneAdding = false;
+	private boolean cleanedUp = false;
+	/**
+	 * @param codec record serialisation codec. The codec is cloned for each spill file.
+	 * @param comparator sort order
+	 * @param maxRecordsInRam maximum number of records to hold in memory
+	 * @param tmpDir temporary directory for spill files
+	 * @param pool fork-join pool to perform sorting and spilling on
+	 */
+	public ParallelSortingCollection(SortingCollection.Codec<T> codec, Comparator<T> comparator, int maxRecordsInRam, Path tmpDir, ForkJoinPool pool) {
+		if (maxRecordsInRam <= 0) throw new IllegalArgumentException("maxRecordsInRam must be positive");
+		this.codec = codec;
+		this.comparator = comparator;
+		// one run is being filled while the previous run is spilled
+		this.runSize = Math.max(1, maxRecordsInRam / 2);
+		this.tmpDir = tmpDir;
+		this.pool = pool;
+		this.ramRecords = new Object[Math.min(runSize, 1024)];
+	}
+	public ParallelSortingCollection(SortingCollection.Codec<T> codec, Comparator<T> comparator, int maxRecordsInRam, Path tmpDir) {
+		this(codec, comparator, maxRecordsInRam, tmpDir, ForkJoinPool.commonPool());
+	}
+	public void add(T record) {
+		if (doneAdding) throw new IllegalStateException("Cannot add after calling doneAdding()");
+		if (numRecordsInRam == runSize) {
+			spillToDisk();
+		}
+		if (numRecordsInRam == ramRecords.length) {
+			ramRecords = Arrays.copyOf(ramRecords, (int)Math.min(runSize, 2L * ramRecords.length));
+		}
+		ramRecords[numRecordsInRam++] = record;
+	}
+	/**
+	 * Sorts and writes the current in-memory run in the background
+	 */
+	private void spillToDisk() {
+		waitForSpill();
+		Object[] records = ramRecords;
+		int count = numRecordsInRam;
+		Path file;
+		try {
+			file = Files.createTempFile(tmpDir, "gridss.tmp.sortingcollection.", ".tmp");
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		}
+		files.add(file);
+		spill = pool.submit(() -> {
+			sort(records, count);
+			SortingCollection.Codec<T> spillCodec = codec.clone();
+			try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(file), IO_BUFFER_SIZE)) {
+				spillCodec.setOutputStream(os);
+				for (int i = 0; i < count; i++) {
+					spillCodec.encode((T)records[i]);
+				}
+			} catch (IOException e) {
+				throw new RuntimeIOException(e);
+			}
+		});
+		ramRecords = new Object[runSize];
+		numRecordsInRam = 0;
+	}
+	private void waitForSpill() {
+		if (spill == null) return;
+		try {
+			spill.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			log.error(e, "Error writing sorted records to temporary file.");
+			throw new RuntimeException(e.getCause());
+		} finally {
+			spill = null;
+		}
+	}
+	private void sort(Object[] records, int count) {
+		// parallelSort is stable for object arrays
+		Arrays.parallelSort((T[])records, 0, count, comparator);
+	}
+	public void doneAdding() {
+		if (doneAdding) return;
+		doneAdding = true;
+		waitForSpill();
+		pool.submit(() -> sort(ramRecords, numRecordsInRam)).join();
+	}
+	/**
+	 * Number of runs spilled to disk
+	 */
+	public int getSpillCount() {
+		return files.size();
+	}
+	/**
+	 * Returns the records in sorted order. Can only be called once.
+	 */
+	@Override
+	public CloseableIterator<T> iterator() {
+		if (!doneAdding) throw new IllegalStateException("doneAdding() must be called before iterating");
+		if (cleanedUp) throw new IllegalStateException("Cannot iterate after cleanup() has been called");
+		return new MergingIterator();
+	}
+	/**
+	 * Deletes all temporary files
+	 */
+	public void cleanup() {
+		cleanedUp = true;
+		if (spill != null) {
+			try {
+				waitForSpill();
+			} catch (RuntimeException e) {
+				// already failed; continue with cleanup
+			}
+		}
+		ramRecords = null;
+		for (Path file : files) {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				log.warn(e, "Unable to delete ", file);
+			}
+		}
+		files.clear();
+	}
+	private class Run {
+		/**
+		 * Run index used to tie-break equal records to retain insertion order
+		 */
+		private final int index;
+		private final InputStream is;
+		private final SortingCollection.Codec<T> runCodec;
+		private int offset = 0;
+		private T head;
+		private Run(int index, Path file) throws IOException {
+			this.index = index;
+			this.is = new BufferedInputStream(Files.newInputStream(file), IO_BUFFER_SIZE);
+			this.runCodec = codec.clone();
+			this.runCodec.setInputStream(is);
+			advance();
+		}
+		private Run(int index) {
+			this.index = index;
+			this.is = null;
+			this.runCodec = null;
+			advance();
+		}
+		private void advance() {
+			if (runCodec != null) {
+				head = runCodec.decode();
+				if (head == null) {
+					CloserUtil.close(is);
+				}
+			} else if (offset < numRecordsInRam) {
+				head = (T)ramRecords[offset];
+				ramRecords[offset++] = null;
+			} else {
+				head = null;
+			}
+		}
+	}
+	private class MergingIterator implements CloseableIterator<T> {
+		private final PriorityQueue<Run> queue = new PriorityQueue<>(files.size() + 1, (a, b) -> {
+			int cmp = comparator.compare(a.head, b.head);
+			if (cmp == 0) {
+				cmp = Integer.compare(a.index, b.index);
+			}
+			return cmp;
+		});
+		private final List<Run> runs = new ArrayList<>();
+		private MergingIterator() {
+			try {
+				for (int i = 0; i < files.size(); i++) {
+					runs.add(new Run(i, files.get(i)));
+				}
+			} catch (IOException e) {
+				close();
+				throw new RuntimeIOException(e);
+			}
+			runs.add(new Run(files.size()));
+			for (Run run : runs) {
+				if (run.head != null) {
+					queue.add(run);
+				}
+			}
+		}
+		@Override
+		public boolean hasNext() {
+			return !queue.isEmpty();
+		}
+		@Override
+		public T next() {
+			Run run = queue.poll();
+			if (run == null) throw new NoSuchElementException();
+			T result = run.head;
+			run.advance();
+			if (run.head != null) {
+				queue.add(run);
+			}
+			return result;
+		}
+		@Override
+		public void close() {
+			queue.clear();
+			for (Run run : runs) {
+				CloserUtil.close(run.is);
+			}
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package au.edu.wehi.idsv.util;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.Ordering;
 
 import java.util.Iterator;
@@ -14,6 +15,9 @@ import java.util.function.Function;
  * The transform is applied to multiple iterator elements in parallel with
  * the order of the resultant iteration unchanged.
  * 
+ * Exceptions thrown by the transform are rethrown by next() when the
+ * element that raised them is reached.
+ * 
  * This class is not thread-safe and access from multiple threads should
  * be synchronised.
  * 
@@ -22,12 +26,17 @@ import java.util.function.Function;
  */
 public class ParallelTransformIterator<T, U> implements Iterator<U> {
 	private static class TransformResult<U> {
-		public TransformResult(final long ordinal, final U result) {
+		public TransformResult(final long ordinal, final U result, final Throwable error) {
 			this.ordinal = ordinal;
 			this.result = result;
+			this.error = error;
 		}
 		public final long ordinal;
 		public final U result;
+		/**
+		 * Exception thrown by the transform function
+		 */
+		public final Throwable error;
 		@SuppressWarnings("rawtypes")
 		public static Ordering<TransformResult> byOrdinal = Ordering.natural().onResultOf((TransformResult tr) -> tr.ordinal);
 	}
@@ -88,11 +97,15 @@ public class ParallelTransformIterator<T, U> implements Iterator<U> {
 			}
 			results.add(record);
 		}
-		U result = results.poll().result;
+		TransformResult<U> tr = results.poll();
 		dispatched--;
 		lastOrdinal++;
+		if (tr.error != null) {
+			Throwables.throwIfUnchecked(tr.error);
+			throw new RuntimeException(tr.error);
+		}
 		dispatch();
-		return result;
+		return tr.result;
 	}
 	/**
 	 * Dispatches records until we have lookahead records.
@@ -106,7 +119,16 @@ public class ParallelTransformIterator<T, U> implements Iterator<U> {
 	}
 	private void dispatch(final long ordinal, final T record) {
 		threadpool.execute(() -> {
-			completed.add(new TransformResult<U>(ordinal, f.apply(record)));
+			// failures are passed back to the consumer since a missing
+			// result would block next() indefinitely
+			U result = null;
+			Throwable error = null;
+			try {
+				result = f.apply(record);
+			} catch (Throwable t) {
+				error = t;
+			}
+			completed.add(new TransformResult<U>(ordinal, result, error));
 		});
 	}
 }
@@ -0,0 +1,141 @@
+package au.edu.wehi.idsv.util;
+
+import htsjdk.samtools.util.CloserUtil;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.ToIntFunction;
+
+/**
+ * Partitions the records of the given iterator across a number of consuming iterators.
+ *
+ * The underlying iterator is only advanced when a consuming iterator requires
+ * a record and has none buffered. Records are read by the requesting consumer thread
+ * and records belonging to other partitions are buffered for those partitions.
+ * 
+ * When the number of records buffered for each partition is unbounded, consumers
+ * never wait for each other so consumers can be run on a thread pool smaller than
+ * the number of partitions. When bounded, a consumer reading a record for a partition
+ * with a full buffer waits for that partition to be consumed so, as with
+ * {@link DuplicatingIterable}, all partitions must be consumed concurrently.
+ *
+ * This wrapper is thread-safe provided each partition iterator is consumed by a single thread.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class PartitioningIterable<T> implements Closeable {
+	private final Iterator<T> it;
+	private final ToIntFunction<T> partitionFunction;
+	private final List<BlockingQueue<T>> queues = new ArrayList<>();
+	private volatile boolean closed = false;
+	/**
+	 * Record read from the underlying iterator that has not yet been added to its full partition buffer
+	 */
+	private T pending = null;
+	private int pendingPartition;
+	private volatile boolean blockedOnFullPartition = false;
+	/**
+	 * Partitions records from the given iterator without bounding the records buffered for each partition
+	 * @param partitions number of partitions
+	 * @param it underlying iterator
+	 * @param partitionFunction partition of each record. Records with a negative partition are discarded.
+	 */
+	public PartitioningIterable(int partitions, Iterator<T> it, ToIntFunction<T> partitionFunction) {
+		this(partitions, it, partitionFunction, Integer.MAX_VALUE);
+	}
+	/**
+	 * Partitions records from the given iterator
+	 * @param partitions number of partitions
+	 * @param it underlying iterator
+	 * @param partitionFunction partition of each record. Records with a negative partition are discarded.
+	 * @param bufferSize maximum number of records buffered for each partition.
+	 * Partitions must be consumed concurrently if the buffer size is bounded.
+	 */
+	public PartitioningIterable(int partitions, Iterator<T> it, ToIntFunction<T> partitionFunction, int bufferSize) {
+		if (it == null) throw new IllegalArgumentException();
+		if (bufferSize < 1) throw new IllegalArgumentException("bufferSize must be positive");
+		this.it = it;
+		this.partitionFunction = partitionFunction;
+		for (int i = 0; i < partitions; i++) {
+			queues.add(new LinkedBlockingQueue<>(bufferSize));
+		}
+	}
+	/**
+	 * Iterator over the records of the given partition
+	 */
+	public Iterator<T> iterator(int partition) {
+		return new PartitionIterator(partition);
+	}
+	/**
+	 * Reads from the underlying iterator until a record for the given partition is found
+	 * @return true if a record for the partition was found, false if the underlying iterator is exhausted
+	 */
+	private synchronized boolean fill(int partition) {
+		BlockingQueue<T> target = queues.get(partition);
+		while (target.isEmpty() && !closed) {
+			if (pending == null) {
+				if (!it.hasNext()) break;
+				T record = it.next();
+				int p = partitionFunction.applyAsInt(record);
+				if (p < 0) continue;
+				pending = record;
+				pendingPartition = p;
+			}
+			if (queues.get(pendingPartition).offer(pending)) {
+				pending = null;
+			} else {
+				// Wait for the partition to be consumed. The monitor is released
+				// whilst waiting so the consumer of the full partition is not
+				// blocked if it also requires a fill.
+				blockedOnFullPartition = true;
+				try {
+					wait(100);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				}
+			}
+		}
+		return !target.isEmpty();
+	}
+	private synchronized void notifyPartitionConsumed() {
+		blockedOnFullPartition = false;
+		notifyAll();
+	}
+	private class PartitionIterator implements Iterator<T> {
+		private final int partition;
+		private final BlockingQueue<T> queue;
+		public PartitionIterator(int partition) {
+			this.partition = partition;
+			this.queue = queues.get(partition);
+		}
+		@Override
+		public boolean hasNext() {
+			return !queue.isEmpty() || fill(partition);
+		}
+		@Override
+		public T next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			T record = queue.poll();
+			if (blockedOnFullPartition) {
+				notifyPartitionConsumed();
+			}
+			return record;
+		}
+	}
+	@Override
+	public void close() {
+		// release any consumer waiting on a full partition buffer before
+		// waiting for it to finish with the underlying iterator
+		closed = true;
+		synchronized (this) {
+			CloserUtil.close(it);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package au.edu.wehi.idsv.util;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Wrapper iterator that reads ahead from the given source iterator using tasks
+ * on a shared executor.
+ *
+ * Unlike {@link AsyncBufferedIterator}, no thread is dedicated to each iterator.
+ * Read-ahead tasks never block: a task fills read-ahead buffers until
+ * bufferCount buffers are full then exits, and is rescheduled when the consumer
+ * frees a buffer. This allows many more iterators than executor threads to be
+ * read concurrently without risk of deadlock.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class PooledBufferedIterator<T> implements CloseableIterator<T> {
+	private static final List<Object> EOS = new ArrayList<>(0); // End of stream sentinel
+	private final Iterator<T> underlying;
+	private final Executor executor;
+	private final int bufferCount;
+	private final int batchSize;
+	private final BlockingQueue<List<Object>> buffer = new LinkedBlockingQueue<>();
+	/**
+	 * Set when a read-ahead task is either scheduled or running
+	 */
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+	private volatile boolean closed = false;
+	private volatile Throwable exception = null;
+	private boolean eosWritten = false; // only accessed by the read-ahead task
+	private boolean eosRead = false;
+	private List<Object> current = Collections.emptyList();
+	private int offset = 0;
+	/**
+	 * @param iterator iterator to traverse
+	 * @param executor executor to perform read-ahead on
+	 * @param bufferCount number of read-ahead buffers
+	 * @param batchSize size of each read-ahead buffer
+	 */
+	public PooledBufferedIterator(Iterator<T> iterator, Executor executor, int bufferCount, int batchSize) {
+		if (iterator == null) throw new IllegalArgumentException();
+		if (bufferCount <= 0 || batchSize <= 0) throw new IllegalArgumentException("Buffer size must be at least 1.");
+		this.underlying = iterator;
+		this.executor = executor;
+		this.bufferCount = bufferCount;
+		this.batchSize = batchSize;
+		schedule();
+	}
+	private void schedule() {
+		if (!closed && scheduled.compareAndSet(false, true)) {
+			executor.execute(this::readAhead);
+		}
+	}
+	private void readAhead() {
+		try {
+			while (!eosWritten && !closed && buffer.size() < bufferCount) {
+				List<Object> batch = new ArrayList<>(batchSize);
+				while (batch.size() < batchSize && underlying.hasNext()) {
+					batch.add(underlying.next());
+				}
+				if (!batch.isEmpty()) {
+					buffer.add(batch);
+				}
+				if (batch.size() < batchSize) {
+					eosWritten = true;
+					buffer.add(EOS);
+				}
+			}
+		} catch (Throwable e) {
+			exception = e;
+			eosWritten = true;
+			buffer.add(EOS);
+		}
+		if (eosWritten || closed) {
+			// leave scheduled set so no further read-ahead tasks are created
+			CloserUtil.close(underlying);
+			return;
+		}
+		scheduled.set(false);
+		// the consumer could have freed a buffer before we cleared the flag
+		if (buffer.size() < bufferCount) {
+			schedule();
+		}
+	}
+	@Override
+	public boolean hasNext() {
+		while (offset >= current.size()) {
+			if (eosRead || closed) return false;
+			try {
+				current = buffer.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+			offset = 0;
+			if (current == EOS) {
+				eosRead = true;
+				if (exception != null) {
+					throw new RuntimeException(exception);
+				}
+			} else {
+				schedule();
+			}
+		}
+		return true;
+	}
+	@Override
+	public T next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		return (T)current.get(offset++);
+	}
+	@Override
+	public void close() {
+		closed = true;
+		if (scheduled.compareAndSet(false, true)) {
+			// no read-ahead task will ever be scheduled
+			CloserUtil.close(underlying);
+		}
+		buffer.clear();
+		current = Collections.emptyList();
+	}
+}
@@ -5,11 +5,13 @@ import au.edu.wehi.idsv.IdsvVariantContext;
 import au.edu.wehi.idsv.IntermediateFileUtil;
 import au.edu.wehi.idsv.ProcessingContext;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
+import au.edu.wehi.idsv.util.AutoClosingMergedIterator;
 import au.edu.wehi.idsv.util.FileHelper;
+import au.edu.wehi.idsv.util.ParallelSortingCollection;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.Log;
-import htsjdk.samtools.util.SortingCollection;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.writer.Options;
 import htsjdk.variant.variantcontext.writer.VariantContextWriter;
@@ -20,6 +22,7 @@ import htsjdk.variant.vcf.VCFRecordCodec;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -49,6 +52,21 @@ public class VcfFileUtil {
 			throw new RuntimeException(e);
 		}
 	}
+	/**
+	 * Sorts a VCF by position
+	 * @param input unsorted input
+	 * @param output sorted output to write
+	 * @param maxRecordsInRam number of records to buffer in memory before spilling to disk.
+	 * Callers sorting concurrently should divide the in-memory record budget between the concurrent sorts.
+	 */
+	public static void sort(ProcessingContext processContext, File input, File output, int maxRecordsInRam) {
+		try {
+			new SortCallable(processContext, input, output, IdsvVariantContext.VariantContextByLocationStart(processContext.getDictionary()), false, maxRecordsInRam).call();
+		} catch (IOException e) {
+			log.error(log);
+			throw new RuntimeException(e);
+		}
+	}
 	/**
 	 * VCF Sort task
 	 * @author Daniel Cameron
@@ -60,6 +78,7 @@ public class VcfFileUtil {
 		private final File output;
 		private final Comparator<VariantContext> sortComparator;
 		private final boolean indexed;
+		private final int maxRecordsInRam;
 		public SortCallable(ProcessingContext processContext, File input, File output) {
 			this(processContext, input, output, IdsvVariantContext.VariantContextByLocationStart(processContext.getDictionary()));
 		}
@@ -67,11 +86,15 @@ public class VcfFileUtil {
 			this(processContext, input, output, sortComparator, false);
 		}
 		private SortCallable(ProcessingContext processContext, File input, File output, Comparator<VariantContext> sortComparator, boolean writeIndex) {
+			this(processContext, input, output, sortComparator, writeIndex, processContext.getFileSystemContext().getMaxBufferedRecordsPerFile());
+		}
+		private SortCallable(ProcessingContext processContext, File input, File output, Comparator<VariantContext> sortComparator, boolean writeIndex, int maxRecordsInRam) {
 			this.processContext = processContext;
 			this.input = input;
 			this.output = output;
 			this.sortComparator = sortComparator;
 			this.indexed = writeIndex;
+			this.maxRecordsInRam = maxRecordsInRam;
 		}
 		@Override
 		public Void call() throws IOException {
@@ -80,7 +103,7 @@ public class VcfFileUtil {
 				return null;
 			}
 			log.info("Sorting to " + output);
-			SortingCollection<VariantContext> collection = null;
+			ParallelSortingCollection<VariantContext> collection = null;
 			File tmpout = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(output, "gridss.tmp.sorting.") : output;
 			if (tmpout != output && tmpout.exists()) {
 				FileHelper.delete(tmpout, true);
@@ -89,11 +112,10 @@ public class VcfFileUtil {
 				try (VCFFileReader reader = new VCFFileReader(input, false)) {
 					VCFHeader header = reader.getFileHeader();
 					try (CloseableIterator<VariantContext> rit = reader.iterator()) {
-						collection = SortingCollection.newInstance(
-								VariantContext.class,
+						collection = new ParallelSortingCollection<>(
 								new VCFRecordCodec(header),
 								sortComparator,
-								processContext.getFileSystemContext().getMaxBufferedRecordsPerFile(),
+								maxRecordsInRam,
 								processContext.getFileSystemContext().getTemporaryDirectory().toPath());
 						while (rit.hasNext()) {
 							collection.add(rit.next());
@@ -115,13 +137,60 @@ public class VcfFileUtil {
 				}
 			} finally {
 				if (collection != null) collection.cleanup();
-				if (tmpout != output & tmpout.exists()) {
+				if (tmpout != output && tmpout.exists()) {
 					FileHelper.delete(tmpout, true);
 				}
 			}
 			return null;
 		}
 	}
+	/**
+	 * Merges the given sorted VCFs into a single sorted output file.
+	 * @param input input files. Each input file must be sorted according to the given sort order.
+	 * @param output output file
+	 * @param sortComparator sort order of the input files
+	 * @throws IOException
+	 */
+	public static void merge(ProcessingContext processContext, List<File> input, File output, Comparator<VariantContext> sortComparator) throws IOException {
+		if (IntermediateFileUtil.checkIntermediate(output)) {
+			log.info("Not merging as output already exists: " + output);
+			return;
+		}
+		File tmpout = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(output, "gridss.tmp.merging.") : output;
+		List<VCFFileReader> readers = new ArrayList<>(input.size());
+		List<CloseableIterator<VariantContext>> iterators = new ArrayList<>(input.size());
+		try {
+			for (File f : input) {
+				VCFFileReader reader = new VCFFileReader(f, false);
+				readers.add(reader);
+				iterators.add(new AsyncBufferedIterator<>(reader.iterator(), f.getName()));
+			}
+			try (VariantContextWriter writer = processContext.getVariantContextWriter(tmpout, false)) {
+				// input files are already sorted so a k-way merge is sufficient
+				try (AutoClosingMergedIterator<VariantContext> it = new AutoClosingMergedIterator<>(iterators, sortComparator)) {
+					while (it.hasNext()) {
+						writer.add(it.next());
+					}
+				}
+			}
+			if (tmpout != output) {
+				FileHelper.move(tmpout, output, true);
+			}
+		} finally {
+			for (CloseableIterator<VariantContext> it : iterators) {
+				CloserUtil.close(it);
+			}
+			for (VCFFileReader reader : readers) {
+				CloserUtil.close(reader);
+			}
+			if (tmpout != output && tmpout.exists()) {
+				FileHelper.delete(tmpout, true);
+			}
+		}
+	}
+	public static void merge(ProcessingContext processContext, List<File> input, File output) throws IOException {
+		merge(processContext, input, output, IdsvVariantContext.VariantContextByLocationStart(processContext.getDictionary()));
+	}
 	/**
 	 * Concatenates the input files in order.
 	 * @param input input files.
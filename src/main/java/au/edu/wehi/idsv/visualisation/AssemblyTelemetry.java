@@ -1,17 +1,25 @@
 package au.edu.wehi.idsv.visualisation;
 
 import au.edu.wehi.idsv.BreakendDirection;
+import au.edu.wehi.idsv.visualisation.PositionalDeBruijnGraphTracker.MemoizationStats;
+import com.google.common.base.Strings;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.util.Log;
 
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 
 public class AssemblyTelemetry implements Closeable {
 	private static final Log log = Log.getInstance(AssemblyTelemetry.class);
+	private static final String HEADER = "chunk,direction,operation,contig,start,end,count,filtered,us," + MemoizationStats.header() + "\n";
+	/**
+	 * Empty memoization statistics columns for records other than memoizationRemoval
+	 */
+	private static final String NO_MEMOIZATION_STATS = Strings.repeat(",", MemoizationStats.header().split(",").length);
 	private final File file;
 	private final SAMSequenceDictionary dict;
 	private BlockingQueue<String> queue;
@@ -23,7 +31,8 @@ public class AssemblyTelemetry implements Closeable {
 		thread.setDaemon(true);
 		thread.start();
 	}
-	private static void writeHeader(FileWriter writer) {
+	private static void writeHeader(FileWriter writer) throws IOException {
+		writer.write(HEADER);
 	}
 	public AssemblyChunkTelemetry getTelemetry(int chunkNumber, BreakendDirection direction) {
 		return new AssemblyChunkTelemetry(chunkNumber, direction);
@@ -36,21 +45,26 @@ public class AssemblyTelemetry implements Closeable {
 			this.direction = direction;
 		}
 		public void loadGraph(int referenceIndex, int start, int end, int nodes, boolean filtered, long nsSinceLast) {
-			String str = String.format("%d,%s,load,%s,%d,%d,%d,%b,%d\n", chunk, direction.toChar(), dict.getSequence(referenceIndex).getSequenceName(), start, end, nodes, filtered, nsSinceLast / 1000);
+			String str = String.format("%d,%s,load,%s,%d,%d,%d,%b,%d%s\n", chunk, direction.toChar(), dict.getSequence(referenceIndex).getSequenceName(), start, end, nodes, filtered, nsSinceLast / 1000, NO_MEMOIZATION_STATS);
 			put(str);
 		}
 
 		public void flushContigs(int referenceIndex, int flushStart, int flushEnd, int contigsFlushed, long nsSinceLast) {
-			String str = String.format("%d,%s,flushContigs,%s,%d,%d,%d,,%d\n", chunk, direction.toChar(), dict.getSequence(referenceIndex).getSequenceName(), flushStart, flushEnd, contigsFlushed, nsSinceLast / 1000);
+			String str = String.format("%d,%s,flushContigs,%s,%d,%d,%d,,%d%s\n", chunk, direction.toChar(), dict.getSequence(referenceIndex).getSequenceName(), flushStart, flushEnd, contigsFlushed, nsSinceLast / 1000, NO_MEMOIZATION_STATS);
 			put(str);
 		}
 
 		public void flushReferenceNodes(int referenceIndex, int flushStart, int flushEnd, int readsFlushed, long nsSinceLast) {
-			String str = String.format("%d,%s,flushReferenceNodes,%s,%d,%d,%d,,%d\n", chunk, direction.toChar(), dict.getSequence(referenceIndex).getSequenceName(), flushStart, flushEnd, readsFlushed, nsSinceLast / 1000);
+			String str = String.format("%d,%s,flushReferenceNodes,%s,%d,%d,%d,,%d%s\n", chunk, direction.toChar(), dict.getSequence(referenceIndex).getSequenceName(), flushStart, flushEnd, readsFlushed, nsSinceLast / 1000, NO_MEMOIZATION_STATS);
 			put(str);
 		}
 		public void callContig(int referenceIndex, int start, int end, int nodes, int reads, boolean repeatsSimplified) {
 		}
+
+		public void memoizationRemoval(int referenceIndex, int start, int end, MemoizationStats stats, long nsElapsed) {
+			String str = String.format("%d,%s,memoizationRemoval,%s,%d,%d,%d,,%d,%s\n", chunk, direction.toChar(), dict.getSequence(referenceIndex).getSequenceName(), start, end, stats.removed, nsElapsed / 1000, stats);
+			put(str);
+		}
 	}
 	private void put(String str) {
 		try {
@@ -35,12 +35,17 @@ public class PositionalDeBruijnGraphTracker implements Closeable {
 		public int descendentPathsRemoved;
 		public int pathsReset;
 		public int pathsRestarted;
+		public long totalRemovals;
+		public long totalDescendentPathsRemoved;
+		public long totalPathsReset;
 		public static String header() {
-			return "memoizedSize,memoizedRemovalSize,memoizedPathsRemovalSize,descendentPathsRemovalSize,memoizedPathsReactivateSize,memoizedPathsRestartSize";
+			return "memoizedSize,memoizedRemovalSize,memoizedPathsRemovalSize,descendentPathsRemovalSize,memoizedPathsReactivateSize,memoizedPathsRestartSize"
+					+ ",totalRemovals,totalDescendentPathsRemovalSize,totalPathsReactivateSize";
 		}
 		@Override
 		public String toString() {
-			return String.format("%d,%d,%d,%d,%d,%d", nodes, removed, pathsRemoved, descendentPathsRemoved, pathsReset, pathsRestarted);
+			return String.format("%d,%d,%d,%d,%d,%d,%d,%d,%d", nodes, removed, pathsRemoved, descendentPathsRemoved, pathsReset, pathsRestarted,
+					totalRemovals, totalDescendentPathsRemoved, totalPathsReset);
 		}
 	}
 	private BufferedWriter writer;
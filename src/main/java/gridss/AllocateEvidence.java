@@ -6,10 +6,13 @@ import au.edu.wehi.idsv.SequentialEvidenceAllocator.VariantEvidenceSupport;
 import au.edu.wehi.idsv.configuration.VariantCallingConfiguration;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
 import au.edu.wehi.idsv.util.AutoClosingIterator;
+import au.edu.wehi.idsv.util.ParallelTransformIterator;
 import au.edu.wehi.idsv.validation.OrderAssertingIterator;
 import au.edu.wehi.idsv.validation.PairedEvidenceTracker;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.MoreExecutors;
 import gridss.cmdline.VcfTransformCommandLineProgram;
 import htsjdk.samtools.SAMRecordIterator;
 import htsjdk.samtools.SamReader;
@@ -19,9 +22,11 @@ import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 
 @CommandLineProgramProperties(
         summary = "Evidence reallocation is required to ensure that any given read/read pair/assembly "
@@ -35,6 +40,8 @@ import java.util.concurrent.ExecutorService;
 )
 public class AllocateEvidence extends VcfTransformCommandLineProgram {
 	private static final Log log = Log.getInstance(AllocateEvidence.class);
+	private static final int BATCH_SIZE = 64;
+	private static final int BATCH_EVIDENCE_COUNT = 4096;
 	@Argument(doc="Evidence allocation strategy used to uniquely assign evidence.")
 	public EvidenceAllocationStrategy ALLOCATION_STRATEGY = EvidenceAllocationStrategy.GREEDY;
 	@Argument(doc="Indicates whether supporting assemblies should be allocated.")
@@ -70,12 +77,22 @@ public class AllocateEvidence extends VcfTransformCommandLineProgram {
 	@Override
 	public CloseableIterator<VariantContextDirectedEvidence> iterator(CloseableIterator<VariantContextDirectedEvidence> calls, ExecutorService threadpool) {
 		log.info("Allocating evidence"); 
+		if (threadpool == null) {
+			threadpool = MoreExecutors.newDirectExecutorService();
+		}
 		CloseableIterator<DirectedEvidence> rawReads = new AsyncBufferedIterator<>(getReadIterator(), "mergedReads-allocation");
 		CloseableIterator<DirectedEvidence> reads = new AsyncBufferedIterator<>(annotateAssembly(rawReads), "annotate-associated-assembly");
 		CloseableIterator<DirectedEvidence> assemblies = new AsyncBufferedIterator<>(getAssemblyIterator(), "assembly-allocation");
 		Iterator<VariantEvidenceSupport> annotator = new SequentialEvidenceAllocator(getContext(), calls, reads, assemblies, SAMEvidenceSource.maximumWindowSize(getContext(), getSamEvidenceSources(), getAssemblySource()), true);
 		CloseableIterator<VariantEvidenceSupport> bufferedAnnotator = new AsyncBufferedIterator<>(annotator, "annotator", 2, 8);
-		Iterator<VariantContextDirectedEvidence> it = Iterators.transform(bufferedAnnotator, bp -> annotate(bp));
+		// Call annotation is performed in parallel with the called position resolution
+		// performed in call order as it depends on the calls preceding it
+		Iterator<List<StructuralVariationCallBuilder>> preparedIt = new ParallelTransformIterator<>(
+				batch(bufferedAnnotator),
+				batch -> batch.stream().map(ves -> prepare(ves)).collect(Collectors.toList()),
+				WORKER_THREADS + 1,
+				threadpool);
+		Iterator<VariantContextDirectedEvidence> it = Iterators.transform(Iterators.concat(Iterators.transform(preparedIt, List::iterator)), builder -> annotate(builder));
 		it = Iterators.filter(it, v -> v != null);
 		return new AutoClosingIterator<>(it, calls, rawReads, reads, assemblies, bufferedAnnotator);
 	}
@@ -94,14 +111,38 @@ public class AllocateEvidence extends VcfTransformCommandLineProgram {
 		SAMRecordIterator assit = reader.iterator();
 		return new AutoClosingIterator<>(new AssemblyAssociator(it, assit, windowSize), assit, reader);
 	}
-	private VariantContextDirectedEvidence annotate(VariantEvidenceSupport ves) {
-		VariantCallingConfiguration vc = getContext().getConfig().getVariantCalling();
+	/**
+	 * Groups calls into batches to amortise the cost of handing work off to the thread pool.
+	 * Batches are also bounded by total evidence count so calls with extensive
+	 * support are not queued behind each other in a single batch. 
+	 */
+	private static Iterator<List<VariantEvidenceSupport>> batch(Iterator<VariantEvidenceSupport> it) {
+		return new AbstractIterator<List<VariantEvidenceSupport>>() {
+			@Override
+			protected List<VariantEvidenceSupport> computeNext() {
+				if (!it.hasNext()) return endOfData();
+				List<VariantEvidenceSupport> batch = new ArrayList<>();
+				int evidenceCount = 0;
+				while (it.hasNext() && batch.size() < BATCH_SIZE && evidenceCount < BATCH_EVIDENCE_COUNT) {
+					VariantEvidenceSupport ves = it.next();
+					batch.add(ves);
+					evidenceCount += ves.support.size();
+				}
+				return batch;
+			}
+		};
+	}
+	private StructuralVariationCallBuilder prepare(VariantEvidenceSupport ves) {
 		StructuralVariationCallBuilder builder = new StructuralVariationCallBuilder(getContext(), lookup, ves.variant);
 		builder.setUpdateAssemblyInformation(ALLOCATE_ASSEMBLIES);
 		builder.setUpdateReadInformation(ALLOCATE_READS);
 		for (DirectedEvidence e : ves.support) {
 			builder.addEvidence(e);
 		}
+		return builder.prepare();
+	}
+	private VariantContextDirectedEvidence annotate(StructuralVariationCallBuilder builder) {
+		VariantCallingConfiguration vc = getContext().getConfig().getVariantCalling();
 		VariantContextDirectedEvidence be = builder.make();
 		if (ALLOCATE_READS && ALLOCATE_ASSEMBLIES) {
 			if (!vc.writeFiltered) {
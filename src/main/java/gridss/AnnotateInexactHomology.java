@@ -6,19 +6,28 @@ import au.edu.wehi.idsv.alignment.BreakpointHomology;
 import au.edu.wehi.idsv.util.AutoClosingIterator;
 import au.edu.wehi.idsv.util.ParallelTransformIterator;
 import gridss.cmdline.VcfTransformCommandLineProgram;
+import com.google.common.collect.Iterators;
 import htsjdk.samtools.util.CloseableIterator;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 
 public class AnnotateInexactHomology extends VcfTransformCommandLineProgram {
+	private static final int BATCH_SIZE = 64;
 	@Override
 	public CloseableIterator<VariantContextDirectedEvidence> iterator(CloseableIterator<VariantContextDirectedEvidence> calls, ExecutorService threadpool) {
-		Iterator<VariantContextDirectedEvidence> it = new ParallelTransformIterator<VariantContextDirectedEvidence, VariantContextDirectedEvidence>(
-				calls,
-				call -> (call instanceof VariantContextDirectedBreakpoint) ? BreakpointHomology.annotate(getContext(), (VariantContextDirectedBreakpoint)call) : call,
+		// annotate in batches so each worker reuses its alignment buffers and
+		// the per-record task overhead is amortised
+		Iterator<List<VariantContextDirectedEvidence>> batchIt = new ParallelTransformIterator<List<VariantContextDirectedEvidence>, List<VariantContextDirectedEvidence>>(
+				Iterators.partition(calls, BATCH_SIZE),
+				batch -> batch.stream()
+						.map(call -> (call instanceof VariantContextDirectedBreakpoint) ? BreakpointHomology.annotate(getContext(), (VariantContextDirectedBreakpoint)call) : call)
+						.collect(Collectors.toList()),
 				WORKER_THREADS + 1,
 				threadpool);
+		Iterator<VariantContextDirectedEvidence> it = Iterators.concat(Iterators.transform(batchIt, List::iterator));
 		return new AutoClosingIterator<>(it, calls);
 	}
 	public static void main(String[] argv) {
@@ -3,6 +3,7 @@ package gridss;
 import au.edu.wehi.idsv.*;
 import gridss.cmdline.VcfTransformCommandLineProgram;
 import htsjdk.samtools.util.CloseableIterator;
+import org.broadinstitute.barclay.argparser.Argument;
 
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -12,13 +13,16 @@ public class AnnotateReferenceCoverage extends VcfTransformCommandLineProgram {
 	 * Defensive programming safety margin around expected window size
 	 */
 	private final int WINDOW_SIZE_SAFETY_MARGIN = 100000;
+	@Argument(doc="Use the BAM index to read only the regions around each breakend instead of the entire input file. "
+			+ "Recommended when annotating a small number of calls against high coverage input files.", optional=true)
+	public boolean USE_BAM_INDEX = false;
 	@Override
 	public CloseableIterator<VariantContextDirectedEvidence> iterator(CloseableIterator<VariantContextDirectedEvidence> calls, ExecutorService threadpool) {
 		ProcessingContext context = getContext();
 		List<SAMEvidenceSource> sources = getSamEvidenceSources();
 		AssemblyEvidenceSource asm = getAssemblySource();
 		int windowSize = SAMEvidenceSource.maximumWindowSize(context, sources, asm);
-		return new SequentialCoverageAnnotator<VariantContextDirectedEvidence>(context, sources, calls, 2 * windowSize + WINDOW_SIZE_SAFETY_MARGIN, threadpool);
+		return new SequentialCoverageAnnotator<VariantContextDirectedEvidence>(context, sources, calls, 2 * windowSize + WINDOW_SIZE_SAFETY_MARGIN, USE_BAM_INDEX ? 2 * windowSize : 0, threadpool);
 	}
 	public static void main(String[] argv) {
         System.exit(new AnnotateReferenceCoverage().instanceMain(argv));
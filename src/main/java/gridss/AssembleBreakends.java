@@ -27,7 +27,7 @@ public class AssembleBreakends extends MultipleSamFileCommandLineProgram {
     public int JOB_INDEX = 0;
 	@Argument(doc="Used for scaling assembly across multiple jobs. " +
 			"This is the total number of jobs to spread the assembly over. " +
-			"Work will be allocated across all jobs based on an even distribution of genomic regions to process. " +
+			"Work will be allocated across all jobs such that the estimated assembly cost of each job is approximately equal. " +
 			"After all jobs have completed, output should be gathered by rerunning AssembleBreakends with JOB_NODES=1.", optional=true)
 	public int JOB_NODES = 1;
 	public static void main(String[] argv) {
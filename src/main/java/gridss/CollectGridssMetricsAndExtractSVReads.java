@@ -1,11 +1,13 @@
 package gridss;
 
+import au.edu.wehi.idsv.CoverageCalculationMethod;
 import gridss.analysis.CollectGridssMetrics;
 import gridss.cmdline.CommandLineProgramHelper;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 import picard.analysis.MetricAccumulationLevel;
 import picard.analysis.SinglePassSamProgram;
+import picard.cmdline.argumentcollections.RequiredOutputArgumentCollection;
 
 import java.io.File;
 import java.util.Collection;
@@ -54,9 +56,33 @@ public class CollectGridssMetricsAndExtractSVReads extends CollectGridssMetrics
     public File METRICS_OUTPUT;
     @Argument(shortName = "SVO", doc = "File to write the output to.")
     public File SV_OUTPUT;
+    @Argument(doc="Binned coverage BED. If specified, coverage is calculated during the same pass through the input file as SV read extraction.", optional=true)
+    public File COVERAGE_OUTPUT = null;
+    @Argument(doc="GC-adjusted binned coverage BED. Requires COVERAGE_OUTPUT and GC_ADJUSTMENT.", optional=true)
+    public File COVERAGE_GC_OUTPUT = null;
+    @Argument(doc="Bin size used to output coverage", optional=true)
+    public int COVERAGE_BIN_SIZE = 1000;
+    @Argument(doc="GRIDSS VCF containing breakpoint to split coverage bins at", optional=true)
+    public File COVERAGE_VCF = null;
+    @Argument(doc="Approach used to calculate coverage. See ComputeCoverage for details.", optional=true)
+    public CoverageCalculationMethod COVERAGE_METHOD = CoverageCalculationMethod.READ;
+    @Argument(doc="GC adjustment file. See ComputeCoverage for details.", optional=true)
+    public File GC_ADJUSTMENT = null;
+    @Argument(doc="Fragment size to use when inferring fragment GC content of single-end or discordantly paired reads. Required if COVERAGE_OUTPUT is specified.", optional=true)
+    public Integer UNPAIRED_FRAGMENT_SIZE = null;
     public static void main(final String[] args) {
         new CollectGridssMetricsAndExtractSVReads().instanceMainWithExit(args);
     }
+    @Override
+    protected String[] customCommandLineValidation() {
+        if (COVERAGE_OUTPUT != null && UNPAIRED_FRAGMENT_SIZE == null) {
+            return new String[] { "UNPAIRED_FRAGMENT_SIZE is required if COVERAGE_OUTPUT is specified." };
+        }
+        if (COVERAGE_GC_OUTPUT != null && (COVERAGE_OUTPUT == null || GC_ADJUSTMENT == null)) {
+            return new String[] { "COVERAGE_OUTPUT and GC_ADJUSTMENT are required if COVERAGE_GC_OUTPUT is specified." };
+        }
+        return super.customCommandLineValidation();
+    }
     protected ExtractSVReads getExtractSVReads() {
     	ExtractSVReads extract = new ExtractSVReads();
     	CommandLineProgramHelper.copyInputs(this, extract);
@@ -104,10 +130,57 @@ public class CollectGridssMetricsAndExtractSVReads extends CollectGridssMetrics
 			}
         };
     }
+    protected ComputeCoverage getComputeCoverage(File reference) {
+    	ComputeCoverage coverage = new ComputeCoverage();
+    	CommandLineProgramHelper.copyInputs(this, coverage);
+    	coverage.output = new RequiredOutputArgumentCollection(COVERAGE_OUTPUT);
+    	coverage.OUTPUT_GC = COVERAGE_GC_OUTPUT;
+    	coverage.BIN_SIZE = COVERAGE_BIN_SIZE;
+    	coverage.VCF = COVERAGE_VCF;
+    	coverage.GC_ADJUSTMENT = GC_ADJUSTMENT;
+    	coverage.COVERAGE_METHOD = COVERAGE_METHOD;
+    	coverage.UNPAIRED_FRAGMENT_SIZE = UNPAIRED_FRAGMENT_SIZE;
+    	coverage.READ_PAIR_CONCORDANCE_MIN_FRAGMENT_SIZE = READ_PAIR_CONCORDANCE_MIN_FRAGMENT_SIZE;
+    	coverage.READ_PAIR_CONCORDANCE_MAX_FRAGMENT_SIZE = READ_PAIR_CONCORDANCE_MAX_FRAGMENT_SIZE;
+    	coverage.READ_PAIR_CONCORDANT_PERCENT = READ_PAIR_CONCORDANT_PERCENT;
+    	coverage.INSERT_SIZE_METRICS = INSERT_SIZE_METRICS;
+    	coverage.INCLUDE_DUPLICATES = INCLUDE_DUPLICATES;
+    	coverage.INPUT = INPUT;
+    	coverage.setReferenceSequence(reference);
+    	return coverage;
+    }
+    public ProgramInterface createComputeCoverage() {
+    	return new ProgramInterface() {
+			@Override
+			public SinglePassSamProgram makeInstance(final String outbase,
+                                                     final String outext,
+                                                     final File input,
+                                                     final File reference,
+                                                     final Set<MetricAccumulationLevel> metricAccumulationLevel,
+                                                     final File dbSnp,
+                                                     final File intervals,
+                                                     final File refflat,
+                                                     final  Set<String> ignoreSequence) {
+				return getComputeCoverage(reference);
+			}
+			@Override
+			public boolean needsReferenceSequence() {
+				return true;
+			}
+			@Override
+			public boolean supportsMetricAccumulationLevel() {
+				return false;
+			}
+        };
+    }
     @Override
     public void setProgramsToRun(Collection<ProgramInterface> programsToRun) {
     	// Inject SV read extraction
     	programsToRun.add(createExtractSVReads());
+    	if (COVERAGE_OUTPUT != null) {
+    		// Calculate coverage in the same pass
+    		programsToRun.add(createComputeCoverage());
+    	}
     	super.setProgramsToRun(programsToRun);
     }
 }
@@ -82,7 +82,12 @@ public class ComputeCoverage extends GcSinglePassSamProgram {
 		}
 	}
 	@Override
+	protected boolean usesNoRefReads() {
+		return false;
+	}
+	@Override
 	protected void acceptRead(SAMRecord record, ReferenceSequence refSeq) {
+		if (record.getReadUnmappedFlag()) return;
 		if (record.getDuplicateReadFlag() && !INCLUDE_DUPLICATES) return;
 		ReadGcSummary gc = new ReadGcSummary(record, refSeq, UNPAIRED_FRAGMENT_SIZE, getReadPairConcordanceCalculator());
 		if (ica_gc != null) {
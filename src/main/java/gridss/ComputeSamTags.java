@@ -7,6 +7,7 @@ import au.edu.wehi.idsv.sam.SAMRecordUtil;
 import au.edu.wehi.idsv.sam.TemplateTagsIterator;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
 import au.edu.wehi.idsv.util.FileHelper;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import gridss.cmdline.ReferenceCommandLineProgram;
 import htsjdk.samtools.*;
@@ -22,6 +23,7 @@ import picard.cmdline.StandardOptionDefinitions;
 import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 
@@ -58,14 +60,15 @@ public class ComputeSamTags extends ReferenceCommandLineProgram {
 	public boolean FIX_MISSING_HARD_CLIP = true;
 	@Argument(doc="Recalculates the supplementary flag based on the SA tag. The supplementary flag should be set on all split read alignments except one.", optional=true)
 	public boolean RECALCULATE_SA_SUPPLEMENTARY = true;
-	@Argument(shortName="T", doc="Tags to calculate")
-	public Set<String> TAGS = Sets.newHashSet(
+	public static final Set<String> DEFAULT_TAGS = ImmutableSet.of(
 			SAMTag.NM.name(),
 			SAMTag.SA.name(),
 			SAMTag.R2.name(),
 			//SAMTag.Q2.name(), // dropping Q2 to improve performance
 			SAMTag.MC.name(),
 			SAMTag.MQ.name());
+	@Argument(shortName="T", doc="Tags to calculate")
+	public Set<String> TAGS = Sets.newHashSet(DEFAULT_TAGS);
 	@Override
 	protected int doWork() {
 		log.debug("Setting language-neutral locale");
@@ -130,6 +133,27 @@ public class ComputeSamTags extends ReferenceCommandLineProgram {
 			}
 		}
 	}
+	/**
+	 * Populates computed tags for the records of a single fragment already held in memory.
+	 * Equivalent to {@link #compute} for input containing only the given records.
+	 * @param records all records sharing the same read name
+	 */
+	public static void computeFragment(List<SAMRecord> records, ReferenceLookup reference, Set<String> tags,
+			boolean softenHardClips,
+			boolean fixMates,
+			boolean fixDuplicates,
+			boolean fixSA,
+			boolean fixTruncated,
+			boolean recalculateSupplementary) {
+		if (tags.contains(SAMTag.NM.name()) || tags.contains(SAMTag.SA.name())) {
+			for (SAMRecord r : records) {
+				SAMRecordUtil.ensureNmTag(reference, r);
+			}
+		}
+		if (!Sets.intersection(tags, SAMRecordUtil.TEMPLATE_TAGS).isEmpty() || softenHardClips) {
+			SAMRecordUtil.calculateTemplateTags(records, tags, softenHardClips, fixMates, fixDuplicates, fixSA, fixTruncated, recalculateSupplementary);
+		}
+	}
 	private boolean isReferenceRequired() {
 		return TAGS.contains(SAMTag.NM.name()) ||
 				TAGS.contains(SAMTag.SA.name()); // SA requires NM
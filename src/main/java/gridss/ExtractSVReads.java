@@ -6,6 +6,7 @@ import au.edu.wehi.idsv.picard.ReferenceLookup;
 import au.edu.wehi.idsv.sam.ChimericAlignment;
 import au.edu.wehi.idsv.sam.SAMRecordUtil;
 import au.edu.wehi.idsv.util.FileHelper;
+import com.google.common.collect.Sets;
 import gridss.analysis.CollectStructuralVariantReadMetrics;
 import gridss.cmdline.ProcessStructuralVariantReadsCommandLineProgram;
 import gridss.filter.*;
@@ -13,15 +14,20 @@ import htsjdk.samtools.*;
 import htsjdk.samtools.SAMFileHeader.SortOrder;
 import htsjdk.samtools.filter.AlignedFilter;
 import htsjdk.samtools.filter.SamRecordFilter;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.SortingCollection;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 @CommandLineProgramProperties(
 		summary = "Extracts reads and read pairs supporting putative structural variations. "
@@ -35,9 +41,22 @@ public class ExtractSVReads extends ProcessStructuralVariantReadsCommandLineProg
 	private static final Log log = Log.getInstance(ExtractSVReads.class);
     @Argument(shortName="MO", doc="Output file containing SV metrics", optional=true)
     public File METRICS_OUTPUT;
+    @Argument(doc="Populate computed SAM tags on the extracted reads (as per ComputeSamTags) and write the output in queryname order. "
+    		+ "This removes the need for separate queryname sorting and ComputeSamTags passes over intermediate files. "
+    		+ "If the INPUT is not queryname sorted, extracted reads are sorted in memory, spilling to TMP_DIR only when MAX_RECORDS_IN_RAM is exceeded.", optional=true)
+    public boolean COMPUTE_SAM_TAGS = false;
+    @Argument(doc="Tags to calculate when COMPUTE_SAM_TAGS is set", optional=true)
+    public Set<String> TAGS = Sets.newHashSet(ComputeSamTags.DEFAULT_TAGS);
     private CollectStructuralVariantReadMetrics metricsCollector;
     private File tmpoutput;
     private SAMFileWriter writer;
+    private SAMFileHeader outputHeader;
+    /**
+     * Extracted reads awaiting queryname sorting prior to tag computation.
+     * Only used when computing tags for input that is not already grouped by read name.
+     */
+    private SortingCollection<SAMRecord> querynameSorted;
+    private ReferenceLookup tagReference;
     private SamRecordFilter readfilter;
     private SamRecordFilter pairfilter;
     private int count;
@@ -51,7 +70,20 @@ public class ExtractSVReads extends ProcessStructuralVariantReadsCommandLineProg
     	}
     	SAMFileWriterFactory writerFactory = new SAMFileWriterFactory();
     	tmpoutput = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(OUTPUT, "gridss.tmp.ExtractSVReads.") : OUTPUT;
-    	writer = writerFactory.makeSAMOrBAMWriter(header, true, tmpoutput);
+    	outputHeader = header;
+    	if (COMPUTE_SAM_TAGS) {
+    		outputHeader = header.clone();
+    		outputHeader.setSortOrder(SortOrder.queryname);
+    		if (header.getSortOrder() != SortOrder.queryname) {
+    			querynameSorted = SortingCollection.newInstance(
+    					SAMRecord.class,
+    					new BAMRecordCodec(outputHeader),
+    					new SAMRecordQueryNameComparator(),
+    					MAX_RECORDS_IN_RAM,
+    					TMP_DIR == null || TMP_DIR.isEmpty() ? new Path[] { IOUtil.getDefaultTmpDirPath() } : TMP_DIR.stream().map(File::toPath).toArray(Path[]::new));
+    		}
+    	}
+    	writer = writerFactory.makeSAMOrBAMWriter(outputHeader, true, tmpoutput);
     	
     	IndelReadFilter indelFilter = new IndelReadFilter(INDELS ? MIN_INDEL_SIZE : Integer.MAX_VALUE);
 		ClippedReadFilter softClipFilter = new ClippedReadFilter(CLIPPED ? MIN_CLIP_LENGTH : Integer.MAX_VALUE); 
@@ -180,23 +212,49 @@ public class ExtractSVReads extends ProcessStructuralVariantReadsCommandLineProg
 	@Override
 	protected void acceptFragment(List<SAMRecord> records, ReferenceLookup lookup) {
 		boolean[] extract = shouldExtract(records, lookup);
+		// metrics must be calculated before tag computation modifies the extracted records
+		if (metricsCollector != null) {
+			metricsCollector.acceptFragment(records, lookup);
+		}
+		List<SAMRecord> extracted = new ArrayList<>(records.size());
 		for (int i = 0; i < records.size(); i++) {
 			SAMRecord r = records.get(i);
 			if (extract[i]) {
-				writer.addAlignment(r);
+				extracted.add(r);
 				count++;
 			} else {
 				// ignore remaining reads
 			}
 		}
-		if (metricsCollector != null) {
-			metricsCollector.acceptFragment(records, lookup);
+		if (!COMPUTE_SAM_TAGS) {
+			for (SAMRecord r : extracted) {
+				writer.addAlignment(r);
+			}
+		} else if (querynameSorted != null) {
+			tagReference = lookup;
+			for (SAMRecord r : extracted) {
+				querynameSorted.add(r);
+			}
+		} else if (!extracted.isEmpty()) {
+			// input is already grouped by read name so we can tag the fragment in place
+			ComputeSamTags.computeFragment(extracted, lookup, TAGS, true, true, true, true, true, true);
+			for (SAMRecord r : extracted) {
+				writer.addAlignment(r);
+			}
 		}
 	}
 	@Override
 	protected void finish() {
-		writer.close();
 		try {
+			if (querynameSorted != null) {
+				querynameSorted.doneAdding();
+				try (CloseableIterator<SAMRecord> it = querynameSorted.iterator()) {
+					ComputeSamTags.compute(it, writer, tagReference, TAGS, true, true, true, true, true, true, INPUT.getName() + "-");
+				}
+				querynameSorted.cleanup();
+				querynameSorted = null;
+			}
+			writer.close();
 			if (tmpoutput != OUTPUT) {
 				FileHelper.move(tmpoutput, OUTPUT, true);
 			}
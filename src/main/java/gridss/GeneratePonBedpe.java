@@ -1,14 +1,21 @@
 package gridss;
 
 import au.edu.wehi.idsv.*;
+import au.edu.wehi.idsv.bed.BedpeIterator;
+import au.edu.wehi.idsv.bed.BedpeRecord;
 import au.edu.wehi.idsv.bed.BedpeWriter;
 import au.edu.wehi.idsv.configuration.GridssConfiguration;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
 import au.edu.wehi.idsv.util.AutoClosingIterator;
+import au.edu.wehi.idsv.util.LoserTreeMergingIterator;
+import au.edu.wehi.idsv.util.PooledBufferedIterator;
 import au.edu.wehi.idsv.vcf.VcfFormatAttributes;
 import au.edu.wehi.idsv.vcf.VcfSvConstants;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.Log;
 import htsjdk.variant.variantcontext.Genotype;
@@ -27,11 +34,13 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 @CommandLineProgramProperties(
@@ -57,6 +66,15 @@ public class GeneratePonBedpe extends CommandLineProgram {
 	private int MAX_BREAKPOINT_HOMOLOGY_LENGTH = 2000;
 	@Argument(doc="Number of worker threads to spawn. Defaults to number of cores available with a maximum of one 1 per input file.", shortName="THREADS")
 	public int WORKER_THREADS = Runtime.getRuntime().availableProcessors();
+	@Argument(doc="Existing PON BEDPE to add the INPUT normals to. Can be the same file as OUTPUT.", optional=true)
+	public File INPUT_BEDPE;
+	@Argument(doc="Existing PON BED to add the INPUT normals to. Can be the same file as SINGLE_BREAKEND_OUTPUT.", optional=true)
+	public File INPUT_BED;
+	/**
+	 * Number of variants in each read-ahead buffer of each input VCF
+	 */
+	private static final int READ_AHEAD_BATCH_SIZE = 256;
+	private static final int READ_AHEAD_BUFFERS = 2;
 	@Override
 	protected boolean requiresReference() {
 		return true;
@@ -78,23 +96,41 @@ public class GeneratePonBedpe extends CommandLineProgram {
 			}
 			GenomicProcessingContext pc = new GenomicProcessingContext(new FileSystemContext(TMP_DIR.get(0), TMP_DIR.get(0), MAX_RECORDS_IN_RAM), REFERENCE_SEQUENCE, null);
 			pc.setCommandLineProgram(this);
-			Iterator<BreakendSummary> mergedIt = filteredMerge(pc, INPUT);
-			BedpeMergingCounter pe = new BedpeMergingCounter();
-			BedMergingCounter se = new BedMergingCounter(true);
-			BedpeWriter writer = new BedpeWriter(pc.getDictionary(), OUTPUT);
-			BufferedWriter sewriter = Files.newBufferedWriter(SINGLE_BREAKEND_OUTPUT.toPath(), StandardCharsets.US_ASCII);
-			while(mergedIt.hasNext()) {
-				BreakendSummary bs = mergedIt.next();
-				if (bs instanceof BreakpointSummary) {
-					writeBedpe(pe.process((BreakpointSummary)bs), writer);
-				} else {
-					writeBed(pc.getReference().getSequenceDictionary(), sewriter, se.process(bs));
+			// existing PON records are loaded before any output is written in case we are updating in-place
+			List<Pair<BreakendSummary, Integer>> existing = new ArrayList<>();
+			if (INPUT_BEDPE != null) {
+				existing.addAll(readBedpe(pc.getDictionary(), INPUT_BEDPE));
+			}
+			if (INPUT_BED != null) {
+				existing.addAll(readBed(pc.getDictionary(), INPUT_BED));
+			}
+			existing.sort(ByBreakend);
+			ExecutorService threadpool = Executors.newFixedThreadPool(Math.max(1, Math.min(WORKER_THREADS, INPUT.size())),
+					new ThreadFactoryBuilder().setDaemon(true).setNameFormat("GeneratePonBedpe-%d").build());
+			try (CloseableIterator<BreakendSummary> vcfIt = filteredMerge(pc, INPUT, threadpool)) {
+				Iterator<Pair<BreakendSummary, Integer>> mergedIt = new LoserTreeMergingIterator<>(ImmutableList.of(
+						existing.iterator(),
+						Iterators.transform(vcfIt, bs -> Pair.create(bs, 1))), ByBreakend);
+				BedpeMergingCounter pe = new BedpeMergingCounter();
+				BedMergingCounter se = new BedMergingCounter(true);
+				BedpeWriter writer = new BedpeWriter(pc.getDictionary(), OUTPUT);
+				BufferedWriter sewriter = Files.newBufferedWriter(SINGLE_BREAKEND_OUTPUT.toPath(), StandardCharsets.US_ASCII);
+				while(mergedIt.hasNext()) {
+					Pair<BreakendSummary, Integer> weighted = mergedIt.next();
+					BreakendSummary bs = weighted.getFirst();
+					if (bs instanceof BreakpointSummary) {
+						writeBedpe(pe.process((BreakpointSummary)bs, weighted.getSecond()), writer);
+					} else {
+						writeBed(pc.getReference().getSequenceDictionary(), sewriter, se.process(bs, weighted.getSecond()));
+					}
 				}
+				writeBedpe(pe.finish(), writer);
+				writeBed(pc.getReference().getSequenceDictionary(), sewriter, se.finish());
+				writer.close();
+				sewriter.close();
+			} finally {
+				threadpool.shutdownNow();
 			}
-			writeBedpe(pe.finish(), writer);
-			writeBed(pc.getReference().getSequenceDictionary(), sewriter, se.finish());
-			writer.close();
-			sewriter.close();
 		} catch (IOException e) {
 			log.error(e);
 			return 1;
@@ -121,23 +157,51 @@ public class GeneratePonBedpe extends CommandLineProgram {
 		}
 	}
 
-	private Iterator<BreakendSummary> filteredMerge(GenomicProcessingContext pc, List<File> file) {
-    	List<CloseableIterator<BreakendSummary>> fileIt = new ArrayList<>();
-    	for (File f : file) {
-    		fileIt.add(getFilteredIterator(pc, f));
+	private static final Comparator<Pair<BreakendSummary, Integer>> ByBreakend = Comparator.comparing(Pair::getFirst, BreakendSummary.ByStartEnd);
+	/**
+	 * Reads an existing PON BEDPE
+	 * @return breakpoints and their PON counts
+	 */
+	private static List<Pair<BreakendSummary, Integer>> readBedpe(SAMSequenceDictionary dict, File file) throws IOException {
+		List<Pair<BreakendSummary, Integer>> list = new ArrayList<>();
+		try (BedpeIterator it = new BedpeIterator(file, dict)) {
+			while (it.hasNext()) {
+				BedpeRecord record = it.next();
+				list.add(Pair.create(record.bp, Integer.parseInt(record.score)));
+			}
+		}
+		return list;
+	}
+	/**
+	 * Reads an existing PON BED
+	 * @return breakends and their PON counts
+	 */
+	private static List<Pair<BreakendSummary, Integer>> readBed(SAMSequenceDictionary dict, File file) throws IOException {
+		List<Pair<BreakendSummary, Integer>> list = new ArrayList<>();
+		for (String line : Files.readAllLines(file.toPath(), StandardCharsets.US_ASCII)) {
+			if (line.isEmpty() || line.charAt(0) == '#') continue;
+			String[] fields = line.split("\t");
+			SAMSequenceRecord seq = dict.getSequence(fields[0]);
+			if (seq == null) {
+				throw new IllegalArgumentException(String.format("Contig %s missing from reference genome", fields[0]));
+			}
+			int start = Integer.parseInt(fields[1]) + 1;
+			int end = Integer.parseInt(fields[2]);
+			BreakendDirection dir = fields[5].equals("+") ? BreakendDirection.Forward : BreakendDirection.Backward;
+			list.add(Pair.create(new BreakendSummary(seq.getSequenceIndex(), dir, start, start, end), Integer.parseInt(fields[4])));
+		}
+		return list;
+	}
+	/**
+	 * Merges the filtered breakends of all input files.
+	 * Each input is decoded and filtered by tasks on the given executor.
+	 */
+	private CloseableIterator<BreakendSummary> filteredMerge(GenomicProcessingContext pc, List<File> file, Executor executor) {
+		List<CloseableIterator<BreakendSummary>> fileIt = new ArrayList<>();
+		for (File f : file) {
+			fileIt.add(new PooledBufferedIterator<>(getFilteredIterator(pc, f), executor, READ_AHEAD_BUFFERS, READ_AHEAD_BATCH_SIZE));
 		}
-		// allocate VCF files to worker threads
-		final AtomicInteger counter = new AtomicInteger(0);
-		final int size = WORKER_THREADS;
-		final List<Iterator<BreakendSummary>> partitioned = fileIt.stream()
-				.collect(Collectors.groupingBy(it -> counter.getAndIncrement() % size))
-				.values()
-				.stream()
-				.map(list -> list.size() == 1 ? list.get(0) : Iterators.mergeSorted(list, BreakendSummary.ByStartEnd))
-				.map(it -> new AsyncBufferedIterator<>(it,"AsyncVCF"))
-				.collect(Collectors.toList());
-		Iterator<BreakendSummary> mergedIt = new AsyncBufferedIterator<>(Iterators.mergeSorted(partitioned, BreakendSummary.ByStartEnd), "Merged VCF reader");
-		return mergedIt;
+		return new AsyncBufferedIterator<>(new LoserTreeMergingIterator<>(fileIt, BreakendSummary.ByStartEnd), "Merged VCF reader");
 	}
 	private CloseableIterator<BreakendSummary> getFilteredIterator(GenomicProcessingContext pc, File file) {
 		VCFFileReader vcfReader = new VCFFileReader(file, false);
@@ -2,8 +2,10 @@ package gridss;
 
 import au.edu.wehi.idsv.GenomicProcessingContext;
 import au.edu.wehi.idsv.SplitReadRealigner;
+import au.edu.wehi.idsv.alignment.AlignerFactory;
 import au.edu.wehi.idsv.alignment.ExternalProcessFastqAligner;
 import au.edu.wehi.idsv.alignment.ExternalProcessStreamingAligner;
+import au.edu.wehi.idsv.alignment.InProcessStreamingAligner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import gridss.cmdline.ReferenceCommandLineProgram;
@@ -62,6 +64,10 @@ public class SoftClipsToSplitReads extends ReferenceCommandLineProgram {
 			+ " The aligner must support using \"-\" as the input filename when reading from stdin."
 			+ " The sort order of the input file will not be retained.", optional=true)
 	public boolean ALIGNER_STREAMING = false;
+	@Argument(doc="Perform realignment in-process using a reference kmer seed index and Smith-Waterman extension instead of an external aligner."
+			+ " The seed index requires 8 bytes per reference base so this option is only suitable for small genomes and targeted panels."
+			+ " ALIGNER_COMMAND_LINE and ALIGNER_STREAMING are ignored when this option is set.", optional=true)
+	public boolean ALIGNER_IN_PROCESS = false;
     @Argument(doc="Command line arguments to run external aligner. Aligner output should be written to stdout and the records MUST match the input fastq order."
     		+ "Java argument formatting is used with %1$s being the fastq file to align, "
     		+ "%2$s the reference genome, and %3$d the number of threads to use.", optional=true)
@@ -87,9 +93,14 @@ public class SoftClipsToSplitReads extends ReferenceCommandLineProgram {
     		SamReaderFactory readerFactory = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE);
         	SAMFileWriterFactory writerFactory = new SAMFileWriterFactory();
         	
-        	if (ALIGNER_STREAMING) {
-        		ExternalProcessStreamingAligner aligner = new ExternalProcessStreamingAligner(readerFactory, ALIGNER_COMMAND_LINE, REFERENCE_SEQUENCE, WORKER_THREADS, getReference().getSequenceDictionary());
-        		realigner.createSupplementaryAlignments(aligner, INPUT, OUTPUT, OUTPUT_UNORDERED_RECORDS, WRITE_OA, MAX_RECORDS_IN_RAM);
+        	if (ALIGNER_IN_PROCESS) {
+        		try (InProcessStreamingAligner aligner = new InProcessStreamingAligner(getReference(), AlignerFactory.create(), WORKER_THREADS)) {
+        			realigner.createSupplementaryAlignments(aligner, INPUT, OUTPUT, OUTPUT_UNORDERED_RECORDS, WRITE_OA, MAX_RECORDS_IN_RAM);
+        		}
+        	} else if (ALIGNER_STREAMING) {
+        		try (ExternalProcessStreamingAligner aligner = new ExternalProcessStreamingAligner(readerFactory, ALIGNER_COMMAND_LINE, REFERENCE_SEQUENCE, WORKER_THREADS, getReference().getSequenceDictionary())) {
+        			realigner.createSupplementaryAlignments(aligner, INPUT, OUTPUT, OUTPUT_UNORDERED_RECORDS, WRITE_OA, MAX_RECORDS_IN_RAM);
+        		}
         	} else {
         		ExternalProcessFastqAligner aligner = new ExternalProcessFastqAligner(readerFactory, writerFactory, ALIGNER_COMMAND_LINE);
         		realigner.createSupplementaryAlignments(aligner, INPUT, OUTPUT, OUTPUT_UNORDERED_RECORDS, WRITE_OA);
@@ -102,6 +102,12 @@ public abstract class GcSinglePassSamProgram extends SinglePassSamProgram {
 		this.reference = ref;
 	}
 	@Override
+	public void setReferenceSequence(File referenceFile) {
+		super.setReferenceSequence(referenceFile);
+		// getReference() requires REFERENCE_SEQUENCE even when instanceMain() is bypassed
+		REFERENCE_SEQUENCE = referenceFile;
+	}
+	@Override
 	protected String[] customCommandLineValidation() {
 		String[] val = referenceCustomCommandLineValidation();
 		if (val != null) {
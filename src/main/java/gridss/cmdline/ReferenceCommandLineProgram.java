@@ -26,6 +26,11 @@ public abstract class ReferenceCommandLineProgram extends CommandLineProgram {
     private FileSystemContext fsc;
 	private ReferenceLookup reference;
 	public ReferenceLookup getReference() {
+		if (REFERENCE_SEQUENCE == null && referenceSequence != null) {
+			// REFERENCE_SEQUENCE is only populated by instanceMain() so is not set
+			// when running as part of a multi-program pass
+			REFERENCE_SEQUENCE = referenceSequence.getReferenceFile();
+		}
 		IOUtil.assertFileIsReadable(REFERENCE_SEQUENCE);
 		if (reference == null) {
 			ensureSequenceDictionary(REFERENCE_SEQUENCE, this);
@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -301,6 +302,61 @@ public class AssemblyEvidenceSourceTest extends IntermediateFilesTest {
 		assertEquals(100, list.size());
 	}
 	@Test
+	public void single_pass_bidirectional_assembly_should_not_affect_assembly_results() throws IOException {
+		List<SAMRecord> in = new ArrayList<>();
+		for (int i = 50; i < 150; i++) {
+			in.add(withSequence("AATTAATCGCAAGAGCGGGTTGTATTCGACGCCAAGTCAGCTGAAGCACCATTACCCGATCAAAACATATCAGAAATGATTGACGTATCACAAGCCGGA", Read(0, i, "41M58S"))[0]);
+			in.add(withSequence("AATTAATCGCAAGAGCGGGTTGTATTCGACGCCAAGTCAGCTGAAGCACCATTACCCGATCAAAACATATCAGAAATGATTGACGTATCACAAGCCGGA", Read(0, i + 100, "58S41M"))[0]);
+		}
+		createInput(in);
+		ProcessingContext pc = getCommandlineContext();
+		pc.getConfig().getAssembly().minReads = 1;
+		pc.getConfig().chunkSize = 100;
+		SAMEvidenceSource ses = new SAMEvidenceSource(pc, input, null, 0);
+		FileHelper.copy(ses.getFile(), ses.getSVFile(), true);
+		AssemblyEvidenceSource aes = new AssemblyEvidenceSource(pc, ImmutableList.of(ses), assemblyFile);
+		aes.assembleBreakends(null);
+		List<String> expected = getRecords(assemblyFile).stream().map(r -> r.getAlignmentStart() + r.getCigarString() + S(r.getReadBases())).sorted().collect(Collectors.toList());
+
+		pc.getConfig().getAssembly().singlePassBidirectional = true;
+		File singlePassFile = new File(super.testFolder.getRoot(), "singlepass.bam");
+		AssemblyEvidenceSource singlePass = new AssemblyEvidenceSource(pc, ImmutableList.of(ses), singlePassFile);
+		ExecutorService threadpool = Executors.newFixedThreadPool(8);
+		singlePass.assembleBreakends(threadpool);
+		threadpool.shutdown();
+		List<String> actual = getRecords(singlePassFile).stream().map(r -> r.getAlignmentStart() + r.getCigarString() + S(r.getReadBases())).sorted().collect(Collectors.toList());
+		assertEquals(200, actual.size());
+		assertEquals(expected, actual);
+	}
+	@Test
+	public void evidence_cache_should_not_affect_assembly_results() throws IOException {
+		List<SAMRecord> in = new ArrayList<>();
+		for (int i = 50; i < 150; i++) {
+			in.add(withSequence("AATTAATCGCAAGAGCGGGTTGTATTCGACGCCAAGTCAGCTGAAGCACCATTACCCGATCAAAACATATCAGAAATGATTGACGTATCACAAGCCGGA", Read(0, i, "41M58S"))[0]);
+			in.add(withSequence("AATTAATCGCAAGAGCGGGTTGTATTCGACGCCAAGTCAGCTGAAGCACCATTACCCGATCAAAACATATCAGAAATGATTGACGTATCACAAGCCGGA", Read(0, i + 100, "58S41M"))[0]);
+		}
+		createInput(in);
+		ProcessingContext pc = getCommandlineContext();
+		pc.getConfig().getAssembly().minReads = 1;
+		pc.getConfig().getAssembly().evidenceCacheSize = 0;
+		pc.getConfig().chunkSize = 100;
+		SAMEvidenceSource ses = new SAMEvidenceSource(pc, input, null, 0);
+		FileHelper.copy(ses.getFile(), ses.getSVFile(), true);
+		AssemblyEvidenceSource aes = new AssemblyEvidenceSource(pc, ImmutableList.of(ses), assemblyFile);
+		aes.assembleBreakends(null);
+		List<String> expected = getRecords(assemblyFile).stream().map(r -> r.getAlignmentStart() + r.getCigarString() + S(r.getReadBases())).sorted().collect(Collectors.toList());
+
+		pc.getConfig().getAssembly().evidenceCacheSize = 65536;
+		for (ExecutorService threadpool : new ExecutorService[] { null, Executors.newFixedThreadPool(8) }) {
+			File cachedFile = new File(super.testFolder.getRoot(), "cached" + (threadpool == null ? "" : "mt") + ".bam");
+			AssemblyEvidenceSource cached = new AssemblyEvidenceSource(pc, ImmutableList.of(ses), cachedFile);
+			cached.assembleBreakends(threadpool);
+			if (threadpool != null) threadpool.shutdown();
+			List<String> actual = getRecords(cachedFile).stream().map(r -> r.getAlignmentStart() + r.getCigarString() + S(r.getReadBases())).sorted().collect(Collectors.toList());
+			assertEquals(expected, actual);
+		}
+	}
+	@Test
 	public void bounds_check_should_apply_to_final_assembly_SAMRecord() throws IOException {
 		// TODO: how do we check
 		List<SAMRecord> in = new ArrayList<>();
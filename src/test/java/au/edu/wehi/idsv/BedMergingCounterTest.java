@@ -26,5 +26,17 @@ public class BedMergingCounterTest extends TestHelper {
         assertEquals(1, (int)result.get(1).getSecond());
         assertEquals(1, (int)result.get(2).getSecond());
     }
+    @Test
+    public void shouldMergeWeightedRecords() throws IOException {
+        List<Pair<BreakendSummary, Integer>> result = new ArrayList<>();
+        BedMergingCounter c = new BedMergingCounter(true);
+        result.addAll(c.process(new BreakendSummary(0, FWD, 1, 1, 3), 3));
+        result.addAll(c.process(new BreakendSummary(0, FWD, 2)));
+        result.addAll(c.process(new BreakendSummary(0, FWD, 4), 2));
+        result.addAll(c.finish());
+        assertEquals(1, result.size());
+        assertEquals(6, (int)result.get(0).getSecond());
+        assertEquals(new BreakendSummary(0, FWD, 1, 1, 4), result.get(0).getFirst());
+    }
 
 }
\ No newline at end of file
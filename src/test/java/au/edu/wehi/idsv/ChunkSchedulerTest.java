@@ -0,0 +1,121 @@
+package au.edu.wehi.idsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import htsjdk.samtools.QueryInterval;
+
+
+public class ChunkSchedulerTest extends TestHelper {
+	private static List<QueryInterval[]> chunks(int count, int size) {
+		List<QueryInterval[]> list = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			list.add(new QueryInterval[] { new QueryInterval(0, i * size + 1, (i + 1) * size) });
+		}
+		return list;
+	}
+	/**
+	 * Cost proportional to chunk size with a hot spot at 1000-1100
+	 */
+	private static final ToDoubleFunction<QueryInterval[]> HOTSPOT = c -> {
+		double cost = 0;
+		for (QueryInterval qi : c) {
+			cost += qi.end - qi.start + 1;
+			cost += 100 * Math.max(0, Math.min(qi.end, 1100) - Math.max(qi.start, 1000) + 1);
+		}
+		return cost;
+	};
+	@Test
+	public void should_number_chunks_in_genomic_order() {
+		ChunkScheduler cs = new ChunkScheduler(chunks(10, 1000), HOTSPOT, 0, 1);
+		assertEquals(10, cs.getChunks().size());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i, cs.getChunks().get(i).getChunkNumber());
+			assertEquals(i * 1000 + 1, cs.getChunks().get(i).getIntervals()[0].start);
+		}
+	}
+	@Test
+	public void byDescendingCost_should_schedule_most_expensive_first() {
+		ChunkScheduler cs = new ChunkScheduler(chunks(10, 1000), HOTSPOT, 0, 1);
+		List<ChunkScheduler.Chunk> ordered = ChunkScheduler.byDescendingCost(cs.getChunks());
+		assertEquals(1, ordered.get(0).getChunkNumber());
+		// ties broken by genomic position
+		assertEquals(0, ordered.get(1).getChunkNumber());
+		assertEquals(2, ordered.get(2).getChunkNumber());
+	}
+	@Test
+	public void getJobNodeChunks_should_allocate_each_chunk_exactly_once() {
+		ChunkScheduler cs = new ChunkScheduler(chunks(25, 1000), HOTSPOT, 0, 1);
+		Set<Integer> allocated = new HashSet<>();
+		for (int node = 0; node < 4; node++) {
+			int last = -1;
+			for (ChunkScheduler.Chunk c : cs.getJobNodeChunks(node, 4)) {
+				assertTrue(allocated.add(c.getChunkNumber()));
+				assertTrue(c.getChunkNumber() > last);
+				last = c.getChunkNumber();
+			}
+		}
+		assertEquals(25, allocated.size());
+	}
+	@Test
+	public void getJobNodeChunks_should_balance_cost() {
+		ChunkScheduler cs = new ChunkScheduler(chunks(25, 1000), HOTSPOT, 0, 1);
+		List<ChunkScheduler.Chunk> node0 = cs.getJobNodeChunks(0, 2);
+		List<ChunkScheduler.Chunk> node1 = cs.getJobNodeChunks(1, 2);
+		assertEquals(1, node0.get(0).getChunkNumber());
+		double load0 = node0.stream().mapToDouble(c -> c.getCost()).sum();
+		double load1 = node1.stream().mapToDouble(c -> c.getCost()).sum();
+		// hot chunk is allocated with fewer other chunks
+		assertTrue(node0.size() < node1.size());
+		assertTrue(Math.abs(load0 - load1) <= 1000);
+	}
+	@Test
+	public void should_split_expensive_chunks() {
+		ChunkScheduler cs = new ChunkScheduler(chunks(10, 1000), HOTSPOT, 2, 100);
+		assertTrue(cs.getChunks().size() > 10);
+		// mean cost of (10000 + 100 * 101) / 10
+		double threshold = 2 * 2010;
+		int expectedStart = 1;
+		for (int i = 0; i < cs.getChunks().size(); i++) {
+			ChunkScheduler.Chunk c = cs.getChunks().get(i);
+			assertEquals(i, c.getChunkNumber());
+			for (QueryInterval qi : c.getIntervals()) {
+				assertEquals(expectedStart, qi.start);
+				expectedStart = qi.end + 1;
+			}
+			int size = c.getIntervals()[0].end - c.getIntervals()[0].start + 1;
+			assertTrue(size < 100 || c.getCost() <= threshold);
+		}
+		assertEquals(10001, expectedStart);
+	}
+	@Test
+	public void should_split_chunks_spanning_multiple_contigs() {
+		List<QueryInterval[]> list = ImmutableList.of(new QueryInterval[] {
+				new QueryInterval(0, 1, 10),
+				new QueryInterval(1, 1, 30),
+				new QueryInterval(2, 1, 10),
+			}, new QueryInterval[] {
+				new QueryInterval(3, 1, 50),
+		});
+		ChunkScheduler cs = new ChunkScheduler(list, c -> c[0].referenceIndex == 3 ? 1 : Arrays.stream(c).mapToInt(qi -> qi.end - qi.start + 1).sum(), 1, 1);
+		assertEquals(3, cs.getChunks().size());
+		QueryInterval[] first = cs.getChunks().get(0).getIntervals();
+		QueryInterval[] second = cs.getChunks().get(1).getIntervals();
+		assertEquals(2, first.length);
+		assertEquals(1, first[1].referenceIndex);
+		assertEquals(15, first[1].end);
+		assertEquals(1, second[0].referenceIndex);
+		assertEquals(16, second[0].start);
+	}
+}
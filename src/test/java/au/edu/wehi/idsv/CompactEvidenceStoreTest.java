@@ -0,0 +1,129 @@
+package au.edu.wehi.idsv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMRecord;
+
+public class CompactEvidenceStoreTest extends IntermediateFilesTest {
+	private void createEvidence() {
+		List<SAMRecord> in = new ArrayList<>();
+		for (int i = 1; i < 100; i++) {
+			in.add(Read(1, i, "5S5M"));
+			in.add(Read(1, i, "5M2I5M"));
+			in.add(Read(1, i, "5M5S"));
+			Collections.addAll(in, RP(1, i, i + 10, 5));
+			Collections.addAll(in, OEA(1, i, "5M", true));
+			Collections.addAll(in, DP(1, i, "5M", true, 0, 1, "5M", false));
+			Collections.addAll(in, DP(1, i, "5M", false, 2, i, "5M", true));
+		}
+		createInput(in);
+	}
+	private static void assertSameEvidence(List<DirectedEvidence> expected, List<DirectedEvidence> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			DirectedEvidence e = expected.get(i);
+			DirectedEvidence a = actual.get(i);
+			assertEquals(e.getEvidenceID(), a.getEvidenceID());
+			assertEquals(e.getEvidenceIdentifier(), a.getEvidenceIdentifier());
+			assertEquals(e.getBreakendSummary(), a.getBreakendSummary());
+			assertEquals(e.getBreakendQual(), a.getBreakendQual(), 0);
+			assertEquals(e.getLocalMapq(), a.getLocalMapq());
+			assertEquals(e.isBreakendExact(), a.isBreakendExact());
+			assertEquals(e instanceof DirectedBreakpoint, a instanceof DirectedBreakpoint);
+			if (e instanceof DirectedBreakpoint) {
+				assertEquals(((DirectedBreakpoint)e).getBreakpointQual(), ((DirectedBreakpoint)a).getBreakpointQual(), 0);
+			}
+		}
+	}
+	@Test
+	public void should_round_trip_evidence() throws IOException {
+		createEvidence();
+		SAMEvidenceSource source = new SAMEvidenceSource(getCommandlineContext(), input, null, 0);
+		List<DirectedEvidence> expected = Lists.newArrayList(source.iterator(SAMEvidenceSource.EvidenceSortOrder.EvidenceStartPosition));
+		CompactEvidenceStore store = source.getEvidenceStore();
+		assertTrue(store.getFile().exists());
+		assertEquals(expected.size(), store.size());
+		assertSameEvidence(expected, Lists.newArrayList(store.iterator()));
+	}
+	@Test
+	public void should_decode_underlying_evidence() throws IOException {
+		createEvidence();
+		SAMEvidenceSource source = new SAMEvidenceSource(getCommandlineContext(), input, null, 0);
+		List<DirectedEvidence> expected = Lists.newArrayList(source.iterator(SAMEvidenceSource.EvidenceSortOrder.EvidenceStartPosition));
+		List<DirectedEvidence> actual = Lists.newArrayList(source.getEvidenceStore().iterator());
+		for (int i = 0; i < expected.size(); i++) {
+			DirectedEvidence decoded = ((StoredEvidence)actual.get(i)).getDecodedEvidence();
+			assertEquals(expected.get(i).getClass(), decoded.getClass());
+			assertEquals(expected.get(i).getEvidenceID(), decoded.getEvidenceID());
+			assertEquals(expected.get(i).getUnderlyingSAMRecord().getReadName(), actual.get(i).getUnderlyingSAMRecord().getReadName());
+			assertArrayEquals(expected.get(i).getBreakendSequence(), actual.get(i).getBreakendSequence());
+		}
+	}
+	@Test
+	public void interval_query_should_match_bam_query() throws IOException {
+		createEvidence();
+		ProcessingContext pc = getCommandlineContext();
+		SAMEvidenceSource source = new SAMEvidenceSource(pc, input, null, 0);
+		for (int start = 1; start < 120; start += 7) {
+			QueryInterval[] qi = new QueryInterval[] { new QueryInterval(0, start, start + 20), new QueryInterval(1, start, start + 20), new QueryInterval(2, start, start + 5) };
+			pc.getConfig().useCompactEvidenceStore = false;
+			List<DirectedEvidence> expected = Lists.newArrayList(source.iterator(qi, SAMEvidenceSource.EvidenceSortOrder.EvidenceStartPosition));
+			pc.getConfig().useCompactEvidenceStore = true;
+			List<DirectedEvidence> actual = Lists.newArrayList(source.iterator(qi, SAMEvidenceSource.EvidenceSortOrder.EvidenceStartPosition));
+			assertTrue(actual.stream().allMatch(e -> e instanceof StoredEvidence));
+			assertEquals(
+					expected.stream().map(e -> e.getEvidenceID()).sorted().collect(Collectors.toList()),
+					actual.stream().map(e -> e.getEvidenceID()).sorted().collect(Collectors.toList()));
+		}
+	}
+	@Test
+	public void should_reuse_existing_store() throws IOException {
+		createEvidence();
+		ProcessingContext pc = getCommandlineContext();
+		SAMEvidenceSource source = new SAMEvidenceSource(pc, input, null, 0);
+		long size = source.getEvidenceStore().size();
+		long lastModified = source.getEvidenceStore().getFile().lastModified();
+		SAMEvidenceSource reopened = new SAMEvidenceSource(pc, input, null, 0);
+		assertEquals(size, reopened.getEvidenceStore().size());
+		assertEquals(lastModified, reopened.getEvidenceStore().getFile().lastModified());
+	}
+	@Test
+	public void should_rebuild_store_when_bam_changes() throws IOException {
+		createEvidence();
+		ProcessingContext pc = getCommandlineContext();
+		SAMEvidenceSource source = new SAMEvidenceSource(pc, input, null, 0);
+		CompactEvidenceStore store = source.getEvidenceStore();
+		long lastModified = store.getFile().lastModified();
+		store.close();
+		createInput(Read(1, 1, "5S5M"), Read(1, 2, "5M5S"));
+		// store is not older than the BAM so the change must be detected from the header fingerprint
+		input.setLastModified(lastModified);
+		SAMEvidenceSource reopened = new SAMEvidenceSource(pc, input, null, 0);
+		assertEquals(2, reopened.getEvidenceStore().size());
+	}
+	@Test
+	public void should_rebuild_store_older_than_bam() throws IOException {
+		createEvidence();
+		ProcessingContext pc = getCommandlineContext();
+		SAMEvidenceSource source = new SAMEvidenceSource(pc, input, null, 0);
+		CompactEvidenceStore store = source.getEvidenceStore();
+		store.close();
+		assertTrue(CompactEvidenceStore.isCurrent(store.getFile(), input));
+		input.setLastModified(store.getFile().lastModified() + 10000);
+		assertFalse(CompactEvidenceStore.isCurrent(store.getFile(), input));
+	}
+}
@@ -0,0 +1,48 @@
+package au.edu.wehi.idsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class EvidenceIdTest {
+	@Test
+	public void should_round_trip_encoding() {
+		Random rng = new Random(0);
+		for (int i = 0; i < 1000; i++) {
+			EvidenceId id = new EvidenceId(rng.nextLong(), rng.nextLong() & ~0xFL);
+			String s = id.toString();
+			assertEquals(EvidenceId.ENCODED_LENGTH, s.length());
+			assertEquals(id, EvidenceId.decode(s));
+			assertEquals(id, EvidenceId.of(s));
+		}
+	}
+	@Test
+	public void should_hash_non_canonical_strings() {
+		EvidenceId a = EvidenceId.of("read1/1");
+		assertEquals(a, EvidenceId.of("read1/1"));
+		assertNotEquals(a, EvidenceId.of("read1/2"));
+	}
+	@Test
+	public void unique_names_should_be_encoding_prefixes() {
+		Random rng = new Random(0);
+		for (int i = 0; i < 100; i++) {
+			EvidenceId id = EvidenceId.create(rng.nextLong(), rng.nextLong(), rng.nextInt(), rng.nextInt());
+			String s = id.toString();
+			assertTrue(s.startsWith(id.segmentUnique().encode(EvidenceId.SEGMENT_ENCODED_LENGTH)));
+			assertTrue(s.startsWith(id.alignmentUnique().encode(EvidenceId.ALIGNMENT_ENCODED_LENGTH)));
+			assertEquals(id.segmentUnique(), EvidenceId.decode(s.substring(0, EvidenceId.SEGMENT_ENCODED_LENGTH)));
+			assertEquals(id.alignmentUnique(), EvidenceId.decode(s.substring(0, EvidenceId.ALIGNMENT_ENCODED_LENGTH)));
+		}
+	}
+	@Test
+	public void compareTo_should_be_unsigned() {
+		EvidenceId small = new EvidenceId(1, 0);
+		EvidenceId large = new EvidenceId(-1, 0);
+		assertTrue(small.compareTo(large) < 0);
+		assertTrue(new EvidenceId(0, 1).compareTo(new EvidenceId(0, -1)) < 0);
+	}
+}
@@ -13,11 +13,11 @@ public class HashedEvidenceIdentifierGeneratorTest extends EvidenceIdentifierGen
 		return new HashedEvidenceIdentifierGenerator();
 	}
 	@Test
-	public void should_default_to_32_byte_hash() {
+	public void should_default_to_128_bit_hash() {
 		SAMRecord r = Read(0, 1, "10M10S");
 		SoftClipEvidence sc = SCE(FWD, r);
 		HashedEvidenceIdentifierGenerator gen = new HashedEvidenceIdentifierGenerator();
-		Assert.assertEquals(32, gen.getEvidenceID(sc).length());
+		Assert.assertEquals(22, gen.getEvidenceID(sc).length());
 	}
 	@Test
 	public void hash_should_use_Base64_url_encoding() {
@@ -27,7 +27,19 @@ public class HashedEvidenceIdentifierGeneratorTest extends EvidenceIdentifierGen
 			r.setReadName(String.format("read%d", i));
 			SoftClipEvidence sc = SCE(FWD, r);
 			String hash = gen.getEvidenceID(sc);
-			Assert.assertTrue(Pattern.matches("^[0-9a-zA-Z_-]{32}$", hash));
+			Assert.assertTrue(Pattern.matches("^[0-9a-zA-Z_-]{22}$", hash));
 		}
 	}
+	@Test
+	public void evidenceID_should_round_trip_through_identifier() {
+		HashedEvidenceIdentifierGenerator gen = new HashedEvidenceIdentifierGenerator();
+		SAMRecord r = Read(0, 1, "10M10S");
+		SoftClipEvidence sc = SCE(FWD, r);
+		EvidenceId id = gen.getEvidenceIdentifier(sc);
+		Assert.assertEquals(id, EvidenceId.of(gen.getEvidenceID(sc)));
+		Assert.assertEquals(id.alignmentUnique(), gen.getAlignmentUniqueIdentifier(r));
+		Assert.assertEquals(id.segmentUnique(), gen.getSegmentUniqueIdentifier(r));
+		Assert.assertEquals(gen.getAlignmentUniqueIdentifier(r), EvidenceId.decode(gen.getAlignmentUniqueName(r)));
+		Assert.assertEquals(gen.getSegmentUniqueIdentifier(r), EvidenceId.decode(gen.getSegmentUniqueName(r)));
+	}
 }
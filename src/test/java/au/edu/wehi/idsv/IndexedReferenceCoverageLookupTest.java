@@ -0,0 +1,74 @@
+package au.edu.wehi.idsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.SamReaderFactory;
+
+
+public class IndexedReferenceCoverageLookupTest extends IntermediateFilesTest {
+	private IndexedReferenceCoverageLookup init(List<SAMRecord> reads, int queryWindowSize) {
+		createBAM(input, SortOrder.coordinate, reads);
+		return new IndexedReferenceCoverageLookup(SamReaderFactory.makeDefault().open(input), IDSV(reads), new SAMFlagReadPairConcordanceCalculator(IDSV(reads)), queryWindowSize, 3, true);
+	}
+	@Test
+	public void should_report_correct_category() {
+		try (IndexedReferenceCoverageLookup lookup = init(new ArrayList<SAMRecord>(), 10)) {
+			assertEquals(3, lookup.getCategory());
+		}
+	}
+	@Test
+	public void should_match_sequential_lookup() throws IOException {
+		Random rng = new Random(0);
+		List<SAMRecord> reads = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			int referenceIndex = rng.nextInt(2);
+			int pos = 1 + rng.nextInt(500);
+			for (SAMRecord r : RP(referenceIndex, pos, pos + rng.nextInt(60), 5 + rng.nextInt(10))) {
+				r.setReadName("r" + i);
+				r.setDuplicateReadFlag(i % 17 == 0);
+				reads.add(r);
+			}
+		}
+		Collections.sort(reads, new SAMRecordCoordinateComparator());
+		SequentialReferenceCoverageLookup expected = new SequentialReferenceCoverageLookup(reads.iterator(), IDSV(reads), new SAMFlagReadPairConcordanceCalculator(IDSV(reads)), 1000, 3, true);
+		try (IndexedReferenceCoverageLookup lookup = init(reads, 37)) {
+			for (int referenceIndex = 0; referenceIndex < 2; referenceIndex++) {
+				for (int pos = 1; pos < 700; pos++) {
+					assertEquals(expected.readsSupportingNoBreakendAfter(referenceIndex, pos), lookup.readsSupportingNoBreakendAfter(referenceIndex, pos));
+					assertEquals(expected.readPairsSupportingNoBreakendAfter(referenceIndex, pos), lookup.readPairsSupportingNoBreakendAfter(referenceIndex, pos));
+				}
+			}
+		}
+		expected.close();
+	}
+	@Test
+	public void should_share_index_query_between_nearby_positions() {
+		List<SAMRecord> reads = L(
+				RP(0, 10, 20, 5),
+				RP(0, 11, 21, 5),
+				RP(0, 500, 520, 5));
+		try (IndexedReferenceCoverageLookup lookup = init(reads, 100)) {
+			assertEquals(2, lookup.readPairsSupportingNoBreakendAfter(0, 15));
+			assertEquals(1, lookup.readPairsSupportingNoBreakendAfter(0, 20));
+			assertEquals(2, lookup.readsSupportingNoBreakendAfter(0, 12));
+			assertEquals(1, lookup.getIndexQueryCount());
+			assertEquals(1, lookup.readPairsSupportingNoBreakendAfter(0, 510));
+			assertEquals(2, lookup.getIndexQueryCount());
+			// out of order queries are permitted
+			assertEquals(2, lookup.readPairsSupportingNoBreakendAfter(0, 15));
+			assertTrue(lookup.getIndexQueryCount() > 2);
+		}
+	}
+}
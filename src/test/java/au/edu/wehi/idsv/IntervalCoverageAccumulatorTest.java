@@ -0,0 +1,58 @@
+package au.edu.wehi.idsv;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import htsjdk.samtools.SAMRecord;
+
+public class IntervalCoverageAccumulatorTest extends IntermediateFilesTest {
+	private static final double DELTA = 0.00001;
+	private static ReadGcSummary gc(SAMRecord r) {
+		return new ReadGcSummary(r, SMALL_FA.getSequence("polyA"), 100, new FixedSizeReadPairConcordanceCalculator(0, 100));
+	}
+	private List<String> bed(IntervalCoverageAccumulator ica) throws IOException {
+		File file = new File(testFolder.getRoot(), "out.bed");
+		ica.writeToBed(file);
+		return Files.readAllLines(file.toPath());
+	}
+	private static double score(String line) {
+		return Double.parseDouble(line.split("\t")[4]);
+	}
+	@Test
+	public void should_split_bins_at_breakends() throws IOException {
+		IntervalCoverageAccumulator ica = new IntervalCoverageAccumulator(CoverageCalculationMethod.READ, getSequenceDictionary(), 10,
+				ImmutableList.<VariantContextDirectedEvidence>of(BP("bp", new BreakpointSummary(0, FWD, 15, 0, BWD, 30))).iterator());
+		SAMRecord r = Read(0, 11, "10M");
+		ica.add(r, gc(r), 1);
+		List<String> lines = bed(ica);
+		assertEquals("polyA\t0\t10\t.\t0.0", lines.get(0));
+		assertEquals("polyA\t10\t15", lines.get(1).substring(0, 11));
+		assertEquals("polyA\t15\t20", lines.get(2).substring(0, 11));
+		assertEquals("polyA\t20\t30", lines.get(3).substring(0, 11));
+		assertEquals(1.0, score(lines.get(1)), DELTA);
+		assertEquals(1.0, score(lines.get(2)), DELTA);
+		assertEquals(0.0, score(lines.get(3)), DELTA);
+	}
+	@Test
+	public void should_accumulate_weighted_coverage() throws IOException {
+		IntervalCoverageAccumulator ica = new IntervalCoverageAccumulator(CoverageCalculationMethod.READ, getSequenceDictionary(), 10, null);
+		for (int i = 0; i < 10; i++) {
+			SAMRecord r = Read(0, 1, "5M");
+			ica.add(r, gc(r), 0.1);
+		}
+		SAMRecord r = Read(0, 6, "10M");
+		ica.add(r, gc(r), 0.5);
+		List<String> lines = bed(ica);
+		// weights are rounded to 1/65536 when accumulated
+		assertEquals((10 * 0.1 * 5 + 0.5 * 5) / 10, score(lines.get(0)), 0.0001);
+		assertEquals(0.5 * 5 / 10, score(lines.get(1)), DELTA);
+	}
+}
@@ -104,6 +104,35 @@ public class SAMEvidenceSourceTest extends IntermediateFilesTest {
 			e.getBreakendSummary().overlaps(new BreakendSummary(1, BWD, 20, 20, 30))));
 	}
 	@Test
+	public void cached_iterator_should_match_uncached_iterator_for_overlapping_queries() {
+		List<SAMRecord> in = new ArrayList<>();
+		for (int i = 1; i < 100; i++) {
+			in.add(Read(1, i, "5S5M"));
+			in.add(Read(1, i, "5M5S"));
+			in.add(Read(1, i, "5S1X2N1X"));
+			Collections.addAll(in, RP(1, i, i + 10, 5));
+			Collections.addAll(in, OEA(1, i, "5M", true));
+			Collections.addAll(in, DP(1, i, "5M", true, 0, 1, "5M", false));
+		}
+		createInput(in);
+		SAMEvidenceSource source = new SAMEvidenceSource(getCommandlineContext(), input, null, 0);
+		for (int maxSize : new int[] { 1, 100000 }) {
+			OverlapEvidenceCache cache = new OverlapEvidenceCache(1000, maxSize);
+			for (int start = 1; start < 120; start += 10) {
+				QueryInterval[] qi = new QueryInterval[] { new QueryInterval(1, start, start + 9) };
+				List<String> expected = Lists.newArrayList(source.iterator(qi, SAMEvidenceSource.EvidenceSortOrder.SAMRecordStartPosition)).stream().map(e -> e.getEvidenceID()).collect(Collectors.toList());
+				List<String> actual = Lists.newArrayList(source.iterator(qi, SAMEvidenceSource.EvidenceSortOrder.SAMRecordStartPosition, cache)).stream().map(e -> e.getEvidenceID()).collect(Collectors.toList());
+				assertEquals(expected, actual);
+			}
+			if (maxSize == 1) {
+				assertEquals(0, cache.getHitCount());
+			} else {
+				assertEquals(cache.getQueryCount() - 1, cache.getHitCount());
+				assertTrue(cache.getEvidenceReusedCount() > 0);
+			}
+		}
+	}
+	@Test
 	public void should_set_evidence_source_to_self() {
 		createInput(Read(0, 1, "50M50S"));
 		SAMEvidenceSource source = new SAMEvidenceSource(getCommandlineContext(), input, null, 0);
@@ -109,6 +109,19 @@ public class SequentialReferenceCoverageLookupTest extends TestHelper {
 		lookup.readsSupportingNoBreakendAfter(0, 51);
 	}
 	@Test
+	public void should_reset_window_positions_skipped_over() {
+		List<SAMRecord> reads = L(
+				Read(0, 1, "3M"),
+				Read(0, 2, "3M"),
+				Read(0, 100, "3M"));
+		ReferenceCoverageLookup lookup = init(reads, 4);
+		assertEquals(2, lookup.readsSupportingNoBreakendAfter(0, 2));
+		for (int i = 95; i < 100; i++) {
+			assertEquals(0, lookup.readsSupportingNoBreakendAfter(0, i));
+		}
+		assertEquals(1, lookup.readsSupportingNoBreakendAfter(0, 101));
+	}
+	@Test
 	public void readsSupportingNoBreakendAfter_should_return_reference_reads() {
 		List<SAMRecord> reads = L(
 				new SAMRecord[] {
@@ -24,6 +24,7 @@ import au.edu.wehi.idsv.alignment.AlignerFactory;
 import au.edu.wehi.idsv.alignment.ExternalAlignerTests;
 import au.edu.wehi.idsv.alignment.ExternalProcessStreamingAligner;
 import au.edu.wehi.idsv.alignment.FastqAligner;
+import au.edu.wehi.idsv.alignment.InProcessStreamingAligner;
 import au.edu.wehi.idsv.alignment.SmithWatermanFastqAligner;
 import au.edu.wehi.idsv.alignment.StreamingAligner;
 import au.edu.wehi.idsv.picard.BufferedReferenceSequenceFile;
@@ -112,6 +113,25 @@ public class SplitReadRealignerTest extends IntermediateFilesTest {
 		assertEquals(126, result.get(2).getAlignmentStart());
 	}
 	@Test
+	public void in_process_streaming_should_recursively_align() throws IOException {
+		SAMRecord r = Read(2, 1, "50S50M");
+		r.setReadBases(B(S(RANDOM).substring(125, 150) + S(RANDOM).substring(75, 100) + S(RANDOM).substring(0, 50)));
+		r.setReadName("r");
+		
+		createBAM(input, SortOrder.coordinate, r);
+		SplitReadRealigner srr = new SplitReadRealigner(getContext());
+		srr.setMinSoftClipLength(15);
+		try (InProcessStreamingAligner aligner = new InProcessStreamingAligner(SMALL_FA, AlignerFactory.create(), 2)) {
+			srr.createSupplementaryAlignments(aligner, input, output, output, true, 100);
+		}
+		
+		List<SAMRecord> result = Ordering.natural().onResultOf((SAMRecord x) -> x.getAlignmentStart()).sortedCopy(getRecords(output));
+		assertEquals(3, result.size());
+		assertEquals(1, result.get(0).getAlignmentStart());
+		assertEquals(76, result.get(1).getAlignmentStart());
+		assertEquals(126, result.get(2).getAlignmentStart());
+	}
+	@Test
 	public void should_match_input_sort_order() throws IOException {
 		SAMRecord r = Read(2, 1, "50S50M");
 		r.setReadBases(B(S(RANDOM).substring(125, 150) + S(RANDOM).substring(75, 100) + S(RANDOM).substring(0, 50)));
@@ -175,6 +195,9 @@ public class SplitReadRealignerTest extends IntermediateFilesTest {
 		@Override
 		public void flush() throws IOException { }
 
+		@Override
+		public void drain() throws IOException { }
+
 		@Override
 		public boolean hasAlignmentRecord() {
 			return in > out & out < alignments.length;
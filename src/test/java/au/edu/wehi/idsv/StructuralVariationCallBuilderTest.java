@@ -1080,4 +1080,30 @@ public class StructuralVariationCallBuilderTest extends TestHelper {
 		VariantContextDirectedBreakpoint high = (VariantContextDirectedBreakpoint)cb.make();
 		assertEquals(high.getBreakendSummary().remoteBreakpoint(), low.getBreakendSummary());
 	}
+	@Test
+	public void should_resolve_called_position_at_make_when_prepared_out_of_order() {
+		ProcessingContext pc = getContext();
+		BreakpointSummary bs = new BreakpointSummary(0, FWD, 100, 100, 100, 0, BWD, 200, 200, 200);
+		VariantContextDirectedBreakpoint vcdplow = (VariantContextDirectedBreakpoint)VariantContextDirectedEvidence.create(pc, null, minimalBreakend()
+				.breakpoint(bs, "")
+				.id("evento")
+				.attribute("EVENT", "event")
+				.make());
+		VariantContextDirectedBreakpoint vcdphigh = (VariantContextDirectedBreakpoint)VariantContextDirectedEvidence.create(pc, null, minimalBreakend()
+				.breakpoint(bs.remoteBreakpoint(), "")
+				.id("eventh")
+				.attribute("EVENT", "event")
+				.make());
+		CalledBreakpointPositionLookup lookup = new CalledBreakpointPositionLookup();
+		StructuralVariationCallBuilder cblow = new StructuralVariationCallBuilder(pc, lookup, vcdplow);
+		cblow.addEvidence(SR(Read(0, 100, "2M6S"), Read(0, 200, "4S2M")));
+		StructuralVariationCallBuilder cbhigh = new StructuralVariationCallBuilder(pc, lookup, vcdphigh);
+		cbhigh.addEvidence(SR(Read(0, 200, "1S1M"), Read(0, 100, "1M")));
+		cbhigh.prepare();
+		cblow.prepare();
+		VariantContextDirectedBreakpoint low = (VariantContextDirectedBreakpoint)cblow.make();
+		VariantContextDirectedBreakpoint high = (VariantContextDirectedBreakpoint)cbhigh.make();
+		assertEquals(101, low.getBreakendSummary().start);
+		assertEquals(high.getBreakendSummary().remoteBreakpoint(), low.getBreakendSummary());
+	}
 }
@@ -1145,7 +1145,7 @@ public class TestHelper {
 	}
 	public static KmerPathNode KPN(int k, String seq, int start, int end, boolean reference, int[] weight) {
 		PackedKmerList kmers = new PackedKmerList(k, B(seq), new byte[seq.length()], false, false);
-		KmerPathNode pn = new KmerPathNode(kmers.kmer(0), start, end, reference, weight[0]);
+		KmerPathNode pn = new KmerPathNode(k, kmers.kmer(0), start, end, reference, weight[0]);
 		for (int i = 1; i < kmers.length(); i++) {
 			pn.append(new ImmutableKmerNode(kmers.kmer(i), start + i, end + i, reference, weight[i]));
 		}
@@ -2,13 +2,18 @@ package au.edu.wehi.idsv.alignment;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.File;
 import java.io.IOException;
 
 import htsjdk.samtools.reference.IndexedFastaSequenceFile;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import com.google.common.collect.ImmutableList;
+
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.fastq.FastqRecord;
 
@@ -49,4 +54,35 @@ public class ExternalProcessStreamingAlignerTest {
 		}
 		aligner.close();
 	}
+	@Test
+	@Category(ExternalAlignerTests.class)
+	public void drain_should_return_all_outstanding_alignments() throws IOException, InterruptedException {
+		int COUNT = 8;
+		ExternalProcessStreamingAligner aligner = new ExternalProcessStreamingAligner(SamReaderFactory.makeDefault(), ExternalAlignerTests.COMMAND_LINE, ExternalAlignerTests.REFERENCE, 4, new IndexedFastaSequenceFile(ExternalAlignerTests.REFERENCE).getSequenceDictionary());
+		for (int round = 0; round < 2; round++) {
+			for (int i = 0; i < COUNT; i++) {
+				aligner.asyncAlign(new FastqRecord(
+						Integer.toString(i),
+						"ACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGT",
+						Integer.toString(i),
+						"ACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGT"));
+			}
+			aligner.drain();
+			assertEquals(0, aligner.outstandingAlignmentRecord());
+			for (int i = 0; i < COUNT; i++) {
+				SAMRecord alignment = aligner.getAlignment();
+				assertEquals(Integer.toString(i), alignment.getReadName());
+			}
+		}
+		aligner.close();
+	}
+	@Test(expected=IOException.class, timeout=60000)
+	public void drain_should_terminate_aligner_that_stops_reading_input() throws IOException {
+		SAMSequenceDictionary dict = new SAMSequenceDictionary();
+		dict.addSequence(new SAMSequenceRecord("chr1", 1000));
+		ExternalProcessStreamingAligner aligner = new ExternalProcessStreamingAligner(SamReaderFactory.makeDefault(), ImmutableList.of("sleep", "600"), new File("unused.fa"), 1, dict);
+		aligner.setDrainTimeout(1000);
+		aligner.asyncAlign(new FastqRecord("read", "ACGT", "", "ACGT"));
+		aligner.drain();
+	}
 }
@@ -0,0 +1,85 @@
+package au.edu.wehi.idsv.alignment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import au.edu.wehi.idsv.TestHelper;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.fastq.FastqRecord;
+import htsjdk.samtools.util.SequenceUtil;
+
+public class InProcessStreamingAlignerTest extends TestHelper {
+	private static String qual(int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			sb.append('I');
+		}
+		return sb.toString();
+	}
+	@Test
+	public void should_align_forward_strand() throws IOException {
+		try (InProcessStreamingAligner aligner = new InProcessStreamingAligner(SMALL_FA, AlignerFactory.create(), 2)) {
+			String seq = S(RANDOM).substring(100, 150);
+			SAMRecord r = aligner.align(new FastqRecord("r", seq, "", qual(seq.length())));
+			assertFalse(r.getReadUnmappedFlag());
+			assertFalse(r.getReadNegativeStrandFlag());
+			assertEquals(2, (int)r.getReferenceIndex());
+			assertEquals(101, r.getAlignmentStart());
+			assertEquals("50M", r.getCigarString());
+			assertEquals(0, (int)r.getIntegerAttribute("NM"));
+		}
+	}
+	@Test
+	public void should_align_reverse_strand() throws IOException {
+		try (InProcessStreamingAligner aligner = new InProcessStreamingAligner(SMALL_FA, AlignerFactory.create(), 2)) {
+			String seq = SequenceUtil.reverseComplement(S(RANDOM).substring(200, 250));
+			SAMRecord r = aligner.align(new FastqRecord("r", seq, "", qual(seq.length())));
+			assertFalse(r.getReadUnmappedFlag());
+			assertTrue(r.getReadNegativeStrandFlag());
+			assertEquals(201, r.getAlignmentStart());
+			assertEquals(S(RANDOM).substring(200, 250), r.getReadString());
+		}
+	}
+	@Test
+	public void should_soft_clip_unaligned_bases() throws IOException {
+		try (InProcessStreamingAligner aligner = new InProcessStreamingAligner(SMALL_FA, AlignerFactory.create(), 2)) {
+			String seq = "TTTTTTTTTTTTTTTTTTTT" + S(RANDOM).substring(300, 350);
+			SAMRecord r = aligner.align(new FastqRecord("r", seq, "", qual(seq.length())));
+			assertEquals(301, r.getAlignmentStart());
+			assertEquals("20S50M", r.getCigarString());
+		}
+	}
+	@Test
+	public void should_return_unmapped_record_when_no_seed_found() throws IOException {
+		try (InProcessStreamingAligner aligner = new InProcessStreamingAligner(SMALL_FA, AlignerFactory.create(), 2)) {
+			String seq = "ACGGTTCAGGTCAATTGCCAGGATTCCAGT";
+			SAMRecord r = aligner.align(new FastqRecord("r", seq, "", qual(seq.length())));
+			assertTrue(r.getReadUnmappedFlag());
+			assertEquals(seq, r.getReadString());
+		}
+	}
+	@Test
+	public void should_return_alignments_in_request_order() throws IOException {
+		try (InProcessStreamingAligner aligner = new InProcessStreamingAligner(SMALL_FA, AlignerFactory.create(), 4)) {
+			for (int i = 0; i < 100; i++) {
+				String seq = S(RANDOM).substring(10 * i, 10 * i + 40);
+				aligner.asyncAlign(new FastqRecord(Integer.toString(i), seq, "", qual(seq.length())));
+			}
+			aligner.drain();
+			assertEquals(0, aligner.outstandingAlignmentRecord());
+			assertEquals(100, aligner.processedAlignmentRecords());
+			for (int i = 0; i < 100; i++) {
+				assertTrue(aligner.hasAlignmentRecord());
+				SAMRecord r = aligner.getAlignment();
+				assertEquals(Integer.toString(i), r.getReadName());
+				assertEquals(10 * i + 1, r.getAlignmentStart());
+			}
+			assertFalse(aligner.hasAlignmentRecord());
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package au.edu.wehi.idsv.alignment;
+
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
+import au.edu.wehi.idsv.picard.InMemoryReferenceSequenceFile;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KmerSeedIndexTest extends TestHelper {
+	@Test
+	public void should_index_reference_kmers() {
+		InMemoryReferenceSequenceFile ref = new InMemoryReferenceSequenceFile(new String[] { "a", "b" }, new byte[][] { "ACGTACGT".getBytes(), "NNACGN".getBytes() });
+		KmerSeedIndex index = new KmerSeedIndex(ref, 4);
+		// ACGT CGTA GTAC TACG ACGT + ACG is too short
+		assertEquals(2, index.occurrences(KmerEncodingHelper.picardBaseToEncoded(4, B("ACGT"))));
+		assertEquals(1, index.occurrences(KmerEncodingHelper.picardBaseToEncoded(4, B("CGTA"))));
+	}
+	@Test
+	public void should_reject_reference_larger_than_maximum_index_size() {
+		SAMSequenceDictionary dict = new SAMSequenceDictionary();
+		dict.addSequence(new SAMSequenceRecord("chr1", Integer.MAX_VALUE - 100));
+		dict.addSequence(new SAMSequenceRecord("chr2", 1000));
+		InMemoryReferenceSequenceFile ref = new InMemoryReferenceSequenceFile(new String[0], new byte[0][]) {
+			@Override
+			public SAMSequenceDictionary getSequenceDictionary() {
+				return dict;
+			}
+		};
+		try {
+			new KmerSeedIndex(ref, 4);
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains(Long.toString(KmerSeedIndex.MAX_REFERENCE_LENGTH)));
+			return;
+		}
+		throw new AssertionError("Expected IllegalArgumentException");
+	}
+}
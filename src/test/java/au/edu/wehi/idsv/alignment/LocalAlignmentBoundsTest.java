@@ -0,0 +1,80 @@
+package au.edu.wehi.idsv.alignment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.sam.SAMRecordUtil;
+import htsjdk.samtools.CigarElement;
+import htsjdk.samtools.TextCigarCodec;
+
+public class LocalAlignmentBoundsTest extends TestHelper {
+	@Test
+	public void should_report_soft_clip_lengths() {
+		LocalAlignmentBounds lab = AlignerFactory.createLocalAlignmentBounds();
+		assertTrue(lab.align(B("TTTTACGTACGTTTTT"), B("GGGGGGACGTACGTGGGGG")));
+		assertEquals(8, lab.getScore());
+		assertEquals(4, lab.getStartClipLength());
+		assertEquals(4, lab.getEndClipLength());
+		assertEquals(13, lab.getRefEnd());
+	}
+	@Test
+	public void should_allow_gaps() {
+		LocalAlignmentBounds lab = AlignerFactory.createLocalAlignmentBounds();
+		// 20 matches with a 1bp deletion
+		assertTrue(lab.align(B("ACGTTGCAACCTGAGTCCAG"), B("ACGTTGCAACACTGAGTCCAG")));
+		assertEquals(20 - 6, lab.getScore());
+		assertEquals(0, lab.getStartClipLength());
+		assertEquals(0, lab.getEndClipLength());
+	}
+	@Test
+	public void should_not_align_when_no_positive_score() {
+		LocalAlignmentBounds lab = AlignerFactory.createLocalAlignmentBounds();
+		assertFalse(lab.align(B("AAAA"), B("CCCC")));
+	}
+	@Test
+	public void should_reuse_buffers_across_query_lengths() {
+		LocalAlignmentBounds lab = AlignerFactory.createLocalAlignmentBounds();
+		assertTrue(lab.align(B("ACGTACGTACGTACGT"), B("ACGTACGTACGTACGT")));
+		assertEquals(16, lab.getScore());
+		assertTrue(lab.align(B("CGTA"), B("ACGTACGTACGTACGT")));
+		assertEquals(4, lab.getScore());
+		assertEquals(0, lab.getEndClipLength());
+	}
+	@Test
+	public void should_match_aligner_soft_clipping() {
+		Random rng = new Random(0);
+		LocalAlignmentBounds lab = AlignerFactory.createLocalAlignmentBounds();
+		Aligner aligner = AlignerFactory.create();
+		for (int t = 0; t < 2000; t++) {
+			byte[] ref = new byte[10 + rng.nextInt(100)];
+			for (int i = 0; i < ref.length; i++) {
+				ref[i] = (byte)"ACGT".charAt(rng.nextInt(4));
+			}
+			int start = rng.nextInt(ref.length);
+			int len = 1 + rng.nextInt(ref.length - start);
+			byte[] query = new byte[len + rng.nextInt(10)];
+			for (int i = 0; i < query.length; i++) {
+				query[i] = (byte)"ACGT".charAt(rng.nextInt(4));
+			}
+			// copy the reference with the occasional indel or ambiguous base
+			int qi = 0;
+			for (int i = 0; i < len && qi < query.length; i++) {
+				int r = rng.nextInt(40);
+				if (r == 0) continue;
+				if (r == 1 && qi < query.length - 1) qi++;
+				query[qi++] = r == 2 ? (byte)'N' : ref[start + i];
+			}
+			if (!lab.align(query, ref)) continue;
+			List<CigarElement> cigar = TextCigarCodec.decode(aligner.align_smith_waterman(query, ref).getCigar()).getCigarElements();
+			assertEquals(SAMRecordUtil.getStartSoftClipLength(cigar), lab.getStartClipLength());
+			assertEquals(SAMRecordUtil.getEndSoftClipLength(cigar), lab.getEndClipLength());
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package au.edu.wehi.idsv.bed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
+
+
+public class LinearIntervalIndexTest {
+	@Test
+	public void should_not_overlap_empty_index() {
+		assertFalse(LinearIntervalIndex.EMPTY.overlaps(0, 100));
+		assertFalse(LinearIntervalIndex.EMPTY.cursor().overlaps(0, 100));
+	}
+	@Test
+	public void should_treat_query_end_as_inclusive() {
+		RangeSet<Long> rs = TreeRangeSet.create();
+		rs.add(Range.closedOpen(10L, 20L));
+		LinearIntervalIndex index = LinearIntervalIndex.create(rs);
+		assertFalse(index.overlaps(0, 9));
+		assertTrue(index.overlaps(0, 10));
+		assertTrue(index.overlaps(19, 30));
+		assertFalse(index.overlaps(20, 30));
+		assertTrue(index.overlaps(12, 13));
+		assertTrue(index.overlaps(0, 100));
+	}
+	@Test
+	public void should_match_RangeSet() {
+		Random rng = new Random(0);
+		for (int trial = 0; trial < 100; trial++) {
+			RangeSet<Long> rs = TreeRangeSet.create();
+			for (int i = 0; i < rng.nextInt(50); i++) {
+				long start = rng.nextInt(1000);
+				rs.add(Range.closedOpen(start, start + 1 + rng.nextInt(20)));
+			}
+			LinearIntervalIndex index = LinearIntervalIndex.create(rs);
+			LinearIntervalIndex.Cursor cursor = index.cursor();
+			long position = 0;
+			for (int i = 0; i < 500; i++) {
+				// mostly ascending queries with occasional backwards jumps
+				position = rng.nextInt(10) == 0 ? rng.nextInt(1000) : position + rng.nextInt(30);
+				long end = position + rng.nextInt(10);
+				boolean expected = rs.intersects(Range.closedOpen(position, end + 1));
+				assertEquals(expected, index.overlaps(position, end));
+				assertEquals(expected, cursor.overlaps(position, end));
+			}
+		}
+	}
+}
@@ -63,11 +63,32 @@ public class EvidenceTrackerTest extends TestHelper {
 		List<KmerSupportNode> list = new ArrayList<KmerSupportNode>();
 		list.add(e.node(0));
 		EvidenceTracker tracker = new EvidenceTracker();
-		assertFalse(tracker.isTracked(e.evidence().getEvidenceID()));
+		assertFalse(tracker.isTracked(e.evidence().getEvidenceIdentifier()));
 		tracker.track(list.get(0));
-		assertTrue(tracker.isTracked(e.evidence().getEvidenceID()));
+		assertTrue(tracker.isTracked(e.evidence().getEvidenceIdentifier()));
 		tracker.remove(Collections.singleton(e));
-		assertFalse(tracker.isTracked(e.evidence().getEvidenceID()));
+		assertFalse(tracker.isTracked(e.evidence().getEvidenceIdentifier()));
+	}
+	@Test
+	public void should_reuse_evidence_handle_after_removal() {
+		int k = 4;
+		KmerEvidence e1 = KmerEvidence.create(k, SCE(FWD, withReadName("r1", Read(0, 1, "4M1S"))));
+		KmerEvidence e2 = KmerEvidence.create(k, SCE(FWD, withReadName("r2", Read(0, 1, "4M1S"))));
+		KmerEvidence e3 = KmerEvidence.create(k, SCE(FWD, withReadName("r3", Read(0, 1, "4M1S"))));
+		EvidenceTracker tracker = new EvidenceTracker();
+		Stream.of(e1, e2).forEach(e -> IntStream.range(0, e.length()).forEach(i -> tracker.track(e.node(i))));
+		tracker.remove(Collections.singleton(e1));
+		IntStream.range(0, e3.length()).forEach(i -> tracker.track(e3.node(i)));
+		assertFalse(tracker.isTracked(e1.evidence().getEvidenceIdentifier()));
+		assertTrue(tracker.isTracked(e2.evidence().getEvidenceIdentifier()));
+		assertTrue(tracker.isTracked(e3.evidence().getEvidenceIdentifier()));
+		assertEquals(2, tracker.tracking_evidenceActive());
+		assertEquals(3, tracker.tracking_evidenceTotal());
+		tracker.sanityCheck();
+		Set<KmerEvidence> result = tracker.untrack(ImmutableList.of(new KmerPathSubnode(KPN(k, "AAAA", 1, 1, true))));
+		assertEquals(ImmutableSet.of(e2, e3), result);
+		assertEquals(0, tracker.tracking_evidenceActive());
+		tracker.sanityCheck();
 	}
 	@Test
 	public void should_remove_efficiently_in_degenerate_sequence() {
@@ -97,11 +118,11 @@ public class EvidenceTrackerTest extends TestHelper {
 				.flatMap(ev -> IntStream.range(0, ev.length()).mapToObj(i -> ev.node(i)))
 				.forEach(ksn -> tracker.track(ksn));
 		assertEquals(2, tracker.getTrackedEvidence().size());
-		assertTrue(tracker.isTracked(nrrp.getEvidenceID()));
+		assertTrue(tracker.isTracked(nrrp.getEvidenceIdentifier()));
 		tracker.sanityCheck();
 		tracker.remove(Collections.singleton(e));
 		assertEquals(0, tracker.getTrackedEvidence().size());
-		assertFalse(tracker.isTracked(nrrp.getEvidenceID()));
+		assertFalse(tracker.isTracked(nrrp.getEvidenceIdentifier()));
 		tracker.sanityCheck();
 	}
 	@Test
@@ -0,0 +1,64 @@
+package au.edu.wehi.idsv.debruijn.positional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import au.edu.wehi.idsv.TestHelper;
+
+
+public class KmerSupportQueueTest extends TestHelper {
+	private static KmerEvidence evidence(int position) {
+		return KmerEvidence.create(4, SCE(FWD, withSequence("ACGTTATACCG", Read(0, position, "5M6S"))));
+	}
+	@Test
+	public void should_return_support_in_start_position_order() {
+		KmerSupportQueue q = new KmerSupportQueue(1);
+		KmerEvidence e = evidence(10);
+		int ei = q.addEvidence(e);
+		Random rng = new Random(0);
+		for (int i = 0; i < 1000; i++) {
+			int start = rng.nextInt(500);
+			q.add(ei, i, i, start, start + 1, 1, i % 2 == 0);
+		}
+		assertEquals(1000, q.size());
+		int last = Integer.MIN_VALUE;
+		while (!q.isEmpty()) {
+			assertTrue(q.peekStart() >= last);
+			assertEquals(q.peekStart() + 1, q.peekEnd());
+			assertEquals(q.peekOffset(), q.peekKmer());
+			assertEquals(q.peekOffset() % 2 == 0, q.peekIsReference());
+			assertTrue(e == q.peekEvidence());
+			last = q.peekStart();
+			q.pop();
+		}
+	}
+	@Test
+	public void should_release_evidence_when_last_support_removed() {
+		KmerSupportQueue q = new KmerSupportQueue(4);
+		KmerEvidence e1 = evidence(1);
+		KmerEvidence e2 = evidence(2);
+		int ei1 = q.addEvidence(e1);
+		q.add(ei1, 0, 0, 1, 1, 1, false);
+		q.add(ei1, 1, 0, 3, 3, 1, false);
+		int ei2 = q.addEvidence(e2);
+		q.add(ei2, 0, 0, 2, 2, 1, false);
+		assertTrue(e1 == q.peekEvidence());
+		q.pop();
+		assertTrue(e2 == q.peekEvidence());
+		q.pop();
+		// evidence index of e2 can now be reused but e1 is still referenced
+		KmerEvidence e3 = evidence(3);
+		int ei3 = q.addEvidence(e3);
+		assertEquals(ei2, ei3);
+		q.add(ei3, 0, 0, 4, 4, 1, false);
+		assertTrue(e1 == q.peekEvidence());
+		q.pop();
+		assertTrue(e3 == q.peekEvidence());
+		q.pop();
+		assertTrue(q.isEmpty());
+	}
+}
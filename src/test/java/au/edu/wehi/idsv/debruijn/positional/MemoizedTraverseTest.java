@@ -8,9 +8,11 @@ import java.util.ArrayList;
 
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 
 import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.visualisation.PositionalDeBruijnGraphTracker.MemoizationStats;
 
 
 public class MemoizedTraverseTest extends TestHelper {
@@ -194,4 +196,43 @@ public class MemoizedTraverseTest extends TestHelper {
 		// we still shouldn't remove c because the actual path doesn't overlap
 		assertEquals(1, mt.memoized(d).size());
 	}
+	@Test
+	public void remove_should_revisit_alternate_paths() {
+		// 123
+		// a
+		//  \
+		//   c - d
+		//  /
+		// x
+		KmerPathNode a = N(1, 1, 3);
+		KmerPathNode x = N(1, 1, 1);
+		KmerPathNode c = N(2, 2, 1);
+		KmerPathNode d = N(3, 3, 1);
+		KmerPathNode.addEdge(a, c);
+		KmerPathNode.addEdge(x, c);
+		KmerPathNode.addEdge(c, d);
+		MemoizedTraverse mt = new MemoizedTraverse();
+		TraversalNode a1 = new TraversalNode(new KmerPathSubnode(a), 0);
+		TraversalNode x1 = new TraversalNode(new KmerPathSubnode(x), 0);
+		TraversalNode ac = new TraversalNode(a1, new KmerPathSubnode(c));
+		TraversalNode acd = new TraversalNode(ac, new KmerPathSubnode(d));
+		mt.memoize(a1);
+		mt.memoize(x1);
+		mt.memoize(ac);
+		mt.memoize(new TraversalNode(x1, new KmerPathSubnode(c)));
+		mt.memoize(acd);
+		while (!mt.isEmptyFrontier()) mt.pollFrontier();
+		
+		mt.remove(ImmutableSet.of(a));
+		
+		assertTrue(mt.memoized(c).isEmpty());
+		assertTrue(mt.memoized(d).isEmpty());
+		// path through x needs to be revisited to find the new best path to c
+		assertEquals(x1, mt.pollFrontier());
+		assertTrue(mt.isEmptyFrontier());
+		MemoizationStats stats = mt.tracking_lastRemoval();
+		assertEquals(2, stats.descendentPathsRemoved);
+		assertEquals(1, stats.pathsReset);
+		assertEquals(1, stats.totalRemovals);
+	}
 }
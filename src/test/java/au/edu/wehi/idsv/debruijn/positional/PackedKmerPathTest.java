@@ -0,0 +1,98 @@
+package au.edu.wehi.idsv.debruijn.positional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.debruijn.PackedKmerList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+
+public class PackedKmerPathTest extends TestHelper {
+	private static String randomSequence(Random rng, int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			sb.append("ACGT".charAt(rng.nextInt(4)));
+		}
+		return sb.toString();
+	}
+	private static LongArrayList kmers(int k, String seq) {
+		PackedKmerList list = new PackedKmerList(k, B(seq), new byte[seq.length()], false, false);
+		LongArrayList result = new LongArrayList();
+		for (int i = 0; i < list.length(); i++) {
+			result.add(list.kmer(i));
+		}
+		return result;
+	}
+	private static PackedKmerPath path(int k, LongArrayList kmers) {
+		PackedKmerPath path = new PackedKmerPath(k);
+		for (int i = 0; i < kmers.size(); i++) {
+			path.add(kmers.getLong(i));
+		}
+		return path;
+	}
+	@Test
+	public void should_pack_kmer_sequence() {
+		Random rng = new Random(0);
+		for (int k : new int[] { 1, 4, 25, 31, 32 }) {
+			LongArrayList expected = kmers(k, randomSequence(rng, k + 100));
+			PackedKmerPath path = path(k, expected);
+			assertTrue(path.isPacked());
+			assertEquals(expected, path.toLongArrayList());
+			assertEquals(expected.getLong(0), path.firstKmer());
+			assertEquals(expected.getLong(expected.size() - 1), path.lastKmer());
+		}
+	}
+	@Test
+	public void should_fall_back_to_explicit_kmers_when_not_a_path() {
+		PackedKmerPath path = new PackedKmerPath(4);
+		path.add(K("AAAA"));
+		path.add(K("CCCC"));
+		assertFalse(path.isPacked());
+		assertEquals(2, path.length());
+		assertEquals(K("AAAA"), path.kmer(0));
+		assertEquals(K("CCCC"), path.kmer(1));
+		PackedKmerPath unknownK = new PackedKmerPath(0);
+		unknownK.add(7);
+		assertFalse(unknownK.isPacked());
+		assertEquals(7, unknownK.kmer(0));
+	}
+	@Test
+	public void should_split_and_concatenate() {
+		Random rng = new Random(0);
+		int k = 25;
+		for (int i = 0; i < 100; i++) {
+			LongArrayList expected = kmers(k, randomSequence(rng, k + 1 + rng.nextInt(100)));
+			int split = rng.nextInt(expected.size());
+			PackedKmerPath first = path(k, expected);
+			PackedKmerPath second = first.subPath(split, first.length());
+			first.truncate(split);
+			assertEquals(expected.subList(0, split), first.toLongArrayList());
+			assertEquals(expected.subList(split, expected.size()), second.toLongArrayList());
+			first.addAll(second);
+			assertTrue(first.isPacked());
+			assertTrue(first.kmersEqual(path(k, expected)));
+			assertEquals(expected, first.toLongArrayList());
+		}
+	}
+	@Test
+	public void should_remove_kmers_from_ends() {
+		int k = 4;
+		LongArrayList expected = kmers(k, "ACGTTGCAAGGCCTTAACG");
+		PackedKmerPath path = path(k, expected);
+		path.removeFirst();
+		path.removeLast();
+		assertEquals(expected.subList(1, expected.size() - 1), path.toLongArrayList());
+		while (path.length() > 0) {
+			path.removeFirst();
+		}
+		path.add(K("GGGG"));
+		assertEquals(1, path.length());
+		assertEquals(K("GGGG"), path.firstKmer());
+	}
+}
@@ -0,0 +1,62 @@
+package au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures;
+
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.debruijn.positional.KmerNodeUtil;
+import au.edu.wehi.idsv.debruijn.positional.KmerPathNode;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class KmerNodeByFirstStartKmerNavigableSetTest extends TestHelper {
+    @Test
+    public void should_match_navigable_set() {
+        int k = 4;
+        String[] kmers = new String[] { "GTAC", "TTAC", "AAAA", "CCCC" };
+        Random r = new Random(0);
+        NavigableSet<KmerPathNode> ns = new TreeSet<>(KmerNodeUtil.ByFirstStartKmer);
+        KmerNodeByFirstStartKmerNavigableSet<KmerPathNode> set = new KmerNodeByFirstStartKmerNavigableSet<>(2);
+        for (int i = 0 ; i < 4096; i++) {
+            // sliding window of positions to exercise both growth and reuse of the ring
+            int start = i / 16 + r.nextInt(40);
+            KmerPathNode kpn = KPN(k, kmers[r.nextInt(kmers.length)], start, start + r.nextInt(3), r.nextBoolean());
+            if (r.nextInt(5) < 2 && !ns.isEmpty()) {
+                kpn = r.nextBoolean() ? ns.first() : kpn;
+                assertEquals(ns.remove(kpn), set.remove(kpn));
+            } else {
+                assertEquals(ns.add(kpn), set.add(kpn));
+            }
+            assertEquals(ns.size(), set.size());
+            assertEquals(ns.contains(kpn), set.contains(kpn));
+            if (!ns.isEmpty()) {
+                assertSame(ns.first(), set.first());
+                assertSame(ns.last(), set.last());
+            }
+            if (i % 256 == 0) {
+                assertEquals(Lists.newArrayList(ns), Lists.newArrayList(set));
+                assertEquals(Lists.newArrayList(ns.descendingIterator()), Lists.newArrayList(set.descendingIterator()));
+            }
+        }
+        while (!ns.isEmpty()) {
+            assertSame(ns.pollFirst(), set.pollFirst());
+        }
+        assertTrue(set.isEmpty());
+    }
+    @Test
+    public void should_reuse_ring_when_flushed_from_front() {
+        int k = 4;
+        KmerNodeByFirstStartKmerNavigableSet<KmerPathNode> set = new KmerNodeByFirstStartKmerNavigableSet<>(4);
+        for (int i = 1; i < 1000; i++) {
+            set.add(KPN(k, "GTAC", i, i, false));
+            if (set.size() > 8) {
+                set.pollFirst();
+            }
+            assertEquals(Math.max(1, i - 7), set.first().firstStart());
+        }
+        assertEquals(8, set.size());
+    }
+}
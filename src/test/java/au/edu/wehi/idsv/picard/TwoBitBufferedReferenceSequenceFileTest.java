@@ -6,6 +6,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.stream.Collectors;
 
 import htsjdk.samtools.SAMSequenceRecord;
@@ -83,4 +84,37 @@ public class TwoBitBufferedReferenceSequenceFileTest extends TestHelper {
 		file.delete();
 		testFolder.delete();
 	}
+	@Test
+	public void should_round_trip_ambiguous_bases_through_cache() throws IOException {
+		TemporaryFolder testFolder = new TemporaryFolder();
+		testFolder.create();
+		File file = new File(testFolder.getRoot(), "TwoBitBufferedReferenceSequenceFileTest.gridsscache");
+		InMemoryReferenceSequenceFile underlying = new InMemoryReferenceSequenceFile(new String[] { "test", "test2" }, new byte[][] { B("NNACGTNNNNACGTRYACGTACGTACGTACGTACGTACGTAN"), B("ACGT") });
+		TwoBitBufferedReferenceSequenceFile a = new TwoBitBufferedReferenceSequenceFile(underlying, file);
+		a.getBase(0, 1);
+		assertTrue(file.exists());
+		TwoBitBufferedReferenceSequenceFile b = new TwoBitBufferedReferenceSequenceFile(underlying);
+		assertTrue(b.load(file));
+		assertEquals("NNACGTNNNNACGTNNACGTACGTACGTACGTACGTACGTAN", S(b.getSequence("test").getBases()));
+		assertEquals("ACGT", S(b.getSequence("test2").getBases()));
+		assertEquals("GTNNNNA", S(b.getSubsequenceAt("test", 5, 11).getBases()));
+		assertEquals('N', b.getBase(0, 7));
+		assertEquals('A', b.getBase(0, 11));
+		file.delete();
+		testFolder.delete();
+	}
+	@Test
+	public void should_replace_invalid_cache() throws IOException {
+		TemporaryFolder testFolder = new TemporaryFolder();
+		testFolder.create();
+		File file = new File(testFolder.getRoot(), "TwoBitBufferedReferenceSequenceFileTest.gridsscache");
+		Files.write(file.toPath(), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16 });
+		TwoBitBufferedReferenceSequenceFile a = new TwoBitBufferedReferenceSequenceFile(SMALL_FA, file);
+		assertEquals(S(SMALL_FA.getSequence("random").getBases()).toUpperCase(), S(a.getSequence("random").getBases()));
+		TwoBitBufferedReferenceSequenceFile b = new TwoBitBufferedReferenceSequenceFile(SMALL_FA);
+		assertTrue(b.load(file));
+		assertEquals(S(SMALL_FA.getSequence("random").getBases()).toUpperCase(), S(b.getSequence("random").getBases()));
+		file.delete();
+		testFolder.delete();
+	}
 }
@@ -1,12 +1,18 @@
 package au.edu.wehi.idsv.sam;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.List;
 
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
+
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMTag;
 import htsjdk.samtools.TextCigarCodec;
 
 
@@ -38,4 +44,40 @@ public class ChimericAlignmentTest {
 		assertEquals(1, new ChimericAlignment(null, 0, false, TextCigarCodec.decode("1S2M3S4H"), 0, 0).getFirstAlignedBaseReadOffset());
 		assertEquals(7, new ChimericAlignment(null, 0, true, TextCigarCodec.decode("1S2M3S4H"), 0, 0).getFirstAlignedBaseReadOffset());
 	}
+	@Test
+	public void toString_should_round_trip() {
+		for (String sa : new String[] { "chr18,107870,-,8817S631M318S,30,39", "chr1,1,+,*,0,", "chrY,13833846,+,7104S60M2602S,15,0" }) {
+			assertEquals(sa, new ChimericAlignment(sa).toString());
+		}
+	}
+	@Test
+	public void should_ignore_empty_alignments() {
+		List<ChimericAlignment> list = ChimericAlignment.getChimericAlignments("chr1,1,+,1M,0,0;;chr2,2,-,2M,1,1;");
+		assertEquals(2, list.size());
+		assertEquals("chr2", list.get(1).rname);
+		assertEquals(1, list.get(1).mapq);
+	}
+	@Test
+	public void should_cache_parsed_record_alignments() {
+		SAMRecord r = new SAMRecord(null);
+		r.setAttribute(SAMTag.SA.name(), "chr1,1,+,1M,0,0;chr2,2,-,2M,1,1");
+		List<ChimericAlignment> list = ChimericAlignment.getChimericAlignments(r);
+		assertEquals(2, list.size());
+		assertSame(list, ChimericAlignment.getChimericAlignments(r));
+		r.setAttribute(SAMTag.SA.name(), "chr3,3,+,3M,3,3");
+		List<ChimericAlignment> updated = ChimericAlignment.getChimericAlignments(r);
+		assertNotSame(list, updated);
+		assertEquals(1, updated.size());
+		assertEquals("chr3", updated.get(0).rname);
+	}
+	@Test
+	public void setChimericAlignments_should_update_tag_and_cache() {
+		SAMRecord r = new SAMRecord(null);
+		ChimericAlignment ca1 = new ChimericAlignment("chr1,1,+,1M,0,0");
+		ChimericAlignment ca2 = new ChimericAlignment("chr2,2,-,2M,1,1");
+		ChimericAlignment.setChimericAlignments(r, ImmutableList.of(ca1, ca2));
+		assertEquals("chr1,1,+,1M,0,0;chr2,2,-,2M,1,1", r.getStringAttribute(SAMTag.SA.name()));
+		assertEquals(ImmutableList.of(ca1, ca2), ChimericAlignment.getChimericAlignments(r));
+		assertSame(ca1, ChimericAlignment.getChimericAlignments(r).get(0));
+	}
 }
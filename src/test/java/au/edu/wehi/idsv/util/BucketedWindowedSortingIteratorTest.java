@@ -0,0 +1,86 @@
+package au.edu.wehi.idsv.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Longs;
+
+
+public class BucketedWindowedSortingIteratorTest {
+	private static final Comparator<long[]> ByPositionId = Comparator.<long[]>comparingLong(x -> x[0]).thenComparingLong(x -> x[1]);
+	private static List<long[]> shuffled(Random rng, int count, int windowSize, int spacing) {
+		List<long[]> list = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			list.add(new long[] { i * spacing + rng.nextInt(windowSize + 1), i });
+		}
+		return list;
+	}
+	@Test
+	public void should_sort_by_position() {
+		List<Long> list = Longs.asList(1, 6, 5, 4, 7, 7, 8, 10, 9);
+		List<Long> result = Lists.newArrayList(new BucketedWindowedSortingIterator<Long>(list.iterator(), x -> x, 5));
+		assertEquals(Longs.asList(1, 4, 5, 6, 7, 7, 8, 9, 10), result);
+	}
+	@Test
+	public void should_match_WindowedSortingIterator() {
+		Random rng = new Random(0);
+		for (int windowSize : new int[] { 0, 1, 7, 1000, 5000 }) {
+			for (int spacing : new int[] { 1, 3, 100 }) {
+				List<long[]> list = shuffled(rng, 5000, windowSize, spacing);
+				List<long[]> expected = Lists.newArrayList(new WindowedSortingIterator<long[]>(list.iterator(), x -> x[0], windowSize, ByPositionId));
+				List<long[]> result = Lists.newArrayList(new BucketedWindowedSortingIterator<long[]>(list.iterator(), x -> x[0], windowSize, ByPositionId));
+				assertEquals(expected.size(), result.size());
+				for (int i = 0; i < expected.size(); i++) {
+					assertEquals(expected.get(i), result.get(i));
+				}
+			}
+		}
+	}
+	@Test
+	public void should_sort_records_spanning_more_bins_than_window_size() {
+		List<Long> list = Longs.asList(100, 50, 55, 40, 30, 1000);
+		List<Long> result = Lists.newArrayList(new BucketedWindowedSortingIterator<Long>(list.iterator(), x -> x, 10));
+		assertEquals(Longs.asList(30, 40, 50, 55, 100, 1000), result);
+	}
+	@Test(expected=IllegalStateException.class)
+	public void should_not_be_able_to_sort_unordered_outside_of_window() {
+		List<Long> list = Longs.asList(10, 20, 30, 50, 60, 40);
+		Lists.newArrayList(new BucketedWindowedSortingIterator<Long>(list.iterator(), x -> x, 5));
+	}
+	@Test(expected=IllegalStateException.class)
+	public void should_not_grow_bins_unbounded_when_unordered_far_outside_of_window() {
+		List<Long> list = Longs.asList(1000000, 0);
+		Lists.newArrayList(new BucketedWindowedSortingIterator<Long>(list.iterator(), x -> x, 5));
+	}
+	@Test(expected=IllegalStateException.class)
+	public void should_not_overflow_bin_count() {
+		List<Long> list = Longs.asList(1L << 40, 0);
+		Lists.newArrayList(new BucketedWindowedSortingIterator<Long>(list.iterator(), x -> x, 5));
+	}
+	@Test
+	public void should_sort_records_added_to_head_bin_after_emission_started() {
+		// window of 5000 has bins of width 5 so 1 is added to the
+		// first bin after 0 has been emitted from it
+		List<Long> list = Longs.asList(0, 2, 5001, 1);
+		BucketedWindowedSortingIterator<Long> it = new BucketedWindowedSortingIterator<Long>(list.iterator(), x -> x, 5000);
+		assertEquals(0L, (long)it.next());
+		assertEquals(Longs.asList(1, 2, 5001), Lists.newArrayList(it));
+	}
+	@Test
+	public void should_sort_large_window() {
+		Random rng = new Random(1);
+		List<long[]> list = shuffled(rng, 10000, 100000, 10);
+		List<long[]> expected = new ArrayList<>(list);
+		Collections.sort(expected, ByPositionId);
+		List<long[]> result = Lists.newArrayList(new BucketedWindowedSortingIterator<long[]>(list.iterator(), x -> x[0], 100000, ByPositionId));
+		assertEquals(expected, result);
+	}
+}
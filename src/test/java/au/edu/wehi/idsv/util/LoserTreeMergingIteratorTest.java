@@ -0,0 +1,53 @@
+package au.edu.wehi.idsv.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+
+public class LoserTreeMergingIteratorTest {
+	@Test
+	public void should_merge_sorted_iterators() {
+		Random rng = new Random(0);
+		for (int k = 0; k < 20; k++) {
+			List<Iterator<Integer>> input = new ArrayList<>();
+			List<Integer> expected = new ArrayList<>();
+			for (int i = 0; i < k; i++) {
+				List<Integer> list = new ArrayList<>();
+				int n = rng.nextInt(50);
+				for (int j = 0; j < n; j++) {
+					list.add(rng.nextInt(100));
+				}
+				list.sort(Comparator.naturalOrder());
+				expected.addAll(list);
+				input.add(list.iterator());
+			}
+			expected.sort(Comparator.naturalOrder());
+			assertEquals(expected, Lists.newArrayList(new LoserTreeMergingIterator<>(input, Ordering.natural())));
+		}
+	}
+	@Test
+	public void should_return_equal_records_in_input_order() {
+		List<int[]> a = ImmutableList.of(new int[] { 1, 0 }, new int[] { 2, 0 });
+		List<int[]> b = ImmutableList.of(new int[] { 1, 1 }, new int[] { 2, 1 });
+		List<int[]> c = ImmutableList.of(new int[] { 1, 2 });
+		List<int[]> result = Lists.newArrayList(new LoserTreeMergingIterator<>(ImmutableList.of(a.iterator(), b.iterator(), c.iterator()), Comparator.comparingInt(x -> x[0])));
+		assertEquals(5, result.size());
+		for (int i = 1; i < result.size(); i++) {
+			int[] prev = result.get(i - 1);
+			int[] cur = result.get(i);
+			assertFalse(prev[0] > cur[0]);
+			assertFalse(prev[0] == cur[0] && prev[1] > cur[1]);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package au.edu.wehi.idsv.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.SortingCollection;
+
+public class ParallelSortingCollectionTest extends IntermediateFilesTest {
+	/**
+	 * Serialises (key, insertion order) pairs
+	 */
+	private static class LongPairCodec implements SortingCollection.Codec<long[]> {
+		private DataOutputStream os;
+		private DataInputStream is;
+		@Override
+		public void setOutputStream(OutputStream os) {
+			this.os = new DataOutputStream(os);
+		}
+		@Override
+		public void setInputStream(InputStream is) {
+			this.is = new DataInputStream(is);
+		}
+		@Override
+		public void encode(long[] val) {
+			try {
+				os.writeLong(val[0]);
+				os.writeLong(val[1]);
+				os.flush();
+			} catch (IOException e) {
+				throw new RuntimeIOException(e);
+			}
+		}
+		@Override
+		public long[] decode() {
+			try {
+				return new long[] { is.readLong(), is.readLong() };
+			} catch (EOFException e) {
+				return null;
+			} catch (IOException e) {
+				throw new RuntimeIOException(e);
+			}
+		}
+		@Override
+		public LongPairCodec clone() {
+			return new LongPairCodec();
+		}
+	}
+	private static final Comparator<long[]> ByKey = Comparator.comparingLong(x -> x[0]);
+	private List<long[]> sort(int records, int maxRecordsInRam, int keyRange, int expectedSpills) {
+		Random rng = new Random(0);
+		ParallelSortingCollection<long[]> collection = new ParallelSortingCollection<>(new LongPairCodec(), ByKey, maxRecordsInRam, testFolder.getRoot().toPath());
+		for (int i = 0; i < records; i++) {
+			collection.add(new long[] { rng.nextInt(keyRange), i });
+		}
+		collection.doneAdding();
+		assertEquals(expectedSpills, collection.getSpillCount());
+		List<long[]> result = new ArrayList<>();
+		try (CloseableIterator<long[]> it = collection.iterator()) {
+			while (it.hasNext()) {
+				result.add(it.next());
+			}
+		}
+		collection.cleanup();
+		return result;
+	}
+	private static void assertSortedAndStable(int expectedSize, List<long[]> result) {
+		assertEquals(expectedSize, result.size());
+		for (int i = 1; i < result.size(); i++) {
+			long[] prev = result.get(i - 1);
+			long[] cur = result.get(i);
+			assertFalse(prev[0] > cur[0]);
+			if (prev[0] == cur[0]) {
+				// equal records should retain insertion order
+				assertFalse(prev[1] > cur[1]);
+			}
+		}
+	}
+	@Test
+	public void should_sort_in_memory() {
+		assertSortedAndStable(1000, sort(1000, 2000, 100, 0));
+	}
+	@Test
+	public void should_merge_spilled_runs() {
+		assertSortedAndStable(10000, sort(10000, 999, 100, 20));
+	}
+	@Test
+	public void should_delete_spill_files_on_cleanup() {
+		sort(100, 10, 100, 19);
+		assertEquals(0, testFolder.getRoot().listFiles(f -> f.getName().startsWith("gridss.tmp.sortingcollection.")).length);
+	}
+	@Test
+	public void should_hold_at_most_maxRecordsInRam_records_in_memory() {
+		// runs of 50 records: one being filled while the other is spilled
+		assertSortedAndStable(1000, sort(1000, 100, 100, 19));
+	}
+	@Test
+	public void should_handle_empty_collection() {
+		assertEquals(0, sort(0, 10, 100, 0).size());
+	}
+}
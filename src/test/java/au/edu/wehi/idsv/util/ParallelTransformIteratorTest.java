@@ -1,6 +1,7 @@
 package au.edu.wehi.idsv.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -56,4 +57,20 @@ public class ParallelTransformIteratorTest {
 		for (int i = 32; i > 0; i--) assertEquals(i, (int)it.next());
 		threadpool.shutdown();
 	}
+	@Test
+	public void should_rethrow_transform_exception_in_iteration_order() {
+		ExecutorService threadpool = Executors.newFixedThreadPool(4);
+		CIT cit = new CIT(16);
+		ParallelTransformIterator<Integer, Integer> it = new ParallelTransformIterator<Integer, Integer>(cit, n -> {
+			if (n == 8) throw new IllegalStateException();
+			return n;
+		}, 4, threadpool);
+		for (int i = 16; i > 8; i--) assertEquals(i, (int)it.next());
+		try {
+			it.next();
+			fail();
+		} catch (IllegalStateException e) {
+		}
+		threadpool.shutdown();
+	}
 }
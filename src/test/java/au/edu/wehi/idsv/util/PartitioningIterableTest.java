@@ -0,0 +1,91 @@
+package au.edu.wehi.idsv.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+
+public class PartitioningIterableTest {
+	@Test
+	public void should_partition_underlying_iterator() {
+		List<Integer> list = ImmutableList.of(0, 1, 2, 3, 4, 5, 6, 7);
+		PartitioningIterable<Integer> pi = new PartitioningIterable<>(3, list.iterator(), i -> i % 3);
+		assertEquals(ImmutableList.of(1, 4, 7), Lists.newArrayList(pi.iterator(1)));
+		assertEquals(ImmutableList.of(0, 3, 6), Lists.newArrayList(pi.iterator(0)));
+		assertEquals(ImmutableList.of(2, 5), Lists.newArrayList(pi.iterator(2)));
+	}
+	@Test
+	public void should_discard_negative_partition() {
+		List<Integer> list = ImmutableList.of(0, 1, 2, 3, 4, 5, 6, 7);
+		PartitioningIterable<Integer> pi = new PartitioningIterable<>(1, list.iterator(), i -> i % 2 == 0 ? 0 : -1);
+		assertEquals(ImmutableList.of(0, 2, 4, 6), Lists.newArrayList(pi.iterator(0)));
+	}
+	@Test
+	public void should_not_require_concurrent_consumers() {
+		List<Integer> list = ImmutableList.of(0, 1, 2, 3, 4, 5, 6, 7);
+		PartitioningIterable<Integer> pi = new PartitioningIterable<>(2, list.iterator(), i -> i % 2);
+		Iterator<Integer> it0 = pi.iterator(0);
+		Iterator<Integer> it1 = pi.iterator(1);
+		while (it0.hasNext()) it0.next();
+		assertEquals(ImmutableList.of(1, 3, 5, 7), Lists.newArrayList(it1));
+		assertFalse(it0.hasNext());
+	}
+	@Test
+	public void should_allow_concurrent_consumers() throws Exception {
+		List<Integer> list = IntStream.range(0, 100000).boxed().collect(Collectors.toList());
+		PartitioningIterable<Integer> pi = new PartitioningIterable<>(4, list.iterator(), i -> i % 4);
+		ExecutorService threadpool = Executors.newFixedThreadPool(2);
+		List<Future<List<Integer>>> results = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			Iterator<Integer> it = pi.iterator(i);
+			results.add(threadpool.submit(() -> Lists.newArrayList(it)));
+		}
+		for (int i = 0; i < 4; i++) {
+			int partition = i;
+			assertEquals(list.stream().filter(x -> x % 4 == partition).collect(Collectors.toList()), results.get(i).get());
+		}
+		threadpool.shutdown();
+	}
+	@Test
+	public void should_bound_partition_buffer() throws Exception {
+		List<Integer> list = IntStream.range(0, 100000).boxed().collect(Collectors.toList());
+		PartitioningIterable<Integer> pi = new PartitioningIterable<>(4, list.iterator(), i -> i % 4, 8);
+		ExecutorService threadpool = Executors.newFixedThreadPool(4);
+		List<Future<List<Integer>>> results = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			Iterator<Integer> it = pi.iterator(i);
+			results.add(threadpool.submit(() -> Lists.newArrayList(it)));
+		}
+		for (int i = 0; i < 4; i++) {
+			int partition = i;
+			assertEquals(list.stream().filter(x -> x % 4 == partition).collect(Collectors.toList()), results.get(i).get());
+		}
+		threadpool.shutdown();
+	}
+	@Test
+	public void close_should_release_consumer_waiting_on_full_partition() throws Exception {
+		List<Integer> list = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+		PartitioningIterable<Integer> pi = new PartitioningIterable<>(2, list.iterator(), i -> i < 50 ? 1 : 0, 4);
+		ExecutorService threadpool = Executors.newSingleThreadExecutor();
+		Future<List<Integer>> result = threadpool.submit(() -> Lists.newArrayList(pi.iterator(0)));
+		Thread.sleep(200);
+		assertFalse(result.isDone());
+		pi.close();
+		assertEquals(ImmutableList.of(), result.get(5, TimeUnit.SECONDS));
+		threadpool.shutdown();
+	}
+}
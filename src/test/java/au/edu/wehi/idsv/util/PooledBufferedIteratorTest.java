@@ -0,0 +1,56 @@
+package au.edu.wehi.idsv.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+
+public class PooledBufferedIteratorTest {
+	@Test
+	public void should_return_underlying_records() {
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			for (int n : new int[] { 0, 1, 7, 8, 9, 1000 }) {
+				List<Integer> expected = IntStream.range(0, n).boxed().collect(Collectors.toList());
+				assertEquals(expected, Lists.newArrayList(new PooledBufferedIterator<>(expected.iterator(), pool, 2, 8)));
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+	@Test(timeout = 10000)
+	public void should_not_deadlock_with_more_iterators_than_threads() {
+		ExecutorService pool = Executors.newFixedThreadPool(1);
+		try {
+			List<Iterator<Integer>> input = new ArrayList<>();
+			for (int i = 0; i < 64; i++) {
+				input.add(new PooledBufferedIterator<>(IntStream.range(0, 1000).map(x -> x * 64).boxed().iterator(), pool, 2, 4));
+			}
+			List<Integer> result = Lists.newArrayList(new LoserTreeMergingIterator<>(input, Ordering.natural()));
+			assertEquals(64 * 1000, result.size());
+			assertEquals(Ordering.natural().sortedCopy(result), result);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	@Test(expected = RuntimeException.class)
+	public void should_rethrow_underlying_exception() {
+		ExecutorService pool = Executors.newFixedThreadPool(1);
+		try {
+			Iterator<Integer> it = new PooledBufferedIterator<>(new ErrorIterator<>(), pool, 2, 8);
+			while (it.hasNext()) it.next();
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -97,4 +97,30 @@ public class ComputeCoverageTest extends IntermediateFilesTest {
 		expectBin("polyA", 21, 30, 50, list.get(2));
 		expectBin("polyA", 31, 40, 0, list.get(3));
 	}
+	@Test
+	public void should_compute_coverage_during_sv_read_extraction() throws IOException {
+		File coverage = new File(testFolder.getRoot(), "coverage.bed");
+		File sv = new File(testFolder.getRoot(), "sv.bam");
+		createInput(RP(0, 5, 21, 5));
+		String[] args = new String[] {
+				"INPUT=" + input.toString(),
+				"REFERENCE_SEQUENCE=" + reference.toString(),
+				"OUTPUT=" + new File(testFolder.getRoot(), "metrics").toString(),
+				"SV_OUTPUT=" + sv.toString(),
+				"TMP_DIR=" + super.testFolder.getRoot().toString(),
+				"GRIDSS_PROGRAM=null",
+				"GRIDSS_PROGRAM=CollectIdsvMetrics",
+				"COVERAGE_OUTPUT=" + coverage.toString(),
+				"COVERAGE_BIN_SIZE=10",
+				"UNPAIRED_FRAGMENT_SIZE=300",
+		};
+		assertEquals(0, new CollectGridssMetricsAndExtractSVReads().instanceMain(args));
+		Assert.assertTrue(sv.exists());
+		Assert.assertTrue(coverage.exists());
+		ArrayList<BEDFeature> list = getBed(coverage);
+		expectBin("polyA", 1, 10, 0.5, list.get(0));
+		expectBin("polyA", 11, 20, 0, list.get(1));
+		expectBin("polyA", 21, 30, 0.5, list.get(2));
+		expectBin("polyA", 31, 40, 0, list.get(3));
+	}
 }
@@ -27,6 +27,8 @@ import au.edu.wehi.idsv.picard.ReferenceLookup;
 import au.edu.wehi.idsv.picard.SynchronousReferenceLookupAdapter;
 import au.edu.wehi.idsv.sam.ChimericAlignment;
 import gridss.analysis.StructuralVariantReadMetrics;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
@@ -74,6 +76,42 @@ public class ExtractSVReadsTest extends IntermediateFilesTest {
 		assertEquals(1, out.size());
 	}
 	@Test
+	public void should_compute_sam_tags_in_queryname_order() {
+		createInput();
+		ExtractSVReads extract = new ExtractSVReads();
+		extract.INPUT = input;
+		extract.OUTPUT = output;
+		extract.COMPUTE_SAM_TAGS = true;
+		extract.setup(getHeader(), extract.INPUT);
+		extract.acceptFragment(ImmutableList.of(withReadName("b", Read(0, 1, "50M50S"))[0]), SMALL_FA);
+		extract.acceptFragment(ImmutableList.copyOf(withReadName("a", DP(0, 1, "50M50S", true, 1, 10, "100M", false))), SMALL_FA);
+		extract.finish();
+		List<SAMRecord> out = getRecords(output);
+		assertEquals(3, out.size());
+		assertEquals("a", out.get(0).getReadName());
+		assertEquals("a", out.get(1).getReadName());
+		assertEquals("b", out.get(2).getReadName());
+		assertTrue(out.stream().allMatch(r -> r.getIntegerAttribute("NM") != null));
+		assertEquals("100M", out.get(0).getStringAttribute("MC"));
+	}
+	@Test
+	public void should_compute_sam_tags_in_place_for_queryname_sorted_input() {
+		createInput();
+		ExtractSVReads extract = new ExtractSVReads();
+		extract.INPUT = input;
+		extract.OUTPUT = output;
+		extract.COMPUTE_SAM_TAGS = true;
+		SAMFileHeader header = getHeader().clone();
+		header.setSortOrder(SortOrder.queryname);
+		extract.setup(header, extract.INPUT);
+		extract.acceptFragment(ImmutableList.copyOf(withReadName("a", DP(0, 1, "50M50S", true, 1, 10, "100M", false))), SMALL_FA);
+		extract.finish();
+		List<SAMRecord> out = getRecords(output);
+		assertEquals(2, out.size());
+		assertTrue(out.stream().allMatch(r -> r.getIntegerAttribute("NM") != null));
+		assertEquals("100M", out.get(0).getStringAttribute("MC"));
+	}
+	@Test
 	public void should_write_metrics() {
 		createInput();
 		ExtractSVReads extract = new ExtractSVReads();